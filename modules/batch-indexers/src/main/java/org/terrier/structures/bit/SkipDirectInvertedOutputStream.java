@@ -0,0 +1,256 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SkipDirectInvertedOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+package org.terrier.structures.bit;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.bit.BitOut;
+import org.terrier.compression.bit.BitOutputStream;
+import org.terrier.compression.bit.MemorySBOS;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitFilePosition;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FilePosition;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.postings.BasicPostingImpl;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+import org.terrier.structures.postings.bit.PostingSkipList;
+
+/** Writes posting lists in blocks of a fixed number of postings, each posting list preceded by
+ * a skip table recording the last docid and compressed length of each block, as described in
+ * {@link PostingSkipList}. The postings themselves are encoded by a {@link DirectInvertedOutputStream}
+ * (or one of its children), so any of the usual posting formats (with or without fields and blocks)
+ * can be used. Posting lists with no more postings than the block size have a 1-bit header.
+ * <p>
+ * As the skip table precedes the postings, each posting list is first encoded in memory,
+ * before being copied to the output. Moreover, posting lists cannot be written in several parts using
+ * the previousId argument to continue a previous posting list; instead, previousId is interpreted
+ * as an offset that is applied to all docids, i.e. docids are written as id - previousId - 1.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class SkipDirectInvertedOutputStream extends AbstractPostingOutputStream implements Closeable {
+
+	/** The logger used */
+	protected static final Logger logger = LoggerFactory.getLogger(SkipDirectInvertedOutputStream.class);
+
+	/** what to write to */
+	protected final BitOut output;
+	/** makes a writer of the posting format for a given BitOut */
+	protected final Function<BitOut, DirectInvertedOutputStream> postingFormat;
+	/** number of postings in each block */
+	protected final int blockSize;
+	/** class for reading the written posting lists */
+	protected final Class<? extends IterablePosting> postingIteratorClass;
+
+	/** the posting list currently being written, encoded in memory */
+	protected MemorySBOS memory;
+	/** encodes the postings of the current posting list to memory */
+	protected DirectInvertedOutputStream memoryOutput;
+	/** number of postings in the current posting list */
+	protected int numberOfEntries;
+	/** last docid of each full block of the current posting list */
+	protected final TIntArrayList blockLastDocids = new TIntArrayList();
+	/** bit offset of the end of each full block of the current posting list */
+	protected final TLongArrayList blockEnds = new TLongArrayList();
+	protected int lastDocid;
+
+	/** Creates a new output stream, writing to the specified file.
+	 * @param filename Location of the file to write to
+	 * @param _postingFormat creates a writer for the posting format to use on a given BitOut
+	 * @param _blockSize number of postings in each block
+	 * @param _postingIteratorClass class for reading the written posting lists, e.g. SkipBasicIterablePosting
+	 */
+	public SkipDirectInvertedOutputStream(String filename, Function<BitOut, DirectInvertedOutputStream> _postingFormat, int _blockSize,
+			Class<? extends IterablePosting> _postingIteratorClass) throws IOException
+	{
+		this(new BitOutputStream(filename), _postingFormat, _blockSize, _postingIteratorClass);
+	}
+
+	/** Creates a new output stream, writing to the specified BitOut implementation.
+	 * @param out BitOut implementation to write the file to
+	 * @param _postingFormat creates a writer for the posting format to use on a given BitOut
+	 * @param _blockSize number of postings in each block
+	 * @param _postingIteratorClass class for reading the written posting lists, e.g. SkipBasicIterablePosting
+	 */
+	public SkipDirectInvertedOutputStream(BitOut out, Function<BitOut, DirectInvertedOutputStream> _postingFormat, int _blockSize,
+			Class<? extends IterablePosting> _postingIteratorClass)
+	{
+		if (_blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive, was " + _blockSize);
+		this.output = out;
+		this.postingFormat = _postingFormat;
+		this.blockSize = _blockSize;
+		this.postingIteratorClass = _postingIteratorClass;
+	}
+
+	/** Returns the IterablePosting class to use for reading structure written by this class */
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass() {
+		return postingIteratorClass;
+	}
+
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator) throws IOException {
+		return writePostings(iterator, -1);
+	}
+
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator, int previousId) throws IOException {
+		startList();
+		while(iterator.hasNext())
+		{
+			final Posting p = iterator.next();
+			addPosting(p, p.getId() - previousId - 1);
+		}
+		return endList();
+	}
+
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings) throws IOException {
+		return writePostings(postings, -1);
+	}
+
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings, int previousId) throws IOException {
+		startList();
+		while(postings.next() != IterablePosting.EOL)
+			addPosting(postings, postings.getId() - previousId - 1);
+		return endList();
+	}
+
+	/** Write out a range of the specified postings, as docids and frequencies only. The delta for the first id must be specified.
+	 * @param postings The postings to write out
+	 * @param startOffset The location of the first posting to write out.
+	 * @param Length The end of the range of postings to write out.
+	 * @param firstId the (delta) value of the first docid to write out.
+	 */
+	@Override
+	public BitIndexPointer writePostings(int[][] postings, int startOffset, int Length, int firstId) throws IOException {
+		startList();
+		final int docidOffset = firstId - 1 - postings[0][startOffset];
+		for(int i=startOffset;i<Length;i++)
+			addPosting(new BasicPostingImpl(postings[0][i] + docidOffset, postings[1][i]), postings[0][i] + docidOffset);
+		return endList();
+	}
+
+	protected void startList() throws IOException
+	{
+		memory = new MemorySBOS();
+		memoryOutput = postingFormat.apply(memory);
+		numberOfEntries = 0;
+		lastDocid = -1;
+		blockLastDocids.clear();
+		blockEnds.clear();
+	}
+
+	protected void addPosting(Posting p, int docid) throws IOException
+	{
+		memory.writeGamma(docid - lastDocid);
+		memoryOutput.writePostingNotDocid(p);
+		lastDocid = docid;
+		if (++numberOfEntries % blockSize == 0)
+		{
+			blockLastDocids.add(docid);
+			blockEnds.add(bitPosition(memory));
+		}
+	}
+
+	protected BitIndexPointer endList() throws IOException
+	{
+		final BitIndexPointer pointer = new SimpleBitIndexPointer();
+		pointer.setOffset(output.getByteOffset(), output.getBitOffset());
+		pointer.setNumberOfEntries(numberOfEntries);
+		if (numberOfEntries == 0)
+			return pointer;
+
+		//write the skip table
+		final int numBlocks = (numberOfEntries + blockSize - 1) / blockSize;
+		output.writeGamma(numBlocks);
+		if (numBlocks > 1)
+		{
+			output.writeGamma(blockSize);
+			int previousLastDocid = -1;
+			long previousEnd = 0;
+			for(int block=0;block<numBlocks-1;block++)
+			{
+				output.writeGamma(blockLastDocids.get(block) - previousLastDocid);
+				output.writeGamma((int) (blockEnds.get(block) - previousEnd));
+				previousLastDocid = blockLastDocids.get(block);
+				previousEnd = blockEnds.get(block);
+			}
+		}
+
+		//copy the encoded postings
+		final long bits = bitPosition(memory);
+		memory.pad();
+		final byte[] bytes = memory.getMOS().getBuffer();
+		final int fullBytes = (int) (bits >>> 3);
+		for(int i=0;i<fullBytes;i++)
+			output.writeBinary(8, bytes[i] & 0xff);
+		final int remainingBits = (int) (bits & 7);
+		if (remainingBits > 0)
+			output.writeBinary(remainingBits, (bytes[fullBytes] & 0xff) >>> (8 - remainingBits));
+		memory = null;
+		memoryOutput = null;
+		return pointer;
+	}
+
+	static long bitPosition(BitOut out)
+	{
+		return (out.getByteOffset() << 3) + out.getBitOffset();
+	}
+
+	/** What is current offset? */
+	@Override
+	public BitFilePosition getOffset() {
+		return new FilePosition(output.getByteOffset(), output.getBitOffset());
+	}
+
+	@Override
+	public int getLastDocidWritten() {
+		return lastDocid;
+	}
+
+	/** close this object. suppresses any exception */
+	@Override
+	public void close() {
+		try{
+			output.close();
+		} catch (IOException ioe) {
+			logger.error("Problem closing SkipDirectInvertedOutputStream", ioe);
+		}
+	}
+}
@@ -27,9 +27,12 @@
 
 package org.terrier.structures.indexing;
 
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.function.Function;
 
 import org.terrier.compression.bit.BitIn;
+import org.terrier.compression.bit.BitOut;
 import org.terrier.structures.AbstractPostingOutputStream;
 import org.terrier.structures.Index;
 import org.terrier.structures.PostingIndex;
@@ -41,12 +44,17 @@ import org.terrier.structures.bit.BlockFieldDirectInvertedOutputStream;
 import org.terrier.structures.bit.DirectInvertedDocidOnlyOuptutStream;
 import org.terrier.structures.bit.DirectInvertedOutputStream;
 import org.terrier.structures.bit.FieldDirectInvertedOutputStream;
+import org.terrier.structures.bit.SkipDirectInvertedOutputStream;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePostingDocidOnly;
 import org.terrier.structures.postings.bit.BlockFieldIterablePosting;
 import org.terrier.structures.postings.bit.BlockIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
+import org.terrier.structures.postings.bit.SkipBasicIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockFieldIterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockIterablePosting;
+import org.terrier.structures.postings.bit.SkipFieldIterablePosting;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.ArrayUtils;
 /** Configures the compression to be used when creating an IndexOnDisk.
@@ -207,6 +215,51 @@ public class CompressionFactory {
 		}
 	}
 	
+	/** A variant of {@link BitCompressionConfiguration} that writes posting lists in blocks of a fixed
+	 * number of postings, preceded by a skip table. This allows {@link IterablePosting#next(int)} to
+	 * skip directly to the block containing the target docid, which benefits conjunctive and phrase
+	 * queries, and dynamic pruning. The number of postings in each block is set by the property
+	 * <tt>index.STRUCTURENAME.compression.skip.size</tt> (default 128).
+	 * @since 5.9
+	 */
+	public static class BitSkipCompressionConfiguration extends SpecificCompressionConfiguration
+	{
+		/** number of postings in each block */
+		protected final int skipSize;
+		
+		public BitSkipCompressionConfiguration(String structureName, String[] fieldNames, int hasBlocks, int maxBlocks)
+		{
+			super(
+				structureName, fieldNames, hasBlocks, maxBlocks,
+				SkipDirectInvertedOutputStream.class,
+				fieldNames.length > 0 ? hasBlocks > 0 ? SkipBlockFieldIterablePosting.class : SkipFieldIterablePosting.class : hasBlocks > 0 ? SkipBlockIterablePosting.class : SkipBasicIterablePosting.class,
+				BitPostingIndex.class, 
+				BitPostingIndexInputStream.class,
+				BitIn.USUAL_EXTENSION
+			);
+			skipSize = Integer.parseInt(ApplicationSetup.getProperty("index."+structureName+".compression.skip.size", "128"));
+		}
+		
+		@Override
+		public AbstractPostingOutputStream getPostingOutputStream(String filename) {
+			final Function<BitOut,DirectInvertedOutputStream> postingFormat = fieldCount > 0 
+				? hasBlocks > 0 ? BlockFieldDirectInvertedOutputStream::new : FieldDirectInvertedOutputStream::new 
+				: hasBlocks > 0 ? BlockDirectInvertedOutputStream::new : DirectInvertedOutputStream::new;
+			try{
+				return new SkipDirectInvertedOutputStream(filename, postingFormat, skipSize, getPostingIteratorClass());
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+		
+		@Override
+		public void writeIndexProperties(PropertiesIndex index, String pointerSourceStream)
+		{
+			super.writeIndexProperties(index, pointerSourceStream);
+			index.setIndexProperty("index."+this.structureName+".compression.skip.size", String.valueOf(skipSize));
+		}
+	}
+	
 	@Deprecated
 	public static CompressionConfiguration getCompressionConfiguration(String structureName, String[] fieldNames, boolean blocks)
 	{
@@ -0,0 +1,182 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is InvertedIndexRecompresser.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.indexing;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.applications.CLITool;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FSOMapFileLexicon;
+import org.terrier.structures.FSOMapFileLexiconOutputStream;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.LexiconOutputStream;
+import org.terrier.structures.PostingIndexInputStream;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.collections.FSOrderedMapFile;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.integer.IntegerCodecCompressionConfiguration;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.ArrayUtils;
+import org.terrier.utility.Files;
+
+/** Rewrites the inverted index of an existing index using another compression configuration,
+ * for instance to convert a bit-compressed (<tt>.bf</tt>) inverted index built by single-pass
+ * indexing to one compressed by {@link IntegerCodecCompressionConfiguration} (<tt>.if</tt>),
+ * without re-indexing. The new inverted index is written as the <tt>tmp-inverted</tt> structure,
+ * and the lexicon pointers are updated, before it replaces the original inverted index.
+ * The compression configuration is set by the <tt>indexing.tmp-inverted.compression.configuration</tt>
+ * property (default IntegerCodecCompressionConfiguration), and is itself configured by the 
+ * <tt>index.tmp-inverted.compression.*</tt> properties.
+ * <p>
+ * <b>NB:</b> the original inverted index is overwritten.
+ * @since 5.9
+ */
+public class InvertedIndexRecompresser {
+
+	protected static final Logger logger = LoggerFactory.getLogger(InvertedIndexRecompresser.class);
+	static final String TMP_STRUCTURE_NAME = "tmp-inverted";
+
+	protected final IndexOnDisk index;
+
+	public InvertedIndexRecompresser(IndexOnDisk _index)
+	{
+		index = _index;
+	}
+
+	/** Makes the compression configuration for the new inverted index */
+	protected CompressionConfiguration getCompressionConfiguration()
+	{
+		final String[] fieldNames = ArrayUtils.parseCommaDelimitedString(index.getIndexProperty("index.inverted.fields.names", ""));
+		final int hasBlocks = index.getIntIndexProperty("index.inverted.blocks", 0);
+		final int maxBlocks = index.getIntIndexProperty("index.inverted.blocks.max", 0);
+		final String className = ApplicationSetup.getProperty("indexing."+TMP_STRUCTURE_NAME+".compression.configuration", 
+			IntegerCodecCompressionConfiguration.class.getName());
+		try{
+			return ApplicationSetup.getClass(className)
+					.asSubclass(CompressionConfiguration.class)
+					.getConstructor(String.class, String[].class, Integer.TYPE, Integer.TYPE)
+					.newInstance(TMP_STRUCTURE_NAME, fieldNames, hasBlocks, maxBlocks);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/** Recompresses the inverted index */
+	@SuppressWarnings("unchecked")
+	public void recompress() throws IOException
+	{
+		final CompressionConfiguration cc = getCompressionConfiguration();
+		logger.info("Recompressing inverted index of " + index.toString() + " using " + cc.getClass().getSimpleName());
+		final AbstractPostingOutputStream pos = cc.getPostingOutputStream(
+			index.getPath() + "/" + index.getPrefix() + "." + TMP_STRUCTURE_NAME + cc.getStructureFileExtension());
+		final PostingIndexInputStream postingStream = (PostingIndexInputStream) index.getIndexStructureInputStream("inverted");
+		final Iterator<Map.Entry<String,LexiconEntry>> lexiconStream = 
+			(Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		final LexiconOutputStream<String> los = new FSOMapFileLexiconOutputStream(
+			index.getPath(), index.getPrefix(), "tmplexicon", 
+			(FixedSizeWriteableFactory<Text>) index.getIndexStructure("lexicon-keyfactory"));
+		long numberOfPointers = 0;
+		while(lexiconStream.hasNext())
+		{
+			final Map.Entry<String,LexiconEntry> lee = lexiconStream.next();
+			final LexiconEntry le = lee.getValue();
+			BitIndexPointer pointer;
+			if (le.getNumberOfEntries() > 0)
+			{
+				//the posting stream skips empty posting lists
+				pointer = pos.writePostings(postingStream.next());
+			}
+			else
+			{
+				pointer = new SimpleBitIndexPointer();
+				pointer.setOffset(pos.getOffset());
+				pointer.setNumberOfEntries(0);
+			}
+			numberOfPointers += pointer.getNumberOfEntries();
+			le.setPointer(pointer);
+			los.writeNextEntry(lee.getKey(), le);
+		}
+		pos.close();
+		los.close();
+		IndexUtil.close(lexiconStream);
+		postingStream.close();
+		if (numberOfPointers != index.getCollectionStatistics().getNumberOfPointers())
+			logger.warn("Number of pointers recompressed ("+numberOfPointers+") does not match the collection statistics ("
+				+ index.getCollectionStatistics().getNumberOfPointers() + ")");
+
+		//replace the lexicon data (the hash and the id files do not change), then the inverted index
+		final String lexiconFilename = FSOMapFileLexicon.constructFilename("lexicon", index.getPath(), index.getPrefix(), FSOrderedMapFile.USUAL_EXTENSION);
+		Files.delete(lexiconFilename);
+		Files.rename(FSOMapFileLexicon.constructFilename("tmplexicon", index.getPath(), index.getPrefix(), FSOrderedMapFile.USUAL_EXTENSION), lexiconFilename);
+		cc.writeIndexProperties(index, "lexicon-entry-inputstream");
+		IndexUtil.deleteStructure(index, "inverted");
+		IndexUtil.renameIndexStructure(index, TMP_STRUCTURE_NAME, "inverted");
+		index.flush();
+	}
+
+	/** Runs the recompresser on the default index */
+	public static class Command extends CLITool
+	{
+		@Override
+		public String commandname() {
+			return "recompress";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "rewrites the inverted index of an existing index using another compression configuration";
+		}
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public int run(String[] args) throws Exception {
+			IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+			IndexOnDisk index = IndexOnDisk.createIndex();
+			if (index == null)
+			{
+				System.err.println("Sorry, no index could be found in default location: " + IndexOnDisk.getLastIndexLoadError());
+				return 1;
+			}
+			new InvertedIndexRecompresser(index).recompress();
+			index.close();
+			return 0;
+		}
+	}
+}
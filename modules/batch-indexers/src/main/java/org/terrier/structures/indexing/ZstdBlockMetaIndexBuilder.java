@@ -0,0 +1,138 @@
+package org.terrier.structures.indexing;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.ZstdBlockCompressedMetaIndex;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+/**
+ * Writes all metadata using Zstandard compression, compressing the records of several consecutive
+ * documents together as one block, using a dictionary trained on the first blocks. Compared to
+ * {@link ZstdMetaIndexBuilder}, which compresses each record independently, this achieves better
+ * compression for short records, such as URLs or titles. 
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>metaindex.zstd.block.size</tt> - number of documents in each compressed block. Defaults to 32.</li>
+ * <li><tt>metaindex.zstd.dictionary.size</tt> - maximum size of the trained dictionary, in bytes. Defaults to 65536. 0 disables the dictionary.</li>
+ * <li><tt>metaindex.zstd.dictionary.samples</tt> - number of documents used to train the dictionary. Defaults to 20000.</li>
+ * <li><tt>metaindex.zstd.level</tt> - Zstandard compression level. Defaults to 3.</li>
+ * </ul>
+ * @since 5.9
+ */
+public class ZstdBlockMetaIndexBuilder extends BaseMetaIndexBuilder {
+
+    protected final int blockSize = Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.block.size", "32"));
+    protected final int dictionarySize = Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.dictionary.size", "65536"));
+    protected final int dictionarySamples = Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.dictionary.samples", "20000"));
+
+    ZstdCompressCtx compressor = new ZstdCompressCtx();
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    int docsInBlock = 0;
+    /** blocks awaiting the training of the dictionary, or null once trained */
+    List<byte[]> pendingBlocks = new ArrayList<>();
+    int pendingDocs = 0;
+
+    public ZstdBlockMetaIndexBuilder(IndexOnDisk _index, String[] _keyNames, int[] _valueLens, String[] _reverseKeys)
+	{
+		this(_index, "meta", _keyNames, _valueLens, _reverseKeys);
+	}
+
+    public ZstdBlockMetaIndexBuilder(IndexOnDisk _index, String _structureName, String[] _keyNames, int[] _valueLens, String[] _reverseKeys)
+	{
+        super(_index, _structureName, _keyNames, _valueLens, _reverseKeys);
+        this.structureClass = ZstdBlockCompressedMetaIndex.class;
+        this.structureInputStreamClass = ZstdBlockCompressedMetaIndex.InputStream.class;
+        this.compressor.setChecksum(false);
+        this.compressor.setLevel(Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.level", "3")));
+        if (blockSize < 1)
+            throw new IllegalArgumentException("metaindex.zstd.block.size must be positive");
+    }
+
+    @Override
+    protected void writeRecord(byte[] record) throws IOException {
+        block.write(record);
+        if (++docsInBlock == blockSize)
+            endBlock();
+    }
+
+    protected void endBlock() throws IOException {
+        final byte[] b = block.toByteArray();
+        final int docs = docsInBlock;
+        block.reset();
+        docsInBlock = 0;
+        if (pendingBlocks != null)
+        {
+            pendingBlocks.add(b);
+            pendingDocs += docs;
+            if (pendingDocs >= dictionarySamples)
+                train();
+            return;
+        }
+        writeBlock(b, docs);
+    }
+
+    /** trains the dictionary on the pending blocks, then writes them */
+    protected void train() throws IOException {
+        long sampleBytes = 0;
+        for(byte[] b : pendingBlocks)
+            sampleBytes += b.length;
+        if (dictionarySize > 0 && pendingBlocks.size() > 0)
+        {
+            try{
+                ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, sampleBytes), dictionarySize);
+                for(byte[] b : pendingBlocks)
+                    trainer.addSample(b);
+                byte[] dictionary = trainer.trainSamples();
+                compressor.loadDict(dictionary);
+                try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(
+                    index.getPath() + "/" + index.getPrefix() + "." + structureName + ZstdBlockCompressedMetaIndex.DICTIONARY_SUFFIX)))
+                {
+                    dos.write(dictionary);
+                }
+                logger.info("Trained dictionary of " + dictionary.length + " bytes on " + pendingDocs + " documents");
+            } catch (ZstdException ze) {
+                logger.warn("Could not train a dictionary on " + pendingDocs + " documents, compressing without a dictionary: " + ze.getMessage());
+            }
+        }
+        final List<byte[]> blocks = pendingBlocks;
+        pendingBlocks = null;
+        for(int i=0;i<blocks.size();i++)
+            writeBlock(blocks.get(i), i < blocks.size() -1 ? blockSize : pendingDocs - (blocks.size()-1) * blockSize);
+    }
+
+    protected void writeBlock(byte[] data, int docs) throws IOException {
+        //each document of the block records the offset of the block
+        for(int i=0;i<docs;i++)
+        {
+            indexOutput.writeLong(currentOffset);
+            currentIndexOffset += 8;
+        }
+        currentOffset += writeData(data);
+    }
+
+    protected int writeData(byte[] data) throws IOException {
+        byte[] compressed = compressor.compress(data);
+        dataOutput.write(compressed);
+        return compressed.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (docsInBlock > 0)
+            endBlock();
+        if (pendingBlocks != null)
+            train();
+        compressor.close();
+        index.setIndexProperty("index."+structureName+".block-size", String.valueOf(blockSize));
+        super.close();
+    }
+}
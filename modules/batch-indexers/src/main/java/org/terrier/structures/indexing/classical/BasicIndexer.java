@@ -27,13 +27,32 @@
 package org.terrier.structures.indexing.classical;
 import gnu.trove.TIntHashSet;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.terrier.indexing.Collection;
 import org.terrier.indexing.Document;
+import org.terrier.indexing.tokenisation.Tokeniser;
 import org.terrier.structures.BasicDocumentIndexEntry;
 import org.terrier.structures.BasicLexiconEntry;
 import org.terrier.structures.BitIndexPointer;
@@ -327,29 +346,7 @@ public class BasicIndexer extends Indexer
 				logger.warn("skipping null document"); 
 				return null;
 			}
-			/* setup for parsing */
-			createDocumentPostings();
-			String term; //term we're currently processing
-			int numOfTokensInDocument = 0;
-
-			//get each term in the document
-			while (!doc.endOfDocument()) {
-				if ((term = doc.getNextTerm())!=null && !term.equals("")) {
-					termFields = doc.getFields();
-					/* pass term into TermPipeline (stop, stem etc) */
-					pipeline_first.processTerm(term);
-					/* the term pipeline will eventually add the term to this object. */
-				}
-				if (MAX_TOKENS_IN_DOCUMENT > 0 && 
-						numOfTokensInDocument > MAX_TOKENS_IN_DOCUMENT)
-						break;
-			}
-			//if we didn't index all tokens from document,
-			//we need to get to the end of the document.
-			while (!doc.endOfDocument()) 
-				doc.getNextTerm();
-			
-			pipeline_first.reset();
+			final DocumentPostingList postings = parseDocument(doc);
 			/* we now have all terms in the DocumentTree, so we save the document tree */
 			
 			
@@ -363,7 +360,308 @@ public class BasicIndexer extends Indexer
 				logger.warn("Document "+doc.getProperty("docno")+" is a builder boundary document. Boundary forced.");
 				breakHere = true;
 			}
-			return new MapEntry<Map<String,String>, DocumentPostingList>(doc.getAllProperties(), termsInDocument);
+			return new MapEntry<Map<String,String>, DocumentPostingList>(doc.getAllProperties(), postings);
+		}
+	}
+	
+	/** 
+	 * Passes each term of the document through the term pipeline, 
+	 * returning the resulting postings of the document.
+	 * @param doc Document the document to parse
+	 * @return DocumentPostingList the terms in the document
+	 */
+	protected DocumentPostingList parseDocument(Document doc)
+	{
+		/* setup for parsing */
+		createDocumentPostings();
+		String term; //term we're currently processing
+		int numOfTokensInDocument = 0;
+
+		//get each term in the document
+		while (!doc.endOfDocument()) {
+			if ((term = doc.getNextTerm())!=null && !term.equals("")) {
+				termFields = doc.getFields();
+				/* pass term into TermPipeline (stop, stem etc) */
+				pipeline_first.processTerm(term);
+				/* the term pipeline will eventually add the term to this object. */
+			}
+			if (MAX_TOKENS_IN_DOCUMENT > 0 && 
+					numOfTokensInDocument > MAX_TOKENS_IN_DOCUMENT)
+					break;
+		}
+		//if we didn't index all tokens from document,
+		//we need to get to the end of the document.
+		while (!doc.endOfDocument()) 
+			doc.getNextTerm();
+		
+		pipeline_first.reset();
+		return termsInDocument;
+	}
+	
+	/** 
+	 * Creates another instance of this indexer, with its own term pipeline, which 
+	 * {@link ParallelCollectionConsumer} uses to parse documents in another thread. 
+	 * By default, this class is constructed again using its (String,String) constructor - 
+	 * indexers without such a constructor should override this method. 
+	 * @return BasicIndexer an indexer used only for {@link #parseDocument(Document)}
+	 */
+	protected BasicIndexer createParser()
+	{
+		try{
+			return getClass().getConstructor(String.class, String.class).newInstance(path, prefix);
+		} catch (Exception e) {
+			throw new IllegalStateException("Could not create a parser for " + getClass().getName(), e);
+		}
+	}
+	
+	/** 
+	 * A document whose terms, and the fields of each term, have all been read from another document
+	 * when constructed. This allows a document that cannot be created again from its text to be parsed 
+	 * in another thread after its collection has moved on to the next document.
+	 */
+	protected static class TokenisedDocument implements Document
+	{
+		final List<String> terms = new ArrayList<>();
+		final List<Set<String>> fields = new ArrayList<>();
+		final Map<String,String> properties;
+		int index = -1;
+		
+		public TokenisedDocument(Document doc)
+		{
+			Set<String> lastFields = null;
+			while (!doc.endOfDocument())
+			{
+				final String term = doc.getNextTerm();
+				if (term != null && !term.equals(""))
+				{
+					terms.add(term);
+					//documents such as TaggedDocument return a set that changes as the document is read,
+					//so a copy is kept, shared by consecutive terms in the same fields
+					final Set<String> termFields = doc.getFields();
+					if (termFields != null && ! termFields.equals(lastFields))
+						lastFields = Collections.unmodifiableSet(new HashSet<>(termFields));
+					fields.add(termFields == null ? null : lastFields);
+				}
+			}
+			//properties may be set while the document is tokenised
+			this.properties = new HashMap<>(doc.getAllProperties());
+		}
+
+		@Override
+		public String getNextTerm() {
+			return ++index < terms.size() ? terms.get(index) : null;
+		}
+
+		@Override
+		public Set<String> getFields() {
+			return index < fields.size() ? fields.get(index) : null;
+		}
+
+		@Override
+		public boolean endOfDocument() {
+			return index + 1 >= terms.size();
+		}
+
+		@Override
+		public Reader getReader() {
+			return new StringReader(String.join(" ", terms));
+		}
+
+		@Override
+		public String getProperty(String name) {
+			return properties.get(name);
+		}
+
+		@Override
+		public Map<String, String> getAllProperties() {
+			return properties;
+		}
+	}
+	
+	/** 
+	 * Consumes a Collection in the same manner as CollectionConsumer, but with the term pipeline
+	 * applied to the documents by several threads. A reader thread obtains the documents 
+	 * from the collection, and reads the text of each one (see {@link Document#getReader()}) 
+	 * before advancing the collection, as documents such as {@link org.terrier.indexing.TaggedDocument} 
+	 * read lazily from the underlying stream of the collection. The text is then handed to a pool 
+	 * of workers, which create a document of the same class from the text, using the class's 
+	 * (Reader, Map, Tokeniser) constructor, and tokenise and parse it. Hence the markup parsing, 
+	 * tokenisation and term pipeline of documents all happen in the workers. Documents without 
+	 * such a constructor are instead tokenised by the reader thread (see {@link TokenisedDocument}).
+	 * Each worker has its own parser (see {@link #createParser()}), and hence its own term 
+	 * pipeline, and its own tokeniser. The parsed documents are held in a bounded queue in the 
+	 * order of the collection, such that the consumer (typically a single inverter) assigns 
+	 * docids sequentially, exactly as if the documents were parsed by a single thread.
+	 */
+	protected class ParallelCollectionConsumer implements Iterator<Map.Entry<Map<String,String>, DocumentPostingList>>, Closeable
+	{
+		/** maximum number of documents awaiting the consumer, for each worker */
+		static final int QUEUE_PER_THREAD = 16;
+		
+		final Collection collection;
+		final ExecutorService workers;
+		final BlockingQueue<BasicIndexer> parsers;
+		final BlockingQueue<Future<Map.Entry<Map<String,String>, DocumentPostingList>>> parsed;
+		final Future<Map.Entry<Map<String,String>, DocumentPostingList>> END = CompletableFuture.completedFuture(null);
+		final boolean boundaryDocsEnabled = BUILDER_BOUNDARY_DOCUMENTS.size() > 0;
+		final Thread reader;
+		volatile Throwable readerError = null;
+		Future<Map.Entry<Map<String,String>, DocumentPostingList>> next = null;
+		boolean finished = false;
+		volatile int numberOfDocuments = 0;
+		/** constructor of each document class that creates a document from its text, or null if none; used by the reader */
+		final Map<Class<?>, Constructor<? extends Document>> textConstructors = new HashMap<>();
+		/** the tokeniser of each worker */
+		final ThreadLocal<Tokeniser> tokenisers = ThreadLocal.withInitial(Tokeniser::getTokeniser);
+		
+		public ParallelCollectionConsumer(Collection c, int numThreads) {
+			this.collection = c;
+			//parsers are created in this thread, as constructing an indexer is not thread-safe
+			this.parsers = new ArrayBlockingQueue<>(numThreads);
+			for(int i=0;i<numThreads;i++)
+				parsers.add(createParser());
+			this.parsed = new ArrayBlockingQueue<>(numThreads * QUEUE_PER_THREAD);
+			this.workers = Executors.newFixedThreadPool(numThreads);
+			this.reader = new Thread(this::read, "collection-reader");
+			this.reader.setDaemon(true);
+			this.reader.start();
+		}
+		
+		Map.Entry<Map<String,String>, DocumentPostingList> parse(Document doc) throws InterruptedException
+		{
+			final BasicIndexer parser = parsers.take();
+			try{
+				final DocumentPostingList postings = parser.parseDocument(doc);
+				return new MapEntry<Map<String,String>, DocumentPostingList>(doc.getAllProperties(), postings);
+			} catch (RuntimeException | Error e) {
+				//the pipeline may hold state of the failed document, which must not leak into the next
+				parser.pipeline_first.reset();
+				throw e;
+			} finally {
+				parsers.put(parser);
+			}
+		}
+		
+		/** Returns the (Reader, Map, Tokeniser) constructor of a document class, or null if it has none */
+		Constructor<? extends Document> getTextConstructor(Class<? extends Document> documentClass)
+		{
+			if (! textConstructors.containsKey(documentClass))
+			{
+				Constructor<? extends Document> constructor = null;
+				try{
+					constructor = documentClass.getConstructor(Reader.class, Map.class, Tokeniser.class);
+				} catch (NoSuchMethodException nsme) {
+					logger.info("Documents of " + documentClass.getName() + " will be tokenised by a single thread, as it has no (Reader, Map, Tokeniser) constructor");
+				}
+				textConstructors.put(documentClass, constructor);
+			}
+			return textConstructors.get(documentClass);
+		}
+		
+		/** Reads the remainder of the specified reader */
+		String readText(Reader reader) throws IOException
+		{
+			if (reader == null)
+				return "";
+			final StringBuilder text = new StringBuilder();
+			final char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1)
+				text.append(buffer, 0, read);
+			return text.toString();
+		}
+		
+		void read()
+		{
+			try{
+				boolean breakHere = false;
+				while(! breakHere && ! collection.endOfCollection() && collection.nextDocument())
+				{
+					numberOfDocuments++;
+					final Document original = collection.getDocument();
+					if (original == null) {
+						logger.warn("skipping null document");
+						continue;
+					}
+					//read before the collection advances, as the document may read from its stream
+					final Map<String,String> properties;
+					final Callable<Document> document;
+					final Constructor<? extends Document> constructor = getTextConstructor(original.getClass());
+					if (constructor != null)
+					{
+						final String text = readText(original.getReader());
+						properties = new HashMap<>(original.getAllProperties());
+						document = () -> constructor.newInstance(new StringReader(text), properties, tokenisers.get());
+					}
+					else
+					{
+						final Document tokenised = new TokenisedDocument(original);
+						properties = tokenised.getAllProperties();
+						document = () -> tokenised;
+					}
+					if (MAX_DOCS_PER_BUILDER>0 && numberOfDocuments >= MAX_DOCS_PER_BUILDER)
+						breakHere = true;
+					if (boundaryDocsEnabled && BUILDER_BOUNDARY_DOCUMENTS.contains(properties.get("docno")))
+					{
+						logger.warn("Document "+properties.get("docno")+" is a builder boundary document. Boundary forced.");
+						breakHere = true;
+					}
+					parsed.put(workers.submit(() -> parse(document.call())));
+				}
+			} catch (InterruptedException ie) {
+				return;
+			} catch (Throwable t) {
+				readerError = t;
+			}
+			try{
+				parsed.put(END);
+			} catch (InterruptedException ie) {}
+		}
+
+		public boolean hasNext() {
+			if (next == null && ! finished)
+			{
+				try{
+					next = parsed.take();
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new RuntimeException(ie);
+				}
+				if (next == END)
+				{
+					next = null;
+					finished = true;
+					close();
+					if (readerError != null)
+						throw new RuntimeException("Problem reading collection", readerError);
+				}
+			}
+			return next != null;
+		}
+
+		public Map.Entry<Map<String,String>, DocumentPostingList> next()
+		{
+			if (! hasNext())
+				throw new NoSuchElementException();
+			try{
+				return next.get();
+			} catch (ExecutionException ee) {
+				close();
+				throw new RuntimeException("Problem parsing document", ee.getCause());
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new RuntimeException(ie);
+			} finally {
+				next = null;
+			}
+		}
+		
+		/** Stops the reader and the workers */
+		public void close() {
+			reader.interrupt();
+			workers.shutdownNow();
 		}
 	}
 
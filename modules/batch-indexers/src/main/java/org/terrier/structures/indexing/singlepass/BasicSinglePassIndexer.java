@@ -80,6 +80,10 @@ import org.terrier.utility.UnitUtils;
  * <li><tt>indexing.singlepass.max.postings.memory</tt> - maximum amount of memory that the postings can consume before a run is committed. Default is 0, which is no limit.</li>
  * <li><tt>indexing.singlepass.max.documents.flush</tt> - maximum number of documents before a run is committed. Default is 0, which is no limit.</li>
  * <li><tt>docs.check</tt> - interval of how many documents indexed should the amount of free memory be checked. Default is 20 - check memory consumption every 20 documents.</li>
+ * <li><tt>indexing.singlepass.parser.threads</tt> - number of threads that pass the terms of documents through the term pipeline, 
+ * while a single thread inverts the parsed documents in the order of the collection. Default is 1, where documents are parsed by the inverting thread.</li>
+ * <li><tt>indexing.singlepass.merge.threads</tt> - number of threads that merge the runs. When greater than 1, the term space is partitioned into
+ * as many lexicographic ranges, which are merged concurrently and then concatenated. Default is 1, where the runs are merged by a single thread.</li>
  * </ul> 
  * @author Roi Blanco
  */
@@ -99,6 +103,12 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 	
 	protected int maxDocsPerFlush;
 	
+	/** Number of threads parsing documents, set by <tt>indexing.singlepass.parser.threads</tt> */
+	protected int parserThreads = 1;
+	
+	/** Number of threads merging runs, set by <tt>indexing.singlepass.merge.threads</tt> */
+	protected int mergeThreads = 1;
+	
 	/** Runtime system JVM running this instance of Terrier */
 	protected static final Runtime runtime = Runtime.getRuntime();
 
@@ -258,8 +268,21 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 		
 		long startCollection, endCollection;
 		startCollection = System.currentTimeMillis();
-		CollectionConsumer iterDocs = new CollectionConsumer(collection);
-		indexDocuments(iterDocs);
+		if (parserThreads > 1)
+		{
+			logger.info("Parsing documents using " + parserThreads + " threads");
+			ParallelCollectionConsumer iterDocs = new ParallelCollectionConsumer(collection, parserThreads);
+			try{
+				indexDocuments(iterDocs);
+			} finally {
+				iterDocs.close();
+			}
+		}
+		else
+		{
+			CollectionConsumer iterDocs = new CollectionConsumer(collection);
+			indexDocuments(iterDocs);
+		}
 		endCollection = System.currentTimeMillis();
 				
 		logger.info("Collection total time "+( (endCollection-startCollection)/1000));
@@ -342,9 +365,12 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 	 * @return the two dimensional String[] array with the names of the run and partial lexicon to write.
 	 */
 	protected String[] finishMemoryPosting(){
-		String[] names = new String[2];
+		String[] names = new String[mergeThreads > 1 ? 3 : 2];
 		names[0] = fileNameNoExtension + "Run."+(currentFile);
-		names[1] = fileNameNoExtension + "Run."+(currentFile++)+".str";
+		names[1] = fileNameNoExtension + "Run."+(currentFile)+".str";
+		if (mergeThreads > 1)
+			names[2] = fileNameNoExtension + "Run."+(currentFile)+".off";
+		currentFile++;
 		fileNames.add(names);
 		return names;
 	}
@@ -365,24 +391,36 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 				createFieldRunMerger(_fileNames);
 			else
 				createRunMerger(_fileNames);
-			merger.beginMerge(_fileNames.length, path + ApplicationSetup.FILE_SEPARATOR + prefix +  ".inverted.bf");
-			while(!merger.isDone()){
-				merger.mergeOne(lexStream);
+			final String invertedFile = path + ApplicationSetup.FILE_SEPARATOR + prefix +  ".inverted.bf";
+			if (mergeThreads > 1 && merger.runsSource instanceof FileRunIteratorFactory)
+			{
+				final FileRunIteratorFactory runsSource = (FileRunIteratorFactory) merger.runsSource;
+				PartitionedRunsMerger pMerger = new PartitionedRunsMerger(_fileNames, runsSource.postingClass, runsSource.numberOfFields, mergeThreads);
+				pMerger.merge(invertedFile, lexStream);
+				numberOfUniqueTerms = pMerger.getNumberOfTerms();
+				numberOfPointers = pMerger.getNumberOfPointers();
+			}
+			else
+			{
+				merger.beginMerge(_fileNames.length, invertedFile);
+				while(!merger.isDone()){
+					merger.mergeOne(lexStream);
+				}
+				merger.endMerge(lexStream);
+				numberOfUniqueTerms = merger.getNumberOfTerms();
+				numberOfPointers = merger.getNumberOfPointers();
 			}
-			merger.endMerge(lexStream);
 			lexStream.close();
 			//the constructor for FieldLexiconEntry is wrong - replace it
 			if (super.numFields > 0)
 			{
 				this.currentIndex.addIndexStructure("lexicon-valuefactory", FieldLexiconEntry.Factory.class.getName(), "java.lang.String", "${index.inverted.fields.count}");
 			}
-			numberOfUniqueTerms = merger.getNumberOfTerms();
-			numberOfPointers = merger.getNumberOfPointers();
 			// Delete the runs files
 			for(int i = 0; i < _fileNames.length; i++)
 			{
-				Files.delete(_fileNames[i][0]);
-				Files.delete(_fileNames[i][1]);
+				for(String runFile : _fileNames[i])
+					Files.delete(runFile);
 			}
 			currentIndex.setIndexProperty("num.Terms", ""+numberOfUniqueTerms);
 			currentIndex.setIndexProperty("num.Pointers", ""+numberOfPointers);
@@ -456,6 +494,8 @@ public class BasicSinglePassIndexer extends BasicIndexer{
 		super.load_indexer_properties();
 		docsPerCheck = ApplicationSetup.DOCS_CHECK_SINGLEPASS;
 		maxDocsPerFlush = Integer.parseInt(ApplicationSetup.getProperty("indexing.singlepass.max.documents.flush", "0"));
+		parserThreads = Integer.parseInt(ApplicationSetup.getProperty("indexing.singlepass.parser.threads", "1"));
+		mergeThreads = Integer.parseInt(ApplicationSetup.getProperty("indexing.singlepass.merge.threads", "1"));
 		memoryCheck = new RuntimeMemoryChecker();
 		logger.info("Checking memory usage every " + docsPerCheck + " maxDocPerFlush=" + maxDocsPerFlush);
 
@@ -28,11 +28,14 @@ package org.terrier.structures.indexing.singlepass;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.terrier.compression.bit.BitIn;
 import org.terrier.compression.bit.BitInputStream;
 import org.terrier.utility.Files;
 
+import com.google.common.io.ByteStreams;
+
 /** Reads runs of flushed term posting lists by reading them from files.
   * @since 2.2
   * @author Craig Macdonald
@@ -69,6 +72,46 @@ class FileRunIterator<K extends PostingInRun> extends RunIterator {
 		createPosting();
 		currentPosting = 0;
 	}
+	
+	/** Load a contiguous range of the terms of a run from files. Apart from the first term 
+	  * of a run, the offsets are those recorded by {@link RunWriter} for the first term of the range.
+	  * @param filename the filename of the file containing the posting lists
+	  * @param termsFile the filename of the file containing the term names
+	  * @param runNo the number of this run
+	  * @param _postingInRunClass the class that all postings in this class have
+	  * @param fieldCount the number of fields
+	  * @param firstTerm index of the first term to read from the run
+	  * @param bitOffset byte offset of the first term in the posting lists file
+	  * @param stringOffset byte offset of the first term in the terms file
+	  * @param numTerms number of terms to read from the run
+	  */
+	public FileRunIterator(String filename, String termsFile, int runNo, Class<? extends PostingInRun> _postingInRunClass, int fieldCount,
+			int firstTerm, long bitOffset, long stringOffset, int numTerms) throws Exception
+	{
+		this(filename, termsFile, runNo, _postingInRunClass, fieldCount, firstTerm == 0 ? null : bitOffset, stringOffset);
+		size = numTerms;
+	}
+	
+	private FileRunIterator(String filename, String termsFile, int runNo, Class<? extends PostingInRun> _postingInRunClass, int fieldCount,
+			Long bitOffset, long stringOffset) throws Exception
+	{
+		super(_postingInRunClass, runNo, fieldCount);
+		InputStream bitStream = Files.openFileStream(filename);
+		InputStream stringStream = Files.openFileStream(termsFile);
+		if (bitOffset != null)
+			ByteStreams.skipFully(bitStream, bitOffset);
+		ByteStreams.skipFully(stringStream, stringOffset);
+		mbis = new BitInputStream(bitStream);
+		stringDIS = new DataInputStream(stringStream);
+		//the first term of the run follows the header
+		if (bitOffset == null)
+		{
+			maxSize = mbis.readGamma();
+			size = mbis.readGamma();
+		}
+		createPosting();
+		currentPosting = 0;
+	}
 
 	/** Closes the run files being processed */	
 	@Override
@@ -93,12 +93,15 @@ class MemoryPostings {
 	
 	/**
 	 * Triggers the writing of the postings in memory to disk. 
-	 * Uses the default RunWriter, writing to the specified files.
+	 * Uses the default RunWriter, writing to the specified files. If a third
+	 * filename is specified, the offsets of each term are also recorded in that file.
 	 * @param file name of the file to write the postings.
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public void finish(String[] file) throws IOException{	
-		finish(new RunWriter(file[0], file[1]));
+		finish(file.length > 2 && file[2] != null
+			? new RunWriter(file[0], file[1], file[2])
+			: new RunWriter(file[0], file[1]));
 	}
 	
 	/** Triggers the writing of the postings in memory to the specified 
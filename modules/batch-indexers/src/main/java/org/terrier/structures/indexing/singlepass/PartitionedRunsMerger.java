@@ -0,0 +1,331 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PartitionedRunsMerger.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.indexing.singlepass;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.BasicLexiconEntry;
+import org.terrier.structures.FieldLexiconEntry;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.LexiconOutputStream;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.Files;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Merges a set of N runs by partitioning the term space into P lexicographic ranges, 
+ * and merging the runs of each range concurrently using a {@link RunsMerger}. 
+ * Each range is written to its own segment of the inverted file, together with a 
+ * partial lexicon. Once all ranges are merged, the segments are concatenated into the 
+ * final inverted file, and the lexicon entries are written in term order, with their 
+ * termids and offsets shifted by the terms and bytes of the preceding segments.
+ * <p>
+ * The boundaries of the ranges are chosen by sampling the terms of all runs. Each run must 
+ * have been written with the offsets of its terms (see {@link RunWriter}), such that it
+ * can be opened at the first term of each range.
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+class PartitionedRunsMerger {
+	
+	protected static final Logger logger = LoggerFactory.getLogger(PartitionedRunsMerger.class);
+	
+	/** number of terms sampled for each partition when choosing the partition boundaries */
+	static final int SAMPLES_PER_PARTITION = 64;
+	
+	/** bytes recorded by {@link RunWriter} for each term in the offsets file */
+	static final int OFFSET_ENTRY_SIZE = 16;
+	
+	/** A contiguous range of the terms of one run */
+	static class RunRange
+	{
+		final int runNo;
+		final int firstTerm;
+		final long bitOffset;
+		final long stringOffset;
+		int numTerms = 0;
+		
+		RunRange(int _runNo, int _firstTerm, long _bitOffset, long _stringOffset)
+		{
+			runNo = _runNo;
+			firstTerm = _firstTerm;
+			bitOffset = _bitOffset;
+			stringOffset = _stringOffset;
+		}
+	}
+	
+	/** Opens the ranges of the runs that fall in one partition */
+	class RunRangeIteratorFactory extends RunIteratorFactory
+	{
+		final List<RunRange> ranges;
+		
+		RunRangeIteratorFactory(List<RunRange> _ranges)
+		{
+			super(numFields);
+			ranges = _ranges;
+		}
+
+		@Override
+		public RunIterator createRunIterator(int runNumber) throws Exception {
+			RunRange range = ranges.get(runNumber);
+			return new FileRunIterator<PostingInRun>(
+				files[range.runNo][0], files[range.runNo][1], range.runNo, postingClass, numFields,
+				range.firstTerm, range.bitOffset, range.stringOffset, range.numTerms);
+		}
+	}
+	
+	/** Writes the term and lexicon entry of each term to a temporary file */
+	static class SegmentLexiconOutputStream extends LexiconOutputStream<String>
+	{
+		final DataOutputStream dos;
+		
+		SegmentLexiconOutputStream(String filename) throws IOException
+		{
+			lexiconStream = dos = new DataOutputStream(Files.writeFileStream(filename));
+		}
+		
+		@Override
+		public int writeNextEntry(String _key, LexiconEntry _value) throws IOException {
+			dos.writeUTF(_key);
+			_value.write(dos);
+			incrementCounters(_value);
+			return 0;
+		}
+	}
+	
+	/** the run files: posting lists, terms and term offsets of each run */
+	final String[][] files;
+	/** type of the postings in the run data files */
+	final Class<? extends PostingInRun> postingClass;
+	/** number of fields in the postings */
+	final int numFields;
+	/** number of partitions to merge concurrently */
+	final int numPartitions;
+	
+	int numberOfTerms = 0;
+	int numberOfPointers = 0;
+	
+	/**
+	 * Constructs a new PartitionedRunsMerger
+	 * @param _files the filenames of each run: posting lists, terms and term offsets
+	 * @param _postingClass the type of the postings in the runs
+	 * @param _numFields the number of fields in the postings
+	 * @param _numPartitions the number of ranges of the term space to merge concurrently
+	 */
+	public PartitionedRunsMerger(String[][] _files, Class<? extends PostingInRun> _postingClass, int _numFields, int _numPartitions)
+	{
+		files = _files;
+		postingClass = _postingClass;
+		numFields = _numFields;
+		numPartitions = _numPartitions;
+	}
+	
+	/**
+	 * @return the number of terms written.
+	 */
+	public int getNumberOfTerms() {
+		return numberOfTerms;
+	}
+
+	/**
+	 * @return the number of pointers written.
+	 */
+	public int getNumberOfPointers() {
+		return numberOfPointers;
+	}
+	
+	protected int getNumberOfTerms(int runNo) throws IOException
+	{
+		return (int) (Files.length(files[runNo][2]) / OFFSET_ENTRY_SIZE);
+	}
+
+	/** Chooses the lowest term of each partition other than the first, by sampling the terms of all runs.
+	 * @return the strictly increasing boundaries, of which there may be fewer than P-1
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected String[] getPartitionBoundaries() throws IOException
+	{
+		long totalTerms = 0;
+		for(int i=0;i<files.length;i++)
+			totalTerms += getNumberOfTerms(i);
+		final long stride = Math.max(1l, totalTerms / (SAMPLES_PER_PARTITION * numPartitions));
+		final List<String> samples = new ArrayList<>();
+		for(int i=0;i<files.length;i++)
+		{
+			final int size = getNumberOfTerms(i);
+			try(DataInputStream terms = new DataInputStream(Files.openFileStream(files[i][1])))
+			{
+				for(int j=0;j<size;j++)
+				{
+					String term = terms.readUTF();
+					if (j % stride == 0)
+						samples.add(term);
+				}
+			}
+		}
+		samples.sort(null);
+		final TreeSet<String> boundaries = new TreeSet<>();
+		for(int p=1;p<numPartitions;p++)
+		{
+			int index = (int) ((long)p * samples.size() / numPartitions);
+			if (index > 0 && index < samples.size())
+				boundaries.add(samples.get(index));
+		}
+		return boundaries.toArray(new String[boundaries.size()]);
+	}
+	
+	/** Locates the range of terms of each run that fall in each partition.
+	 * @param boundaries the lowest term of each partition other than the first
+	 * @return for each partition, the non-empty ranges of the runs, in run order 
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected List<List<RunRange>> getPartitions(String[] boundaries) throws IOException
+	{
+		final List<List<RunRange>> partitions = new ArrayList<>(boundaries.length + 1);
+		for(int p=0;p<=boundaries.length;p++)
+			partitions.add(new ArrayList<>());
+		for(int i=0;i<files.length;i++)
+		{
+			final int size = getNumberOfTerms(i);
+			try(DataInputStream terms = new DataInputStream(Files.openFileStream(files[i][1]));
+				DataInputStream offsets = new DataInputStream(Files.openFileStream(files[i][2])))
+			{
+				int p = 0;
+				RunRange range = null;
+				for(int j=0;j<size;j++)
+				{
+					final String term = terms.readUTF();
+					final long bitOffset = offsets.readLong();
+					final long stringOffset = offsets.readLong();
+					while(p < boundaries.length && term.compareTo(boundaries[p]) >= 0)
+					{
+						p++;
+						range = null;
+					}
+					if (range == null)
+					{
+						range = new RunRange(i, j, bitOffset, stringOffset);
+						partitions.get(p).add(range);
+					}
+					range.numTerms++;
+				}
+			}
+		}
+		return partitions;
+	}
+	
+	/**
+	 * Merges the runs, writing the final inverted file and the lexicon.
+	 * @param fileName String with the file name of the final inverted file.
+	 * @param lexStream LexiconOutputStream used to write the lexicon.
+	 * @throws Exception if an I/O error occurs.
+	 */
+	public void merge(final String fileName, final LexiconOutputStream<String> lexStream) throws Exception
+	{
+		final List<List<RunRange>> partitions = getPartitions(getPartitionBoundaries());
+		partitions.removeIf(List::isEmpty);
+		final int P = partitions.size();
+		logger.info("Merging " + files.length + " runs in " + P + " partitions of the lexicon");
+		
+		final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(numPartitions, P)));
+		final List<Future<RunsMerger>> mergers = new ArrayList<>(P);
+		try{
+			for(int p=0;p<P;p++)
+			{
+				final List<RunRange> ranges = partitions.get(p);
+				final String segmentFile = fileName + ".segment" + p;
+				mergers.add(pool.submit(() -> {
+					RunsMerger merger = new RunsMerger(new RunRangeIteratorFactory(ranges));
+					try(SegmentLexiconOutputStream segmentLex = new SegmentLexiconOutputStream(segmentFile + ".lex"))
+					{
+						merger.beginMerge(ranges.size(), segmentFile);
+						while(!merger.isDone()){
+							merger.mergeOne(segmentLex);
+						}
+						merger.endMerge(segmentLex);
+					}
+					return merger;
+				}));
+			}
+			
+			final FixedSizeWriteableFactory<LexiconEntry> entryFactory = numFields > 0
+				? new FieldLexiconEntry.Factory(numFields)
+				: new BasicLexiconEntry.Factory();
+			long byteBase = 0;
+			try(OutputStream invertedFile = Files.writeFileStream(fileName))
+			{
+				for(int p=0;p<P;p++)
+				{
+					final RunsMerger merger;
+					try{
+						merger = mergers.get(p).get();
+					} catch (ExecutionException ee) {
+						throw ee.getCause() instanceof Exception ? (Exception) ee.getCause() : ee;
+					}
+					final String segmentFile = fileName + ".segment" + p;
+					final int termBase = numberOfTerms;
+					try(DataInputStream segmentLex = new DataInputStream(Files.openFileStream(segmentFile + ".lex")))
+					{
+						for(int t=0;t<merger.getNumberOfTerms();t++)
+						{
+							final String term = segmentLex.readUTF();
+							final BasicLexiconEntry le = (BasicLexiconEntry) entryFactory.newInstance();
+							le.readFields(segmentLex);
+							le.setTermId(termBase + le.getTermId());
+							le.setOffset(byteBase + le.getOffset(), le.getOffsetBits());
+							lexStream.writeNextEntry(term, le);
+						}
+					}
+					try(InputStream segment = Files.openFileStream(segmentFile))
+					{
+						byteBase += ByteStreams.copy(segment, invertedFile);
+					}
+					numberOfTerms += merger.getNumberOfTerms();
+					numberOfPointers += merger.getNumberOfPointers();
+					Files.delete(segmentFile);
+					Files.delete(segmentFile + ".lex");
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
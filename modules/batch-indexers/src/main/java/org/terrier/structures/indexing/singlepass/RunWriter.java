@@ -33,6 +33,8 @@ import java.io.IOException;
 import org.terrier.compression.bit.BitOutputStream;
 import org.terrier.compression.bit.MemorySBOS;
 import org.terrier.utility.Files;
+
+import com.google.common.io.CountingOutputStream;
 /**
  * This class writes a run to disk. The data written depends on the specific subclass.
  * This one, writes the Nt, TF and the &lt;docid, tf&gt; sequence.
@@ -46,6 +48,10 @@ class RunWriter {
 	protected final DataOutputStream stringDos;
 	/** Debug String representation of this RunWriter */
 	protected String info;
+	/** Counts the bytes of the posting lists written, if the term offsets are being recorded */
+	protected CountingOutputStream bitCounter;
+	/** Optional {@link java.io.DataOutputStream} to write the offsets of each term, may be null */
+	protected DataOutputStream offsetsDos;
 	
 	protected RunWriter()
 	{
@@ -74,6 +80,23 @@ class RunWriter {
 		this.info = "RunWriter("+fileName+")";
 	}
 	
+	/**
+	 * Instanciates a RunWriter, given the filenames to write, which also records the
+	 * byte offsets of each term in the posting lists and terms files. This allows a run 
+	 * to be opened at any term other than the first, see {@link FileRunIterator}.
+	 * @param fileName name of the file to write the posting lists data. 
+	 * @param termsFile name of the file to write the terms.
+	 * @param offsetsFile name of the file to write the offsets of each term.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public RunWriter(String fileName, String termsFile, String offsetsFile) throws IOException{
+		bitCounter = new CountingOutputStream(Files.writeFileStream(fileName));
+		bos = new BitOutputStream(bitCounter);
+		stringDos = new DataOutputStream( Files.writeFileStream(termsFile));
+		offsetsDos = new DataOutputStream( Files.writeFileStream(offsetsFile));
+		this.info = "RunWriter("+fileName+")";
+	}
+	
 	/** Returns true if this RunWriter needs writeTerm() to be called sorted by term */
 	public boolean writeSorted()
 	{
@@ -98,6 +121,13 @@ class RunWriter {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public void writeTerm(final String term, final Posting post) throws IOException{		
+		if (offsetsDos != null)
+		{
+			//all bits have been flushed by the previous append, so each term 
+			//except the first starts on a byte boundary
+			offsetsDos.writeLong(bitCounter.getCount());
+			offsetsDos.writeLong(stringDos.size());
+		}
 		stringDos.writeUTF(term);
 		bos.writeGamma(post.getDocF());
 		bos.writeGamma(post.getMaxtf());
@@ -117,6 +147,8 @@ class RunWriter {
 	public void finishWrite() throws IOException{
 		bos.close();
 		stringDos.close();
+		if (offsetsDos != null)
+			offsetsDos.close();
 	}
 	/** 
 	 * {@inheritDoc} 
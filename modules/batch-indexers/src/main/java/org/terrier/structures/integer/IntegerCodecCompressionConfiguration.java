@@ -0,0 +1,116 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodecCompressionConfiguration.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.PropertiesIndex;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.integer.BasicIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.BlockFieldIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.BlockIntegerCodingIterablePosting;
+import org.terrier.structures.postings.integer.FieldIntegerCodingIterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+/** A compression configuration that compresses postings in chunks, using a configurable
+ * {@link IntegerCodec} for each payload. Postings are decoded an array at a time, and chunks
+ * that cannot contain a target docid are skipped without decoding. Properties:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.compression.integer.chunk.size</tt> - number of postings in each chunk (default 1024).</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.ids.codec</tt> - codec for docids (default PForDeltaCodec).</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.tfs.codec</tt> - codec for frequencies (default PForDeltaCodec).</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.fields.codec</tt> - codec for field frequencies (default PForDeltaCodec).</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.blocks.codec</tt> - codec for positions (default PForDeltaCodec).</li>
+ * </ul>
+ * Codecs are named by class, without a package for those in <tt>org.terrier.compression.integer.codec</tt>.
+ * @since 5.9
+ */
+public class IntegerCodecCompressionConfiguration extends CompressionConfiguration {
+
+	static final String[] PAYLOADS = new String[]{"ids", "tfs", "fields", "blocks"};
+
+	protected final int chunkSize;
+	/** codec names, in the order of PAYLOADS */
+	protected final String[] codecNames = new String[PAYLOADS.length];
+
+	public IntegerCodecCompressionConfiguration(String structureName, String[] fieldNames, int hasBlocks, int maxBlocks)
+	{
+		super(structureName, fieldNames, hasBlocks, maxBlocks);
+		chunkSize = Integer.parseInt(ApplicationSetup.getProperty("index."+structureName+".compression.integer.chunk.size", "1024"));
+		for(int i=0;i<PAYLOADS.length;i++)
+			codecNames[i] = ApplicationSetup.getProperty("index."+structureName+".compression.integer."+PAYLOADS[i]+".codec", "PForDeltaCodec");
+	}
+
+	@Override
+	public AbstractPostingOutputStream getPostingOutputStream(String filename) {
+		try{
+			return new IntegerCodingPostingOutputStream(filename, chunkSize, fieldCount, hasBlocks > 0,
+				IntegerCodec.getCodec(codecNames[0]), IntegerCodec.getCodec(codecNames[1]), 
+				IntegerCodec.getCodec(codecNames[2]), IntegerCodec.getCodec(codecNames[3]),
+				getPostingIteratorClass());
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass() {
+		return fieldCount > 0 
+			? hasBlocks > 0 ? BlockFieldIntegerCodingIterablePosting.class : FieldIntegerCodingIterablePosting.class 
+			: hasBlocks > 0 ? BlockIntegerCodingIterablePosting.class : BasicIntegerCodingIterablePosting.class;
+	}
+
+	@Override
+	public Class<? extends PostingIndex<?>> getStructureClass() {
+		return IntegerCodingPostingIndex.class;
+	}
+
+	@Override
+	public Class<? extends Iterator<IterablePosting>> getStructureInputStreamClass() {
+		return IntegerCodingPostingIndexInputStream.class;
+	}
+
+	@Override
+	public String getStructureFileExtension() {
+		return ByteIn.USUAL_EXTENSION;
+	}
+
+	@Override
+	public void writeIndexProperties(PropertiesIndex index, String pointerSourceStream)
+	{
+		super.writeIndexProperties(index, pointerSourceStream);
+		index.setIndexProperty("index."+this.structureName+".compression.integer.chunk.size", String.valueOf(chunkSize));
+		for(int i=0;i<PAYLOADS.length;i++)
+			index.setIndexProperty("index."+this.structureName+".compression.integer."+PAYLOADS[i]+".codec", codecNames[i]);
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.integer;
+
+import gnu.trove.TIntArrayList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.BitFilePosition;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.FilePosition;
+import org.terrier.structures.SimpleBitIndexPointer;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.Posting;
+
+/** Writes posting lists in chunks of a fixed number of postings, where each payload of a chunk
+ * (docid gaps, frequencies, field frequencies, positions) is compressed as an array by an 
+ * {@link IntegerCodec}. The format of each chunk is described in
+ * {@link org.terrier.structures.postings.integer.BasicIntegerCodingIterablePosting}.
+ * <p>
+ * Posting lists cannot be written in several parts using the previousId argument to continue
+ * a previous posting list; instead, previousId is interpreted as an offset that is applied to all
+ * docids, i.e. docids are written as id - previousId - 1.
+ * @since 5.9
+ */
+public class IntegerCodingPostingOutputStream extends AbstractPostingOutputStream {
+
+	protected static final Logger logger = LoggerFactory.getLogger(IntegerCodingPostingOutputStream.class);
+
+	protected final ByteOut output;
+	protected final int chunkSize;
+	protected final int fieldCount;
+	protected final boolean hasBlocks;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+	protected final IntegerCodec fieldsCodec;
+	protected final IntegerCodec blocksCodec;
+	protected final Class<? extends IterablePosting> postingIteratorClass;
+
+	/** the postings of the current chunk */
+	protected final int[] ids;
+	protected final int[] tfs;
+	protected final int[][] fieldFrequencies;
+	protected final int[] blockCounts;
+	protected final TIntArrayList positions = new TIntArrayList();
+	/** number of postings in the current chunk */
+	protected int chunkCount;
+	/** number of postings in the current posting list */
+	protected int numberOfEntries;
+	/** last docid of the previous chunk */
+	protected int chunkBase;
+	protected int lastDocid = -1;
+	/** the body of the current chunk */
+	protected final ChunkBuffer chunkBuffer = new ChunkBuffer();
+	protected final ByteOut chunkOutput = new ByteOut(chunkBuffer);
+	/** scratch space for d-gaps */
+	protected final int[] gaps;
+	protected int[] positionGaps = new int[0];
+
+	/** Creates a new output stream, writing to the specified file.
+	 * @param filename Location of the file to write to
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields in each posting
+	 * @param _hasBlocks do the postings have positions
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies
+	 * @param _blocksCodec codec for positions
+	 * @param _postingIteratorClass class for reading the written posting lists
+	 */
+	public IntegerCodingPostingOutputStream(String filename, int _chunkSize, int _fieldCount, boolean _hasBlocks, 
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec,
+			Class<? extends IterablePosting> _postingIteratorClass) throws IOException
+	{
+		this(new ByteOut(filename), _chunkSize, _fieldCount, _hasBlocks, _idsCodec, _tfsCodec, _fieldsCodec, _blocksCodec, _postingIteratorClass);
+	}
+
+	/** Creates a new output stream, writing to the specified ByteOut.
+	 * @param out where to write the postings
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields in each posting
+	 * @param _hasBlocks do the postings have positions
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies
+	 * @param _blocksCodec codec for positions
+	 * @param _postingIteratorClass class for reading the written posting lists
+	 */
+	public IntegerCodingPostingOutputStream(ByteOut out, int _chunkSize, int _fieldCount, boolean _hasBlocks, 
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec,
+			Class<? extends IterablePosting> _postingIteratorClass)
+	{
+		if (_chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be positive, was " + _chunkSize);
+		output = out;
+		chunkSize = _chunkSize;
+		fieldCount = _fieldCount;
+		hasBlocks = _hasBlocks;
+		idsCodec = _idsCodec;
+		tfsCodec = _tfsCodec;
+		fieldsCodec = _fieldsCodec;
+		blocksCodec = _blocksCodec;
+		postingIteratorClass = _postingIteratorClass;
+		ids = new int[chunkSize];
+		tfs = new int[chunkSize];
+		gaps = new int[chunkSize];
+		fieldFrequencies = new int[fieldCount][chunkSize];
+		blockCounts = new int[chunkSize];
+	}
+
+	/** Returns the IterablePosting class to use for reading structure written by this class */
+	@Override
+	public Class<? extends IterablePosting> getPostingIteratorClass() {
+		return postingIteratorClass;
+	}
+
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator) throws IOException {
+		return writePostings(iterator, -1);
+	}
+
+	@Override
+	public BitIndexPointer writePostings(Iterator<Posting> iterator, int previousId) throws IOException {
+		final BitIndexPointer pointer = startList();
+		while(iterator.hasNext())
+		{
+			final Posting p = iterator.next();
+			addPosting(p, p.getId() - previousId - 1);
+		}
+		return endList(pointer);
+	}
+
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings) throws IOException {
+		return writePostings(postings, -1);
+	}
+
+	@Override
+	public BitIndexPointer writePostings(IterablePosting postings, int previousId) throws IOException {
+		final BitIndexPointer pointer = startList();
+		while(postings.next() != IterablePosting.EOL)
+			addPosting(postings, postings.getId() - previousId - 1);
+		return endList(pointer);
+	}
+
+	/** Write out a range of the specified postings, as docids and frequencies only. The delta for the first id must be specified.
+	 * @param postings The postings to write out
+	 * @param startOffset The location of the first posting to write out.
+	 * @param Length The end of the range of postings to write out.
+	 * @param firstId the (delta) value of the first docid to write out.
+	 */
+	@Override
+	public BitIndexPointer writePostings(int[][] postings, int startOffset, int Length, int firstId) throws IOException {
+		final BitIndexPointer pointer = startList();
+		final int docidOffset = firstId - 1 - postings[0][startOffset];
+		for(int i=startOffset;i<Length;i++)
+		{
+			ids[chunkCount] = postings[0][i] + docidOffset;
+			tfs[chunkCount] = postings[1][i];
+			for(int f=0;f<fieldCount;f++)
+				fieldFrequencies[f][chunkCount] = 0;
+			blockCounts[chunkCount] = 0;
+			postingAdded();
+		}
+		return endList(pointer);
+	}
+
+	protected BitIndexPointer startList()
+	{
+		final BitIndexPointer pointer = new SimpleBitIndexPointer();
+		pointer.setOffset(output.getByteOffset(), (byte)0);
+		chunkCount = 0;
+		numberOfEntries = 0;
+		chunkBase = lastDocid = -1;
+		return pointer;
+	}
+
+	protected void addPosting(Posting p, int docid) throws IOException
+	{
+		ids[chunkCount] = docid;
+		tfs[chunkCount] = p.getFrequency();
+		if (fieldCount > 0)
+		{
+			final int[] tff = ((FieldPosting)p).getFieldFrequencies();
+			for(int f=0;f<fieldCount;f++)
+				fieldFrequencies[f][chunkCount] = tff[f];
+		}
+		if (hasBlocks)
+		{
+			final int[] pos = ((BlockPosting)p).getPositions();
+			blockCounts[chunkCount] = pos.length;
+			positions.add(pos);
+		}
+		postingAdded();
+	}
+
+	protected void postingAdded() throws IOException
+	{
+		lastDocid = ids[chunkCount];
+		numberOfEntries++;
+		if (++chunkCount == chunkSize)
+			writeChunk();
+	}
+
+	protected BitIndexPointer endList(BitIndexPointer pointer) throws IOException
+	{
+		if (chunkCount > 0)
+			writeChunk();
+		pointer.setNumberOfEntries(numberOfEntries);
+		return pointer;
+	}
+
+	protected void writeChunk() throws IOException
+	{
+		chunkBuffer.reset();
+		int previous = chunkBase;
+		for(int i=0;i<chunkCount;i++)
+		{
+			gaps[i] = ids[i] - previous;
+			previous = ids[i];
+		}
+		idsCodec.compress(gaps, chunkCount, chunkOutput);
+		tfsCodec.compress(tfs, chunkCount, chunkOutput);
+		for(int f=0;f<fieldCount;f++)
+			fieldsCodec.compress(fieldFrequencies[f], chunkCount, chunkOutput);
+		if (hasBlocks)
+		{
+			blocksCodec.compress(blockCounts, chunkCount, chunkOutput);
+			final int numPositions = positions.size();
+			if (positionGaps.length < numPositions)
+				positionGaps = new int[numPositions];
+			int offset = 0;
+			for(int i=0;i<chunkCount;i++)
+			{
+				for(int j=0;j<blockCounts[i];j++)
+				{
+					positionGaps[offset+j] = j == 0 
+						? positions.get(offset) 
+						: positions.get(offset+j) - positions.get(offset+j-1);
+				}
+				offset += blockCounts[i];
+			}
+			blocksCodec.compress(positionGaps, numPositions, chunkOutput);
+			positions.clear();
+		}
+		output.writeVInt(ids[chunkCount-1] - chunkBase);
+		output.writeVInt(chunkBuffer.size());
+		output.write(chunkBuffer.getBuffer(), 0, chunkBuffer.size());
+		chunkBase = ids[chunkCount-1];
+		chunkCount = 0;
+	}
+
+	/** What is current offset? */
+	@Override
+	public BitFilePosition getOffset() {
+		return new FilePosition(output.getByteOffset(), (byte)0);
+	}
+
+	@Override
+	public int getLastDocidWritten() {
+		return lastDocid;
+	}
+
+	/** close this object. suppresses any exception */
+	@Override
+	public void close() {
+		try{
+			output.close();
+		} catch (IOException ioe) {
+			logger.error("Problem closing IntegerCodingPostingOutputStream", ioe);
+		}
+	}
+
+	/** Provides access to the buffer of a ByteArrayOutputStream without copying */
+	static class ChunkBuffer extends ByteArrayOutputStream
+	{
+		byte[] getBuffer()
+		{
+			return buf;
+		}
+	}
+}
@@ -30,6 +30,7 @@ import gnu.trove.TIntIntHashMap;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
@@ -66,9 +67,11 @@ import org.terrier.structures.indexing.CompressionFactory;
 import org.terrier.structures.indexing.DocumentIndexBuilder;
 import org.terrier.structures.indexing.LexiconBuilder;
 import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.postings.FieldPosting;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
 import org.terrier.structures.postings.PostingIdComparator;
+import org.terrier.structures.postings.WritablePosting;
 import org.terrier.structures.postings.bit.BasicIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
@@ -123,6 +126,23 @@ public class StructureMerger {
 	protected TIntIntHashMap termcodeHashmap = null;
 	protected boolean keepTermCodeMap = false;
 	
+	/** Documents of the first and second source indices that are purged from the merged index, or null. */
+	protected BitSet deletedDocs1 = null;
+	protected BitSet deletedDocs2 = null;
+	/** 
+	 * The docids in the merged index of the documents of the first and second source 
+	 * indices, or -1 for a purged document. Null unless documents are purged.
+	 */
+	protected int[] docidMap1 = null;
+	protected int[] docidMap2 = null;
+	/** The number of documents remaining after documents are purged. */
+	protected int numberOfLiveDocuments;
+	/** 
+	 * A hashmap for converting the codes of terms of the first set of data 
+	 * structures, which are renumbered when documents are purged.
+	 */
+	protected TIntIntHashMap termcodeHashmap1 = null;
+	
 	/** The number of documents in the merged structures. */
 	protected int numberOfDocuments;
 	
@@ -187,6 +207,35 @@ public class StructureMerger {
 
 
 	
+	/**
+	 * Sets documents of the source indices that are purged, i.e. not copied to the merged
+	 * index. The remaining documents are renumbered in order, the term statistics are computed
+	 * from their postings, and terms that only occur in purged documents are dropped.
+	 * Purging requires the inverted indices of both source indices.
+	 * @param deleted1 docids of the first source index to purge, or null
+	 * @param deleted2 docids of the second source index to purge, or null
+	 */
+	public void setDeletedDocuments(BitSet deleted1, BitSet deleted2) {
+		this.deletedDocs1 = deleted1;
+		this.deletedDocs2 = deleted2;
+	}
+	
+	/** Assigns the merged docids of the documents of both source indices, if any documents are purged */
+	protected void initDocidMaps() {
+		docidMap1 = docidMap2 = null;
+		if ((deletedDocs1 == null || deletedDocs1.isEmpty()) && (deletedDocs2 == null || deletedDocs2.isEmpty()))
+			return;
+		int newDocid = 0;
+		docidMap1 = new int[srcIndex1.getCollectionStatistics().getNumberOfDocuments()];
+		for (int docid = 0; docid < docidMap1.length; docid++)
+			docidMap1[docid] = deletedDocs1 != null && deletedDocs1.get(docid) ? -1 : newDocid++;
+		docidMap2 = new int[srcIndex2.getCollectionStatistics().getNumberOfDocuments()];
+		for (int docid = 0; docid < docidMap2.length; docid++)
+			docidMap2[docid] = deletedDocs2 != null && deletedDocs2.get(docid) ? -1 : newDocid++;
+		numberOfLiveDocuments = newDocid;
+		logger.info("Purging " + (docidMap1.length + docidMap2.length - numberOfLiveDocuments) + " deleted documents");
+	}
+	
 	/**
 	 * Sets the output index. This index should have no documents
 	 * @param _outputIndex the index to be merged to
@@ -212,7 +261,9 @@ public class StructureMerger {
 			int numberOfDocs1 = srcIndex1.getCollectionStatistics().getNumberOfDocuments();
 			int numberOfDocs2 = srcIndex2.getCollectionStatistics().getNumberOfDocuments();
 						
-			numberOfDocuments = numberOfDocs1 + numberOfDocs2;
+			numberOfDocuments = docidMap1 != null 
+				? numberOfLiveDocuments
+				: numberOfDocs1 + numberOfDocs2;
 			
 			
 			final int srcFieldCount1 = srcIndex1.getCollectionStatistics().getNumberOfFields();
@@ -227,6 +278,9 @@ public class StructureMerger {
 			//creating a new map between new and old term codes
 			if (keepTermCodeMap)
 				termcodeHashmap = new TIntIntHashMap();
+			//when documents are purged, the terms of the first index may also be renumbered
+			if (keepTermCodeMap && docidMap1 != null)
+				termcodeHashmap1 = new TIntIntHashMap();
 			
 			logger.debug("Opening src lexicons");
 			//setting the input streams
@@ -239,7 +293,10 @@ public class StructureMerger {
 					"index.lexicon-keyfactory.parameter_types", "index.lexicon-valuefactory.class", "index.lexicon-valuefactory.parameter_values",
 					"index.lexicon-valuefactory.parameter_types", "termpipelines"} )
 			{
-				destIndex.setIndexProperty(property, srcIndex1.getIndexProperty(property, null));
+				//not all indices record all of these properties, e.g. those written from memory
+				String value = srcIndex1.getIndexProperty(property, null);
+				if (value != null)
+					destIndex.setIndexProperty(property, value);
 			}
 			
 			FixedSizeWriteableFactory<LexiconEntry> lvf = 
@@ -250,7 +307,7 @@ public class StructureMerger {
 			LexiconOutputStream<String> lexOutStream = 
 				new FSOMapFileLexiconOutputStream(destIndex, "lexicon", (Class <FixedSizeWriteableFactory<LexiconEntry>>) lvf.getClass());
 
-			int newCodes = keepTermCodeMap
+			int newCodes = keepTermCodeMap && docidMap1 == null
 					 ? (int)srcIndex1.getCollectionStatistics().getNumberOfUniqueTerms()
 					 : 0;
 			
@@ -291,7 +348,26 @@ public class StructureMerger {
 				term2 = lee2.getKey();
 				
 				int lexicographicalCompare = term1.compareTo(term2);
-				if (lexicographicalCompare < 0) {
+				if (docidMap1 != null) {
+					//purging documents: write the remaining postings of the lesser term, or of the term in both indices 
+					if (lexicographicalCompare < 0)
+						newCodes = writePurgedTerm(invOS, lexOutStream, term1, lee1.getValue(), inverted1.getPostings(lee1.getValue()), null, null, newCodes);
+					else if (lexicographicalCompare > 0)
+						newCodes = writePurgedTerm(invOS, lexOutStream, term2, null, null, lee2.getValue(), inverted2.getPostings(lee2.getValue()), newCodes);
+					else
+						newCodes = writePurgedTerm(invOS, lexOutStream, term1, lee1.getValue(), inverted1.getPostings(lee1.getValue()), 
+								lee2.getValue(), inverted2.getPostings(lee2.getValue()), newCodes);
+					if (lexicographicalCompare <= 0) {
+						hasMore1 = lexInStream1.hasNext();
+						if (hasMore1)
+							lee1 = lexInStream1.next();
+					}
+					if (lexicographicalCompare >= 0) {
+						hasMore2 = lexInStream2.hasNext();
+						if (hasMore2)
+							lee2 = lexInStream2.next();
+					}
+				} else if (lexicographicalCompare < 0) {
 					//write to inverted file postings for the term that only occurs in 1st index
 					BitIndexPointer newPointer = invOS.writePostings(inverted1.getPostings(lee1.getValue()));
 					lee1.getValue().setPointer(newPointer);
@@ -321,26 +397,23 @@ public class StructureMerger {
 					if (hasMore2)
 						lee2 = lexInStream2.next();
 				} else {
-					//write to postings for a term that occurs in both indices
-					
-					//1. postings from the first index are unchanged
+					//write to postings for a term that occurs in both indices, as a single posting list:
+					//postings from the first index are unchanged, while postings from the 2nd index have
+					//their docids transformed
 					IterablePosting ip1 = inverted1.getPostings(lee1.getValue());
-					BitIndexPointer newPointer1 = invOS.writePostings(ip1);
-					
-					//2. postings from the 2nd index have their docids transformed
 					IterablePosting ip2 = inverted2.getPostings(lee2.getValue());
-					BitIndexPointer newPointer2 = invOS.writePostings(ip2, invOS.getLastDocidWritten() - numberOfDocs1);
+					BitIndexPointer newPointer = invOS.writePostings(new ConcatenatedPostingIterator(ip1, ip2, numberOfDocs1));
 					
-					numberOfPointers += newPointer1.getNumberOfEntries() + newPointer2.getNumberOfEntries();
+					numberOfPointers += newPointer.getNumberOfEntries();
 
-					//don't set numberOfEntries, as LexiconEntry.add() will take care of this.
-					lee1.getValue().setPointer(newPointer1);
 					if (keepTermCodeMap)
 						termcodeHashmap.put(lee2.getValue().getTermId(), lee1.getValue().getTermId());
 					else
 						lee1.getValue().setTermId(newCodes++);
 					
 					lee1.getValue().add(lee2.getValue());
+					//the pointer's numberOfEntries covers the postings from both indices
+					lee1.getValue().setPointer(newPointer);
 					lexOutStream.writeNextEntry(term1, lee1.getValue());
 					
 					hasMore1 = lexInStream1.hasNext();
@@ -357,6 +430,13 @@ public class StructureMerger {
 				logger.debug("Now processing trailing terms from lex1");
 				lee2 = null;
 				while (hasMore1) {
+					if (docidMap1 != null) {
+						newCodes = writePurgedTerm(invOS, lexOutStream, lee1.getKey(), lee1.getValue(), inverted1.getPostings(lee1.getValue()), null, null, newCodes);
+						hasMore1 = lexInStream1.hasNext();
+						if (hasMore1)
+							lee1 = lexInStream1.next();
+						continue;
+					}
 					//write to inverted file as well.
 					BitIndexPointer newPointer = invOS.writePostings(
 							inverted1.getPostings(lee1.getValue()));
@@ -373,6 +453,13 @@ public class StructureMerger {
 				lee1 = null;
 				logger.debug("Now processing trailing terms from lex2");
 				while (hasMore2) {
+					if (docidMap1 != null) {
+						newCodes = writePurgedTerm(invOS, lexOutStream, lee2.getKey(), null, null, lee2.getValue(), inverted2.getPostings(lee2.getValue()), newCodes);
+						hasMore2 = lexInStream2.hasNext();
+						if (hasMore2)
+							lee2 = lexInStream2.next();
+						continue;
+					}
 					//write to inverted file as well.
 					BitIndexPointer newPointer = invOS.writePostings(
 							inverted2.getPostings(lee2.getValue()), -(numberOfDocs1+1));
@@ -399,6 +486,8 @@ public class StructureMerger {
 			invOS.close();
 			
 			destIndex.setIndexProperty("num.Documents", ""+numberOfDocuments);
+			//records any properties specific to the compression configuration
+			compressionInvertedConfig.writeIndexProperties(destIndex, "lexicon-entry-inputstream");
 			destIndex.addIndexStructure(
 						"inverted",
 						compressionInvertedConfig.getStructureClass().getName(),
@@ -429,6 +518,161 @@ public class StructureMerger {
 	}
 
 
+	/** 
+	 * Writes the postings of a term in either or both source indices, without the purged documents.
+	 * Unless no postings remain, the term is assigned the next term code, and is written to the lexicon 
+	 * with statistics computed from the remaining postings. 
+	 * @return the next unassigned term code
+	 */
+	protected int writePurgedTerm(AbstractPostingOutputStream invOS, LexiconOutputStream<String> lexOutStream, String term, 
+			LexiconEntry le1, IterablePosting ip1, LexiconEntry le2, IterablePosting ip2, int newCode) throws IOException
+	{
+		final PurgedPostingIterator postings = new PurgedPostingIterator(ip1, docidMap1, ip2, docidMap2, fieldCount);
+		if (! postings.hasNext())
+			return newCode;
+		final BitIndexPointer newPointer = invOS.writePostings(postings);
+		numberOfPointers += newPointer.getNumberOfEntries();
+		if (termcodeHashmap1 != null && le1 != null)
+			termcodeHashmap1.put(le1.getTermId(), newCode);
+		if (termcodeHashmap != null && le2 != null)
+			termcodeHashmap.put(le2.getTermId(), newCode);
+		final LexiconEntry le = le1 != null ? le1 : le2;
+		le.setTermId(newCode);
+		le.setStatistics(postings.n_t, postings.TF);
+		le.setMaxFrequencyInDocuments(postings.maxtf);
+		if (le instanceof FieldLexiconEntry)
+			((FieldLexiconEntry) le).setFieldFrequencies(postings.fieldTFs);
+		le.setPointer(newPointer);
+		lexOutStream.writeNextEntry(term, le);
+		return newCode + 1;
+	}
+	
+	/** Iterates over the postings of a term in one or both source indices, skipping the 
+	 * purged documents, and renumbering the others. The statistics of the remaining postings
+	 * are counted as they are iterated.
+	 */
+	static class PurgedPostingIterator implements Iterator<Posting>
+	{
+		final IterablePosting[] ips;
+		final int[][] docidMaps;
+		int currentIndex = 0;
+		WritablePosting current = null;
+		int n_t = 0;
+		int TF = 0;
+		int maxtf = 0;
+		final int[] fieldTFs;
+		
+		PurgedPostingIterator(IterablePosting ip1, int[] docidMap1, IterablePosting ip2, int[] docidMap2, int fieldCount)
+		{
+			ips = new IterablePosting[]{ip1, ip2};
+			docidMaps = new int[][]{docidMap1, docidMap2};
+			fieldTFs = new int[fieldCount];
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (current != null)
+				return true;
+			try{
+				while (currentIndex < ips.length)
+				{
+					final IterablePosting ip = ips[currentIndex];
+					if (ip == null || ip.next() == IterablePosting.EOL)
+					{
+						currentIndex++;
+						continue;
+					}
+					final int newDocid = docidMaps[currentIndex][ip.getId()];
+					if (newDocid == -1)
+						continue;
+					final WritablePosting p = ip.asWritablePosting();
+					p.setId(newDocid);
+					n_t++;
+					TF += p.getFrequency();
+					maxtf = Math.max(maxtf, p.getFrequency());
+					if (fieldTFs.length > 0 && p instanceof FieldPosting)
+					{
+						final int[] tff = ((FieldPosting) p).getFieldFrequencies();
+						for (int fi = 0; fi < fieldTFs.length; fi++)
+							fieldTFs[fi] += tff[fi];
+					}
+					current = p;
+					return true;
+				}
+			} catch (IOException ioe) {
+				throw new RuntimeException(ioe);
+			}
+			return false;
+		}
+
+		@Override
+		public Posting next() {
+			if (! hasNext())
+				throw new java.util.NoSuchElementException();
+			final Posting p = current;
+			current = null;
+			return p;
+		}
+	}
+
+	/** Iterates over the postings of two posting lists for the same term, adding
+	 * an offset to the docids of the second. The postings of the first posting
+	 * list are not copied. Writing both as a single posting list means that the
+	 * AbstractPostingOutputStream need not support the continuation of a previous
+	 * posting list, which formats with a per-list header cannot.
+	 */
+	static class ConcatenatedPostingIterator implements Iterator<Posting>
+	{
+		final IterablePosting ip1;
+		final IterablePosting ip2;
+		final int docidOffset2;
+		boolean firstEnded = false;
+		boolean advanced = false;
+		Posting current = null;
+		
+		ConcatenatedPostingIterator(IterablePosting _ip1, IterablePosting _ip2, int _docidOffset2)
+		{
+			ip1 = _ip1;
+			ip2 = _ip2;
+			docidOffset2 = _docidOffset2;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (! advanced)
+			{
+				try{
+					current = null;
+					if (! firstEnded)
+					{
+						if (ip1.next() != IterablePosting.EOL)
+							current = ip1;
+						else
+							firstEnded = true;
+					}
+					if (firstEnded && ip2.next() != IterablePosting.EOL)
+					{
+						final WritablePosting p = ip2.asWritablePosting();
+						p.setId(ip2.getId() + docidOffset2);
+						current = p;
+					}
+				} catch (IOException ioe) {
+					throw new RuntimeException(ioe);
+				}
+				advanced = true;
+			}
+			return current != null;
+		}
+
+		@Override
+		public Posting next() {
+			if (! hasNext())
+				throw new java.util.NoSuchElementException();
+			advanced = false;
+			return current;
+		}
+	}
+
 	/**
 	 * Merges the two direct files and the corresponding document id files.
 	 */
@@ -466,7 +710,10 @@ public class StructureMerger {
 			
 			for(String property : new String[] {"index.direct.fields.names","index.direct.fields.count" } )
 			{
-				destIndex.setIndexProperty(property, srcIndex1.getIndexProperty(property, null));
+				//not all indices record all of these properties, e.g. those written from memory
+				String value = srcIndex1.getIndexProperty(property, null);
+				if (value != null)
+					destIndex.setIndexProperty(property, value);
 			}
 			
 			AbstractPostingOutputStream dfOutput = null;
@@ -484,18 +731,27 @@ public class StructureMerger {
 			final MetaIndex metaInput1 = srcIndex1.getMetaIndex();
 			
 			int sourceDocid = 0;
-			//traversing the direct index, without any change
+			//traversing the direct index, without any change unless documents are purged
 			while(docidInput1.hasNext())
 			{
 				BitIndexPointer pointerDF = emptyPointer;
 				DocumentIndexEntry die = docidInput1.next();
+				final boolean purged = docidMap1 != null && docidMap1[sourceDocid] == -1;
 				if (die.getDocumentLength() > 0)
 				{
-					pointerDF = dfOutput.writePostings(dfInput1.next());
+					//the postings of a purged document are skipped
+					final IterablePosting postings = dfInput1.next();
+					if (! purged && termcodeHashmap1 != null)
+						pointerDF = dfOutput.writePostings(renumberTerms(postings, termcodeHashmap1));
+					else if (! purged)
+						pointerDF = dfOutput.writePostings(postings);
+				}
+				if (! purged)
+				{
+					die.setBitIndexPointer(pointerDF);
+					docidOutput.addEntryToBuffer(die);
+					metaBuilder.writeDocumentEntry(metaInput1.getAllItems(sourceDocid));
 				}
-				die.setBitIndexPointer(pointerDF);
-				docidOutput.addEntryToBuffer(die);
-				metaBuilder.writeDocumentEntry(metaInput1.getAllItems(sourceDocid));
 				sourceDocid++;
 			}
 			dfInput1.close();
@@ -509,25 +765,21 @@ public class StructureMerger {
 			while (docidInput2.hasNext())
 			{
 				DocumentIndexEntry die = docidInput2.next();
+				final boolean purged = docidMap2 != null && docidMap2[sourceDocid] == -1;
 			
 				BitIndexPointer pointerDF = emptyPointer;
 				if (die.getDocumentLength() > 0)
 				{
 					final IterablePosting postings = dfInput2.next();
-					
-					List<Posting> postingList = new ArrayList<Posting>();
-					while(postings.next() != IterablePosting.EOL)
-					{
-						final Posting p = postings.asWritablePosting();
-						p.setId(termcodeHashmap.get(postings.getId()));
-						postingList.add(p);
-					}
-					Collections.sort(postingList, new PostingIdComparator());
-					pointerDF = dfOutput.writePostings(postingList.iterator());
+					if (! purged)
+						pointerDF = dfOutput.writePostings(renumberTerms(postings, termcodeHashmap));
+				}
+				if (! purged)
+				{
+					die.setBitIndexPointer(pointerDF);
+					docidOutput.addEntryToBuffer(die);
+					metaBuilder.writeDocumentEntry(metaInput2.getAllItems(sourceDocid));
 				}
-				die.setBitIndexPointer(pointerDF);
-				docidOutput.addEntryToBuffer(die);
-				metaBuilder.writeDocumentEntry(metaInput2.getAllItems(sourceDocid));
 				sourceDocid++;
 			}
 			dfInput2.close();
@@ -556,6 +808,20 @@ public class StructureMerger {
 		}
 	}
 	
+	/** Returns the postings of a document with its term codes converted using the hashmap, in order of the new term codes */
+	protected static Iterator<Posting> renumberTerms(IterablePosting postings, TIntIntHashMap termcodes) throws IOException
+	{
+		List<Posting> postingList = new ArrayList<Posting>();
+		while(postings.next() != IterablePosting.EOL)
+		{
+			final Posting p = postings.asWritablePosting();
+			p.setId(termcodes.get(postings.getId()));
+			postingList.add(p);
+		}
+		Collections.sort(postingList, new PostingIdComparator());
+		return postingList.iterator();
+	}
+	
 	protected static Class<?>[] getInterfaces(Object o)
 	{
 		List<Class<?>> list = new ArrayList<Class<?>>();
@@ -613,26 +879,34 @@ public class StructureMerger {
 			}
 			final int fieldCount = srcFieldCount1;
 			
-			//traversing the first set of files, without any change
+			//traversing the first set of files, without any change except purged documents
+			int sourceDocid = 0;
 			while(docidInput1.hasNext())
 			{
 				metaInput1.hasNext();
 				DocumentIndexEntry die = docidInput1.next();
+				String[] meta = metaInput1.next();
+				if (docidMap1 != null && docidMap1[sourceDocid++] == -1)
+					continue;
 				DocumentIndexEntry dieNew = (fieldCount > 0) ? die : new SimpleDocumentIndexEntry(die);
 				docidOutput.addEntryToBuffer(dieNew);
-				metaBuilder.writeDocumentEntry(metaInput1.next());
+				metaBuilder.writeDocumentEntry(meta);
 			}
 			
 			final Iterator<DocumentIndexEntry> docidInput2 = (Iterator<DocumentIndexEntry>)srcIndex2.getIndexStructureInputStream("document");
 			final Iterator<String[]> metaInput2 = (Iterator<String[]>)srcIndex2.getIndexStructureInputStream("meta");
-			//traversing the 2nd set of files, without any change
+			//traversing the 2nd set of files, without any change except purged documents
+			sourceDocid = 0;
 			while(docidInput2.hasNext())
 			{
 				metaInput2.hasNext();
 				DocumentIndexEntry die = docidInput2.next();
+				String[] meta = metaInput2.next();
+				if (docidMap2 != null && docidMap2[sourceDocid++] == -1)
+					continue;
 				DocumentIndexEntry dieNew = (fieldCount > 0) ? die : new SimpleDocumentIndexEntry(die);
 				docidOutput.addEntryToBuffer(dieNew);
-				metaBuilder.writeDocumentEntry(metaInput2.next());
+				metaBuilder.writeDocumentEntry(meta);
 			}
 			
 			docidOutput.finishedCollections();
@@ -682,6 +956,12 @@ public class StructureMerger {
 		final boolean bothDocument = srcIndex1.hasIndexStructure("document") && srcIndex2.hasIndexStructure("document");
 		final long t1 = System.currentTimeMillis();
 		keepTermCodeMap = bothDirect;
+		initDocidMaps();
+		if (docidMap1 != null && ! bothInverted)
+		{
+			logger.warn("Deleted documents cannot be purged without the inverted indices of both source indices");
+			docidMap1 = docidMap2 = null;
+		}
 		long t2 = 0;
 		long t3 = 0;
 		long t4 = 0;
@@ -733,6 +1013,7 @@ public class StructureMerger {
 			//save up some memory
 			termcodeHashmap.clear();
 			termcodeHashmap = null;
+			termcodeHashmap1 = null;
 		}
 	}
 	
@@ -166,7 +166,8 @@ import com.google.common.collect.Sets;
  * MetaIndex key to use as the docno. Defaults to "docno".
  * 
  * <li><tt>trec.querying.resultscache</tt> - controls cache to use for query caching. 
- * Defaults to {@link NullQueryResultCache}</li> 
+ * Defaults to {@link NullQueryResultCache}. {@link org.terrier.structures.cache.BoundedQueryResultCache} is 
+ * a thread-safe alternative with bounded memory usage.</li> 
  * 
  * </ul>
  * 
@@ -656,8 +657,11 @@ public class TRECQuerying extends AbstractQuerying {
 		preQueryingSearchRequestModification(queryId, srq);
 		ResultSet rs = resultsCache.checkCache(srq);
 		if (rs != null)
-			((Request)rs).setResultSet(rs);
-		
+		{
+			logger.info("Using cached results for query: " + queryId + ": '" + query + "'");
+			((Request)srq).setResultSet(rs);
+			return srq;
+		}
 		
 		if (logger.isInfoEnabled())
 			logger.info("Processing query: " + queryId + ": '" + query + "'");
@@ -785,6 +789,8 @@ public class TRECQuerying extends AbstractQuerying {
 					+ " queries in "
 					+ ((System.currentTimeMillis() - startTime) / 1000.0d)
 					+ " seconds, results written to " + resultsFilename);
+		if (! (resultsCache instanceof NullQueryResultCache))
+			logger.info("Results cache: " + resultsCache.toString());
 		return resultsFilename;
 	}
 
@@ -0,0 +1,256 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BoundedQueryResultCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.terrier.matching.QueryResultSet;
+import org.terrier.matching.ResultSet;
+import org.terrier.querying.Request;
+import org.terrier.querying.SearchRequest;
+import org.terrier.structures.CollectionStatistics;
+import org.terrier.structures.Index;
+import org.terrier.structures.VersionedIndex;
+import org.terrier.utility.ApplicationSetup;
+
+/** A thread-safe QueryResultCache that is bounded both in the number of queries
+ * and in the estimated number of bytes, evicting the least recently used queries
+ * when either bound is exceeded. Only the docids and scores of the top-ranked 
+ * documents of each query are retained; these are used to create a new ResultSet 
+ * for each cache hit. Queries are identified by their whitespace-normalised query
+ * text, together with all of their controls (which include the weighting model
+ * and matching strategy).
+ * <p>
+ * The cache is cleared whenever the statistics of the index being searched change,
+ * for instance after an UpdatableIndex has indexed a new document, or when the version 
+ * of a {@link VersionedIndex} changes, for instance after a document has been removed. 
+ * The results of a query are not cached if the index changed while the query was running.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>trec.querying.resultscache.max.entries</tt> - maximum number of queries to cache. Defaults to 10000.</li>
+ * <li><tt>trec.querying.resultscache.max.bytes</tt> - maximum estimated size of the cache. Defaults to 64MB.</li>
+ * <li><tt>trec.querying.resultscache.topk</tt> - number of top-ranked documents to retain for each query. Defaults to 1000.</li>
+ * </ul>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class BoundedQueryResultCache implements QueryResultCache {
+
+	/** context object used to remember the key of a request between checkCache() and add() */
+	static final String CONTEXT_KEY = "resultscache.key";
+	/** context object used to remember the statistics of the index when a request was checked */
+	static final String CONTEXT_STATISTICS = "resultscache.statistics";
+	/** estimated overhead of each cached entry, in bytes */
+	static final long ENTRY_OVERHEAD = 128;
+	
+	/** the compact top-k of a cached query */
+	static final class CachedResults {
+		final int[] docids;
+		final double[] scores;
+		final long bytes;
+		
+		CachedResults(String key, ResultSet rs, int topk) {
+			final int k = Math.min(topk, rs.getResultSize());
+			this.docids = Arrays.copyOf(rs.getDocids(), k);
+			this.scores = Arrays.copyOf(rs.getScores(), k);
+			this.bytes = ENTRY_OVERHEAD + 2l * key.length() + (long)k * (Integer.BYTES + Double.BYTES);
+		}
+		
+		ResultSet toResultSet() {
+			return new QueryResultSet(docids.clone(), scores.clone(), new short[docids.length]);
+		}
+	}
+	
+	final int maxEntries;
+	final long maxBytes;
+	final int topk;
+	
+	/** access-ordered, such that iteration starts at the least recently used entry */
+	final LinkedHashMap<String,CachedResults> cache = new LinkedHashMap<>(16, 0.75f, true);
+	long bytes = 0;
+	/** the statistics and version of the index at the time the cached entries were added */
+	long[] indexStatistics = null;
+	
+	final AtomicLong hits = new AtomicLong();
+	final AtomicLong misses = new AtomicLong();
+	final AtomicLong evictions = new AtomicLong();
+	
+	/** Constructs a cache using the bounds specified by the properties */
+	public BoundedQueryResultCache() {
+		this(
+			Integer.parseInt(ApplicationSetup.getProperty("trec.querying.resultscache.max.entries", "10000")),
+			Long.parseLong(ApplicationSetup.getProperty("trec.querying.resultscache.max.bytes", String.valueOf(64l * 1024l * 1024l))),
+			Integer.parseInt(ApplicationSetup.getProperty("trec.querying.resultscache.topk", "1000")));
+	}
+	
+	/** Constructs a cache with the specified bounds 
+	 * @param _maxEntries maximum number of queries cached
+	 * @param _maxBytes maximum estimated size in bytes of the cached results
+	 * @param _topk number of top-ranked documents cached for each query
+	 */
+	public BoundedQueryResultCache(int _maxEntries, long _maxBytes, int _topk) {
+		this.maxEntries = _maxEntries;
+		this.maxBytes = _maxBytes;
+		this.topk = _topk;
+	}
+	
+	/** Returns the key that identifies the specified query */
+	protected String hashQuery(SearchRequest q) {
+		final StringBuilder s = new StringBuilder();
+		final String query = q.getOriginalQuery();
+		if (query != null)
+			s.append(query.trim().replaceAll("\\s+", " "));
+		//sorted, such that the key does not depend on the order controls were set
+		for(Map.Entry<String,String> control : new TreeMap<>(q.getControls()).entrySet())
+			s.append('\u0000').append(control.getKey()).append('=').append(control.getValue());
+		return s.toString();
+	}
+	
+	static long[] getStatistics(SearchRequest q) {
+		Index index = q instanceof Request ? ((Request)q).getIndex() : null;
+		if (index == null)
+			return null;
+		CollectionStatistics cs = index.getCollectionStatistics();
+		//some changes, such as removing a document, do not alter the statistics
+		long version = index instanceof VersionedIndex ? ((VersionedIndex) index).getVersion() : 0;
+		return new long[]{cs.getNumberOfDocuments(), cs.getNumberOfTokens(), cs.getNumberOfPointers(), cs.getNumberOfUniqueTerms(), version};
+	}
+	
+	/** clears the cache if the index has changed since the cached entries were added. Must hold the lock. */
+	void checkIndex(final long[] current) {
+		if (current == null)
+			return;
+		if (indexStatistics != null && ! Arrays.equals(current, indexStatistics))
+			clear();
+		indexStatistics = current;
+	}
+	
+	void clear() {
+		cache.clear();
+		bytes = 0;
+	}
+	
+	@Override
+	public ResultSet checkCache(SearchRequest q) {
+		final String key = hashQuery(q);
+		q.setContextObject(CONTEXT_KEY, key);
+		final long[] current = getStatistics(q);
+		q.setContextObject(CONTEXT_STATISTICS, current);
+		final CachedResults cached;
+		synchronized (cache) {
+			checkIndex(current);
+			cached = cache.get(key);
+		}
+		if (cached == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return cached.toResultSet();
+	}
+
+	@Override
+	public void add(SearchRequest q) {
+		final ResultSet rs = ((Request) q).getResultSet();
+		if (rs == null)
+			return;
+		String key = (String) q.getContextObject(CONTEXT_KEY);
+		if (key == null)
+			key = hashQuery(q);
+		final CachedResults entry = new CachedResults(key, rs, topk);
+		if (entry.bytes > maxBytes)
+			return;
+		final long[] current = getStatistics(q);
+		final long[] checked = (long[]) q.getContextObject(CONTEXT_STATISTICS);
+		synchronized (cache) {
+			checkIndex(current);
+			//the results may not reflect a change made to the index while the query was running
+			if (checked != null && ! Arrays.equals(checked, current))
+				return;
+			final CachedResults previous = cache.put(key, entry);
+			if (previous != null)
+				bytes -= previous.bytes;
+			bytes += entry.bytes;
+			final Iterator<CachedResults> iter = cache.values().iterator();
+			while(cache.size() > maxEntries || bytes > maxBytes)
+			{
+				bytes -= iter.next().bytes;
+				iter.remove();
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	@Override
+	public void reset() {
+		synchronized (cache) {
+			clear();
+			indexStatistics = null;
+		}
+	}
+	
+	/** Returns the number of queries currently cached */
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+	
+	/** Returns the estimated size in bytes of the results currently cached */
+	public long getEstimatedBytes() {
+		synchronized (cache) {
+			return bytes;
+		}
+	}
+	
+	/** Returns the number of calls to checkCache() that found cached results */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/** Returns the number of calls to checkCache() that did not find cached results */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/** Returns the number of queries removed from the cache to satisfy its bounds */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + " entries=" + size() + " bytes=" + getEstimatedBytes() 
+			+ " hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions();
+	}
+}
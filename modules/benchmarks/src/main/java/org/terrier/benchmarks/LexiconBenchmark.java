@@ -0,0 +1,115 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is LexiconBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.indexing.ZstdMetaIndexBuilder;
+
+/** Measures lookups in the lexicon, by term (including terms that are not in the lexicon), by termid 
+ * and by position.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexiconBenchmark {
+
+	static final int LOOKUPS = 1024;
+	
+	@Param({"20000"})
+	int numDocs;
+	
+	IndexOnDisk index;
+	Lexicon<String> lexicon;
+	String[] terms;
+	int[] termids;
+	int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		index = SyntheticIndex.create(numDocs, 200, 50000, ZstdMetaIndexBuilder.class.getName());
+		lexicon = index.getLexicon();
+		final Random r = new Random(42);
+		terms = new String[LOOKUPS];
+		termids = new int[LOOKUPS];
+		//one in eight lookups is for a term that is not in the lexicon
+		final SyntheticIndex.ZipfSampler sampler = new SyntheticIndex.ZipfSampler(60000, 1.0d);
+		for(int i=0;i<LOOKUPS;i++)
+		{
+			terms[i] = SyntheticIndex.term(i % 8 == 0 ? 1000000 + r.nextInt(1000000) : sampler.sample(r));
+			termids[i] = r.nextInt(lexicon.numberOfEntries());
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		SyntheticIndex.delete(index);
+	}
+	
+	@Benchmark
+	public LexiconEntry byTerm()
+	{
+		return lexicon.getLexiconEntry(terms[next++ & (LOOKUPS -1)]);
+	}
+	
+	@Benchmark
+	public LexiconEntry byTermId()
+	{
+		return lexicon.getLexiconEntry(termids[next++ & (LOOKUPS -1)]).getValue();
+	}
+	
+	@Benchmark
+	public String byPosition()
+	{
+		return lexicon.getIthLexiconEntry(termids[next++ & (LOOKUPS -1)]).getKey();
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MatchingBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.Matching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.SynonymOp;
+import org.terrier.matching.models.BM25;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.indexing.ZstdMetaIndexBuilder;
+
+/** Measures the matching of queries of several shapes, for each of the standard matching strategies:
+ * <ul>
+ * <li><tt>two</tt> - two terms of moderate frequency;</li>
+ * <li><tt>frequent</tt> - two frequent terms;</li>
+ * <li><tt>long</tt> - eight terms of varying frequency;</li>
+ * <li><tt>syn</tt> - a <tt>#syn</tt> of three terms, and one further term.</li>
+ * </ul>
+ * Each invocation matches the next of a fixed set of sampled queries.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchingBenchmark {
+
+	static final int QUERIES = 64;
+	
+	@Param({"20000"})
+	int numDocs;
+	
+	@Param({"daat.Full", "daat.WAND", "taat.Full"})
+	String matching;
+	
+	@Param({"two", "frequent", "long", "syn"})
+	String shape;
+	
+	IndexOnDisk index;
+	Matching matcher;
+	String[][] queries;
+	int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		index = SyntheticIndex.create(numDocs, 200, 50000, ZstdMetaIndexBuilder.class.getName());
+		matcher = Class.forName("org.terrier.matching." + matching)
+			.asSubclass(Matching.class)
+			.getConstructor(Index.class)
+			.newInstance(index);
+		final Random r = new Random(42);
+		queries = new String[QUERIES][];
+		for(int q=0;q<QUERIES;q++)
+		{
+			switch (shape) {
+			case "two": 
+				queries[q] = terms(r, 2, 50, 2000); break;
+			case "frequent": 
+				queries[q] = terms(r, 2, 0, 20); break;
+			case "long": 
+				queries[q] = terms(r, 8, 0, 5000); break;
+			case "syn": 
+				queries[q] = terms(r, 4, 10, 1000); break;
+			default:
+				throw new IllegalArgumentException("Unknown query shape " + shape);
+			}
+		}
+	}
+	
+	static String[] terms(Random r, int length, int minRank, int maxRank)
+	{
+		final String[] rtr = new String[length];
+		for(int i=0;i<length;i++)
+			rtr[i] = SyntheticIndex.term(minRank + r.nextInt(maxRank - minRank));
+		return rtr;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		SyntheticIndex.delete(index);
+	}
+	
+	MatchingQueryTerms makeQuery(String[] terms)
+	{
+		final MatchingQueryTerms mqt = new MatchingQueryTerms();
+		int i = 0;
+		if (shape.equals("syn"))
+		{
+			mqt.add(QTPBuilder.of(new SynonymOp(new String[]{terms[0], terms[1], terms[2]})).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+			i = 3;
+		}
+		for(;i<terms.length;i++)
+			mqt.setTermProperty(terms[i], 1.0d);
+		mqt.setDefaultTermWeightingModel(new BM25());
+		return mqt;
+	}
+	
+	@Benchmark
+	public ResultSet match() throws IOException
+	{
+		final int q = next++ % QUERIES;
+		return matcher.match("q" + q, makeQuery(queries[q]));
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MetaIndexBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.MetaIndex;
+
+/** Measures the decoding of metadata from meta indices of each compression format: 
+ * a single item, all items of a document, and an item for a page of 100 documents (as 
+ * when decorating a ranking).
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetaIndexBenchmark {
+
+	static final int LOOKUPS = 1024;
+	static final int PAGE = 100;
+	
+	@Param({"20000"})
+	int numDocs;
+	
+	@Param({"zstd", "zstd-block", "lz4", "deflate"})
+	String compression;
+	
+	@Param({"fileinmem", "mmap", "eliasfano"})
+	String indexSource;
+	
+	IndexOnDisk index;
+	MetaIndex meta;
+	int[] docids;
+	int[][] pages;
+	int next = 0;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		final String builder;
+		switch (compression) {
+		case "zstd": builder = "org.terrier.structures.indexing.ZstdMetaIndexBuilder"; break;
+		case "zstd-block": builder = "org.terrier.structures.indexing.ZstdBlockMetaIndexBuilder"; break;
+		case "lz4": builder = "org.terrier.structures.indexing.LZ4MetaIndexBuilder"; break;
+		case "deflate": builder = "org.terrier.structures.indexing.CompressingMetaIndexBuilder"; break;
+		default: throw new IllegalArgumentException("Unknown meta index compression " + compression);
+		}
+		//short documents, as only the meta index is of interest
+		index = SyntheticIndex.create(numDocs, 10, 5000, builder);
+		index.setIndexProperty("index.meta.index-source", indexSource);
+		meta = index.getMetaIndex();
+		final Random r = new Random(42);
+		docids = new int[LOOKUPS];
+		for(int i=0;i<LOOKUPS;i++)
+			docids[i] = r.nextInt(numDocs);
+		pages = new int[16][PAGE];
+		for(int[] page : pages)
+			for(int i=0;i<PAGE;i++)
+				page[i] = r.nextInt(numDocs);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		SyntheticIndex.delete(index);
+	}
+	
+	@Benchmark
+	public String getItem() throws IOException
+	{
+		return meta.getItem("url", docids[next++ & (LOOKUPS -1)]);
+	}
+	
+	@Benchmark
+	public String[] getAllItems() throws IOException
+	{
+		return meta.getAllItems(docids[next++ & (LOOKUPS -1)]);
+	}
+	
+	@Benchmark
+	public String[] getItems() throws IOException
+	{
+		return meta.getItems("docno", pages[next++ & (pages.length -1)]);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PostingDecodingBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.compression.bit.BitFileInMemory;
+import org.terrier.compression.bit.BitIn;
+import org.terrier.compression.bit.BitOutputStream;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.indexing.ZstdMetaIndexBuilder;
+import org.terrier.structures.postings.IterablePosting;
+
+/** Measures the decoding of posting lists from the inverted index, both by iterating 
+ * every posting and by skipping with <tt>next(target)</tt>, as well as raw gamma decoding
+ * by {@link BitIn}. Posting lists are chosen from frequent, medium or rare terms.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PostingDecodingBenchmark {
+
+	@Param({"20000"})
+	int numDocs;
+	
+	@Param({"frequent", "medium", "rare"})
+	String terms;
+	
+	IndexOnDisk index;
+	PostingIndex<Pointer> inverted;
+	LexiconEntry[] entries;
+	
+	/** Gamma-encoded integers held in memory */
+	@State(Scope.Benchmark)
+	public static class GammaState
+	{
+		static final int COUNT = 1 << 16;
+		BitFileInMemory file;
+		
+		@Setup(Level.Trial)
+		public void setup() throws IOException
+		{
+			final Random r = new Random(42);
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final BitOutputStream out = new BitOutputStream(baos);
+			for(int i=0;i<COUNT;i++)
+				//small gaps are most common
+				out.writeGamma(1 + (int) Math.abs(r.nextGaussian() * 100));
+			out.close();
+			file = new BitFileInMemory(baos.toByteArray());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		index = SyntheticIndex.create(numDocs, 200, 50000, ZstdMetaIndexBuilder.class.getName());
+		inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final int firstRank = terms.equals("frequent") ? 0 : terms.equals("medium") ? 100 : 5000;
+		final List<LexiconEntry> rtr = new ArrayList<>();
+		for(int rank=firstRank;rank<firstRank+10;rank++)
+		{
+			LexiconEntry le = index.getLexicon().getLexiconEntry(SyntheticIndex.term(rank));
+			if (le != null)
+				rtr.add(le);
+		}
+		entries = rtr.toArray(new LexiconEntry[0]);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException
+	{
+		SyntheticIndex.delete(index);
+	}
+	
+	/** Iterates through every posting of the posting lists */
+	@Benchmark
+	public long next() throws IOException
+	{
+		long sum = 0;
+		for(LexiconEntry le : entries)
+		{
+			final IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+				sum += ip.getFrequency() + ip.getDocumentLength();
+			ip.close();
+		}
+		return sum;
+	}
+	
+	/** Skips through the posting lists, as a conjunctive or dynamic pruning matching strategy would */
+	@Benchmark
+	public long nextTarget() throws IOException
+	{
+		long sum = 0;
+		for(LexiconEntry le : entries)
+		{
+			final IterablePosting ip = inverted.getPostings(le);
+			int id = ip.next(0);
+			while(id != IterablePosting.EOL)
+			{
+				sum += ip.getFrequency();
+				id = ip.next(id + 64);
+			}
+			ip.close();
+		}
+		return sum;
+	}
+	
+	/** Decodes gamma-encoded integers from memory */
+	@Benchmark
+	public long readGamma(GammaState state) throws IOException
+	{
+		final BitIn in = state.file.readReset(0, (byte)0);
+		long sum = 0;
+		for(int i=0;i<GammaState.COUNT;i++)
+			sum += in.readGamma();
+		in.close();
+		return sum;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SyntheticIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.terrier.indexing.Collection;
+import org.terrier.indexing.Document;
+import org.terrier.indexing.FileDocument;
+import org.terrier.indexing.tokenisation.EnglishTokeniser;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.indexing.classical.BasicIndexer;
+import org.terrier.utility.ApplicationSetup;
+
+/** Builds a synthetic index in a temporary directory, for use by the benchmarks. 
+ * Documents are sampled from a vocabulary with a Zipfian term distribution, such that the 
+ * index has both long and short posting lists. The same seed always produces the same index.
+ * Each document has <tt>docno</tt> and <tt>url</tt> metadata.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class SyntheticIndex {
+
+	static final String CONSONANTS = "bcdfghjklmnprstvwz";
+	static final String VOWELS = "aeiou";
+	static final int SYLLABLES = CONSONANTS.length() * VOWELS.length();
+	
+	/** Returns the term of the specified rank in the vocabulary. Terms are sequences of 
+	 * consonant-vowel syllables, which are not altered by the EnglishTokeniser. */
+	public static String term(int rank)
+	{
+		final StringBuilder s = new StringBuilder();
+		do {
+			final int syllable = rank % SYLLABLES;
+			s.append(CONSONANTS.charAt(syllable / VOWELS.length()));
+			s.append(VOWELS.charAt(syllable % VOWELS.length()));
+			rank /= SYLLABLES;
+		} while (rank > 0);
+		return s.toString();
+	}
+	
+	/** Samples term ranks from a Zipfian distribution */
+	public static class ZipfSampler
+	{
+		final double[] cumulative;
+		
+		public ZipfSampler(int vocabulary, double exponent)
+		{
+			cumulative = new double[vocabulary];
+			double sum = 0;
+			for(int i=0;i<vocabulary;i++)
+			{
+				sum += 1.0d / Math.pow(i+1, exponent);
+				cumulative[i] = sum;
+			}
+			for(int i=0;i<vocabulary;i++)
+				cumulative[i] /= sum;
+		}
+		
+		/** Returns the rank of a sampled term, where 0 is the most frequent term */
+		public int sample(Random r)
+		{
+			final int pos = Arrays.binarySearch(cumulative, r.nextDouble());
+			return Math.min(pos >= 0 ? pos : -pos -1, cumulative.length -1);
+		}
+	}
+	
+	/** A collection of synthetic documents, which are generated as they are indexed */
+	public static class SyntheticCollection implements Collection
+	{
+		final int numDocs;
+		final int avgLength;
+		final ZipfSampler sampler;
+		final long seed;
+		Random random;
+		int docid;
+		Document current;
+		
+		public SyntheticCollection(int _numDocs, int _avgLength, int vocabulary, long _seed)
+		{
+			this.numDocs = _numDocs;
+			this.avgLength = _avgLength;
+			this.sampler = new ZipfSampler(vocabulary, 1.0d);
+			this.seed = _seed;
+			reset();
+		}
+		
+		@Override
+		public boolean nextDocument() {
+			if (docid >= numDocs)
+				return false;
+			final int length = avgLength/2 + random.nextInt(avgLength +1);
+			final StringBuilder text = new StringBuilder();
+			for(int i=0;i<length;i++)
+				text.append(term(sampler.sample(random))).append(' ');
+			final Map<String,String> props = new HashMap<>();
+			props.put("docno", "doc" + docid);
+			props.put("url", "http://www.example.org/" + term(random.nextInt(10000)) + "/" + term(random.nextInt(100000)) + ".html");
+			current = new FileDocument(new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.UTF_8)), props, new EnglishTokeniser());
+			docid++;
+			return true;
+		}
+
+		@Override
+		public Document getDocument() {
+			return current;
+		}
+
+		@Override
+		public boolean endOfCollection() {
+			return docid >= numDocs;
+		}
+
+		@Override
+		public void reset() {
+			random = new Random(seed);
+			docid = 0;
+			current = null;
+		}
+
+		@Override
+		public void close() {}
+	}
+	
+	/** Creates a synthetic index in a new temporary directory
+	 * @param numDocs number of documents
+	 * @param avgLength mean length of each document, in tokens
+	 * @param vocabulary number of distinct terms
+	 * @param metaBuilder class name of the MetaIndexBuilder, which determines the compression of the meta index
+	 * @return the index, opened for reading
+	 */
+	public static IndexOnDisk create(int numDocs, int avgLength, int vocabulary, String metaBuilder) throws IOException
+	{
+		final String path = Files.createTempDirectory("terrier-benchmark").toString();
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "docno,url");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "20,100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		ApplicationSetup.setProperty("indexer.meta.builder", metaBuilder);
+		new BasicIndexer(path, "data").index(new Collection[]{ new SyntheticCollection(numDocs, avgLength, vocabulary, 42L) });
+		final IndexOnDisk index = IndexOnDisk.createIndex(path, "data");
+		if (index == null)
+			throw new IOException("Could not create synthetic index at " + path + ": " + IndexOnDisk.getLastIndexLoadError());
+		return index;
+	}
+	
+	/** Closes and deletes the specified index */
+	public static void delete(IndexOnDisk index) throws IOException
+	{
+		final String path = index.getPath();
+		final String prefix = index.getPrefix();
+		index.close();
+		IndexUtil.deleteIndex(path, prefix);
+		new java.io.File(path).delete();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TokenisationBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.benchmarks;
+
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terrier.indexing.tokenisation.TokenStream;
+import org.terrier.indexing.tokenisation.Tokeniser;
+
+/** Measures the tokenisation of a synthetic document of about 1000 tokens, including
+ * punctuation, capitalisation and numbers, by each of the main tokenisers.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenisationBenchmark {
+
+	@Param({"EnglishTokeniser", "UTFTokeniser"})
+	String tokeniser;
+	
+	Tokeniser tok;
+	String text;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception
+	{
+		tok = Class.forName("org.terrier.indexing.tokenisation." + tokeniser).asSubclass(Tokeniser.class).getConstructor().newInstance();
+		final Random r = new Random(42);
+		final SyntheticIndex.ZipfSampler sampler = new SyntheticIndex.ZipfSampler(50000, 1.0d);
+		final StringBuilder s = new StringBuilder();
+		for(int i=0;i<1000;i++)
+		{
+			final String term = SyntheticIndex.term(sampler.sample(r));
+			switch (r.nextInt(20)) {
+			case 0: s.append(Character.toUpperCase(term.charAt(0))).append(term.substring(1)); break;
+			case 1: s.append(term).append(','); break;
+			case 2: s.append(term).append('.'); break;
+			case 3: s.append(r.nextInt(10000)); break;
+			default: s.append(term);
+			}
+			s.append(' ');
+		}
+		text = s.toString();
+	}
+	
+	@Benchmark
+	public int tokenise()
+	{
+		final TokenStream stream = tok.tokenise(new StringReader(text));
+		int count = 0;
+		while(stream.hasNext())
+			if (stream.next() != null)
+				count++;
+		return count;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ParallelFull.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.structures.Index;
+import org.terrier.structures.concurrent.ConcurrentIndexUtils;
+import org.terrier.utility.ApplicationSetup;
+
+/** A document-at-a-time matching strategy that uses multiple threads to match a single query.
+ * The docid space is partitioned into a number of contiguous ranges, and each range is matched
+ * by {@link Full} on the ForkJoinPool shared with other multi-threaded matching strategies, using separate posting list iterators that are skipped to the
+ * start of the range using <tt>next(target)</tt>. The top-ranked documents of each range are then 
+ * merged. The results are identical to those of {@link Full}, however, the response time of 
+ * expensive queries can be reduced when idle processors are available.
+ * <p>
+ * The index is made thread-safe using {@link ConcurrentIndexUtils}, if necessary. 
+ * Indices with too few documents are matched by a single thread. 
+ * This matching strategy can be selected using <tt>-Dtrec.matching=daat.ParallelFull</tt>.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>matching.daat.parallel.threads</tt> - number of threads used for matching, shared by all queries. 
+ * Defaults to the number of available processors.</li>
+ * <li><tt>matching.daat.parallel.ranges</tt> - number of docid ranges each query is partitioned into.
+ * Defaults to the number of threads.</li>
+ * <li><tt>matching.daat.parallel.min.documents</tt> - minimum number of documents in each docid range. Defaults to 10000.</li>
+ * </ul>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class ParallelFull extends Full {
+	
+	final int maxRanges;
+	final int minRangeSize;
+	
+	/** Create a new Matching instance based on the specified index */
+	public ParallelFull(Index index) 
+	{
+		super(ConcurrentIndexUtils.isConcurrent(index) ? index : ConcurrentIndexUtils.makeConcurrentForRetrieval(index));
+		maxRanges = Integer.parseInt(ApplicationSetup.getProperty("matching.daat.parallel.ranges", 
+			ApplicationSetup.getProperty("matching.daat.parallel.threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+		minRangeSize = Math.max(1, Integer.parseInt(ApplicationSetup.getProperty("matching.daat.parallel.min.documents", "10000")));
+	}
+	
+	/** Returns the number of docid ranges that an index of the specified size will be partitioned into */
+	int getNumberOfRanges(int numDocs)
+	{
+		return Math.max(1, Math.min(maxRanges, numDocs / minRangeSize));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		final int numDocs = collectionStatistics.getNumberOfDocuments();
+		final int numRanges = getNumberOfRanges(numDocs);
+		if (numRanges == 1)
+			return super.match(queryNumber, queryTerms);
+		
+		final DAATFullMatchingState state = (DAATFullMatchingState) initialise(queryTerms);
+		final DAATFullMatchingState[] rangeStates = new DAATFullMatchingState[numRanges];
+		try{
+			for(int r=0;r<numRanges;r++)
+			{
+				//each range has its own posting list iterators and weighting models
+				final DAATFullMatchingState rangeState = rangeStates[r] = (DAATFullMatchingState) initialiseState();
+				rangeState.queryTerms = r == 0 ? queryTerms : queryTerms.clone();
+				rangeState.numberOfRequestedDocuments = state.numberOfRequestedDocuments;
+				rangeState.plm = new PostingListManager(index, collectionStatistics, rangeState.queryTerms);
+				rangeState.plm.prepare(true);
+				
+				// Check whether we need to match an empty query. If so, then return the existing result set.
+				if (r == 0 && MATCH_EMPTY_QUERY && rangeState.plm.size() == 0) {
+					state.resultSet.setExactResultSize(numDocs);
+					state.resultSet.setResultSize(numDocs);
+					return state.resultSet;
+				}
+				//a hook for subclasses
+				initialisePostings(rangeState);
+			}
+			
+			final List<Callable<Queue<CandidateResult>>> tasks = new ArrayList<>(numRanges);
+			final int rangeSize = numDocs / numRanges;
+			for(int r=0;r<numRanges;r++)
+			{
+				final DAATFullMatchingState rangeState = rangeStates[r];
+				final int fromDocid = r * rangeSize;
+				//the last range includes any documents beyond the collection statistics
+				final int toDocid = r == numRanges -1 ? Integer.MAX_VALUE : fromDocid + rangeSize;
+				tasks.add(() -> matchRange(rangeState, fromDocid, toDocid));
+			}
+			
+			// merge the top-ranked documents of each range
+			final int RETRIEVED_SET_SIZE = state.numberOfRequestedDocuments;
+			final Queue<CandidateResult> candidateResultList = new PriorityQueue<CandidateResult>();
+			for (Future<Queue<CandidateResult>> rangeResults : getPool().invokeAll(tasks))
+			{
+				for (CandidateResult cr : rangeResults.get())
+				{
+					candidateResultList.add(cr);
+					if (RETRIEVED_SET_SIZE != 0 && candidateResultList.size() > RETRIEVED_SET_SIZE)
+						candidateResultList.poll();
+				}
+			}
+			
+			state.plm = rangeStates[0].plm;
+			state.resultSet = makeResultSet(state, candidateResultList);
+			state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+			finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+			return state.resultSet;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while matching query " + queryNumber, ie);
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException) ee.getCause();
+			throw new IOException("Failed to match query " + queryNumber, ee.getCause());
+		} finally {
+			for(DAATFullMatchingState rangeState : rangeStates)
+				if (rangeState != null && rangeState.plm != null)
+					rangeState.plm.close();
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.ParallelFull";
+	}
+}
@@ -25,8 +25,11 @@
  */
 package org.terrier.structures.bit;
 
+import java.io.IOException;
+
 import org.terrier.compression.bit.*;
 import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.bit.BitPostingIndex;
 
 public class ConcurrentBitPostingIndexUtilities {
@@ -37,6 +40,8 @@ public class ConcurrentBitPostingIndexUtilities {
 		BitInSeekable bis = bpi.file[0];
 		if (bis instanceof BitFileChannel)
 			return true;
+		if (bis instanceof BitFileMapped)
+			return true;
 		if (bis instanceof ConcurrentBitFileBuffered)
 			return true;
 		if (bis instanceof BitFileInMemoryLarge)
@@ -74,7 +79,23 @@ public class ConcurrentBitPostingIndexUtilities {
 				}
 			}
 		}
-		bpi.doi = newDoi;
+		//a null document index means that the existing one is already concurrent readable
+		if (newDoi != null)
+			bpi.doi = newDoi;
+	}
+
+	/** Replaces the files of the specified structure with memory mapped files, which can be read without locking */
+	public static void makeMapped(BitPostingIndex bpi, IndexOnDisk index, String structureName) throws IOException
+	{
+		final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + BitIn.USUAL_EXTENSION;
+		for(int i=0;i<bpi.file.length;i++)
+		{
+			BitInSeekable bis = bpi.file[i];
+			if (bis instanceof BitFileMapped)
+				continue;
+			bpi.file[i] = new BitFileMapped(bpi.file.length == 1 ? filename : filename + String.valueOf(i));
+			bis.close();
+		}
 	}
 	
 }
@@ -24,12 +24,15 @@
  *  Craig Macdonald
  */
 package org.terrier.structures.concurrent;
+import java.io.IOException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.structures.ConcurrentReadable;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.FieldDocumentIndex;
 import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.IndexUtil;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.MetaIndex;
@@ -93,6 +96,8 @@ public class ConcurrentIndexUtils {
 			logger.debug("Upgrading inverted index "+inv.getClass().getName()+" to be concurrent");
 			if (inv instanceof BitPostingIndex)
 			{
+				if (isMappingRequested(index, "inverted"))
+					makeMapped((BitPostingIndex)inv, (IndexOnDisk)index, "inverted");
 				//NB: this does not add the @ConcurrentReadable annotation
 				ConcurrentBitPostingIndexUtilities.makeConcurrent((BitPostingIndex)inv, newDoi);
 			}
@@ -108,6 +113,8 @@ public class ConcurrentIndexUtils {
 			logger.debug("Upgrading inverted index "+dir.getClass().getName()+" to be concurrent");
 			if (dir instanceof BitPostingIndex)
 			{
+				if (isMappingRequested(index, "direct"))
+					makeMapped((BitPostingIndex)dir, (IndexOnDisk)index, "direct");
 				//NB: this does not add the @ConcurrentReadable annotation
 				ConcurrentBitPostingIndexUtilities.makeConcurrent((BitPostingIndex)dir, newDoi);
 			}
@@ -147,5 +154,20 @@ public class ConcurrentIndexUtils {
 		
 		return index;
 	}
+
+	/** Returns true if the <tt>index.STRUCTURENAME.data-source</tt> property asks for the structure to be memory mapped */
+	static boolean isMappingRequested(Index index, String structureName) {
+		return index instanceof IndexOnDisk 
+			&& "mmap".equals(((IndexOnDisk)index).getIndexProperty("index." + structureName + ".data-source", "file"));
+	}
+
+	static void makeMapped(BitPostingIndex bpi, IndexOnDisk index, String structureName) {
+		logger.debug("Memory mapping " + structureName + " structure");
+		try{
+			ConcurrentBitPostingIndexUtilities.makeMapped(bpi, index, structureName);
+		} catch (IOException ioe) {
+			throw new IllegalArgumentException("Cannot memory map the " + structureName + " structure", ioe);
+		}
+	}
 	
 }
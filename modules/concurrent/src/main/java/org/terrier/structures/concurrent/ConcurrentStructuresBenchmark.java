@@ -0,0 +1,226 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ConcurrentStructuresBenchmark.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.querying.IndexRef;
+import org.terrier.structures.ConcurrentReadable;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexFactory;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.MetaIndex;
+
+/** Measures the throughput of random lookups in the lexicon, document index and 
+ * meta index of an index, as the number of threads increases, both for the 
+ * structures themselves, and when wrapped by the global-lock wrappers (ConcurrentLexicon, 
+ * ConcurrentDocumentIndex, ConcurrentMetaIndex) that {@link ConcurrentIndexUtils} 
+ * uses for structures that are not {@link ConcurrentReadable}. Structures that are 
+ * not {@link ConcurrentReadable} are only measured using the wrappers.
+ * <p>
+ * Usage: <tt>bin/terrier concurrentbench -t 64 -n 100000</tt>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class ConcurrentStructuresBenchmark {
+
+	/** A single lookup against a structure, for the given random number */
+	interface Lookup {
+		void lookup(int r) throws Exception;
+	}
+	
+	final Index index;
+	final int lookupsPerThread;
+	
+	public ConcurrentStructuresBenchmark(Index _index, int _lookupsPerThread) {
+		this.index = _index;
+		this.lookupsPerThread = _lookupsPerThread;
+	}
+	
+	/** Returns the number of lookups per second obtained when the specified number 
+	 * of threads concurrently each perform lookupsPerThread random lookups. */
+	public double measure(final Lookup lookup, final int bound, final int numThreads) throws Exception
+	{
+		final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try{
+			List<Future<Object>> futures = new ArrayList<>(numThreads);
+			for(int i=0;i<numThreads;i++)
+			{
+				futures.add(pool.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						final ThreadLocalRandom random = ThreadLocalRandom.current();
+						start.await();
+						for(int j=0;j<lookupsPerThread;j++)
+							lookup.lookup(random.nextInt(bound));
+						return null;
+					}
+				}));
+			}
+			final long startTime = System.nanoTime();
+			start.countDown();
+			for(Future<Object> f : futures)
+				f.get();
+			final long elapsed = System.nanoTime() - startTime;
+			return (double)numThreads * lookupsPerThread * 1e9d / (double)elapsed;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	static boolean isConcurrentReadable(Object structure) {
+		return structure.getClass().isAnnotationPresent(ConcurrentReadable.class);
+	}
+	
+	/** Measures lookups against each structure for 1, 2, 4 ... maxThreads threads, 
+	 * and writes a table of the lookups per second to stdout. */
+	public void run(final int maxThreads) throws Exception
+	{
+		final int numDocs = index.getCollectionStatistics().getNumberOfDocuments();
+		final int numTerms = index.getCollectionStatistics().getNumberOfUniqueTerms();
+		
+		final List<String> names = new ArrayList<>();
+		final List<Lookup> lookups = new ArrayList<>();
+		final List<Integer> bounds = new ArrayList<>();
+		
+		final Lexicon<String> lex = index.getLexicon();
+		final Lexicon<String> lockedLex = new ConcurrentLexicon(lex);
+		if (isConcurrentReadable(lex))
+		{
+			names.add("lexicon"); bounds.add(numTerms);
+			lookups.add(r -> lex.getLexiconEntry(r));
+		}
+		names.add("lexicon-locked"); bounds.add(numTerms);
+		lookups.add(r -> lockedLex.getLexiconEntry(r));
+		
+		final DocumentIndex doi = index.getDocumentIndex();
+		final DocumentIndex lockedDoi = new ConcurrentDocumentIndex(doi);
+		if (isConcurrentReadable(doi))
+		{
+			names.add("document"); bounds.add(numDocs);
+			lookups.add(r -> doi.getDocumentEntry(r));
+		}
+		names.add("document-locked"); bounds.add(numDocs);
+		lookups.add(r -> lockedDoi.getDocumentEntry(r));
+		
+		if (index.hasIndexStructure("meta"))
+		{
+			final MetaIndex meta = index.getMetaIndex();
+			final MetaIndex lockedMeta = new ConcurrentMetaIndex(meta);
+			if (isConcurrentReadable(meta))
+			{
+				names.add("meta"); bounds.add(numDocs);
+				lookups.add(r -> meta.getAllItems(r));
+			}
+			names.add("meta-locked"); bounds.add(numDocs);
+			lookups.add(r -> lockedMeta.getAllItems(r));
+		}
+		
+		StringBuilder header = new StringBuilder("threads");
+		for(String name : names)
+			header.append('\t').append(name);
+		System.out.println(header);
+		for(int threads = 1; threads <= maxThreads; threads *= 2)
+		{
+			StringBuilder row = new StringBuilder(String.valueOf(threads));
+			for(int i=0;i<names.size();i++)
+			{
+				//a warmup run, such that the timed run uses compiled code
+				measure(lookups.get(i), bounds.get(i), threads);
+				row.append('\t').append(String.format("%.0f", measure(lookups.get(i), bounds.get(i), threads)));
+			}
+			System.out.println(row);
+		}
+	}
+	
+	/** CLITool for measuring the scalability of the index structures */
+	public static class Command extends CLIParsedCLITool {
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public String commandname() {
+			return "concurrentbench";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "measures the lookups per second of the lexicon, document and meta index as the number of threads increases";
+		}
+
+		@Override
+		protected Options getOptions() {
+			Options options = super.getOptions();
+			options.addOption(Option.builder("t")
+					.argName("threads")
+					.longOpt("threads")
+					.hasArg()
+					.desc("maximum number of threads, defaults to 64")
+					.build());
+			options.addOption(Option.builder("n")
+					.argName("lookups")
+					.longOpt("lookups")
+					.hasArg()
+					.desc("number of random lookups made by each thread, defaults to 100000")
+					.build());
+			return options;
+		}
+
+		@Override
+		public int run(CommandLine line) throws Exception {
+			IndexRef iR = getIndexRef(line);
+			Index index = IndexFactory.of(iR);
+			if (index == null)
+			{
+				System.err.println("Index not found at " + iR);
+				return 1;
+			}
+			int maxThreads = line.hasOption("t") ? Integer.parseInt(line.getOptionValue("t")) : 64;
+			int lookups = line.hasOption("n") ? Integer.parseInt(line.getOptionValue("n")) : 100000;
+			new ConcurrentStructuresBenchmark(index, lookups).run(maxThreads);
+			index.close();
+			return 0;
+		}
+	}
+}
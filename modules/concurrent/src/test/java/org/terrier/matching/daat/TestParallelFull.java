@@ -0,0 +1,151 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestParallelFull.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.daat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.Operator;
+import org.terrier.matching.matchops.SynonymOp;
+import org.terrier.matching.models.TF_IDF;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.structures.Index;
+import org.terrier.structures.concurrent.ConcurrentIndexUtils;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestParallelFull extends ApplicationSetupBasedTest {
+
+	static final String[] VOCAB = new String[]{"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+	
+	static Index makeIndex(int numDocs) throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		Random r = new Random(42);
+		String[] docnos = new String[numDocs];
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			final int len = 1 + r.nextInt(20);
+			for(int j=0;j<len;j++)
+			{
+				//skewed term distribution
+				s.append(VOCAB[Math.min(r.nextInt(VOCAB.length), r.nextInt(VOCAB.length))]);
+				s.append(' ');
+			}
+			docs[i] = s.toString();
+		}
+		return IndexTestUtils.makeIndex(docnos, docs);
+	}
+	
+	static MatchingQueryTerms[] makeQueries(int requested)
+	{
+		MatchingQueryTerms[] rtr = new MatchingQueryTerms[4];
+		for(int i=0;i<rtr.length;i++)
+		{
+			rtr[i] = new MatchingQueryTerms();
+			rtr[i].setMatchingRequestSize(requested);
+		}
+		rtr[0].add(QTPBuilder.of(Operator.parse("hotel")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[1].add(QTPBuilder.of(Operator.parse("alpha")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[1].add(QTPBuilder.of(Operator.parse("golf")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("echo")).setRequired(true).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("foxtrot")).setWeight(2d).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("bravo")).setRequired(false).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[3].add(QTPBuilder.of(new SynonymOp(new String[]{"golf", "hotel"})).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[3].add(QTPBuilder.of(Operator.parse("delta")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		for(MatchingQueryTerms mqt : rtr)
+			mqt.setDefaultTermWeightingModel(new TF_IDF());
+		return rtr;
+	}
+	
+	void checkSame(Index index, int requested) throws Exception
+	{
+		Full full = new Full(index);
+		ParallelFull parallel = new ParallelFull(index);
+		assertTrue(parallel.getNumberOfRanges(index.getCollectionStatistics().getNumberOfDocuments()) > 1);
+		MatchingQueryTerms[] fullQueries = makeQueries(requested);
+		MatchingQueryTerms[] parallelQueries = makeQueries(requested);
+		for(int q=0;q<fullQueries.length;q++)
+		{
+			ResultSet expected = full.match("q" + q, fullQueries[q]);
+			ResultSet actual = parallel.match("q" + q, parallelQueries[q]);
+			assertTrue(expected.getResultSize() > 0);
+			if (requested > 0)
+				assertTrue(expected.getResultSize() <= requested);
+			assertEquals(expected.getResultSize(), actual.getResultSize());
+			assertEquals(expected.getExactResultSize(), actual.getExactResultSize());
+			assertArrayEquals(expected.getDocids(), actual.getDocids());
+			assertArrayEquals(expected.getScores(), actual.getScores(), 0d);
+			assertArrayEquals(expected.getOccurrences(), actual.getOccurrences());
+		}
+	}
+	
+	@Test public void testSameAsFull() throws Exception
+	{
+		ApplicationSetup.setProperty("matching.daat.parallel.ranges", "4");
+		ApplicationSetup.setProperty("matching.daat.parallel.min.documents", "10");
+		Index index = makeIndex(500);
+		checkSame(index, 20);
+		checkSame(index, 0);
+		assertTrue(ConcurrentIndexUtils.isConcurrent(index));
+		index.close();
+	}
+	
+	@Test public void testUnevenRanges() throws Exception
+	{
+		ApplicationSetup.setProperty("matching.daat.parallel.ranges", "7");
+		ApplicationSetup.setProperty("matching.daat.parallel.min.documents", "10");
+		Index index = makeIndex(101);
+		checkSame(index, 5);
+		checkSame(index, 1000);
+		index.close();
+	}
+	
+	@Test public void testSmallIndex() throws Exception
+	{
+		ApplicationSetup.setProperty("matching.daat.parallel.ranges", "4");
+		ApplicationSetup.setProperty("matching.daat.parallel.min.documents", "10000");
+		Index index = makeIndex(50);
+		ParallelFull parallel = new ParallelFull(index);
+		assertEquals(1, parallel.getNumberOfRanges(50));
+		MatchingQueryTerms mqt = makeQueries(10)[1];
+		ResultSet rs = parallel.match("q1", mqt);
+		assertEquals(10, rs.getResultSize());
+		index.close();
+	}
+}
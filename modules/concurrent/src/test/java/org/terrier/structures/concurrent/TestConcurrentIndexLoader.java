@@ -25,9 +25,17 @@
  */
 package org.terrier.structures.concurrent;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.terrier.indexing.IndexTestUtils;
@@ -35,8 +43,12 @@ import org.terrier.querying.IndexRef;
 import org.terrier.structures.ConcurrentIndexLoader;
 import org.terrier.structures.concurrent.ConcurrentIndexUtils;
 import org.terrier.structures.ConcurrentReadable;
+import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexFactory;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.MetaIndex;
+import org.terrier.structures.postings.IterablePosting;
 import org.terrier.tests.ApplicationSetupBasedTest;
 
 public class TestConcurrentIndexLoader extends ApplicationSetupBasedTest {
@@ -73,4 +85,59 @@ public class TestConcurrentIndexLoader extends ApplicationSetupBasedTest {
 		
 	}
 	
+	@Test public void testMappedInvertedIndex() throws Exception
+	{
+		Index index = IndexTestUtils.makeIndex(new String[]{"doc1", "doc2"}, new String[]{"the quick fox", "and all that quick stuff"});
+		assertFalse(ConcurrentIndexUtils.isConcurrent(index));
+		((IndexOnDisk)index).setIndexProperty("index.inverted.data-source", "mmap");
+
+		Index concurrent = IndexFactory.of(ConcurrentIndexLoader.makeConcurrent(index.getIndexRef()));
+		assertTrue(ConcurrentIndexUtils.isConcurrent(concurrent));
+		IterablePosting ip = concurrent.getInvertedIndex().getPostings(concurrent.getLexicon().getLexiconEntry("quick"));
+		assertEquals(0, ip.next());
+		assertEquals(1, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		ip.close();
+	}
+	
+	@Test public void testLockFreeStructures() throws Exception
+	{
+		final String[] docnos = new String[]{"doc1", "doc2", "doc3"};
+		Index index = IndexTestUtils.makeIndex(docnos, new String[]{"the quick fox", "and all that quick stuff", "fox"});
+		final DocumentIndex doi = index.getDocumentIndex();
+		final MetaIndex meta = index.getMetaIndex();
+		final int[] lengths = new int[docnos.length];
+		for(int i=0;i<docnos.length;i++)
+			lengths[i] = doi.getDocumentLength(i);
+		
+		Index concurrent = ConcurrentIndexUtils.makeConcurrentForRetrieval(index);
+		//the structures are concurrent readable themselves, so are not wrapped
+		assertSame(doi, concurrent.getDocumentIndex());
+		assertSame(meta, concurrent.getMetaIndex());
+		
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for(int t=0;t<8;t++)
+		{
+			final int offset = t;
+			results.add(pool.submit(() -> {
+				for(int i=0;i<5000;i++)
+				{
+					final int docid = (i + offset) % docnos.length;
+					if (lengths[docid] != doi.getDocumentEntry(docid).getDocumentLength())
+						return false;
+					if (! docnos[docid].equals(meta.getItem("docno", docid)))
+						return false;
+				}
+				return true;
+			}));
+		}
+		for(Future<Boolean> f : results)
+			assertTrue(f.get());
+		pool.shutdown();
+		
+		ConcurrentStructuresBenchmark bench = new ConcurrentStructuresBenchmark(concurrent, 100);
+		assertTrue(bench.measure(docid -> meta.getAllItems(docid), docnos.length, 4) > 0);
+	}
+	
 }
@@ -0,0 +1,174 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BitFileMapped.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.bit;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.terrier.structures.ConcurrentReadable;
+
+/** 
+ * Allows access to bit compressed files using memory mapping. The file is mapped
+ * as a series of segments, each of up to 2^30 bytes by default, such that files
+ * larger than 2GB can be accessed. Bytes are obtained using absolute reads of the
+ * mapped segments, which do not alter the state of the segments. Hence, unlike
+ * BitFileBuffered, the BitIn objects returned by this class do not need to 
+ * synchronise on a shared file, and can be used by concurrent threads without locking.
+ * Use by setting <tt>index.STRUCTURENAME.data-source</tt> to <tt>mmap</tt>.
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+@ConcurrentReadable
+public class BitFileMapped implements BitInSeekable {
+	
+	/** default number of bits used to address a byte within a segment */
+	protected static final int DEFAULT_SEGMENT_BITS = 30;
+	
+	/** the mapped segments of the file */
+	protected final MappedByteBuffer[] segments;
+	/** number of bits used to address a byte within a segment */
+	protected final int segmentBits;
+	/** mask to obtain the offset of a byte within a segment */
+	protected final long segmentMask;
+	/** how big the file is, so we know when to stop reading */
+	protected final long fileSize;
+	
+	/**
+	 * Maps the specified file using segments of the default size
+	 * @param filename file to map
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public BitFileMapped(String filename) throws IOException
+	{
+		this(filename, DEFAULT_SEGMENT_BITS);
+	}
+
+	/**
+	 * Maps the specified file using segments of 2^_segmentBits bytes
+	 * @param filename file to map
+	 * @param _segmentBits log2 of the segment size
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public BitFileMapped(String filename, int _segmentBits) throws IOException
+	{
+		if (_segmentBits < 1 || _segmentBits > 30)
+			throw new IllegalArgumentException("Segment bits must be in the range 1-30");
+		segmentBits = _segmentBits;
+		segmentMask = (1L << segmentBits) -1L;
+		//the mappings remain valid once the channel is closed
+		try(FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+		{
+			fileSize = channel.size();
+			final int segmentCount = (int) ((fileSize + segmentMask) >>> segmentBits);
+			segments = new MappedByteBuffer[segmentCount];
+			for(int i=0;i<segmentCount;i++)
+			{
+				final long start = (long)i << segmentBits;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentMask + 1L, fileSize - start));
+			}
+		}
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public BitIn readReset(long startByteOffset, byte startBitOffset, long endByteOffset, byte endBitOffset) throws IOException
+	{
+		return readReset(startByteOffset, startBitOffset);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BitIn readReset(long startByteOffset, byte startBitOffset) throws IOException
+	{
+		return new MappedBitIn(startByteOffset, startBitOffset);
+	}
+	
+	/** Does nothing. The segments are unmapped when they are garbage collected,
+	 * as other threads may still be reading them. */
+	@Override
+	public void close() throws IOException {}
+	
+	/** A reader of the mapped file. Each reader keeps its own position, and
+	 * the segment being read. */
+	protected class MappedBitIn extends BitInBase
+	{
+		/** the segment containing the current byte */
+		protected MappedByteBuffer segment;
+		/** offset of the current byte within that segment */
+		protected int segmentOffset;
+		
+		MappedBitIn(long startByteOffset, byte startBitOffset)
+		{
+			bitOffset = startBitOffset;
+			seek(startByteOffset);
+		}
+		
+		/** Positions this reader at the specified offset in the file */
+		protected void seek(long newOffset)
+		{
+			offset = newOffset;
+			if (newOffset >= fileSize)
+			{
+				//past the end of the file, which a well-formed posting list will not read
+				segment = null;
+				byteRead = 0;
+				return;
+			}
+			segment = segments[(int)(newOffset >>> segmentBits)];
+			segmentOffset = (int)(newOffset & segmentMask);
+			byteRead = segment.get(segmentOffset);
+		}
+
+		@Override
+		protected void incrByte() throws IOException {
+			if (segment != null && ++segmentOffset < segment.limit())
+			{
+				offset++;
+				byteRead = segment.get(segmentOffset);
+				return;
+			}
+			seek(offset+1);
+		}
+
+		@Override
+		protected void incrByte(int i) throws IOException {
+			seek(offset + i);
+		}
+
+		@Override
+		public void skipBytes(long len) throws IOException {
+			bitOffset = 0;
+			seek(offset + len);
+		}
+
+		@Override
+		public void close() throws IOException {}
+	}
+}
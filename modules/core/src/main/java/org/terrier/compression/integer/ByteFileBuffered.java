@@ -0,0 +1,100 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteFileBuffered.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInput;
+
+/** Implementation of {@link ByteInSeekable} that buffers only a small area of the file
+ * for each read, to minimise large memory allocations during retrieval. The
+ * {@link ByteIn} objects returned use positional reads of the underlying file, and
+ * hence can be used by concurrent threads.
+ * @since 5.9
+ */
+public class ByteFileBuffered implements ByteInSeekable {
+
+	/** how much of a file to buffer by default */	
+	protected static final int DEFAULT_BUFFER_LENGTH = 8*1024;
+	/** The underlying file */
+	protected final RandomDataInput file;
+	/** how much of this file we will buffer */
+	protected final int bufferSize;
+	/** how big the file is, so we know when to stop reading */
+	protected final long fileSize;
+
+	/** Constructs an instance of the class for a given filename, using the default buffer size */
+	public ByteFileBuffered(String filename) throws IOException {
+		this(filename, DEFAULT_BUFFER_LENGTH);
+	}
+
+	/** Constructs an instance of the class for a given filename and buffer size */
+	public ByteFileBuffered(String filename, int _bufferSize) throws IOException {
+		bufferSize = _bufferSize;
+		fileSize = Files.length(filename);
+		file = Files.openFileRandom(filename);
+	}
+
+	@Override
+	public ByteIn readReset(long startByteOffset) throws IOException {
+		return new ByteInBuffered(startByteOffset);
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/** Reads a slice of the parent file at a time */
+	protected class ByteInBuffered extends ByteInBase
+	{
+		ByteInBuffered(long startByteOffset)
+		{
+			bufferOffset = startByteOffset;
+			bufferPos = bufferLimit = 0;
+		}
+
+		@Override
+		protected void refill(long offset) throws IOException {
+			final int length = (int) Math.min(bufferSize, fileSize - offset);
+			if (length <= 0)
+				throw new EOFException("Read past end of file at offset " + offset);
+			if (buffer == null)
+				buffer = new byte[(int) Math.min(bufferSize, fileSize)];
+			file.readFullyDirect(buffer, offset, length);
+			bufferOffset = offset;
+			bufferPos = 0;
+			bufferLimit = length;
+		}
+
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
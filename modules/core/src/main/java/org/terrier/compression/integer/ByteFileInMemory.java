@@ -0,0 +1,93 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteFileInMemory.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.utility.Files;
+
+/** Implementation of {@link ByteInSeekable} that reads the entire file into memory.
+ * The file must be smaller than Integer.MAX_VALUE bytes (2GB).
+ * @since 5.9
+ */
+public class ByteFileInMemory implements ByteInSeekable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(ByteFileInMemory.class);
+	/** contents of the file */
+	protected final byte[] data;
+
+	/** Loads the specified file into memory */
+	public ByteFileInMemory(String filename) throws IOException {
+		final long length = Files.length(filename);
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("File " + filename + " too large for ByteFileInMemory: " + length + " bytes");
+		logger.info("Loading " + filename + " into memory");
+		data = new byte[(int)length];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+		{
+			dis.readFully(data);
+		}
+	}
+
+	/** Uses the specified bytes */
+	public ByteFileInMemory(byte[] _data) {
+		data = _data;
+	}
+
+	@Override
+	public ByteIn readReset(long startByteOffset) throws IOException {
+		return new ByteInMemory((int) startByteOffset);
+	}
+
+	@Override
+	public void close() {}
+
+	/** Reads directly from the array */
+	protected class ByteInMemory extends ByteInBase
+	{
+		ByteInMemory(int startByteOffset)
+		{
+			buffer = data;
+			bufferOffset = 0;
+			bufferPos = startByteOffset;
+			bufferLimit = data.length;
+		}
+
+		@Override
+		protected void refill(long offset) throws IOException {
+			throw new EOFException("Read past end of data at offset " + offset);
+		}
+
+		/** Does nothing */
+		@Override
+		public void close() {}
+	}
+}
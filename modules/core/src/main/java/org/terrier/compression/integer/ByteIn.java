@@ -0,0 +1,57 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteIn.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/** Interface for reading a stream of bytes, as written by {@link ByteOut},
+ * including variable-length encoded integers. Implementations are buffered, so
+ * that {@link org.terrier.compression.integer.codec.IntegerCodec}s can decode
+ * whole arrays of integers at a time.
+ * @since 5.9
+ */
+public interface ByteIn extends Closeable {
+
+	/** The usual extension of files containing compressed integers */
+	String USUAL_EXTENSION = ".if";
+
+	/** Reads one byte */
+	byte readByte() throws IOException;
+
+	/** Reads a non-negative integer written by {@link ByteOut#writeVInt(int)} */
+	int readVInt() throws IOException;
+
+	/** Reads exactly len bytes into the specified array */
+	void readFully(byte[] b, int off, int len) throws IOException;
+
+	/** Skips forward the specified number of bytes */
+	void skipBytes(long len) throws IOException;
+
+	/** Returns the offset in the underlying file of the next byte to be read */
+	long getByteOffset();
+}
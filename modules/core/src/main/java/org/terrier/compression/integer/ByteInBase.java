@@ -0,0 +1,106 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteInBase.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.IOException;
+
+/** Base implementation of {@link ByteIn} that reads from a buffer, which is refilled
+ * from the underlying source as required. Child classes implement {@link #refill(long)}.
+ * @since 5.9
+ */
+public abstract class ByteInBase implements ByteIn {
+
+	/** the buffered slice of the underlying file */
+	protected byte[] buffer;
+	/** position of the next byte to read within the buffer */
+	protected int bufferPos;
+	/** number of valid bytes in the buffer */
+	protected int bufferLimit;
+	/** offset in the underlying file of buffer[0] */
+	protected long bufferOffset;
+
+	/** Fills the buffer with bytes starting at the specified offset in the underlying file,
+	 * which is never before the end of the current buffer. Must set bufferOffset, bufferPos
+	 * and bufferLimit, and throw EOFException if there are no bytes to read. */
+	protected abstract void refill(long offset) throws IOException;
+
+	@Override
+	public final long getByteOffset() {
+		return bufferOffset + bufferPos;
+	}
+
+	@Override
+	public final byte readByte() throws IOException {
+		if (bufferPos == bufferLimit)
+			refill(getByteOffset());
+		return buffer[bufferPos++];
+	}
+
+	@Override
+	public final int readVInt() throws IOException {
+		byte b = readByte();
+		if (b >= 0)
+			return b;
+		int value = b & 0x7f;
+		int shift = 7;
+		do {
+			b = readByte();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while(b < 0);
+		return value;
+	}
+
+	@Override
+	public final void readFully(byte[] b, int off, int len) throws IOException {
+		while(len > 0)
+		{
+			if (bufferPos == bufferLimit)
+				refill(getByteOffset());
+			final int n = Math.min(len, bufferLimit - bufferPos);
+			System.arraycopy(buffer, bufferPos, b, off, n);
+			bufferPos += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void skipBytes(long len) throws IOException {
+		final long target = getByteOffset() + len;
+		if (target <= bufferOffset + bufferLimit)
+		{
+			bufferPos = (int) (target - bufferOffset);
+		}
+		else
+		{
+			//the buffer is refilled lazily, at the next read
+			bufferOffset = target;
+			bufferPos = bufferLimit = 0;
+		}
+	}
+}
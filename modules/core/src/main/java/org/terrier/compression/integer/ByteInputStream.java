@@ -0,0 +1,88 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteInputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.terrier.utility.Files;
+
+/** Reads a file of compressed integers sequentially, e.g. for the input stream
+ * of a posting index.
+ * @since 5.9
+ */
+public class ByteInputStream extends ByteInBase {
+
+	/** default size of the read buffer */
+	protected static final int DEFAULT_BUFFER_LENGTH = 64*1024;
+	/** the underlying stream */
+	protected final InputStream in;
+	/** offset of the underlying stream */
+	protected long streamOffset = 0;
+
+	/** Opens the specified file */
+	public ByteInputStream(String filename) throws IOException {
+		this(Files.openFileStream(filename));
+	}
+
+	/** Reads from the specified stream */
+	public ByteInputStream(InputStream _in) {
+		in = _in;
+		buffer = new byte[DEFAULT_BUFFER_LENGTH];
+	}
+
+	@Override
+	protected void refill(long offset) throws IOException {
+		while(streamOffset < offset)
+		{
+			final long skipped = in.skip(offset - streamOffset);
+			if (skipped <= 0)
+			{
+				if (in.read() == -1)
+					throw new EOFException("Skip past end of stream at offset " + streamOffset);
+				streamOffset++;
+			}
+			else
+			{
+				streamOffset += skipped;
+			}
+		}
+		int read = in.read(buffer, 0, buffer.length);
+		if (read == -1)
+			throw new EOFException("Read past end of stream at offset " + offset);
+		streamOffset += read;
+		bufferOffset = offset;
+		bufferPos = 0;
+		bufferLimit = read;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ByteOut.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.terrier.utility.Files;
+
+/** Writes a stream of bytes, including variable-length encoded integers, keeping
+ * track of the number of bytes written. The counterpart of {@link ByteIn}.
+ * @since 5.9
+ */
+public class ByteOut implements Closeable {
+
+	/** the underlying stream */
+	protected final OutputStream out;
+	/** number of bytes written */
+	protected long byteOffset = 0;
+
+	/** Writes to the specified file */
+	public ByteOut(String filename) throws IOException {
+		this(new BufferedOutputStream(Files.writeFileStream(filename)));
+	}
+
+	/** Writes to the specified stream */
+	public ByteOut(OutputStream _out) {
+		out = _out;
+	}
+
+	/** Writes the low 8 bits of the specified integer */
+	public void writeByte(int b) throws IOException {
+		out.write(b);
+		byteOffset++;
+	}
+
+	/** Writes the specified bytes */
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		byteOffset += len;
+	}
+
+	/** Writes a non-negative integer using a variable number of bytes: 7 bits in each byte,
+	 * least significant first, with the high bit set on all bytes but the last */
+	public void writeVInt(int value) throws IOException {
+		assert value >= 0 : "Cannot write negative vint " + value;
+		while((value & ~0x7f) != 0)
+		{
+			writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		writeByte(value);
+	}
+
+	/** Returns the number of bytes written so far */
+	public long getByteOffset() {
+		return byteOffset;
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+import org.terrier.utility.ApplicationSetup;
+
+/** A codec that compresses arrays of non-negative integers at a time. Decoding
+ * whole arrays at a time avoids the per-integer overheads of bit-at-a-time
+ * codes such as Elias-gamma. Implementations must be stateless, so that a single
+ * instance can be used by concurrent threads.
+ * @since 5.9
+ */
+public abstract class IntegerCodec {
+
+	/** Compresses the first len integers of the specified array, which must be non-negative */
+	public abstract void compress(int[] in, int len, ByteOut out) throws IOException;
+
+	/** Decompresses num integers into the start of the specified array */
+	public abstract void decompress(ByteIn in, int[] out, int num) throws IOException;
+
+	/** Instantiates a codec by name. Names without a package are assumed to be in 
+	 * the <tt>org.terrier.compression.integer.codec</tt> package. */
+	public static IntegerCodec getCodec(String name)
+	{
+		if (name.indexOf('.') == -1)
+			name = IntegerCodec.class.getPackage().getName() + '.' + name;
+		try{
+			return ApplicationSetup.getClass(name).asSubclass(IntegerCodec.class).getConstructor().newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Could not instantiate IntegerCodec " + name, e);
+		}
+	}
+}
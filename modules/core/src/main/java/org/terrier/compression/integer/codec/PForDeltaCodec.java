@@ -0,0 +1,145 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PForDeltaCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+
+/** Patched frame-of-reference codec, i.e. PForDelta [Zukowski et al., 2006; Yan et al., 2009],
+ * when applied to d-gaps. All integers of an array are bit-packed using the same width b, which
+ * is chosen to minimise the compressed size. Integers that do not fit in b bits are exceptions:
+ * their low b bits are packed as normal, and their high bits are patched in after unpacking.
+ * The format is:
+ * <pre>
+ * byte(b) vint(numExceptions) packed[ceil(num*b/8)] (vint(positionGap) vint(value &gt;&gt;&gt; b)){numExceptions}
+ * </pre>
+ * Unpacking is a tight loop without data-dependent branches, which the JIT compiles well.
+ * @since 5.9
+ */
+public class PForDeltaCodec extends IntegerCodec {
+
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		if (len == 0)
+			return;
+		//histogram of the number of bits needed by each integer
+		final int[] bitsHistogram = new int[33];
+		int maxBits = 0;
+		for(int i=0;i<len;i++)
+		{
+			final int bits = 32 - Integer.numberOfLeadingZeros(in[i]);
+			bitsHistogram[bits]++;
+			if (bits > maxBits)
+				maxBits = bits;
+		}
+		//choose the width with the smallest (estimated) size
+		int b = maxBits;
+		long bestSize = ((long)len * b + 7) >>> 3;
+		int exceptions = 0;
+		for(int width = maxBits -1; width >= 0; width--)
+		{
+			exceptions += bitsHistogram[width+1];
+			final long size = (((long)len * width + 7) >>> 3) + exceptions * (1L + (maxBits - width + 6) / 7);
+			if (size < bestSize)
+			{
+				bestSize = size;
+				b = width;
+			}
+		}
+		int numExceptions = 0;
+		for(int bits=b+1;bits<=maxBits;bits++)
+			numExceptions += bitsHistogram[bits];
+
+		out.writeByte(b);
+		out.writeVInt(numExceptions);
+		final byte[] packed = new byte[(int) (((long)len * b + 7) >>> 3)];
+		final long mask = (1L << b) - 1;
+		long buffer = 0;
+		int bufferBits = 0;
+		int p = 0;
+		for(int i=0;i<len;i++)
+		{
+			buffer |= (in[i] & mask) << bufferBits;
+			bufferBits += b;
+			while(bufferBits >= 8)
+			{
+				packed[p++] = (byte) buffer;
+				buffer >>>= 8;
+				bufferBits -= 8;
+			}
+		}
+		if (bufferBits > 0)
+			packed[p++] = (byte) buffer;
+		out.write(packed, 0, p);
+		if (numExceptions > 0)
+		{
+			int lastPosition = -1;
+			for(int i=0;i<len;i++)
+			{
+				if ((in[i] >>> b) != 0)
+				{
+					out.writeVInt(i - lastPosition - 1);
+					out.writeVInt(in[i] >>> b);
+					lastPosition = i;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int num) throws IOException {
+		if (num == 0)
+			return;
+		final int b = in.readByte() & 0xff;
+		final int numExceptions = in.readVInt();
+		final byte[] packed = new byte[(int) (((long)num * b + 7) >>> 3)];
+		in.readFully(packed, 0, packed.length);
+		final long mask = (1L << b) - 1;
+		long buffer = 0;
+		int bufferBits = 0;
+		int p = 0;
+		for(int i=0;i<num;i++)
+		{
+			while(bufferBits < b)
+			{
+				buffer |= (packed[p++] & 0xffL) << bufferBits;
+				bufferBits += 8;
+			}
+			out[i] = (int) (buffer & mask);
+			buffer >>>= b;
+			bufferBits -= b;
+		}
+		int position = -1;
+		for(int e=0;e<numExceptions;e++)
+		{
+			position += in.readVInt() + 1;
+			out[position] |= in.readVInt() << b;
+		}
+	}
+}
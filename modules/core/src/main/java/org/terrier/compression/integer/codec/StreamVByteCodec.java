@@ -0,0 +1,95 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is StreamVByteCodec.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.compression.integer.codec;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteOut;
+
+/** StreamVByte codec [Lemire et al., 2018]: each integer is written using 1-4 bytes
+ * (little endian), and the lengths are recorded separately as 2-bit control codes, four
+ * per control byte. All of the control bytes are written before all of the data bytes, so
+ * that the data bytes can be decoded without data-dependent branches on each byte. The
+ * layout is that of the SIMD implementation; this implementation is scalar.
+ * @since 5.9
+ */
+public class StreamVByteCodec extends IntegerCodec {
+
+	/** total number of data bytes described by each control byte */
+	static final int[] LENGTHS = new int[256];
+	static {
+		for(int c=0;c<256;c++)
+			LENGTHS[c] = 4 + (c & 3) + ((c >>> 2) & 3) + ((c >>> 4) & 3) + ((c >>> 6) & 3);
+	}
+
+	@Override
+	public void compress(int[] in, int len, ByteOut out) throws IOException {
+		final byte[] control = new byte[(len + 3) >>> 2];
+		final byte[] data = new byte[len * 4];
+		int dataLength = 0;
+		for(int i=0;i<len;i++)
+		{
+			final int v = in[i];
+			final int code = (v >>> 8) == 0 ? 0 : (v >>> 16) == 0 ? 1 : (v >>> 24) == 0 ? 2 : 3;
+			control[i >>> 2] |= code << ((i & 3) << 1);
+			for(int b=0;b<=code;b++)
+				data[dataLength++] = (byte) (v >>> (b << 3));
+		}
+		out.write(control, 0, control.length);
+		out.write(data, 0, dataLength);
+	}
+
+	@Override
+	public void decompress(ByteIn in, int[] out, int num) throws IOException {
+		final int fullGroups = num >>> 2;
+		final byte[] control = new byte[(num + 3) >>> 2];
+		in.readFully(control, 0, control.length);
+		int dataLength = 0;
+		for(int g=0;g<fullGroups;g++)
+			dataLength += LENGTHS[control[g] & 0xff];
+		for(int i=fullGroups << 2;i<num;i++)
+			dataLength += ((control[i >>> 2] >>> ((i & 3) << 1)) & 3) + 1;
+		final byte[] data = new byte[dataLength];
+		in.readFully(data, 0, dataLength);
+		int p = 0;
+		for(int i=0;i<num;i++)
+		{
+			final int code = (control[i >>> 2] >>> ((i & 3) << 1)) & 3;
+			int v = data[p] & 0xff;
+			switch(code)
+			{
+				case 3: v |= (data[p+3] & 0xff) << 24;
+				case 2: v |= (data[p+2] & 0xff) << 16;
+				case 1: v |= (data[p+1] & 0xff) << 8;
+				default: break;
+			}
+			p += code + 1;
+			out[i] = v;
+		}
+	}
+}
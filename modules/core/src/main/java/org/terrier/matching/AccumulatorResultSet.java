@@ -35,6 +35,8 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.List;
 import java.util.Arrays;
+import java.util.function.IntPredicate;
+
 import com.google.common.primitives.Shorts;
 
 
@@ -43,7 +45,9 @@ import org.slf4j.LoggerFactory;
 import org.terrier.utility.StableSort;
 
 
-/** A result set instance that uses maps internally until initialise() is called
+/** A result set instance that uses maps internally until initialise() is called.
+ * Scores are added using {@link #accumulate(int, double, short)}; see {@link DenseAccumulatorResultSet}
+ * for an alternative layout that is faster when many documents are accumulated.
  * @since 3.0
  * @author Nicola Tonelotto
  */
@@ -100,32 +104,152 @@ public class AccumulatorResultSet implements ResultSet, Serializable
 	 * @param numberOfDocuments maximum size of the result set.
 	 */
 	public AccumulatorResultSet(int numberOfDocuments) 
+	{
+		this(numberOfDocuments, true);
+	}
+
+	protected AccumulatorResultSet(int numberOfDocuments, boolean useMaps)
 	{
 		lock = new ReentrantLock();
 		
-		scoresMap = new TIntDoubleHashMap();
-		occurrencesMap = new TIntShortHashMap();
+		if (useMaps)
+		{
+			scoresMap = new TIntDoubleHashMap();
+			occurrencesMap = new TIntShortHashMap();
+		}
 
 		resultSize = numberOfDocuments;
 		exactResultSize = numberOfDocuments;
 	}
-	
-	/** This method initialises the arrays to be sorted, after the matching phase has been completed */
-	public void initialise() 
+
+	/** Adds the score of a posting to the accumulator of the specified document, and records
+	 * the occurrence of the query term in that document.
+	 * @since 5.9
+	 */
+	public void accumulate(int docid, double score, short mask)
+	{
+		scoresMap.adjustOrPutValue(docid, score, score);
+		occurrencesMap.put(docid, (short)(occurrencesMap.get(docid) | mask));
+	}
+
+	/** Returns true if a score has been accumulated for the specified document.
+	 * @since 5.9
+	 */
+	public boolean isAccumulated(int docid)
+	{
+		return scoresMap.contains(docid);
+	}
+
+	/** Moves the accumulated documents into the docids, scores and occurrences arrays, in any order */
+	protected void initialiseArrays()
 	{
 		this.docids = scoresMap.keys();
-		System.out.println(java.util.Arrays.toString(this.docids));
 		this.scores = scoresMap.getValues();
 		this.occurrences = occurrencesMap.getValues();		
-		resultSize = this.docids.length;
-		exactResultSize = this.docids.length;
-
 		scoresMap.clear();
 		occurrencesMap.clear();
+	}
+	
+	/** This method initialises the arrays to be sorted, after the matching phase has been completed */
+	public void initialise() 
+	{
+		initialiseArrays();
+		resultSize = this.docids.length;
+		exactResultSize = this.docids.length;
 		this.arraysInitialised = true;
 		
 		StableSort.sortDescendingTieBreaker(getScores(), getDocids(), Arrays.asList(new List<?>[]{Shorts.asList(getOccurrences())} ));
 	}
+
+	/** Initialises the arrays after the matching phase has been completed, retaining only the
+	 * topK highest scored documents, sorted by descending score then ascending docid.
+	 * Rather than sorting all accumulated documents, the topK are selected using a heap.
+	 * Documents with a score of Double.NEGATIVE_INFINITY are discarded, as are documents
+	 * whose occurrence mask is not accepted. The exact result size is set to the number of
+	 * documents retained before the topK selection.
+	 * @param topK number of documents to retain, or 0 for all documents
+	 * @param acceptOccurrence test on the occurrence mask of each document, or null to accept all
+	 * @since 5.9
+	 */
+	public void initialise(int topK, IntPredicate acceptOccurrence)
+	{
+		initialiseArrays();
+		final int[] ids = this.docids;
+		final double[] s = this.scores;
+		final short[] o = this.occurrences;
+		int n = 0;
+		for(int i=0;i<ids.length;i++)
+		{
+			if (s[i] == Double.NEGATIVE_INFINITY || (acceptOccurrence != null && ! acceptOccurrence.test(o[i])))
+				continue;
+			ids[n] = ids[i];
+			s[n] = s[i];
+			o[n] = o[i];
+			n++;
+		}
+		exactResultSize = n;
+		final int size = topK <= 0 || topK >= n ? n : topK;
+		if (size < n)
+		{
+			//a heap of the best size documents, with the worst of these at its root
+			final int[] heap = new int[size];
+			for(int i=0;i<size;i++)
+				heap[i] = i;
+			for(int i=size/2-1;i>=0;i--)
+				siftDown(heap, i, s, ids);
+			for(int i=size;i<n;i++)
+			{
+				if (isBetter(i, heap[0], s, ids))
+				{
+					heap[0] = i;
+					siftDown(heap, 0, s, ids);
+				}
+			}
+			this.docids = new int[size];
+			this.scores = new double[size];
+			this.occurrences = new short[size];
+			for(int i=0;i<size;i++)
+			{
+				docids[i] = ids[heap[i]];
+				scores[i] = s[heap[i]];
+				occurrences[i] = o[heap[i]];
+			}
+		}
+		else if (n < ids.length)
+		{
+			this.docids = Arrays.copyOf(ids, n);
+			this.scores = Arrays.copyOf(s, n);
+			this.occurrences = Arrays.copyOf(o, n);
+		}
+		resultSize = size;
+		this.arraysInitialised = true;
+		StableSort.sortDescendingTieBreaker(getScores(), getDocids(), Arrays.asList(new List<?>[]{Shorts.asList(getOccurrences())} ));
+	}
+
+	/** true if the document at index a ranks above that at index b */
+	private static boolean isBetter(int a, int b, double[] s, int[] ids)
+	{
+		final int c = Double.compare(s[a], s[b]);
+		return c > 0 || (c == 0 && ids[a] < ids[b]);
+	}
+
+	private static void siftDown(int[] heap, int i, double[] s, int[] ids)
+	{
+		final int size = heap.length;
+		while(true)
+		{
+			int worst = i;
+			final int l = 2*i + 1, r = l + 1;
+			if (l < size && isBetter(heap[worst], heap[l], s, ids))
+				worst = l;
+			if (r < size && isBetter(heap[worst], heap[r], s, ids))
+				worst = r;
+			if (worst == i)
+				return;
+			final int tmp = heap[i]; heap[i] = heap[worst]; heap[worst] = tmp;
+			i = worst;
+		}
+	}
 	
 	/** Unsupported */
 	public void initialise(double[] scs) 
@@ -0,0 +1,150 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is DenseAccumulatorResultSet.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching;
+
+import java.util.Arrays;
+
+/** An {@link AccumulatorResultSet} that accumulates scores in dense arrays indexed by docid, 
+ * rather than in hash maps, avoiding hashing and probing for every posting. This is faster
+ * when the query terms are expected to match a sizeable proportion of the collection.
+ * The arrays are allocated in pages of 65536 documents, only when a document of the page is first
+ * accumulated, and a list of the accumulated docids is kept, such that the arrays can be reset 
+ * cheaply. Once {@link #initialise()} has been called, the arrays are cleared and retained for
+ * reuse by the next result set created by the same thread.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@SuppressWarnings("serial")
+public class DenseAccumulatorResultSet extends AccumulatorResultSet
+{
+	static final int PAGE_BITS = 16;
+	static final int PAGE_SIZE = 1 << PAGE_BITS;
+	static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/** the dense accumulators, which can be reused once reset */
+	static final class Accumulators
+	{
+		double[][] scores = new double[0][];
+		short[][] occurrences = new short[0][];
+		long[][] accumulated = new long[0][];
+		int[] touched = new int[1024];
+		int numTouched = 0;
+
+		void ensurePages(int numberOfDocuments)
+		{
+			final int numPages = (numberOfDocuments >>> PAGE_BITS) + 1;
+			if (scores.length < numPages)
+			{
+				scores = Arrays.copyOf(scores, numPages);
+				occurrences = Arrays.copyOf(occurrences, numPages);
+				accumulated = Arrays.copyOf(accumulated, numPages);
+			}
+		}
+
+		void reset()
+		{
+			for(int i=0;i<numTouched;i++)
+			{
+				final int docid = touched[i];
+				final int page = docid >>> PAGE_BITS, offset = docid & PAGE_MASK;
+				scores[page][offset] = 0d;
+				occurrences[page][offset] = 0;
+				accumulated[page][offset >>> 6] = 0l;
+			}
+			numTouched = 0;
+		}
+	}
+
+	/** accumulators available for reuse by each thread */
+	static final ThreadLocal<Accumulators> AVAILABLE = new ThreadLocal<>();
+
+	transient Accumulators acc;
+
+	/**
+	 * Constructs an instance of the DenseAccumulatorResultSet
+	 * @param numberOfDocuments number of documents in the collection.
+	 */
+	public DenseAccumulatorResultSet(int numberOfDocuments)
+	{
+		super(numberOfDocuments, false);
+		acc = AVAILABLE.get();
+		if (acc != null)
+			AVAILABLE.remove();
+		else
+			acc = new Accumulators();
+		acc.ensurePages(numberOfDocuments);
+	}
+
+	@Override
+	public void accumulate(int docid, double score, short mask)
+	{
+		final int page = docid >>> PAGE_BITS, offset = docid & PAGE_MASK;
+		long[] accumulated = acc.accumulated[page];
+		if (accumulated == null)
+		{
+			accumulated = acc.accumulated[page] = new long[PAGE_SIZE >>> 6];
+			acc.scores[page] = new double[PAGE_SIZE];
+			acc.occurrences[page] = new short[PAGE_SIZE];
+		}
+		final long bit = 1l << offset;
+		if ((accumulated[offset >>> 6] & bit) == 0)
+		{
+			accumulated[offset >>> 6] |= bit;
+			if (acc.numTouched == acc.touched.length)
+				acc.touched = Arrays.copyOf(acc.touched, acc.numTouched * 2);
+			acc.touched[acc.numTouched++] = docid;
+		}
+		acc.scores[page][offset] += score;
+		acc.occurrences[page][offset] |= mask;
+	}
+
+	@Override
+	public boolean isAccumulated(int docid)
+	{
+		final long[] accumulated = acc.accumulated[docid >>> PAGE_BITS];
+		return accumulated != null && (accumulated[(docid & PAGE_MASK) >>> 6] & (1l << docid)) != 0;
+	}
+
+	@Override
+	protected void initialiseArrays()
+	{
+		final int n = acc.numTouched;
+		this.docids = Arrays.copyOf(acc.touched, n);
+		this.scores = new double[n];
+		this.occurrences = new short[n];
+		for(int i=0;i<n;i++)
+		{
+			final int docid = docids[i];
+			final int page = docid >>> PAGE_BITS, offset = docid & PAGE_MASK;
+			scores[i] = acc.scores[page][offset];
+			occurrences[i] = acc.occurrences[page][offset];
+		}
+		acc.reset();
+		AVAILABLE.set(acc);
+		acc = null;
+	}
+}
@@ -0,0 +1,432 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PostingListCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongIntHashMap;
+import gnu.trove.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.ArrayOfBasicIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockFieldIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockIterablePosting;
+import org.terrier.structures.postings.ArrayOfFieldIterablePosting;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+/** A cache of decoded posting lists, which is shared by all queries on the same inverted index.
+ * Posting lists are retained as arrays of ids, frequencies, document lengths and, where present, 
+ * field frequencies, field lengths and positions, such that cached posting lists can be iterated 
+ * without decompression. {@link PostingListManager} obtains its postings through this cache when
+ * it is enabled.
+ * <p>
+ * A posting list is only admitted to the cache once it has been requested a number of times, and if 
+ * it is long enough to be worth decoding in full. The size of the cache is bounded in (estimated) bytes. 
+ * When full, posting lists are evicted according to the GreedyDual-Size-Frequency policy [1], which 
+ * considers the number of times each posting list was requested, the cost of decoding it (the number of 
+ * postings and positions) and its size.
+ * <p>
+ * Only posting lists addressed by a {@link BitIndexPointer} are cached - e.g. those of a 
+ * {@link org.terrier.structures.bit.BitPostingIndex}.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>matching.postinglist.cache.bytes</tt> - size of the cache of each inverted index. Defaults to 0, which
+ * disables caching.</li>
+ * <li><tt>matching.postinglist.cache.min.postings</tt> - shortest posting list that will be cached. Defaults to 1000.</li>
+ * <li><tt>matching.postinglist.cache.admit</tt> - number of requests for a posting list before it is admitted 
+ * to the cache. Defaults to 2.</li>
+ * </ul>
+ * <p><b>References:</b>
+ * <ol>
+ * <li>L. Cherkasova. Improving WWW Proxies Performance with Greedy-Dual-Size-Frequency Caching Policy. HP Labs Technical Report HPL-98-69R1, 1998.</li>
+ * </ol>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class PostingListCache {
+
+	protected static final Logger logger = LoggerFactory.getLogger(PostingListCache.class);
+	
+	/** the maximum number of posting lists whose requests are counted for admission */
+	static final int MAX_COUNTED = 100000;
+	
+	static final Map<PostingIndex<?>, PostingListCache> CACHES = new WeakHashMap<>();
+	
+	/** A decoded posting list */
+	static class CachedPostingList implements Comparable<CachedPostingList>
+	{
+		final long key;
+		final int[] ids;
+		final int[] freqs;
+		final int[] lens;
+		/** field frequencies and field lengths, indexed by field, then posting */
+		final int[][] fieldFreqs;
+		final int[][] fieldLens;
+		/** number of positions of each posting, and all positions */
+		final int[] posCounts;
+		final int[] positions;
+		final long bytes;
+		final long cost;
+		
+		int requests = 1;
+		double priority;
+		long seq;
+		
+		CachedPostingList(long _key, int[] _ids, int[] _freqs, int[] _lens, int[][] _fieldFreqs, int[][] _fieldLens, int[] _posCounts, int[] _positions)
+		{
+			this.key = _key;
+			this.ids = _ids;
+			this.freqs = _freqs;
+			this.lens = _lens;
+			this.fieldFreqs = _fieldFreqs;
+			this.fieldLens = _fieldLens;
+			this.posCounts = _posCounts;
+			this.positions = _positions;
+			long b = 64 + 3l * 4l * ids.length;
+			long c = ids.length;
+			if (fieldFreqs != null)
+				b += 2l * fieldFreqs.length * (16 + 4l * ids.length);
+			if (positions != null)
+			{
+				b += 4l * ids.length + 4l * positions.length;
+				c += positions.length;
+			}
+			this.bytes = b;
+			this.cost = c;
+		}
+		
+		/** Returns a new IterablePosting over this posting list */
+		IterablePosting iterator()
+		{
+			if (fieldFreqs != null && positions != null)
+				return new ArrayOfBlockFieldIterablePosting(ids, freqs, lens, fieldFreqs, fieldLens, true, posCounts, positions);
+			if (fieldFreqs != null)
+				return new ArrayOfFieldIterablePosting(ids, freqs, lens, fieldFreqs, fieldLens, true);
+			if (positions != null)
+				return new ArrayOfBlockIterablePosting(ids, freqs, lens, posCounts, positions);
+			return new ArrayOfBasicIterablePosting(ids, freqs, lens);
+		}
+		
+		@Override
+		public int compareTo(CachedPostingList o) {
+			final int c = Double.compare(priority, o.priority);
+			return c != 0 ? c : Long.compare(seq, o.seq);
+		}
+		
+		/** Decodes the specified posting list in full. Returns null if it cannot be cached. */
+		static CachedPostingList of(long key, IterablePosting ip, int numEntries) throws IOException
+		{
+			final TIntArrayList ids = new TIntArrayList(numEntries);
+			final TIntArrayList freqs = new TIntArrayList(numEntries);
+			final TIntArrayList lens = new TIntArrayList(numEntries);
+			final boolean fields = ip instanceof FieldPosting;
+			final boolean blocks = ip instanceof BlockPosting;
+			TIntArrayList[] fieldFreqs = null;
+			TIntArrayList[] fieldLens = null;
+			final TIntArrayList posCounts = blocks ? new TIntArrayList(numEntries) : null;
+			final TIntArrayList positions = blocks ? new TIntArrayList(numEntries) : null;
+			try{
+				while(ip.next() != IterablePosting.EOL)
+				{
+					ids.add(ip.getId());
+					freqs.add(ip.getFrequency());
+					lens.add(ip.getDocumentLength());
+					if (fields)
+					{
+						final int[] tff = ((FieldPosting)ip).getFieldFrequencies();
+						final int[] lf = ((FieldPosting)ip).getFieldLengths();
+						if (fieldFreqs == null)
+						{
+							fieldFreqs = new TIntArrayList[tff.length];
+							fieldLens = new TIntArrayList[tff.length];
+							for(int f=0;f<tff.length;f++)
+							{
+								fieldFreqs[f] = new TIntArrayList(numEntries);
+								fieldLens[f] = new TIntArrayList(numEntries);
+							}
+						}
+						for(int f=0;f<tff.length;f++)
+						{
+							fieldFreqs[f].add(tff[f]);
+							fieldLens[f].add(lf[f]);
+						}
+					}
+					if (blocks)
+					{
+						final int[] pos = ((BlockPosting)ip).getPositions();
+						posCounts.add(pos.length);
+						positions.add(pos);
+					}
+				}
+			} catch (RuntimeException re) {
+				//e.g. field lengths are not available
+				logger.debug("Could not decode posting list for caching", re);
+				return null;
+			} finally {
+				ip.close();
+			}
+			if (fields && fieldFreqs == null)
+				return null;
+			return new CachedPostingList(key, 
+				ids.toNativeArray(), freqs.toNativeArray(), lens.toNativeArray(),
+				fields ? toNativeArrays(fieldFreqs) : null,
+				fields ? toNativeArrays(fieldLens) : null,
+				blocks ? posCounts.toNativeArray() : null,
+				blocks ? positions.toNativeArray() : null);
+		}
+		
+		static int[][] toNativeArrays(TIntArrayList[] lists)
+		{
+			final int[][] rtr = new int[lists.length][];
+			for(int i=0;i<lists.length;i++)
+				rtr[i] = lists[i].toNativeArray();
+			return rtr;
+		}
+	}
+	
+	/** A PostingIndex that obtains posting lists from the cache where possible */
+	static class CachingPostingIndex implements PostingIndex<Pointer>
+	{
+		final PostingIndex<Pointer> parent;
+		final PostingListCache cache;
+		
+		CachingPostingIndex(PostingIndex<Pointer> _parent, PostingListCache _cache)
+		{
+			this.parent = _parent;
+			this.cache = _cache;
+		}
+		
+		@Override
+		public IterablePosting getPostings(Pointer pointer) throws IOException {
+			final int numEntries = pointer.getNumberOfEntries();
+			if (! (pointer instanceof BitIndexPointer) || numEntries < cache.minPostings)
+				return parent.getPostings(pointer);
+			final long key = key((BitIndexPointer)pointer);
+			CachedPostingList cached = cache.get(key);
+			if (cached != null)
+				return cached.iterator();
+			if (! cache.admit(key))
+				return parent.getPostings(pointer);
+			cached = CachedPostingList.of(key, parent.getPostings(pointer), numEntries);
+			if (cached == null)
+				return parent.getPostings(pointer);
+			cache.put(cached);
+			return cached.iterator();
+		}
+
+		/** Does nothing, as the underlying index is shared by all queries */
+		@Override
+		public void close() throws IOException {}
+	}
+	
+	static long key(BitIndexPointer pointer)
+	{
+		return ((long)pointer.getFileNumber() << 59) | (pointer.getOffset() << 3) | pointer.getOffsetBits();
+	}
+	
+	final long maxBytes;
+	final int minPostings;
+	final int admitAfter;
+	
+	final TLongObjectHashMap<CachedPostingList> cache = new TLongObjectHashMap<>();
+	/** cached posting lists, in increasing order of priority */
+	final TreeSet<CachedPostingList> evictionOrder = new TreeSet<>();
+	/** requests for posting lists that are not (yet) cached */
+	final TLongIntHashMap requests = new TLongIntHashMap();
+	long bytes = 0;
+	/** the aging factor of GreedyDual-Size-Frequency: the priority of the last evicted posting list */
+	double clock = 0;
+	long seq = 0;
+	
+	final AtomicLong hits = new AtomicLong();
+	final AtomicLong misses = new AtomicLong();
+	final AtomicLong evictions = new AtomicLong();
+	
+	/** Create a new cache
+	 * @param _maxBytes maximum size of the cache
+	 * @param _minPostings shortest posting list to be cached
+	 * @param _admitAfter number of requests for a posting list before it is cached
+	 */
+	public PostingListCache(long _maxBytes, int _minPostings, int _admitAfter)
+	{
+		this.maxBytes = _maxBytes;
+		this.minPostings = _minPostings;
+		this.admitAfter = _admitAfter;
+	}
+	
+	/** Returns a PostingIndex that uses the cache for the specified inverted index, if caching is
+	 * enabled by the <tt>matching.postinglist.cache.bytes</tt> property. Otherwise, the inverted index 
+	 * is returned unchanged. */
+	public static PostingIndex<Pointer> wrap(PostingIndex<Pointer> inverted)
+	{
+		if (inverted == null || inverted instanceof CachingPostingIndex)
+			return inverted;
+		final PostingListCache cache = of(inverted);
+		if (cache == null)
+			return inverted;
+		return new CachingPostingIndex(inverted, cache);
+	}
+	
+	/** Returns the cache for the specified inverted index, or null if caching is disabled */
+	public static PostingListCache of(PostingIndex<?> inverted)
+	{
+		final long maxBytes = Long.parseLong(ApplicationSetup.getProperty("matching.postinglist.cache.bytes", "0"));
+		if (maxBytes <= 0)
+			return null;
+		synchronized (CACHES) {
+			PostingListCache cache = CACHES.get(inverted);
+			if (cache == null)
+			{
+				cache = new PostingListCache(
+					maxBytes, 
+					Integer.parseInt(ApplicationSetup.getProperty("matching.postinglist.cache.min.postings", "1000")),
+					Integer.parseInt(ApplicationSetup.getProperty("matching.postinglist.cache.admit", "2")));
+				CACHES.put(inverted, cache);
+				logger.info("Caching up to " + maxBytes + " bytes of posting lists for " + inverted.getClass().getSimpleName());
+			}
+			return cache;
+		}
+	}
+	
+	/** Returns the cached posting list for the specified key, or null if it is not cached */
+	synchronized CachedPostingList get(long key)
+	{
+		final CachedPostingList cached = cache.get(key);
+		if (cached == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		evictionOrder.remove(cached);
+		cached.requests++;
+		prioritise(cached);
+		evictionOrder.add(cached);
+		return cached;
+	}
+	
+	/** Records a request for a posting list that is not cached. Returns true if that posting list
+	 * should now be decoded and cached. */
+	synchronized boolean admit(long key)
+	{
+		if (requests.size() >= MAX_COUNTED)
+			requests.clear();
+		final int count = requests.adjustOrPutValue(key, 1, 1);
+		return count >= admitAfter;
+	}
+	
+	/** Adds a decoded posting list to the cache, evicting others as necessary */
+	synchronized void put(CachedPostingList entry)
+	{
+		if (entry.bytes > maxBytes || cache.containsKey(entry.key))
+			return;
+		entry.requests = Math.max(1, requests.remove(entry.key));
+		prioritise(entry);
+		//check that the posting lists less valuable than the new one free enough space, 
+		//before evicting any of them
+		long freeable = maxBytes - bytes;
+		int numVictims = 0;
+		for (Iterator<CachedPostingList> iter = evictionOrder.iterator(); freeable < entry.bytes; numVictims++)
+		{
+			final CachedPostingList victim = iter.next();
+			if (victim.priority > entry.priority)
+				return;
+			freeable += victim.bytes;
+		}
+		for (int i = 0; i < numVictims; i++)
+		{
+			final CachedPostingList victim = evictionOrder.pollFirst();
+			cache.remove(victim.key);
+			bytes -= victim.bytes;
+			clock = victim.priority;
+			evictions.incrementAndGet();
+		}
+		prioritise(entry);
+		cache.put(entry.key, entry);
+		evictionOrder.add(entry);
+		bytes += entry.bytes;
+	}
+	
+	void prioritise(CachedPostingList entry)
+	{
+		entry.priority = clock + (double)entry.requests * (double)entry.cost / (double)entry.bytes;
+		entry.seq = seq++;
+	}
+	
+	/** Returns the number of posting lists in the cache */
+	public synchronized int size() {
+		return cache.size();
+	}
+	
+	/** Returns the estimated size of the cached posting lists, in bytes */
+	public synchronized long getEstimatedBytes() {
+		return bytes;
+	}
+	
+	/** Returns the number of requests for posting lists that were satisfied by the cache */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/** Returns the number of requests for posting lists of at least the minimum length that were not satisfied by the cache */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/** Returns the number of posting lists evicted from the cache */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/** Empties the cache */
+	public synchronized void clear() {
+		cache.clear();
+		evictionOrder.clear();
+		requests.clear();
+		bytes = 0;
+		clock = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return this.getClass().getSimpleName() + " entries=" + size() + " bytes=" + getEstimatedBytes() 
+			+ " hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions();
+	}
+}
@@ -41,6 +41,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.matching.matchops.MatchingEntry;
 import org.terrier.matching.matchops.Operator;
+import org.terrier.matching.matchops.SingleTermOp;
 import org.terrier.matching.models.WeightingModel;
 import org.terrier.querying.Request;
 import org.terrier.structures.CollectionStatistics;
@@ -48,8 +49,10 @@ import org.terrier.structures.EntryStatistics;
 import org.terrier.structures.Index;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.MaxScoreBuilder;
 import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
+import org.terrier.structures.TermMaxScores;
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.Posting;
 import org.terrier.utility.ApplicationSetup;
@@ -64,6 +67,8 @@ import org.terrier.utility.ArrayUtils;
  * <ul>
  * <li> <tt>ignore.low.idf.terms</tt> - should terms with low IDF (i.e. very frequent) be ignored? Defaults to false, i.e. ignored</li>
  * <li> <tt>matching.postinglist.manager.plugins</tt> - Comma delimited list of PostingListManagerPlugin classes to load.</li>
+ * <li> <tt>matching.postinglist.cache.bytes</tt> - size of the cache of decoded posting lists for frequently requested terms, 
+ * shared by all queries. Defaults to 0, i.e. disabled. See {@link PostingListCache}.</li>
  * </ul>
  * <p><b>Example Usage</b></p>
  * Following code shows how term-at-a-time matching may occur using the PostingListManager:
@@ -192,6 +197,16 @@ public class PostingListManager implements Closeable
 			}
 			return score;
 		}
+
+		@Override
+		public double getMaxScore() {
+			double score = 0;
+			for(WeightingModel w : parents)
+			{
+				score += w.getMaxScore();
+			}
+			return score;
+		}
 	}
 	
 	protected static final Logger logger = LoggerFactory.getLogger(PostingListManager.class);
@@ -245,6 +260,9 @@ public class PostingListManager implements Closeable
 	/** key (query) frequencies for each term */
 	protected final TDoubleArrayList termKeyFreqs = new TDoubleArrayList();
 	
+	/** upper bounds on the score of each term, as used by dynamic pruning */
+	protected final TDoubleArrayList termMaxScores = new TDoubleArrayList();
+	
 	/** number of terms */
 	protected int numTerms = 0;
 	/** underlying index */
@@ -266,7 +284,7 @@ public class PostingListManager implements Closeable
 	{
 		index = _index;
 		lexicon = index.getLexicon();
-		invertedIndex = (PostingIndex<Pointer>) index.getInvertedIndex();
+		invertedIndex = PostingListCache.wrap((PostingIndex<Pointer>) index.getInvertedIndex());
 		collectionStatistics = cs;
 	}
 	
@@ -294,6 +312,8 @@ public class PostingListManager implements Closeable
 		this(_index, _cs);
 		
 		int termIndex = -1;
+		//the maxtf of a single term is known to bound the frequency of its postings
+		final List<Boolean> termBoundable = new ArrayList<>();
 		
 		for(Map.Entry<Operator, MatchingQueryTerms.QueryTermProperties> entry : mqt)
 		{
@@ -315,6 +335,7 @@ public class PostingListManager implements Closeable
 				termStatistics.add(me.getEntryStats());
 				termModels.add(WeightingModelMultiProxy.getModel(me.getWmodels()));
 				termTags.add(me.getTags());
+				termBoundable.add(term instanceof SingleTermOp && ((SingleTermOp)term).getField() == null);
 				if (me.isRequired())
 				{
 					requiredBitMask |= 1 << termIndex;
@@ -355,6 +376,7 @@ public class PostingListManager implements Closeable
 				termStrings.add(term.toString());
 				termTags.add(entry.getValue().getTags());
 				termModels.add(WeightingModelMultiProxy.getModel(new WeightingModel[0]));
+				termBoundable.add(true);
 				if (scoringTag == null || entry.getValue().getTags().size() == 0 || entry.getValue().getTags().contains(scoringTag))
 				{
 					matchOnTerms.add(termPostings.size() -1);
@@ -371,6 +393,21 @@ public class PostingListManager implements Closeable
 			wmodel.setRequest(mqt.getRequest());
 			wmodel.prepare();
 		}
+		final TermMaxScores storedMaxScores = index.hasIndexStructure(MaxScoreBuilder.STRUCTURE_NAME)
+			? (TermMaxScores) index.getIndexStructure(MaxScoreBuilder.STRUCTURE_NAME)
+			: null;
+		for(int i=0;i<termModels.size();i++)
+		{
+			double bound = Double.POSITIVE_INFINITY;
+			if (termBoundable.get(i))
+			{
+				//prefer the model's own bound, as it reflects any parameters set for this query
+				bound = termModels.get(i).getMaxScore();
+				if (bound == Double.POSITIVE_INFINITY)
+					bound = getStoredMaxScore(storedMaxScores, i);
+			}
+			termMaxScores.add(bound);
+		}
 		
 		for(PostingListManagerPlugin p : plugins)
 		{
@@ -380,6 +417,32 @@ public class PostingListManager implements Closeable
 		assert termPostings.size() == termStatistics.size();
 	}
 	
+	/** Returns the upper bound for the i-th term recorded in the maxscore index structure
+	 * (see {@link MaxScoreBuilder}), or Double.POSITIVE_INFINITY if the recorded bound does
+	 * not apply to this term. The bound applies only if it was computed for the same weighting
+	 * model, and using the same term and collection statistics as this query. Recorded bounds
+	 * are for a keyFrequency of 1, and are scaled linearly for higher keyFrequency values,
+	 * as is the case for the DFR models.
+	 */
+	protected double getStoredMaxScore(TermMaxScores stored, int i)
+	{
+		if (stored == null || stored.getWeightingModel() == null)
+			return Double.POSITIVE_INFINITY;
+		final double keyFreq = termKeyFreqs.get(i);
+		if (keyFreq <= 0 || ! stored.getWeightingModel().equals(termModels.get(i).getInfo()))
+			return Double.POSITIVE_INFINITY;
+		final CollectionStatistics indexStats = index.getCollectionStatistics();
+		if (indexStats.getNumberOfDocuments() != collectionStatistics.getNumberOfDocuments()
+			|| indexStats.getNumberOfTokens() != collectionStatistics.getNumberOfTokens())
+			return Double.POSITIVE_INFINITY;
+		final LexiconEntry le = lexicon.getLexiconEntry(termStrings.get(i));
+		final EntryStatistics es = termStatistics.get(i);
+		if (le == null || le.getDocumentFrequency() != es.getDocumentFrequency() || le.getFrequency() != es.getFrequency())
+			return Double.POSITIVE_INFINITY;
+		final double bound = stored.getMaxScore(le.getTermId());
+		return bound <= 0 ? 0 : bound * Math.max(1d, keyFreq);
+	}
+	
 	/** Knows how to merge several EntryStatistics for a single effective term */
 	public static EntryStatistics mergeStatistics(EntryStatistics[] entryStats)
 	{
@@ -466,6 +529,21 @@ public class PostingListManager implements Closeable
 	}
 	
 	
+	/** Returns an upper bound on the score that any posting of the specified
+	 * term can obtain from all weighting models. Terms for which no bound is
+	 * known, such as multi-term operators or terms added by plugins, have a
+	 * bound of Double.POSITIVE_INFINITY.
+	 * @param i Which term to obtain the bound for
+	 * @return upper bound on score(i)
+	 * @since 5.9
+	 */
+	public double getMaxScore(int i)
+	{
+		if (i >= termMaxScores.size())
+			return Double.POSITIVE_INFINITY;
+		return termMaxScores.get(i);
+	}
+	
 	@Override
 	/** Closes all postings that are open */
 	public void close() throws IOException
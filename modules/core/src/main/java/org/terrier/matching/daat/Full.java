@@ -33,6 +33,7 @@ import it.unimi.dsi.fastutil.longs.LongPriorityQueue;
 import java.io.IOException;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 
 import org.terrier.matching.BaseMatching;
 import org.terrier.matching.MatchingQueryTerms;
@@ -40,6 +41,7 @@ import org.terrier.matching.PostingListManager;
 import org.terrier.matching.ResultSet;
 import org.terrier.structures.Index;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
 /**
  * Performs the matching of documents with a query, by first assigning scores to documents for each query term
  * and modifying these scores with the appropriate modifiers.
@@ -62,6 +64,21 @@ public class Full extends BaseMatching
 		/** posting list manager opens and scores postings */
 		PostingListManager plm;
 	}
+	
+	static ForkJoinPool POOL = null;
+	
+	/** Returns the pool used by subclasses that match a single query using multiple threads. 
+	 * Its size is set by the <tt>matching.daat.parallel.threads</tt> property, which defaults 
+	 * to the number of available processors, and it is shared by all queries.
+	 * @since 5.9
+	 */
+	protected static synchronized ForkJoinPool getPool()
+	{
+		if (POOL == null)
+			POOL = new ForkJoinPool(Integer.parseInt(ApplicationSetup.getProperty(
+				"matching.daat.parallel.threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+		return POOL;
+	}
 
 	/** Create a new Matching instance based on the specified index */
 	public Full(Index index) 
@@ -100,12 +117,40 @@ public class Full extends BaseMatching
 		//a hook for subclasses
 		initialisePostings(state);
 		
+		final Queue<CandidateResult> candidateResultList = matchRange(state, 0, Integer.MAX_VALUE);
+		
+        // System.err.println("Scored " + scored + " documents");
+        plm.close();
+        
+        // Fifth, we build the result set
+        state.resultSet = makeResultSet(state, candidateResultList);
+        state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+        finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+		return state.resultSet;
+	}
+
+	/** Matches the documents in the specified range of docids, returning the top-ranked candidates.
+	 * The posting lists of the state's PostingListManager must have been prepared, and must not yet 
+	 * have been advanced past fromDocid.
+	 * @param state matching state, including the PostingListManager
+	 * @param fromDocid first docid to be matched (inclusive)
+	 * @param toDocid last docid to be matched (exclusive)
+	 * @return queue of the top-ranked candidate results, lowest score first
+	 * @since 5.9
+	 */
+	@SuppressWarnings("resource") //IterablePosting need not be closed
+	protected Queue<CandidateResult> matchRange(final DAATFullMatchingState state, final int fromDocid, final int toDocid) throws IOException
+	{
+		final PostingListManager plm = state.plm;
 		// The posting list min heap for minimum selection
         LongPriorityQueue postingHeap = new LongHeapPriorityQueue();
 		
 		// The posting list iterator array (one per term) and initialization
 		for(int i : plm.getMatchingTerms()) {
 			long docid = plm.getPosting(i).getId();
+			//skip to the start of the range
+			if (docid < fromDocid)
+				docid = plm.getPosting(i).next(fromDocid);
 			//some ephemeral posting lists may not match any documents; skip these.
 			if (docid == IterablePosting.EOL)
 				continue;
@@ -124,7 +169,7 @@ public class Full extends BaseMatching
 		logger.debug("Requirement patterns: mustmatch="+ requiredBitPattern + " must not match="+negRequiredBitPattern);
         //int scored = 0;
         
-        while (currentDocId != -1)  {
+        while (currentDocId != -1 && currentDocId < toDocid)  {
             // We create a new candidate for the doc id considered
             CandidateResult currentCandidate = makeCandidateResult(state, currentDocId);
             
@@ -147,7 +192,7 @@ public class Full extends BaseMatching
                 nextDocid = (int) (elem >>> 32);
             } while (nextDocid == currentDocId);
             
-            if ((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) {
+            if (((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) && isRetrievable(state, currentDocId)) {
             	//System.err.println("id="+currentDocId + " occurrence="+currentCandidate.getOccurrence() + " pattern="+requiredBitPattern + " match=" + (currentCandidate.getOccurrence() & requiredBitPattern));
             	if ( (currentCandidate.getOccurrence() & requiredBitPattern) == requiredBitPattern
             			&&
@@ -177,14 +222,7 @@ public class Full extends BaseMatching
             currentDocId = selectMinimumDocId(postingHeap);
         }
         
-        // System.err.println("Scored " + scored + " documents");
-        plm.close();
-        
-        // Fifth, we build the result set
-        state.resultSet = makeResultSet(state, candidateResultList);
-        state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
-        finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
-		return state.resultSet;
+		return candidateResultList;
 	}
 
 	protected CandidateResultSet makeResultSet(
@@ -193,6 +231,15 @@ public class Full extends BaseMatching
                 return new CandidateResultSet(candidateResultList);
 	}
 
+	/** Returns true if the specified document can be retrieved. All documents can be retrieved by default.
+	 * @param state matching state
+	 * @param currentDocId the docid of the document, as found in the posting lists
+	 * @since 5.9
+	 */
+	protected boolean isRetrievable(final DAATFullMatchingState state, final int currentDocId) {
+		return true;
+	}
+	
 	protected CandidateResult makeCandidateResult(final DAATFullMatchingState state, final int currentDocId) {
 		assert currentDocId != IterablePosting.EOL;
 		return new CandidateResult(currentDocId);
@@ -0,0 +1,221 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is WAND.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ *
+ */
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.structures.Index;
+import org.terrier.structures.postings.IterablePosting;
+
+/**
+ * Performs document-at-a-time matching using the Weak-AND (WAND) dynamic
+ * pruning strategy of Broder et al. Once the top-k candidate set is full, its
+ * smallest score acts as a threshold: the posting lists are kept sorted by
+ * their current docid, and the <i>pivot</i> document is the first one at which
+ * the sum of the score upper bounds of the preceding posting lists exceeds the
+ * threshold. Posting lists positioned before the pivot are advanced
+ * using {@link IterablePosting#next(int)}, skipping documents that can not
+ * enter the top-k.
+ * <p>
+ * The upper bound of each term is obtained from
+ * {@link PostingListManager#getMaxScore(int)}. Terms without a known upper
+ * bound are never skipped, so WAND is safe - i.e. it returns the same top-k
+ * documents, with the same scores, as {@link Full} - for any additive
+ * weighting model. Pruning is only effective if the weighting model implements
+ * {@link org.terrier.matching.models.WeightingModel#getMaxScore()}, and for
+ * queries with a bounded number of retrieved documents (i.e.
+ * <tt>matching.retrieved_set_size</tt> not set to 0).
+ * <p>
+ * Use by setting the <tt>matching</tt> control to <tt>org.terrier.matching.daat.WAND</tt>.
+ *
+ * @author Craig Macdonald
+ * @see Full
+ * @see PostingListManager#getMaxScore(int)
+ * @since 5.9
+ */
+public class WAND extends Full {
+
+	/** Create a new Matching instance based on the specified index */
+	public WAND(Index index) {
+		super(index);
+	}
+
+	/** {@inheritDoc} */
+	@SuppressWarnings("resource") //IterablePosting need not be closed
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException
+	{
+		DAATFullMatchingState state = (DAATFullMatchingState) initialise(queryTerms);
+		final PostingListManager plm = state.plm = new PostingListManager(index, super.collectionStatistics, queryTerms);
+		plm.prepare(true);
+
+		// Check whether we need to match an empty query. If so, then return the existing result set.
+		if (MATCH_EMPTY_QUERY && plm.size() == 0) {
+			state.resultSet.setExactResultSize(collectionStatistics.getNumberOfDocuments());
+			state.resultSet.setResultSize(collectionStatistics.getNumberOfDocuments());
+			return state.resultSet;
+		}
+
+		//a hook for subclasses
+		initialisePostings(state);
+
+		//the posting lists that are still active, in ascending order of current docid
+		final int[] matchingTerms = plm.getMatchingTerms();
+		final IterablePosting[] postings = new IterablePosting[matchingTerms.length];
+		final int[] termIndices = new int[matchingTerms.length];
+		final double[] maxScores = new double[matchingTerms.length];
+		int numActive = 0;
+		for(int i : matchingTerms) {
+			//some ephemeral posting lists may not match any documents; skip these.
+			if (plm.getPosting(i).getId() == IterablePosting.EOL)
+				continue;
+			postings[numActive] = plm.getPosting(i);
+			termIndices[numActive] = i;
+			maxScores[numActive] = plm.getMaxScore(i);
+			numActive++;
+		}
+		sortByDocid(postings, termIndices, maxScores, numActive);
+		if (logger.isDebugEnabled())
+			logger.debug("Query " + queryNumber + " term upper bounds " + Arrays.toString(Arrays.copyOf(maxScores, numActive)));
+
+		final int[] nonMatchingTerms = plm.getNonMatchingTerms();
+		boolean targetResultSetSizeReached = false;
+		final Queue<CandidateResult> candidateResultList = new PriorityQueue<CandidateResult>();
+		double threshold = 0.0d;
+		final long requiredBitPattern = plm.getRequiredBitMask();
+		final long negRequiredBitPattern = plm.getNegRequiredBitMask();
+		final int RETRIEVED_SET_SIZE = state.numberOfRequestedDocuments;
+
+		while (numActive > 0)
+		{
+			//find the pivot posting list: until the candidate set is full, every document is a candidate
+			int pivot = 0;
+			if (targetResultSetSizeReached)
+			{
+				double upperBound = 0.0d;
+				for(pivot = 0; pivot < numActive; pivot++)
+				{
+					upperBound += maxScores[pivot];
+					if (upperBound > threshold)
+						break;
+				}
+				//no remaining document can exceed the threshold
+				if (pivot == numActive)
+					break;
+			}
+			final int pivotDocid = postings[pivot].getId();
+
+			if (postings[0].getId() == pivotDocid)
+			{
+				//all posting lists up to the pivot are aligned: score the pivot document
+				//ties are sorted in term order, so scores are summed exactly as Full does
+				CandidateResult currentCandidate = makeCandidateResult(state, pivotDocid);
+				for(int i = 0; i < numActive && postings[i].getId() == pivotDocid; i++)
+					assignScore(state, termIndices[i], currentCandidate);
+
+				if ((! targetResultSetSizeReached) || currentCandidate.getScore() > threshold) {
+					if ( (currentCandidate.getOccurrence() & requiredBitPattern) == requiredBitPattern
+							&&
+						((negRequiredBitPattern == 0) || (negRequiredBitPattern > 0 && (currentCandidate.getOccurrence() & negRequiredBitPattern) == 0)))
+					{
+						for(int i : nonMatchingTerms) {
+							//these are postings that we need to keep/score, but which wont change the threshold
+							if (plm.getPosting(i).next(pivotDocid) == pivotDocid)
+								assignNotScore(state, i, currentCandidate);
+						}
+						candidateResultList.add(currentCandidate);
+						if (RETRIEVED_SET_SIZE != 0 && candidateResultList.size() == RETRIEVED_SET_SIZE + 1)
+						{
+							targetResultSetSizeReached = true;
+							candidateResultList.poll();
+						}
+						threshold = candidateResultList.peek().getScore();
+					}
+				}
+				//move on all posting lists positioned on the pivot document
+				for(int i = 0; i < numActive && postings[i].getId() == pivotDocid; i++)
+					postings[i].next();
+			}
+			else
+			{
+				//skip all posting lists before the pivot to the pivot document
+				for(int i = 0; i < pivot && postings[i].getId() < pivotDocid; i++)
+					postings[i].next(pivotDocid);
+			}
+			numActive = sortByDocid(postings, termIndices, maxScores, numActive);
+		}
+
+		plm.close();
+
+		state.resultSet = makeResultSet(state, candidateResultList);
+		state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+		finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+		return state.resultSet;
+	}
+
+	/** Insertion sort of the active posting lists by ascending current docid, breaking ties
+	 * by term order. Exhausted posting lists are moved to the end of the arrays.
+	 * @return the number of posting lists that have not reached the end of their postings
+	 */
+	static int sortByDocid(final IterablePosting[] postings, final int[] termIndices, final double[] maxScores, final int numActive)
+	{
+		for(int i = 1; i < numActive; i++)
+		{
+			final IterablePosting ip = postings[i];
+			final int termIndex = termIndices[i];
+			final double maxScore = maxScores[i];
+			final int docid = ip.getId();
+			int j = i - 1;
+			while(j >= 0 && (postings[j].getId() > docid || (postings[j].getId() == docid && termIndices[j] > termIndex)))
+			{
+				postings[j+1] = postings[j];
+				termIndices[j+1] = termIndices[j];
+				maxScores[j+1] = maxScores[j];
+				j--;
+			}
+			postings[j+1] = ip;
+			termIndices[j+1] = termIndex;
+			maxScores[j+1] = maxScore;
+		}
+		int rtr = numActive;
+		while(rtr > 0 && postings[rtr-1].getId() == IterablePosting.EOL)
+			rtr--;
+		return rtr;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.WAND";
+	}
+}
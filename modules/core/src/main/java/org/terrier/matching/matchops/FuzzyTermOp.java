@@ -1,7 +1,12 @@
 package org.terrier.matching.matchops;
 
+import java.util.Iterator;
+import java.util.Map;
+
 import org.apache.commons.text.similarity.EditDistance;
 import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.terrier.structures.Index;
+import org.terrier.structures.LexiconEntry;
 import org.terrier.utility.ArrayUtils;
 
 /** A synonym class that uses leveinsten distance to match terms.
@@ -11,6 +16,8 @@ import org.terrier.utility.ArrayUtils;
  * <li>prefix_length - The number of initial characters which must match to accept a term - See Elastic's <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-fuzzy-query.html">fuzzy documentation</a></li>
  * <li>max_expansions - The maximum number of terms to accept into the synonym group - See Elastic's <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-fuzzy-query.html">fuzzy documentation</a></li>
  * </ul>
+ * Candidate terms are found by intersecting a Levenshtein automaton with the lexicon, so that
+ * only terms within the maximum edit distance are visited, even when prefix_length is 0.
  * @author Craig Macdonald
  * @since 5.0
  */
@@ -22,6 +29,9 @@ public class FuzzyTermOp extends PrefixTermOp {
 	
 	final EditDistance<Integer> lev = new LevenshteinDistance();
 	final int prefix_length;
+	final String searchString;
+	/** the largest distance at which any term can be accepted */
+	final int maxDistance;
 	
 	public FuzzyTermOp(String searchString)
 	{
@@ -32,22 +42,23 @@ public class FuzzyTermOp extends PrefixTermOp {
 			Integer _prefix_length, Integer maxExpansions, Integer maxDist, 
 			Integer _lowT, Integer _highT) {
 		super(searchString);
+		this.searchString = searchString;
 		if (_prefix_length != null) {
 			prefix_length = _prefix_length;
 		} else {
 			prefix_length = 0;
 		}
-		if (prefix_length == 0)
-			logger.warn("prefix_length of 0 is expensive to match terms");
 		if (maxExpansions != null)
 		{
 			maxMatch = maxExpansions;
 		}
 		if (maxDist != null) {
+			maxDistance = maxDist;
 			super.predFunction = (t -> lev.apply(searchString, t) <= maxDist);
 		}
 		else //maxDist == auto
 		{
+			maxDistance = 2;
 			final int lowT, highT;
 			if (_lowT == null)
 				lowT = 3;
@@ -73,6 +84,13 @@ public class FuzzyTermOp extends PrefixTermOp {
 		}
 	}
 	
+	/** Only terms within maxDistance are visited, using a Levenshtein automaton */
+	@Override
+	protected Iterator<Map.Entry<String,LexiconEntry>> getCandidateTerms(Index index, String termLo, String termHi)
+	{
+		return new LevenshteinTermIterator(index.getLexicon(), searchString, maxDistance, termLo, termHi);
+	}
+	
 	protected String getStartString(String search)
 	{
 		if (prefix_length == 0)
@@ -0,0 +1,217 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is LevenshteinTermIterator.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.matchops;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+
+/** Enumerates the terms of a lexicon range that are within a maximum Levenshtein 
+ * distance of a query term, by intersecting the Levenshtein automaton of the query term 
+ * with the sorted lexicon. The automaton is simulated by the rows of the edit distance 
+ * dynamic program, one row for each character of a lexicon term. As the lexicon is sorted, 
+ * the rows for the prefix that a term shares with the previous term are reused. Once no 
+ * extension of a prefix can be within the maximum distance, the lexicon is advanced past 
+ * all terms having that prefix, by seeking, rather than visiting each of them.
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+class LevenshteinTermIterator implements Iterator<Map.Entry<String,LexiconEntry>> 
+{
+	/** number of terms to step through when skipping a prefix, before seeking instead */
+	static final int MAX_STEPS = 8;
+	
+	final Lexicon<String> lexicon;
+	final String query;
+	final int maxDistance;
+	final String termHi;
+	
+	Iterator<Map.Entry<String,LexiconEntry>> current;
+	/** a term read from the lexicon, but not yet examined */
+	Map.Entry<String,LexiconEntry> pending;
+	Map.Entry<String,LexiconEntry> next;
+	
+	/** rows[i] is the edit distance row after the first i characters of previous */
+	int[][] rows;
+	String previous = "";
+	/** number of valid rows for previous */
+	int validRows = 1;
+	/** position of the character in previous after which no term could be accepted, or -1 */
+	int deadAt = -1;
+	
+	int visited = 0;
+	int seeks = 0;
+	
+	LevenshteinTermIterator(Lexicon<String> _lexicon, String _query, int _maxDistance, String termLo, String _termHi)
+	{
+		lexicon = _lexicon;
+		query = _query;
+		maxDistance = _maxDistance;
+		termHi = _termHi;
+		rows = new int[query.length() + maxDistance + 2][];
+		rows[0] = new int[query.length()+1];
+		for(int j=0;j<=query.length();j++)
+			rows[0][j] = j;
+		current = lexicon.getLexiconEntryRange(termLo, termHi);
+		advance();
+	}
+	
+	static final int ACCEPT = -1;
+	static final int REJECT = -2;
+	
+	/** returns ACCEPT, REJECT, or the position of the character after which no extension can be accepted */
+	int evaluate(String term)
+	{
+		int common = 0;
+		final int maxCommon = Math.min(Math.min(term.length(), previous.length()), validRows -1);
+		while(common < maxCommon && term.charAt(common) == previous.charAt(common))
+			common++;
+		if (deadAt != -1 && common > deadAt)
+			return deadAt;
+		
+		previous = term;
+		deadAt = -1;
+		if (rows.length <= term.length())
+			rows = java.util.Arrays.copyOf(rows, term.length() + 1);
+		final int m = query.length();
+		for(int i=common;i<term.length();i++)
+		{
+			final int[] prev = rows[i];
+			int[] row = rows[i+1];
+			if (row == null)
+				row = rows[i+1] = new int[m+1];
+			final char c = term.charAt(i);
+			int min = row[0] = prev[0] + 1;
+			for(int j=1;j<=m;j++)
+			{
+				row[j] = Math.min(
+					prev[j-1] + (query.charAt(j-1) == c ? 0 : 1), 
+					Math.min(prev[j], row[j-1]) + 1);
+				if (row[j] < min)
+					min = row[j];
+			}
+			if (min > maxDistance)
+			{
+				validRows = i+2;
+				deadAt = i;
+				return i;
+			}
+		}
+		validRows = term.length() + 1;
+		return rows[term.length()][m] <= maxDistance ? ACCEPT : REJECT;
+	}
+	
+	void advance()
+	{
+		while(true)
+		{
+			Map.Entry<String,LexiconEntry> e = pending;
+			pending = null;
+			if (e == null && current.hasNext())
+				e = current.next();
+			if (e == null)
+			{
+				next = null;
+				return;
+			}
+			visited++;
+			final String term = e.getKey();
+			final int result = evaluate(term);
+			if (result == ACCEPT)
+			{
+				next = e;
+				return;
+			}
+			if (result != REJECT)
+				skip(term, result);
+		}
+	}
+	
+	/** advances past all terms that start with the first dead+1 characters of term */
+	void skip(String term, int dead)
+	{
+		final String deadPrefix = term.substring(0, dead+1);
+		for(int step=0;step<MAX_STEPS;step++)
+		{
+			if (! current.hasNext())
+				return;
+			final Map.Entry<String,LexiconEntry> e = current.next();
+			if (! e.getKey().startsWith(deadPrefix))
+			{
+				pending = e;
+				return;
+			}
+		}
+		final char c = term.charAt(dead);
+		//the successor of a surrogate cannot be found in the order of the lexicon, so keep stepping
+		if (Character.isSurrogate(c) || c == Character.MAX_VALUE)
+			return;
+		final String target = term.substring(0, dead) + (char)(c + 1);
+		seeks++;
+		current = compareCodePoints(target, termHi) < 0
+			? lexicon.getLexiconEntryRange(target, termHi)
+			: Collections.emptyIterator();
+	}
+	
+	/** compares strings in the order of their code points, i.e. the order of their UTF-8 bytes */
+	static int compareCodePoints(String a, String b)
+	{
+		final int min = Math.min(a.length(), b.length());
+		for(int i=0;i<min;i++)
+		{
+			final char ca = a.charAt(i);
+			final char cb = b.charAt(i);
+			if (ca != cb)
+			{
+				if (Character.isSurrogate(ca) || Character.isSurrogate(cb))
+					return Integer.compare(a.codePointAt(i), b.codePointAt(i));
+				return ca - cb;
+			}
+		}
+		return a.length() - b.length();
+	}
+
+	@Override
+	public boolean hasNext() 
+	{
+		return next != null;
+	}
+
+	@Override
+	public Map.Entry<String,LexiconEntry> next() 
+	{
+		if (next == null)
+			throw new NoSuchElementException();
+		final Map.Entry<String,LexiconEntry> rtr = next;
+		advance();
+		return rtr;
+	}
+}
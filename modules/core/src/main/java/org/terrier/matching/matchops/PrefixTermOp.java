@@ -59,6 +59,13 @@ public class PrefixTermOp extends SynonymOp {
 		return termLo + Character.MAX_VALUE;
 	}
 	
+	/** Returns the lexicon entries between termLo (inclusive) and termHi (exclusive) that
+	 * are candidates for this operator. Each candidate is then tested using predFunction. */
+	protected Iterator<Map.Entry<String,LexiconEntry>> getCandidateTerms(Index index, String termLo, String termHi) throws IOException
+	{
+		return index.getLexicon().getLexiconEntryRange(termLo, termHi);
+	}
+	
 	@Override
 	public Pair<EntryStatistics,IterablePosting> getPostingIterator(Index index) throws IOException
 	{
@@ -67,7 +74,7 @@ public class PrefixTermOp extends SynonymOp {
 		String termLo = getStartString(((SingleTermOp)terms[0]).queryTerm);
 		String termHi = getEndString(termLo);
 		PostingIndex<?> inv = index.getInvertedIndex();
-		Iterator<Map.Entry<String,LexiconEntry>> iterLex = index.getLexicon().getLexiconEntryRange(termLo, termHi);
+		Iterator<Map.Entry<String,LexiconEntry>> iterLex = getCandidateTerms(index, termLo, termHi);
 		int considered = 0;
 		while(iterLex.hasNext())
 		{
@@ -33,6 +33,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListCache;
 import org.terrier.matching.models.WeightingModel;
 import org.terrier.matching.models.WeightingModelLibrary;
 import org.terrier.structures.CollectionStatistics;
@@ -97,11 +98,13 @@ public class SingleTermOp extends Operator {
 		return rtr;
 	}
 	
+	@SuppressWarnings("unchecked")
 	public Pair<EntryStatistics,IterablePosting> getPostingIterator(Index index) throws IOException
 	{
 		Lexicon<String> lexicon = index.getLexicon();
 		LexiconEntry t = lexicon.getLexiconEntry(queryTerm);
-		PostingIndex<?> invertedIndex = index.getInvertedIndex();
+		//frequently requested posting lists may be obtained from the cache, if enabled
+		PostingIndex<?> invertedIndex = PostingListCache.wrap((PostingIndex<Pointer>) index.getInvertedIndex());
 		if (t == null) {
 			logger.debug("Term Not Found: " + queryTerm);
 			//previousTerm = false;	
@@ -0,0 +1,161 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is WildcardTermOp.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.matchops;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.terrier.structures.Index;
+import org.terrier.structures.KGramIndex;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.utility.ArrayUtils;
+
+/** A synonym class that matches the terms of the lexicon matching a wildcard pattern,
+ * where <tt>*</tt> matches any sequence of characters and <tt>?</tt> any single character, 
+ * e.g. <tt>#wildcard(*ing)</tt> or <tt>#wildcard(te*ch)</tt>. 
+ * <p>
+ * If the index has a {@link KGramIndex} structure named <tt>lexicon-kgram</tt> (see the 
+ * <tt>kgramindex</tt> command), the candidate terms are those containing all of the 
+ * k-grams of the pattern. Otherwise, the candidates are the range of the lexicon starting 
+ * with the characters before the first wildcard - which is the entire lexicon for a
+ * leading wildcard. In both cases, each candidate is then checked against the pattern, 
+ * and the postings of the matching terms are merged.
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class WildcardTermOp extends PrefixTermOp {
+
+	public static final String STRING_PREFIX = "#wildcard";
+	/** name of the k-gram index structure used, if present */
+	public static final String KGRAM_STRUCTURE = "lexicon-kgram";
+	private static final long serialVersionUID = 1L;
+	
+	final String pattern;
+	/** the characters before the first wildcard */
+	final String literalPrefix;
+	
+	public WildcardTermOp(String _pattern) {
+		super(_pattern);
+		this.pattern = _pattern;
+		int firstWildcard = 0;
+		while(firstWildcard < pattern.length() && ! isWildcard(pattern.charAt(firstWildcard)))
+			firstWildcard++;
+		this.literalPrefix = pattern.substring(0, firstWildcard);
+		final Pattern regex = toRegex(pattern);
+		super.predFunction = (t -> regex.matcher(t).matches());
+	}
+	
+	static boolean isWildcard(char c)
+	{
+		return c == KGramIndex.MANY || c == KGramIndex.ONE;
+	}
+	
+	/** Converts a wildcard pattern to an equivalent regular expression */
+	static Pattern toRegex(String pattern)
+	{
+		final StringBuilder regex = new StringBuilder();
+		int start = 0;
+		for(int i=0;i<=pattern.length();i++)
+		{
+			if (i == pattern.length() || isWildcard(pattern.charAt(i)))
+			{
+				if (i > start)
+					regex.append(Pattern.quote(pattern.substring(start, i)));
+				if (i < pattern.length())
+					regex.append(pattern.charAt(i) == KGramIndex.MANY ? ".*" : ".");
+				start = i+1;
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+	
+	@Override
+	public String toString() {
+		return STRING_PREFIX + "("+ArrayUtils.join(terms, ' ')+")";
+	}
+	
+	@Override
+	protected String getStartString(String search)
+	{
+		if (literalPrefix.length() == 0)
+			return String.valueOf(Character.MIN_VALUE);
+		return literalPrefix;
+	}
+	
+	@Override
+	protected String getEndString(String termLo)
+	{
+		if (literalPrefix.length() == 0)
+			return String.valueOf(Character.MAX_VALUE);
+		return termLo + Character.MAX_VALUE;
+	}
+	
+	/** Uses the k-gram index if available, otherwise the range of the literal prefix */
+	@Override
+	protected Iterator<Map.Entry<String,LexiconEntry>> getCandidateTerms(Index index, String termLo, String termHi) throws IOException
+	{
+		final Lexicon<String> lexicon = index.getLexicon();
+		if (index.hasIndexStructure(KGRAM_STRUCTURE))
+		{
+			final KGramIndex kgrams = (KGramIndex) index.getIndexStructure(KGRAM_STRUCTURE);
+			if (kgrams.getNumberOfTerms() != lexicon.numberOfEntries())
+			{
+				logger.warn(KGRAM_STRUCTURE + " has " + kgrams.getNumberOfTerms() + " terms but the lexicon has " 
+					+ lexicon.numberOfEntries() + " - ignoring it; use kgramindex to rebuild it");
+			}
+			else
+			{
+				final int[] candidates = kgrams.getCandidates(pattern);
+				if (candidates != null)
+					return new Iterator<Map.Entry<String,LexiconEntry>>() {
+						int i = 0;
+						
+						@Override
+						public boolean hasNext() {
+							return i < candidates.length;
+						}
+
+						@Override
+						public Map.Entry<String,LexiconEntry> next() {
+							if (i == candidates.length)
+								throw new NoSuchElementException();
+							return lexicon.getIthLexiconEntry(candidates[i++]);
+						}
+					};
+			}
+		}
+		else if (literalPrefix.length() == 0)
+		{
+			logger.warn("No " + KGRAM_STRUCTURE + " structure for " + this.toString() + ", all terms in the lexicon will be examined");
+		}
+		return super.getCandidateTerms(index, termLo, termHi);
+	}
+}
@@ -76,7 +76,25 @@ public class BM25 extends WeightingModel {
 				((k_3+1)*keyFrequency/(k_3+keyFrequency));
 	}
 
-	@Override 
+	/**
+	 * {@inheritDoc}. BM25 is increasing in tf and decreasing in document length,
+	 * so no document can score higher than one consisting only of maxtf occurrences
+	 * of the term. If maxtf is not recorded for the term, the limit of the tf
+	 * saturation function, (k_1 + 1), is used instead.
+	 */
+	@Override
+	public double getMaxScore() {
+		final int maxtf = es.getMaxFrequencyInDocuments();
+		final double score = (maxtf > 0 && maxtf != Integer.MAX_VALUE)
+			? score(maxtf, maxtf)
+			: WeightingModelLibrary.log((numberOfDocuments - documentFrequency + 0.5d) / (documentFrequency + 0.5d)) *
+				(k_1 + 1d) *
+				((k_3+1)*keyFrequency/(k_3+keyFrequency));
+		//terms with a negative idf can only have negative scores
+		return Math.max(0d, score);
+	}
+
+	@Override
 	public void prepare() {
 		if (rq != null) {
 			if (rq.hasControl("bm25.k_1")) {
@@ -164,6 +164,20 @@ public abstract class WeightingModel implements Model, Serializable, Cloneable {
 	 */
 	public abstract double score(double tf, double docLength);
 
+	/**
+	 * Returns an upper bound on the score that this model can assign to any
+	 * posting of the current term. This is used by dynamic pruning matching
+	 * strategies, such as {@link org.terrier.matching.daat.WAND}, and should
+	 * only be called after prepare(). The default implementation returns
+	 * Double.POSITIVE_INFINITY, i.e. no bound is known, and hence documents
+	 * containing this term will never be pruned.
+	 * @return an upper bound on score(tf, docLength) for the current term
+	 * @since 5.9
+	 */
+	public double getMaxScore() {
+		return Double.POSITIVE_INFINITY;
+	}
+
 
 	/**
 	 * Sets the c value
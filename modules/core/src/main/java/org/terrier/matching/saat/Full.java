@@ -0,0 +1,277 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is Full.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.saat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.MatchingQueryTerms.MatchingTerm;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.daat.CandidateResult;
+import org.terrier.matching.daat.CandidateResultSet;
+import org.terrier.matching.matchops.SingleTermOp;
+import org.terrier.querying.Request;
+import org.terrier.structures.ImpactIndex;
+import org.terrier.structures.ImpactIndex.TermImpacts;
+import org.terrier.structures.ImpactIndexBuilder;
+import org.terrier.structures.Index;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.utility.ApplicationSetup;
+
+/**
+ * Performs score-at-a-time (SAAT) matching over the impact-ordered postings written by
+ * {@link ImpactIndexBuilder}, in the style of the JASS anytime retrieval system. The segments 
+ * of all query terms are processed in decreasing order of their impact (multiplied by the weight of 
+ * the query term), accumulating the impacts of each document. As the highest-impact postings are
+ * processed first, matching can be stopped early with little loss in effectiveness, once
+ * a budget of postings or of time has been exhausted; without a budget, all postings are processed.
+ * <p>
+ * Documents are scored by the sum of the quantised impacts of the query terms - the weighting models
+ * of the query terms are not used, as the impacts were computed when the index was restructured 
+ * (see the <tt>index.impact.wmodel</tt> index property). Only single terms are supported; other
+ * query operators, such as <tt>#syn</tt> or <tt>#1</tt>, as well as field-qualified terms, are ignored,
+ * as are term requirements.
+ * <p>
+ * <b>Properties</b>
+ * <ul>
+ * <li><tt>matching.saat.postings</tt> - default budget of postings to process for each query. 
+ * Defaults to 0, meaning unlimited. Can be overridden for a query by the <tt>saat.postings</tt> control.</li>
+ * <li><tt>matching.saat.time</tt> - default budget of time in milliseconds for each query. 
+ * Defaults to 0, meaning unlimited. Can be overridden for a query by the <tt>saat.time</tt> control.</li>
+ * </ul>
+ * Both budgets are checked before each segment is processed, so a budget can be exceeded by
+ * at most one segment.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class Full extends BaseMatching
+{
+	/** name of the control that sets the postings budget of a query */
+	public static final String CONTROL_POSTINGS = "saat.postings";
+	/** name of the control that sets the time budget of a query, in milliseconds */
+	public static final String CONTROL_TIME = "saat.time";
+
+	/** A segment of the impact-ordered postings of a query term */
+	static class Segment implements Comparable<Segment>
+	{
+		final int term;
+		final int length;
+		final double score;
+
+		Segment(int _term, int _length, double _score)
+		{
+			this.term = _term;
+			this.length = _length;
+			this.score = _score;
+		}
+
+		@Override
+		public int compareTo(Segment o) {
+			return Double.compare(o.score, this.score);
+		}
+	}
+
+	static final int PAGE_BITS = 16;
+	static final int PAGE_SIZE = 1 << PAGE_BITS;
+	static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	/** The score accumulators of a query, allocated in pages of 65536 documents when a document 
+	 * of the page is first accumulated. Only the accumulated documents are cleared after each
+	 * query, and the accumulators are then retained for reuse by the next query of the same thread. */
+	static final class Accumulators
+	{
+		float[][] scores = new float[0][];
+		int[] touched = new int[1024];
+		int numTouched = 0;
+
+		void ensurePages(int numberOfDocuments)
+		{
+			final int numPages = (numberOfDocuments >>> PAGE_BITS) + 1;
+			if (scores.length < numPages)
+				scores = Arrays.copyOf(scores, numPages);
+		}
+
+		void accumulate(int docid, float score)
+		{
+			final int page = docid >>> PAGE_BITS, offset = docid & PAGE_MASK;
+			float[] pageScores = scores[page];
+			if (pageScores == null)
+				pageScores = scores[page] = new float[PAGE_SIZE];
+			//impacts are positive, so a zero score has not been accumulated
+			if (pageScores[offset] == 0f)
+			{
+				if (numTouched == touched.length)
+					touched = Arrays.copyOf(touched, numTouched * 2);
+				touched[numTouched++] = docid;
+			}
+			pageScores[offset] += score;
+		}
+
+		float get(int docid)
+		{
+			return scores[docid >>> PAGE_BITS][docid & PAGE_MASK];
+		}
+
+		void reset()
+		{
+			for(int i=0;i<numTouched;i++)
+			{
+				final int docid = touched[i];
+				scores[docid >>> PAGE_BITS][docid & PAGE_MASK] = 0f;
+			}
+			numTouched = 0;
+		}
+	}
+
+	/** accumulators available for reuse by each thread */
+	static final ThreadLocal<Accumulators> AVAILABLE = ThreadLocal.withInitial(Accumulators::new);
+
+	final ImpactIndex impacts;
+
+	/** Create a new Matching instance based on the specified index, which must have an impact index structure */
+	public Full(Index index) 
+	{
+		super(index);
+		if (! index.hasIndexStructure(ImpactIndexBuilder.STRUCTURE_NAME))
+			throw new IllegalArgumentException("Index " + index + " has no " + ImpactIndexBuilder.STRUCTURE_NAME 
+				+ " structure - run bin/terrier impacts to create it");
+		impacts = (ImpactIndex) index.getIndexStructure(ImpactIndexBuilder.STRUCTURE_NAME);
+	}
+
+	static long getBudget(Request rq, String control, String property)
+	{
+		String value = rq != null ? rq.getControl(control, null) : null;
+		if (value == null || value.length() == 0)
+			value = ApplicationSetup.getProperty(property, "0");
+		return Long.parseLong(value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		final MatchingState state = initialise(queryTerms);
+		final long startTime = System.currentTimeMillis();
+		final long postingsBudget = getBudget(queryTerms.getRequest(), CONTROL_POSTINGS, "matching.saat.postings");
+		final long timeBudget = getBudget(queryTerms.getRequest(), CONTROL_TIME, "matching.saat.time");
+
+		//open the impacts of each term, and list their segments
+		final List<TermImpacts> terms = new ArrayList<>();
+		final List<Segment> segments = new ArrayList<>();
+		int maxLength = 0;
+		for(MatchingTerm mt : queryTerms.getMatchingTerms(BASE_MATCHING_TAG))
+		{
+			if (! (mt.getKey() instanceof SingleTermOp) || ((SingleTermOp) mt.getKey()).getField() != null)
+			{
+				logger.warn("Query term " + mt.getKey() + " is not a single term, it will not be matched by " + getInfo());
+				continue;
+			}
+			if (mt.getValue().getRequired() != null)
+				logger.warn("Requirement of query term " + mt.getKey() + " will be ignored by " + getInfo());
+			final double weight = mt.getValue().getWeight();
+			if (weight <= 0)
+				continue;
+			final LexiconEntry le = lexicon.getLexiconEntry(((SingleTermOp) mt.getKey()).getTerm());
+			if (le == null)
+				continue;
+			final TermImpacts ti = impacts.getImpacts(le.getTermId());
+			if (ti == null)
+				continue;
+			for(int i=0;i<ti.getNumberOfSegments();i++)
+			{
+				segments.add(new Segment(terms.size(), ti.getSegmentLength(i), ti.getImpact(i) * weight));
+				maxLength = Math.max(maxLength, ti.getSegmentLength(i));
+			}
+			terms.add(ti);
+		}
+		//stable sort, so that the segments of each term remain in decreasing impact order
+		segments.sort(null);
+
+		//process the segments, highest impact first, until a budget is exhausted
+		final Accumulators acc = AVAILABLE.get();
+		acc.ensurePages(collectionStatistics.getNumberOfDocuments());
+		final int[] docids = new int[maxLength];
+		long postings = 0;
+		int processed = 0;
+		final int k = state.numberOfRequestedDocuments;
+		final Queue<CandidateResult> candidateResultList = new PriorityQueue<CandidateResult>();
+		final int numTouched;
+		try{
+			for(Segment s : segments)
+			{
+				if (postingsBudget > 0 && postings >= postingsBudget)
+					break;
+				if (timeBudget > 0 && System.currentTimeMillis() - startTime >= timeBudget)
+					break;
+				final int length = terms.get(s.term).nextSegment(docids);
+				final float score = (float) s.score;
+				for(int i=0;i<length;i++)
+					acc.accumulate(docids[i], score);
+				postings += length;
+				processed++;
+			}
+			for(TermImpacts ti : terms)
+				ti.close();
+			logger.debug("Query " + queryNumber + " processed " + processed + " of " + segments.size() 
+				+ " segments, containing " + postings + " postings");
+	
+			//select the top-ranked documents
+			numTouched = acc.numTouched;
+			for(int i=0;i<numTouched;i++)
+			{
+				final int docid = acc.touched[i];
+				final float score = acc.get(docid);
+				if (k != 0 && candidateResultList.size() == k && score <= candidateResultList.peek().getScore())
+					continue;
+				CandidateResult cc = new CandidateResult(docid);
+				cc.updateScore(score);
+				candidateResultList.add(cc);
+				if (k != 0 && candidateResultList.size() > k)
+					candidateResultList.poll();
+			}
+		} finally {
+			acc.reset();
+		}
+		state.resultSet = new CandidateResultSet(candidateResultList);
+		state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+		finalise(state, /*sort=*/false);
+		state.resultSet.setExactResultSize(numTouched);
+		return state.resultSet;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "saat.Full";
+	}
+}
@@ -32,11 +32,13 @@ import java.io.IOException;
 import org.terrier.matching.AccumulatorResultSet;
 import org.terrier.matching.BaseMatching;
 import org.terrier.matching.CollectionResultSet;
+import org.terrier.matching.DenseAccumulatorResultSet;
 import org.terrier.matching.MatchingQueryTerms;
 import org.terrier.matching.PostingListManager;
 import org.terrier.matching.ResultSet;
 import org.terrier.structures.Index;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
 
 /** An exhaustive TAAT approach for matching documents to a query.
  * This Matching strategy uses the PostingListManager for opening
@@ -49,6 +51,8 @@ public class Full extends BaseMatching
 {
 	/** number of documents to warn about inefficient TAAT */
 	static final int WARN_DOCS = 4000000;
+	/** expected proportion of the collection matched by a query, above which dense accumulators are used */
+	static final double DENSE_COVERAGE = Double.parseDouble(ApplicationSetup.getProperty("matching.taat.dense.coverage", "0.05"));
 	
 	/** Create a new Matching instance based on the specified index */
 	public Full(Index index) 
@@ -71,6 +75,22 @@ public class Full extends BaseMatching
 
 	/** posting list manager opens and scores postings */
 	PostingListManager plm;
+
+	/** Creates the accumulators for the specified query. Dense accumulators are used when the sum of the
+	 * document frequencies of the query terms exceeds the proportion <tt>matching.taat.dense.coverage</tt>
+	 * (default 0.05) of the number of documents in the collection; otherwise, hash maps are used.
+	 * @since 5.9
+	 */
+	protected AccumulatorResultSet makeAccumulators(PostingListManager plm)
+	{
+		final int numberOfDocuments = collectionStatistics.getNumberOfDocuments();
+		long postings = 0;
+		for(int i=0; i< plm.size(); i++)
+			postings += plm.getStatistics(i).getDocumentFrequency();
+		if (postings > DENSE_COVERAGE * numberOfDocuments)
+			return new DenseAccumulatorResultSet(numberOfDocuments);
+		return new AccumulatorResultSet(numberOfDocuments);
+	}
 	
 	/** {@inheritDoc} */
 	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
@@ -90,45 +110,27 @@ public class Full extends BaseMatching
 		//a hook for subclasses
 		initialisePostings(state);
 
-		AccumulatorResultSet resultSet = new AccumulatorResultSet(collectionStatistics.getNumberOfDocuments());
-		state.resultSet = resultSet;
-		
 		//DO NOT prepare the posting lists for TAAT retrieval
 		plm.prepare(false);
+
+		AccumulatorResultSet resultSet = makeAccumulators(plm);
+		state.resultSet = resultSet;
 				
 		for(int i=0; i< plm.size(); i++)
 		{			
 			assignScores(state, i, resultSet, plm.getPosting(i));
 		}
 
-		resultSet.initialise();
 		plm.close();
-		state.numberOfRetrievedDocuments = resultSet.getExactResultSize();
 		final long requiredBitPattern = plm.getRequiredBitMask();
 		final long requiredNegBitPattern = plm.getNegRequiredBitMask();
-		if (requiredBitPattern > 0 || requiredNegBitPattern > 0)
-		{	
-			final short[] masks = resultSet.getOccurrences();
-			final double[] scores = resultSet.getScores();
-			for(int i=0;i<resultSet.getResultSize();i++)
-			{
-				if ( requiredBitPattern > 0 && ((masks[i] & requiredBitPattern) != requiredBitPattern))
-				{
-//					System.err.println("Document " + resultSet.getDocids()[i] 
-//							+ " was discarded as it didnt match required bit pattern, required " + requiredBitPattern + " was "
-//							+  masks[i]);
-					scores[i] = Double.NEGATIVE_INFINITY;
-				}
-				if ( requiredNegBitPattern > 0 && ((masks[i] & requiredNegBitPattern) > 0))
-				{
-//					System.err.println("Document " + resultSet.getDocids()[i] 
-//							+ " was discarded as it matched the required neg bit pattern, required " + requiredNegBitPattern + " was "
-//							+  masks[i]);
-					scores[i] = Double.NEGATIVE_INFINITY;
-				}
-			}
-		}
-		finalise(state);
+		//only the documents that can be retrieved are sorted, discarding those not meeting the requirements
+		resultSet.initialise(state.numberOfRequestedDocuments, 
+			requiredBitPattern == 0 && requiredNegBitPattern == 0
+			? null
+			: mask -> (mask & requiredBitPattern) == requiredBitPattern && (mask & requiredNegBitPattern) == 0);
+		state.numberOfRetrievedDocuments = resultSet.getExactResultSize();
+		finalise(state, /*sort=*/false);
 		if (logger.isDebugEnabled())
 			logger.debug("Time to match "+state.numberOfRetrievedDocuments+" results: " + (System.currentTimeMillis() - starttime) + "ms");
 		return resultSet;
@@ -148,13 +150,12 @@ public class Full extends BaseMatching
 			score = plm.score(i);
 			docid = postings.getId();
 			//logger.info("Docid=" + docid + " score=" + score);
-			if ((!rs.scoresMap.contains(docid)) && (score != Double.NEGATIVE_INFINITY))
+			if ((!rs.isAccumulated(docid)) && (score != Double.NEGATIVE_INFINITY))
 				state.numberOfRetrievedDocuments++;
-			else if ((rs.scoresMap.contains(docid)) && (score == Double.NEGATIVE_INFINITY))
+			else if ((rs.isAccumulated(docid)) && (score == Double.NEGATIVE_INFINITY))
 				state.numberOfRetrievedDocuments--;
 
-			rs.scoresMap.adjustOrPutValue(docid, score, score);
-			rs.occurrencesMap.put(docid, (short)(rs.occurrencesMap.get(docid) | mask));
+			rs.accumulate(docid, score, mask);
 		}
 	}
 
@@ -55,6 +55,7 @@ import org.terrier.matching.models.WeightingModelFactory;
 import org.terrier.querying.parser.Query;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexFactory;
+import org.terrier.structures.Snapshotable;
 import org.terrier.utility.ApplicationSetup;
 /**
   * This class is responsible for handling/co-ordinating the main high-level
@@ -391,7 +392,8 @@ public class LocalManager implements Manager
 		 * name specified in the passed Request object. Caches already 
 		  * instantiated matching models in Map Cache_Matching.
 		  * If the matching model name doesn't contain '.', then NAMESPACE_MATCHING
-		  * is prefixed to the name. 
+		  * is prefixed to the name. Matching models are not cached for a {@link Snapshotable} 
+		  * index, as each query searches a new snapshot of it.
 		  * @param rq The request indicating the Matching class, and the corresponding
 		  * instance to use
 		  * @return null If an error occurred obtaining the matching class
@@ -418,10 +420,13 @@ public class LocalManager implements Manager
 			ModelName = entireSequence.substring(0,entireSequence.length() -1);
 			logger.debug("Using Matching as " + ModelName);
 			//check for already instantiated class
+			final boolean cacheable = ! (_index instanceof Snapshotable);
 			Map<String, Matching> indexMap = Cache_Matching.get(_index);
 			if (indexMap == null)
 			{
-				Cache_Matching.put(_index, indexMap = new HashMap<String, Matching>());
+				indexMap = new HashMap<String, Matching>();
+				if (cacheable)
+					Cache_Matching.put(_index, indexMap);
 			}
 			else
 			{
@@ -468,7 +473,7 @@ public class LocalManager implements Manager
 					}
 				}
 			}
-			Cache_Matching.get(_index).put(ModelName, rtr);
+			indexMap.put(ModelName, rtr);
 			return rtr;
 		}
 		
@@ -858,6 +863,9 @@ public class LocalManager implements Manager
 	{	
 		Request rq = (Request)srq;
 		final long starttime = System.currentTimeMillis();
+		//an index that changes is searched using one snapshot for the whole query
+		if (rq.getIndex() instanceof Snapshotable)
+			rq.setIndex(((Snapshotable) rq.getIndex()).snapshot());
 		logger.info("Starting to execute query " + srq.getQueryID() + " - " + srq.getOriginalQuery());
 		boolean mqtObtained = rq.getMatchingQueryTerms() != null;
 		boolean hasRawQuery = rq.getOriginalQuery() != null;
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
@@ -52,6 +53,7 @@ import org.slf4j.LoggerFactory;
 import org.terrier.sorting.HeapSortInt;
 import org.terrier.structures.collections.FSOrderedMapFile;
 import org.terrier.structures.collections.OrderedMap;
+import org.terrier.structures.collections.PerfectHashMapFile;
 import org.terrier.structures.seralization.FixedSizeIntWritableFactory;
 import org.terrier.structures.seralization.FixedSizeTextFactory;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
@@ -159,6 +161,11 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 			//logger.debug("Lookup of offset of meta record for doc "+ docid + " gave offset "+ offset);
 			return offset;
 		}
+
+		@Override
+		public void readPointer(int docid, OffsetPointer p) throws IOException {
+			this.parent.readPointer(docid, p);
+		}
 		
 		public void close() throws IOException {
 			parent.close();
@@ -236,6 +243,196 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 		}		
 	}
 	
+	/** Reads the offsets directly from a memory-mapped lookup file. The offsets
+	 * consume no heap, and as lookups are absolute reads of the mapped buffers,
+	 * no synchronization is needed. Use index.STRUCTURE.index-source=mmap */
+	@ConcurrentReadable
+	static class MappedDocid2OffsetLookup implements Docid2OffsetLookup
+	{
+		/** each mapped segment holds 2^27 offsets, i.e. 1GB of the lookup file */
+		static final int SEGMENT_BITS = 27;
+		static final int SEGMENT_MASK = (1 << SEGMENT_BITS) -1;
+		
+		final RandomAccessFile file;
+		final LongBuffer[] segments;
+		protected final long fileLength;
+		protected final int docidCount;
+		
+		public MappedDocid2OffsetLookup(RandomAccessFile _file, int _docCount, long _fileLength) throws IOException
+		{
+			file = _file;
+			docidCount = _docCount;
+			fileLength = _fileLength;
+			final FileChannel channel = file.getChannel();
+			segments = new LongBuffer[(int) (((long)docidCount + SEGMENT_MASK) >>> SEGMENT_BITS)];
+			for(int i=0;i<segments.length;i++)
+			{
+				final long start = (long)i << SEGMENT_BITS;
+				final long count = Math.min(SEGMENT_MASK+1, docidCount - start);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start * Long.BYTES, count * Long.BYTES).asLongBuffer();
+			}
+		}
+		
+		public final long getOffset(final int docid)
+		{
+			return segments[docid >>> SEGMENT_BITS].get(docid & SEGMENT_MASK);
+		}
+		
+		public final int getLength(final int docid)
+		{
+			return (docid+1)==docidCount 
+				? (int)(fileLength - getOffset(docid))
+				: (int)(getOffset(docid+1) - getOffset(docid));
+		}
+		
+		@Override
+		public void readPointer(final int docid, OffsetPointer p)
+		{
+			p.offset = getOffset(docid);
+			p.length = (docid+1)==docidCount 
+				? (int)(fileLength - p.offset)
+				: (int)(getOffset(docid+1) - p.offset);
+		}
+		
+		public void close() throws IOException
+		{
+			file.close();
+		}
+	}
+	
+	/** Holds the offsets in memory, Elias-Fano encoded. As the offsets are 
+	 * monotonically increasing and bounded by the data file length, this needs
+	 * approximately 2+log2(dataFileLength/entries) bits per entry, rather than 
+	 * the 64 bits of {@link ArrayDocid2OffsetLookup}. Lookups are read-only, 
+	 * and hence need no synchronization. Use index.STRUCTURE.index-source=eliasfano */
+	@ConcurrentReadable
+	static class EliasFanoDocid2OffsetLookup implements Docid2OffsetLookup
+	{
+		/** the position of every 256th set bit of the upper bits is sampled */
+		static final int SAMPLE_BITS = 8;
+		static final int SAMPLE_MASK = (1 << SAMPLE_BITS) -1;
+		
+		final long[] upperBits;
+		final long[] lowerBits;
+		final long[] samples;
+		final int lowerWidth;
+		final long lowerMask;
+		protected final long fileLength;
+		protected final int docidCount;
+		
+		public EliasFanoDocid2OffsetLookup(DataInputStream in, int _docCount, long _fileLength) throws IOException
+		{
+			docidCount = _docCount;
+			fileLength = _fileLength;
+			final long ratio = docidCount == 0 ? 0 : fileLength / docidCount;
+			lowerWidth = ratio == 0 ? 0 : 63 - Long.numberOfLeadingZeros(ratio);
+			lowerMask = (1L << lowerWidth) -1;
+			upperBits = new long[(int) ((docidCount + (fileLength >>> lowerWidth) + 64) >>> 6)];
+			lowerBits = new long[(int) (((long)docidCount * lowerWidth + 63) >>> 6)];
+			samples = new long[(docidCount >>> SAMPLE_BITS) + 1];
+			long last = 0;
+			for(int i=0;i<docidCount;i++)
+			{
+				final long offset = in.readLong();
+				if (offset < last || offset > fileLength)
+					throw new IOException("Lookup offset " + offset + " for entry " + i + " is out of order");
+				last = offset;
+				if (lowerWidth > 0)
+				{
+					final long bitPos = (long)i * lowerWidth;
+					final int word = (int) (bitPos >>> 6);
+					final int shift = (int) (bitPos & 63);
+					final long low = offset & lowerMask;
+					lowerBits[word] |= low << shift;
+					if (shift + lowerWidth > 64)
+						lowerBits[word+1] |= low >>> (64 - shift);
+				}
+				final long pos = (offset >>> lowerWidth) + i;
+				upperBits[(int) (pos >>> 6)] |= 1L << (pos & 63);
+				if ((i & SAMPLE_MASK) == 0)
+					samples[i >>> SAMPLE_BITS] = pos;
+			}
+		}
+		
+		/** returns the position in upperBits of the set bit for the specified entry */
+		final long select(final int docid)
+		{
+			final long pos = samples[docid >>> SAMPLE_BITS];
+			int remaining = docid & SAMPLE_MASK;
+			int word = (int) (pos >>> 6);
+			long bits = upperBits[word] & (-1L << (pos & 63));
+			int count;
+			while(remaining >= (count = Long.bitCount(bits)))
+			{
+				remaining -= count;
+				bits = upperBits[++word];
+			}
+			for(;remaining > 0;remaining--)
+				bits &= bits -1;
+			return ((long)word << 6) + Long.numberOfTrailingZeros(bits);
+		}
+		
+		/** returns the position in upperBits of the next set bit at or after from */
+		final long nextSetBit(final long from)
+		{
+			int word = (int) (from >>> 6);
+			long bits = upperBits[word] & (-1L << (from & 63));
+			while(bits == 0)
+				bits = upperBits[++word];
+			return ((long)word << 6) + Long.numberOfTrailingZeros(bits);
+		}
+		
+		final long lower(final int docid)
+		{
+			if (lowerWidth == 0)
+				return 0;
+			final long bitPos = (long)docid * lowerWidth;
+			final int word = (int) (bitPos >>> 6);
+			final int shift = (int) (bitPos & 63);
+			long low = lowerBits[word] >>> shift;
+			if (shift + lowerWidth > 64)
+				low |= lowerBits[word+1] << (64 - shift);
+			return low & lowerMask;
+		}
+		
+		public final long getOffset(final int docid)
+		{
+			return ((select(docid) - docid) << lowerWidth) | lower(docid);
+		}
+		
+		public final int getLength(final int docid)
+		{
+			final OffsetPointer p = new OffsetPointer();
+			readPointer(docid, p);
+			return p.length;
+		}
+		
+		@Override
+		public void readPointer(final int docid, OffsetPointer p)
+		{
+			final long pos = select(docid);
+			p.offset = ((pos - docid) << lowerWidth) | lower(docid);
+			if ((docid+1)==docidCount)
+			{
+				p.length = (int)(fileLength - p.offset);
+			}
+			else
+			{
+				final long nextOffset = ((nextSetBit(pos+1) - docid - 1) << lowerWidth) | lower(docid+1);
+				p.length = (int)(nextOffset - p.offset);
+			}
+		}
+		
+		/** returns the approximate memory consumption, in bytes */
+		public long size()
+		{
+			return (long)(upperBits.length + lowerBits.length + samples.length) * Long.BYTES;
+		}
+		
+		public void close()
+		{}
+	}
+	
 	@ConcurrentReadable //its concurrent readable using getPointer()
 	static class OnDiskDocid2OffsetLookup implements Docid2OffsetLookup
     {
@@ -795,6 +992,9 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 		//use a reverse meta lookup, if possible
 		final int reverseId = key2reverseOffset.get(key) -1;
 		if (reverseId != -1) {
+			
+			if (reverseMetaMaps[reverseId] instanceof PerfectHashMapFile)
+				return ((PerfectHashMapFile)reverseMetaMaps[reverseId]).getInt(value);
 
 			final Text wKey = keyFactories[reverseId].newInstance();
 			wKey.set(value);
@@ -956,7 +1156,30 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 		long indexFileLength = Files.length(indexFilename);
 		long dataFileLength = Files.length(dataFilename);
 		
-		if (indexSource.equals("fileinmem"))
+		if (indexSource.equals("mmap"))
+		{
+			RandomDataInput rfi = Files.openFileRandom(indexFilename);
+			if (rfi instanceof RandomAccessFile)
+			{
+				logger.info("Structure "+ structureName + " memory-mapping lookup file");
+				offsetLookup = new MappedDocid2OffsetLookup((RandomAccessFile)rfi, length, dataFileLength);
+			}
+			else
+			{
+				logger.warn("Structure "+ structureName + " lookup file cannot be memory-mapped, reading directly from disk");
+				offsetLookup = new OnDiskDocid2OffsetLookup(new RandomDataInputAccessor(rfi), length, dataFileLength);
+			}
+		}
+		else if (indexSource.equals("eliasfano"))
+		{
+			DataInputStream dis = new DataInputStream(Files.openFileStream(indexFilename));
+			EliasFanoDocid2OffsetLookup efLookup = new EliasFanoDocid2OffsetLookup(dis, length, dataFileLength);
+			dis.close();
+			logger.info("Structure "+ structureName + " read lookup file into memory as Elias-Fano, using " 
+				+ BinaryByteUnit.format(efLookup.size()) + " rather than " + BinaryByteUnit.format(indexFileLength));
+			offsetLookup = efLookup;
+		}
+		else if (indexSource.equals("fileinmem"))
 		{
 			logger.info("Structure "+ structureName + " reading lookup file into memory");
 			if (indexFileLength < Integer.MAX_VALUE)
@@ -1003,7 +1226,7 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 			}	
 		} else {
 			logger.warn("Structure "+ structureName + " reading lookup file directly from disk (SLOW) - try index."
-					+ structureName+".index-source=fileinmem in the index properties file. " 
+					+ structureName+".index-source=fileinmem or mmap in the index properties file. " 
 					+ BinaryByteUnit.format(indexFileLength) +" of memory would be required.");
 			//logger.debug("Metadata lookup will be read directly from disk: "+ length +" entries, size "+ dataFileLength + " bytes");
 			RandomDataInput rfi = Files.openFileRandom(indexFilename);
@@ -1058,6 +1281,12 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 			keyFactories[i] = new FixedSizeTextFactory(key2stringlength.get(keyName));
 			
 			String loadFormat = index.getIndexProperty("index."+structureName+".reverse."+keyName+".in-mem", "false");
+			final String mphFilename = path+ApplicationSetup.FILE_SEPARATOR+prefix+"."+structureName+"-"+i+PerfectHashMapFile.USUAL_EXTENSION;
+			if (loadFormat.equals("mph") && ! Files.exists(mphFilename))
+			{
+				logger.warn("File " + mphFilename + " containing perfect hash for key " + keyName + " is missing, reading reverse map directly from disk");
+				loadFormat = "false";
+			}
 			if (loadFormat.equals("hashmap"))
 			{
 				logger.info("Structure "+ structureName + " reading reverse map for key "+ keyName + " into memory as hashmap");
@@ -1077,6 +1306,11 @@ public abstract class BaseCompressingMetaIndex implements MetaIndex {
 						keyFactories[i], 
 						valueFactory);
 			}			
+			else if (loadFormat.equals("mph"))
+			{
+				logger.info("Structure "+ structureName + " memory-mapping perfect hash reverse map for key "+ keyName);
+				reverseMetaMaps[i] = new PerfectHashMapFile(mphFilename);
+			}
 			if (loadFormat.equals("false"))
 			{	
 				logger.info("Structure "+ structureName + " reading reverse map for key "+ keyName + " directly from disk");
@@ -4,6 +4,7 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Inflater;
 
 /** Implementation of BaseCompressingMetaIndex that uses Zlib deflate algorithm to compress entries */
+@ConcurrentReadable
 public class CompressingMetaIndex extends BaseCompressingMetaIndex {
 
 	/** thread-local cache of Inflaters to be re-used for decompression */
@@ -39,12 +39,11 @@ import com.jakewharton.byteunits.BinaryByteUnit;
 /** 
  * Document Index saved as a fixed size array
  */
+@ConcurrentReadable
 public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements DocumentIndex {
 	
 	protected static final Logger logger = LoggerFactory.getLogger(FSADocumentIndex.class);
 	
-	protected int lastDocid = -1;
-	protected DocumentIndexEntry lastEntry = null;
 	protected int[] docLengths;
 
 	static long freeMem()
@@ -131,13 +130,8 @@ public class FSADocumentIndex extends FSArrayFile<DocumentIndexEntry> implements
 	 */
 	public final DocumentIndexEntry getDocumentEntry(int docid) throws IOException 
 	{
-		if (docid == lastDocid)
-		{
-			return lastEntry;
-		}
 		try{
-			lastEntry = null;
-			return lastEntry = get(lastDocid = docid);
+			return get(docid);
 		} catch (NoSuchElementException nsee) {
 			return null;
 		}
@@ -33,10 +33,9 @@ import org.terrier.structures.collections.FSArrayFileInMem;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 
 /** A DocumentIndex implementation that loads everything in memory. It is not compatible with fields. */
+@ConcurrentReadable
 public class FSADocumentIndexInMem extends FSArrayFileInMem<DocumentIndexEntry> implements DocumentIndex 
 {
-	protected int lastDocid = -1;
-	protected DocumentIndexEntry lastEntry = null;
 	protected int[] docLengths;
 	@SuppressWarnings("unchecked")
 	public FSADocumentIndexInMem(IndexOnDisk index, String structureName) throws IOException
@@ -58,13 +57,8 @@ public class FSADocumentIndexInMem extends FSArrayFileInMem<DocumentIndexEntry>
 	}
 
 	public DocumentIndexEntry getDocumentEntry(int docid) throws IOException {
-		if (docid == lastDocid)
-		{
-			return lastEntry;
-		}
 		try{
-			lastEntry = null;
-			return lastEntry = get(lastDocid = docid);
+			return get(docid);
 		} catch (NoSuchElementException nsee) {
 			return null;
 		}
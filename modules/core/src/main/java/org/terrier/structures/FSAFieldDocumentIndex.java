@@ -33,6 +33,7 @@ import org.terrier.utility.TerrierTimer;
 /** 
  * Fields document index stored as a fixed size array
  */
+@ConcurrentReadable
 public class FSAFieldDocumentIndex
 	extends FSADocumentIndex
 	implements FieldDocumentIndex
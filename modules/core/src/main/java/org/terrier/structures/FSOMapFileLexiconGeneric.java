@@ -34,6 +34,7 @@ import java.util.Map.Entry;
 
 import org.apache.hadoop.io.WritableComparable;
 import org.terrier.structures.collections.FSOrderedMapFile;
+import org.terrier.structures.collections.OrderedMap;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.Files;
@@ -59,8 +60,10 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
         
         public int getIndex(int termid) throws IOException
         {
-            lexIdFile.seek(SIZE_OF_INT * (long)termid);
-            return lexIdFile.readInt();
+            //positional read, such that concurrent lookups do not share the file pointer
+            final byte[] b = new byte[(int)SIZE_OF_INT];
+            lexIdFile.readFullyDirect(b, SIZE_OF_INT * (long)termid, (int)SIZE_OF_INT);
+            return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
         }
         
         public void close() throws IOException
@@ -177,6 +180,49 @@ public abstract class FSOMapFileLexiconGeneric<K1,K2 extends WritableComparable>
         }
 		
 	}
+
+	/* The map file is never modified after construction, hence the lookups below
+	 * do not need to take the modificationLock of MapLexicon. */
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public LexiconEntry getLexiconEntry(K1 term)
+	{
+		K2 key = keyFactory.newInstance();
+		setK2(term, key);
+		return map.get(key);
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map.Entry<K1,LexiconEntry> getIthLexiconEntry(int index) 
+	{
+		if (! (map instanceof OrderedMap))
+			throw new UnsupportedOperationException();
+		return toStringEntry(((OrderedMap<K2, LexiconEntry>)map).get(index));
+	}
+	
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public Map.Entry<K1,LexiconEntry> getLexiconEntry(int termid)
+	{
+		int id;
+		try{
+			id = idlookup.getIndex(termid);
+		} catch (IOException ioe) {
+			return null;
+		}
+		if (id == -1)
+			return null;
+		return getIthLexiconEntry(id);
+	}
 	
 	/** 
 	 * Constructs a filename
@@ -0,0 +1,640 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FrontCodedLexicon.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.structures.seralization.FixedSizeWriteableFactory;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInput;
+
+/** A lexicon that stores its terms front-coded in blocks. Within each block of
+ * <tt>blockSize</tt> terms, the first term is written in full, and each subsequent term 
+ * as the length of the prefix it shares with the previous term followed by the remaining 
+ * suffix. Each term is followed by its {@link LexiconEntry}. Compared to the fixed-size 
+ * terms of an {@link FSOMapFileLexicon}, this is much smaller, particularly when 
+ * <tt>max.term.length</tt> is large.
+ * <p>
+ * The first term of every block is held in memory, forming a sparse index over the blocks. 
+ * A lookup binary searches this index, then decodes at most one block. Prefix and range 
+ * scans (e.g. for {@link org.terrier.matching.matchops.PrefixTermOp}) decode consecutive 
+ * blocks. The file is memory-mapped, and as lookups share no mutable state, this 
+ * lexicon can be used concurrently.
+ * <p>
+ * An existing index can be converted using the <tt>frontcodelexicon</tt> command.
+ * <p><b>Index properties:</b>
+ * <ul>
+ * <li><tt>index.STRUCTURE.block-size</tt> - number of terms in each block, as written. Defaults to 16.</li>
+ * </ul>
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+@ConcurrentReadable
+public class FrontCodedLexicon extends Lexicon<String> 
+{
+	static final Logger logger = LoggerFactory.getLogger(FrontCodedLexicon.class);
+	
+	/** extension of the lexicon file */
+	public static final String EXT = ".fcl";
+	/** the default number of terms in each block */
+	public static final int DEFAULT_BLOCK_SIZE = 16;
+	
+	static final int MAGIC = 0x46434c31;
+	static final int FOOTER_SIZE = 2 * Long.BYTES + 5 * Integer.BYTES;
+	/** each mapped window starts every 2^30 bytes, and overlaps the next by the longest block */
+	static final int WINDOW_BITS = 30;
+	static final int WINDOW_MASK = (1 << WINDOW_BITS) -1;
+	
+	final FixedSizeWriteableFactory<LexiconEntry> valueFactory;
+	final int numEntries;
+	final int blockSize;
+	final int entrySize;
+	/** offset of each block, and of the end of the last block */
+	final long[] blockOffsets;
+	/** first term of each block, in UTF-8 */
+	final byte[][] blockTerms;
+	/** null if termids are aligned with the entry numbers */
+	final int[] termid2index;
+	final ByteBuffer[] windows;
+	final Closeable file;
+	
+	/** Construct a new FrontCodedLexicon for the specified structure of an index */
+	@SuppressWarnings("unchecked")
+	public FrontCodedLexicon(String structureName, IndexOnDisk index) throws IOException
+	{
+		this(structureName, index.getPath(), index.getPrefix(), 
+			(FixedSizeWriteableFactory<LexiconEntry>)index.getIndexStructure(structureName+"-valuefactory"));
+	}
+	
+	/** Construct a new FrontCodedLexicon for the specified structure */
+	public FrontCodedLexicon(String structureName, String path, String prefix, 
+		FixedSizeWriteableFactory<LexiconEntry> _valueFactory) throws IOException
+	{
+		this(constructFilename(structureName, path, prefix), _valueFactory);
+	}
+	
+	/** Construct a new FrontCodedLexicon reading the specified file. The file is
+	 * memory-mapped if possible, or otherwise read into memory */
+	public FrontCodedLexicon(String filename, FixedSizeWriteableFactory<LexiconEntry> _valueFactory) throws IOException
+	{
+		this.valueFactory = _valueFactory;
+		final RandomDataInput rdi = Files.openFileRandom(filename);
+		final FileChannel channel;
+		final ByteBuffer contents;
+		final long length;
+		if (rdi instanceof RandomAccessFile)
+		{
+			channel = ((RandomAccessFile)rdi).getChannel();
+			contents = null;
+			length = channel.size();
+			file = rdi;
+		}
+		else
+		{
+			logger.warn("File " + filename + " cannot be memory-mapped, reading into memory");
+			rdi.close();
+			length = Files.length(filename);
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("File " + filename + " is too large to read into memory");
+			final byte[] bytes = new byte[(int)length];
+			DataInputStream dis = new DataInputStream(Files.openFileStream(filename));
+			dis.readFully(bytes);
+			dis.close();
+			channel = null;
+			contents = ByteBuffer.wrap(bytes);
+			file = () -> {};
+		}
+		if (length < FOOTER_SIZE)
+			throw new IOException("File " + filename + " is not a " + FrontCodedLexicon.class.getSimpleName());
+		
+		final ByteBuffer footer = region(channel, contents, length - FOOTER_SIZE, FOOTER_SIZE);
+		final long offsetsStart = footer.getLong();
+		final long idsStart = footer.getLong();
+		numEntries = footer.getInt();
+		blockSize = footer.getInt();
+		final int maxBlockLength = footer.getInt();
+		entrySize = footer.getInt();
+		if (footer.getInt() != MAGIC)
+			throw new IOException("File " + filename + " is not a " + FrontCodedLexicon.class.getSimpleName());
+		if (numEntries > 0 && entrySize != valueFactory.getSize())
+			throw new IOException("File " + filename + " has lexicon entries of " + entrySize 
+				+ " bytes, but " + valueFactory.getClass().getName() + " expects " + valueFactory.getSize());
+		
+		final int numBlocks = (int) (((long)numEntries + blockSize -1) / blockSize);
+		blockOffsets = new long[numBlocks+1];
+		region(channel, contents, offsetsStart, (long)numBlocks * Long.BYTES).asLongBuffer().get(blockOffsets, 0, numBlocks);
+		blockOffsets[numBlocks] = offsetsStart;
+		
+		if (idsStart == -1)
+		{
+			termid2index = null;
+		}
+		else
+		{
+			final ByteBuffer ids = region(channel, contents, idsStart, Integer.BYTES);
+			termid2index = new int[ids.getInt()];
+			region(channel, contents, idsStart + Integer.BYTES, (long)termid2index.length * Integer.BYTES).asIntBuffer().get(termid2index);
+		}
+		
+		windows = new ByteBuffer[(int) ((offsetsStart + WINDOW_MASK) >>> WINDOW_BITS)];
+		for(int i=0;i<windows.length;i++)
+		{
+			final long start = (long)i << WINDOW_BITS;
+			windows[i] = region(channel, contents, start, Math.min(offsetsStart - start, (long)WINDOW_MASK + 1 + maxBlockLength));
+		}
+		
+		blockTerms = new byte[numBlocks][];
+		for(int b=0;b<numBlocks;b++)
+		{
+			final ByteBuffer window = windows[(int) (blockOffsets[b] >>> WINDOW_BITS)].duplicate();
+			window.position((int) (blockOffsets[b] & WINDOW_MASK));
+			blockTerms[b] = new byte[readVInt(window)];
+			window.get(blockTerms[b]);
+		}
+	}
+	
+	static ByteBuffer region(FileChannel channel, ByteBuffer contents, long start, long length) throws IOException
+	{
+		if (channel != null)
+			return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+		final ByteBuffer rtr = contents.duplicate();
+		rtr.position((int)start).limit((int) (start + length));
+		return rtr.slice();
+	}
+	
+	static int readVInt(ByteBuffer in)
+	{
+		int value = 0;
+		int shift = 0;
+		byte b;
+		while((b = in.get()) < 0)
+		{
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		return value | (b << shift);
+	}
+	
+	/** compares the first length bytes of a with b, as unsigned bytes */
+	static int compare(byte[] a, int length, byte[] b)
+	{
+		final int min = Math.min(length, b.length);
+		for(int i=0;i<min;i++)
+		{
+			final int diff = (a[i] & 0xff) - (b[i] & 0xff);
+			if (diff != 0)
+				return diff;
+		}
+		return length - b.length;
+	}
+	
+	static int commonPrefix(byte[] a, byte[] b)
+	{
+		final int min = Math.min(a.length, b.length);
+		int i = 0;
+		while(i < min && a[i] == b[i])
+			i++;
+		return i;
+	}
+	
+	/** returns the last block whose first term is not after the specified term, or -1 */
+	int findBlock(byte[] term)
+	{
+		int low = 0;
+		int high = blockTerms.length -1;
+		while(low <= high)
+		{
+			final int mid = (low + high) >>> 1;
+			final int cmp = compare(blockTerms[mid], blockTerms[mid].length, term);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return high;
+	}
+	
+	/** Decodes the terms and entries of consecutive blocks. Not thread-safe, hence
+	 * each lookup uses its own cursor. */
+	final class Cursor
+	{
+		int block;
+		byte[] data;
+		int pos;
+		/** index of the entry whose term was last read */
+		int index;
+		int end;
+		byte[] term = new byte[32];
+		int termLength;
+		final DataInputBuffer entryInput = new DataInputBuffer();
+		
+		Cursor(int _block)
+		{
+			index = _block * blockSize -1;
+			loadBlock(_block);
+		}
+		
+		void loadBlock(int _block)
+		{
+			block = _block;
+			final long offset = blockOffsets[block];
+			data = new byte[(int) (blockOffsets[block+1] - offset)];
+			final ByteBuffer window = windows[(int) (offset >>> WINDOW_BITS)].duplicate();
+			window.position((int) (offset & WINDOW_MASK));
+			window.get(data);
+			pos = 0;
+			end = Math.min(numEntries, (block+1) * blockSize);
+		}
+		
+		/** moves to the next term, skipping the entry of the current one if it was not read */
+		boolean nextTerm()
+		{
+			if (index+1 == numEntries)
+				return false;
+			if (index+1 == end)
+				loadBlock(block+1);
+			index++;
+			if (index % blockSize == 0)
+			{
+				termLength = readVInt();
+				ensureCapacity(termLength);
+				System.arraycopy(data, pos, term, 0, termLength);
+				pos += termLength;
+			}
+			else
+			{
+				pos += entrySize;
+				final int prefixLength = readVInt();
+				final int suffixLength = readVInt();
+				termLength = prefixLength + suffixLength;
+				ensureCapacity(termLength);
+				System.arraycopy(data, pos, term, prefixLength, suffixLength);
+				pos += suffixLength;
+			}
+			return true;
+		}
+		
+		void ensureCapacity(int length)
+		{
+			if (term.length < length)
+				term = java.util.Arrays.copyOf(term, Math.max(length, 2 * term.length));
+		}
+		
+		int readVInt()
+		{
+			int value = 0;
+			int shift = 0;
+			byte b;
+			while((b = data[pos++]) < 0)
+			{
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			}
+			return value | (b << shift);
+		}
+		
+		/** reads the entry of the current term */
+		LexiconEntry entry()
+		{
+			final LexiconEntry le = valueFactory.newInstance();
+			entryInput.reset(data, pos, entrySize);
+			try{
+				le.readFields(entryInput);
+			} catch (IOException ioe) {
+				throw new java.io.UncheckedIOException(ioe);
+			}
+			return le;
+		}
+		
+		String termString()
+		{
+			return new String(term, 0, termLength, StandardCharsets.UTF_8);
+		}
+		
+		Map.Entry<String,LexiconEntry> current()
+		{
+			return new LexiconFileEntry<String>(termString(), entry());
+		}
+	}
+	
+	/** Iterates through the terms from the current position of a cursor, until the term to, exclusive */
+	final class RangeIterator implements Iterator<Map.Entry<String,LexiconEntry>>
+	{
+		final Cursor cursor;
+		final byte[] to;
+		boolean hasNext;
+		
+		/** the cursor must be positioned on the first term to return, if any */
+		RangeIterator(Cursor _cursor, boolean _hasNext, byte[] _to)
+		{
+			cursor = _cursor;
+			to = _to;
+			hasNext = _hasNext && (to == null || compare(cursor.term, cursor.termLength, to) < 0);
+		}
+		
+		@Override
+		public boolean hasNext()
+		{
+			return hasNext;
+		}
+		
+		@Override
+		public Map.Entry<String,LexiconEntry> next()
+		{
+			if (! hasNext)
+				throw new NoSuchElementException();
+			final Map.Entry<String,LexiconEntry> rtr = cursor.current();
+			hasNext = cursor.nextTerm() && (to == null || compare(cursor.term, cursor.termLength, to) < 0);
+			return rtr;
+		}
+	}
+	
+	@Override
+	public int numberOfEntries()
+	{
+		return numEntries;
+	}
+
+	@Override
+	public LexiconEntry getLexiconEntry(String term)
+	{
+		final byte[] key = term.getBytes(StandardCharsets.UTF_8);
+		final int block = findBlock(key);
+		if (block == -1)
+			return null;
+		final Cursor cursor = new Cursor(block);
+		final int blockEnd = cursor.end;
+		while(cursor.index+1 < blockEnd && cursor.nextTerm())
+		{
+			final int cmp = compare(cursor.term, cursor.termLength, key);
+			if (cmp == 0)
+				return cursor.entry();
+			if (cmp > 0)
+				return null;
+		}
+		return null;
+	}
+
+	@Override
+	public Map.Entry<String,LexiconEntry> getLexiconEntry(int termid)
+	{
+		final int index;
+		if (termid2index == null)
+			index = termid;
+		else if (termid < 0 || termid >= termid2index.length)
+			return null;
+		else
+			index = termid2index[termid];
+		if (index < 0 || index >= numEntries)
+			return null;
+		return getIthLexiconEntry(index);
+	}
+
+	@Override
+	public Map.Entry<String,LexiconEntry> getIthLexiconEntry(int index)
+	{
+		if (index < 0 || index >= numEntries)
+			throw new NoSuchElementException("No entry " + index + " in lexicon of " + numEntries + " entries");
+		final Cursor cursor = new Cursor(index / blockSize);
+		while(cursor.index < index)
+			cursor.nextTerm();
+		return cursor.current();
+	}
+
+	@Override
+	public Iterator<Map.Entry<String,LexiconEntry>> getLexiconEntryRange(String from, String to)
+	{
+		final byte[] fromKey = from.getBytes(StandardCharsets.UTF_8);
+		if (numEntries == 0)
+			return new RangeIterator(null, false, null);
+		final Cursor cursor = new Cursor(Math.max(0, findBlock(fromKey)));
+		boolean found;
+		while((found = cursor.nextTerm()) && compare(cursor.term, cursor.termLength, fromKey) < 0);
+		return new RangeIterator(cursor, found, to.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@Override
+	public Iterator<Map.Entry<String,LexiconEntry>> iterator()
+	{
+		if (numEntries == 0)
+			return new RangeIterator(null, false, null);
+		final Cursor cursor = new Cursor(0);
+		return new RangeIterator(cursor, cursor.nextTerm(), null);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	/** Constructs the filename of the specified lexicon structure */
+	public static String constructFilename(String structureName, String path, String prefix)
+	{
+		return path + ApplicationSetup.FILE_SEPARATOR + prefix + "." + structureName + EXT;
+	}
+	
+	/** Registers a FrontCodedLexicon in the specified index. The lexicon entry 
+	 * value factory, <tt>STRUCTURE-valuefactory</tt>, must already exist.
+	 */
+	public static void addLexiconToIndex(IndexOnDisk index, String structureName, int blockSize)
+	{
+		index.addIndexStructure(
+			structureName, 
+			FrontCodedLexicon.class.getName(),
+			"java.lang.String,org.terrier.structures.IndexOnDisk",
+			"structureName,index");
+		index.addIndexStructureInputStream(
+			structureName, 
+			FrontCodedLexicon.InputStream.class.getName(),
+			"java.lang.String,org.terrier.structures.IndexOnDisk",
+			"structureName,index");
+		index.addIndexStructureInputStream(
+			structureName+"-entry", 
+			FrontCodedLexicon.EntryInputStream.class.getName(),
+			"java.lang.String,org.terrier.structures.IndexOnDisk",
+			"structureName,index");
+		index.setIndexProperty("index."+structureName+".block-size", String.valueOf(blockSize));
+	}
+	
+	/** Iterates through all terms and entries of a FrontCodedLexicon */
+	public static class InputStream implements Iterator<Map.Entry<String,LexiconEntry>>, Closeable
+	{
+		final FrontCodedLexicon lexicon;
+		final Iterator<Map.Entry<String,LexiconEntry>> parent;
+		
+		public InputStream(String structureName, IndexOnDisk index) throws IOException
+		{
+			lexicon = new FrontCodedLexicon(structureName, index);
+			parent = lexicon.iterator();
+		}
+		
+		@Override
+		public boolean hasNext() 
+		{
+			return parent.hasNext();
+		}
+		
+		@Override
+		public Map.Entry<String,LexiconEntry> next()
+		{
+			return parent.next();
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			lexicon.close();
+		}
+	}
+	
+	/** Iterates through all entries of a FrontCodedLexicon */
+	public static class EntryInputStream implements Iterator<LexiconEntry>, Closeable
+	{
+		final InputStream parent;
+		
+		public EntryInputStream(String structureName, IndexOnDisk index) throws IOException
+		{
+			parent = new InputStream(structureName.replaceFirst("-entry$", ""), index);
+		}
+		
+		@Override
+		public boolean hasNext() 
+		{
+			return parent.hasNext();
+		}
+		
+		@Override
+		public LexiconEntry next()
+		{
+			return parent.next().getValue();
+		}
+		
+		@Override
+		public void close() throws IOException
+		{
+			parent.close();
+		}
+	}
+	
+	/** Converts the lexicon of an existing index into a FrontCodedLexicon */
+	public static void convert(IndexOnDisk index, String structureName, int blockSize) throws IOException
+	{
+		logger.info("Converting " + structureName + " of " + index.toString() + " to " + FrontCodedLexicon.class.getSimpleName());
+		final String tmpFilename = constructFilename(structureName + "-tmp", index.getPath(), index.getPrefix());
+		@SuppressWarnings("unchecked")
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream(structureName);
+		FrontCodedLexiconOutputStream lexOut = new FrontCodedLexiconOutputStream(tmpFilename, blockSize);
+		while(lexIn.hasNext())
+		{
+			Map.Entry<String,LexiconEntry> lee = lexIn.next();
+			lexOut.writeNextEntry(lee.getKey(), lee.getValue());
+		}
+		IndexUtil.close(lexIn);
+		lexOut.close();
+		
+		final String oldClass = index.getIndexProperty("index."+structureName+".class", "");
+		if (oldClass.equals(FSOMapFileLexicon.class.getName()))
+			FSOMapFileLexicon.deleteMapFileLexicon(structureName, index.getPath(), index.getPrefix());
+		else if (oldClass.equals(FrontCodedLexicon.class.getName()))
+			Files.delete(constructFilename(structureName, index.getPath(), index.getPrefix()));
+		else
+			logger.warn("Files of previous " + structureName + " structure (" + oldClass + ") were not deleted");
+		Files.rename(tmpFilename, constructFilename(structureName, index.getPath(), index.getPrefix()));
+		addLexiconToIndex(index, structureName, blockSize);
+		index.flush();
+		logger.info("Converted " + lexOut.getNumberOfTermsWritten() + " terms");
+	}
+	
+	/** Converts the lexicon of the default index into a FrontCodedLexicon */
+	public static class Command extends CLIParsedCLITool {
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public String commandname() {
+			return "frontcodelexicon";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "rewrites the lexicon of an existing index as a smaller, front-coded lexicon";
+		}
+
+		@Override
+		protected Options getOptions() {
+			Options options = super.getOptions();
+			options.addOption(Option.builder("b")
+					.argName("blocksize")
+					.longOpt("blocksize")
+					.hasArg()
+					.desc("number of terms in each front-coded block, defaults to " + DEFAULT_BLOCK_SIZE)
+					.build());
+			return options;
+		}
+
+		@Override
+		public int run(CommandLine line) throws Exception {
+			IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+			IndexOnDisk index = IndexOnDisk.createIndex();
+			if (index == null)
+			{
+				System.err.println("Sorry, no index could be found in default location: " + IndexOnDisk.getLastIndexLoadError());
+				return 1;
+			}
+			int blockSize = line.hasOption("b")
+				? Integer.parseInt(line.getOptionValue("b"))
+				: DEFAULT_BLOCK_SIZE;
+			convert(index, "lexicon", blockSize);
+			index.close();
+			return 0;
+		}
+	}
+}
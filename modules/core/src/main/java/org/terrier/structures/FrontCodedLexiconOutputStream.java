@@ -0,0 +1,167 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FrontCodedLexiconOutputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.terrier.utility.Files;
+
+/** Writes a {@link FrontCodedLexicon}. Terms must be written in increasing order of
+ * their UTF-8 bytes, i.e. the same order as an {@link FSOMapFileLexicon}. 
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class FrontCodedLexiconOutputStream extends LexiconOutputStream<String> 
+{
+	protected final DataOutputStream out;
+	protected final DataOutputBuffer block = new DataOutputBuffer();
+	protected final int blockSize;
+	protected final TLongArrayList blockOffsets = new TLongArrayList();
+	protected final TIntArrayList termids = new TIntArrayList();
+	protected boolean termidsAligned = true;
+	protected long offset = 0;
+	protected int maxBlockLength = 0;
+	protected int entrySize = -1;
+	protected byte[] lastTerm = new byte[0];
+	
+	/** Constructs a new output stream for the specified structure */
+	public FrontCodedLexiconOutputStream(String path, String prefix, String structureName, int _blockSize) throws IOException
+	{
+		this(FrontCodedLexicon.constructFilename(structureName, path, prefix), _blockSize);
+	}
+	
+	/** Constructs a new output stream writing to the specified file */
+	public FrontCodedLexiconOutputStream(String filename, int _blockSize) throws IOException
+	{
+		if (_blockSize < 1)
+			throw new IllegalArgumentException("Block size must be positive");
+		out = new DataOutputStream(new BufferedOutputStream(Files.writeFileStream(filename)));
+		blockSize = _blockSize;
+	}
+
+	@Override
+	public int writeNextEntry(String _key, LexiconEntry _value) throws IOException 
+	{
+		final byte[] term = _key.getBytes(StandardCharsets.UTF_8);
+		final int position = numTermsWritten % blockSize;
+		final int startLength = block.getLength();
+		if (position == 0)
+		{
+			if (numTermsWritten > 0 && FrontCodedLexicon.compare(term, term.length, lastTerm) <= 0)
+				throw new IOException("Term " + _key + " is not in order");
+			flushBlock();
+			writeVInt(block, term.length);
+			block.write(term);
+		}
+		else
+		{
+			final int prefixLength = FrontCodedLexicon.commonPrefix(term, lastTerm);
+			if (prefixLength == term.length || (prefixLength < lastTerm.length && (term[prefixLength] & 0xff) < (lastTerm[prefixLength] & 0xff)))
+				throw new IOException("Term " + _key + " is not in order");
+			writeVInt(block, prefixLength);
+			writeVInt(block, term.length - prefixLength);
+			block.write(term, prefixLength, term.length - prefixLength);
+		}
+		final int termLength = block.getLength();
+		_value.write(block);
+		if (entrySize == -1)
+			entrySize = block.getLength() - termLength;
+		else if (entrySize != block.getLength() - termLength)
+			throw new IOException("Lexicon entries must have a fixed size, but " + _key + " had " + (block.getLength() - termLength) + " bytes");
+		
+		termids.add(_value.getTermId());
+		if (_value.getTermId() != numTermsWritten)
+			termidsAligned = false;
+		lastTerm = term;
+		incrementCounters(_value);
+		return block.getLength() - startLength;
+	}
+	
+	protected void flushBlock() throws IOException
+	{
+		if (block.getLength() == 0)
+			return;
+		blockOffsets.add(offset);
+		out.write(block.getData(), 0, block.getLength());
+		offset += block.getLength();
+		maxBlockLength = Math.max(maxBlockLength, block.getLength());
+		block.reset();
+	}
+	
+	static void writeVInt(DataOutputBuffer out, int value) throws IOException
+	{
+		while((value & ~0x7F) != 0)
+		{
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+	
+	@Override
+	public void close() 
+	{
+		try{
+			flushBlock();
+			final long offsetsStart = offset;
+			for(long blockOffset : blockOffsets.toNativeArray())
+				out.writeLong(blockOffset);
+			long idsStart = -1;
+			if (! termidsAligned)
+			{
+				idsStart = offsetsStart + (long)blockOffsets.size() * Long.BYTES;
+				int maxTermid = -1;
+				for(int termid : termids.toNativeArray())
+					maxTermid = Math.max(maxTermid, termid);
+				final int[] termid2index = new int[maxTermid+1];
+				java.util.Arrays.fill(termid2index, -1);
+				for(int i=0;i<termids.size();i++)
+					termid2index[termids.get(i)] = i;
+				out.writeInt(termid2index.length);
+				for(int index : termid2index)
+					out.writeInt(index);
+			}
+			out.writeLong(offsetsStart);
+			out.writeLong(idsStart);
+			out.writeInt(numTermsWritten);
+			out.writeInt(blockSize);
+			out.writeInt(maxBlockLength);
+			out.writeInt(Math.max(0, entrySize));
+			out.writeInt(FrontCodedLexicon.MAGIC);
+			out.close();
+		} catch (IOException ioe) {
+			throw new java.io.UncheckedIOException(ioe);
+		}
+	}
+}
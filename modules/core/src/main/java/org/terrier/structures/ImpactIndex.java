@@ -0,0 +1,164 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ImpactIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.terrier.compression.bit.BitFileMapped;
+import org.terrier.compression.bit.BitIn;
+import org.terrier.compression.bit.BitInSeekable;
+import org.terrier.utility.Files;
+
+/** The <tt>impact</tt> index structure, as written by {@link ImpactIndexBuilder}: for each term, its 
+ * postings grouped into segments of equal quantised impact, in decreasing impact order. The offset 
+ * of each term is loaded into memory (8 bytes per term), while the segments are memory-mapped, so
+ * this structure can be shared by concurrent queries.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@ConcurrentReadable
+public class ImpactIndex implements Closeable {
+
+	/** The impact-ordered postings of a single term. The segment headers are read when
+	 * this object is created; the docids of each segment are then read in turn, in
+	 * decreasing impact order, using {@link #nextSegment(int[])}. */
+	public static class TermImpacts implements Closeable
+	{
+		final BitIn in;
+		final int[] impacts;
+		final int[] lengths;
+		int segment = 0;
+
+		TermImpacts(BitIn _in, int bits) throws IOException
+		{
+			this.in = _in;
+			final int numSegments = in.readGamma() - 1;
+			impacts = new int[numSegments];
+			lengths = new int[numSegments];
+			for(int i=0;i<numSegments;i++)
+			{
+				impacts[i] = in.readBinary(bits);
+				lengths[i] = in.readGamma();
+			}
+		}
+
+		/** Returns the number of segments of this term */
+		public int getNumberOfSegments()
+		{
+			return impacts.length;
+		}
+
+		/** Returns the impact of the specified segment */
+		public int getImpact(int i)
+		{
+			return impacts[i];
+		}
+
+		/** Returns the number of postings in the specified segment */
+		public int getSegmentLength(int i)
+		{
+			return lengths[i];
+		}
+
+		/** Reads the docids of the next segment into the specified array, which must have at least
+		 * getSegmentLength() entries for that segment.
+		 * @return the number of docids read, or -1 if all segments have been read */
+		public int nextSegment(int[] docids) throws IOException
+		{
+			if (segment == impacts.length)
+				return -1;
+			final int length = lengths[segment++];
+			int docid = -1;
+			for(int i=0;i<length;i++)
+			{
+				docid += in.readGamma();
+				docids[i] = docid;
+			}
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	final long[] offsets;
+	final BitInSeekable file;
+	final int bits;
+	final String wmodel;
+
+	/** Loads the structure with the specified name from the specified index */
+	public ImpactIndex(IndexOnDisk index, String structureName) throws IOException
+	{
+		final String prefix = index.getPath() + "/" + index.getPrefix() + "." + structureName;
+		offsets = new long[(int) (Files.length(prefix + ".offsets") / Long.BYTES)];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(prefix + ".offsets")))
+		{
+			for(int i=0;i<offsets.length;i++)
+				offsets[i] = dis.readLong();
+		}
+		file = new BitFileMapped(prefix + ".bf");
+		bits = Integer.parseInt(index.getIndexProperty(ImpactIndexBuilder.BITS_PROPERTY, String.valueOf(ImpactIndexBuilder.DEFAULT_BITS)));
+		wmodel = index.getIndexProperty(ImpactIndexBuilder.WMODEL_PROPERTY, null);
+	}
+
+	/** Returns the impact-ordered postings of the specified term, or null if the termid is not known */
+	public TermImpacts getImpacts(int termid) throws IOException
+	{
+		if (termid < 0 || termid >= offsets.length)
+			return null;
+		final long offset = offsets[termid];
+		return new TermImpacts(file.readReset(offset >>> 3, (byte) (offset & 7)), bits);
+	}
+
+	/** Returns the name of the weighting model that the impacts were computed for,
+	 * as per WeightingModel.getInfo() */
+	public String getWeightingModel()
+	{
+		return wmodel;
+	}
+
+	/** Returns the number of bits used to record each impact */
+	public int getBits()
+	{
+		return bits;
+	}
+
+	/** Returns the number of terms */
+	public int size()
+	{
+		return offsets.length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ImpactIndexBuilder.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.compression.bit.BitOutputStream;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+/** Restructures the inverted index into an impact-ordered form, recorded as the <tt>impact</tt> 
+ * index structure and loaded as {@link ImpactIndex}. The score of every posting under a given 
+ * weighting model is quantised into one of 2<sup>bits</sup>-1 integer impacts, using a uniform
+ * quantisation between zero (or the lowest score, if negative) and the highest score of any posting in the index. The postings of
+ * each term are then grouped into segments of equal impact, which are written in decreasing impact
+ * order, each segment containing ascending docids. Such an index supports score-at-a-time matching,
+ * as implemented by {@link org.terrier.matching.saat.Full}.
+ * <p>
+ * Impacts are computed with a query term frequency (keyFrequency) of 1, using the
+ * statistics of the index itself. The weighting model used is recorded in the
+ * <tt>index.impact.wmodel</tt> index property, as per WeightingModel.getInfo().
+ * <p>
+ * Two files are written: <tt>data.impact.bf</tt> contains the segments of each term; 
+ * <tt>data.impact.offsets</tt> contains the bit offset of each term in the former file, indexed by termid.
+ * <p>
+ * Usage: <tt>bin/terrier impacts -w BM25 -b 8</tt>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class ImpactIndexBuilder {
+
+	protected static final Logger logger = LoggerFactory.getLogger(ImpactIndexBuilder.class);
+	/** name of the index structure written by this class */
+	public static final String STRUCTURE_NAME = "impact";
+	/** name of the index property that records the weighting model used */
+	public static final String WMODEL_PROPERTY = "index.impact.wmodel";
+	/** name of the index property that records the number of bits of each impact */
+	public static final String BITS_PROPERTY = "index.impact.bits";
+	/** default number of bits of each impact */
+	public static final int DEFAULT_BITS = 8;
+
+	final IndexOnDisk index;
+	final String wmodelName;
+	final int bits;
+
+	public ImpactIndexBuilder(IndexOnDisk _index, String _wmodelName) {
+		this(_index, _wmodelName, DEFAULT_BITS);
+	}
+
+	public ImpactIndexBuilder(IndexOnDisk _index, String _wmodelName, int _bits) {
+		if (_bits < 1 || _bits > 16)
+			throw new IllegalArgumentException("Impacts must have between 1 and 16 bits, not " + _bits);
+		this.index = _index;
+		this.wmodelName = _wmodelName;
+		this.bits = _bits;
+	}
+
+	/** Returns a weighting model ready to score the postings of the specified term */
+	WeightingModel prepare(WeightingModel wmodel, LexiconEntry le)
+	{
+		wmodel.setCollectionStatistics(index.getCollectionStatistics());
+		wmodel.setEntryStatistics(le);
+		wmodel.setKeyFrequency(1d);
+		IndexUtil.configure(index, wmodel);
+		wmodel.prepare();
+		return wmodel;
+	}
+
+	/** Scans all posting lists of the inverted index twice - firstly to find the range of scores, 
+	 * then to write the quantised impacts - and writes the impact structure */
+	@SuppressWarnings("unchecked")
+	public void build() throws IOException
+	{
+		final CollectionStatistics cs = index.getCollectionStatistics();
+		final WeightingModel wmodel = WeightingModelFactory.newInstance(wmodelName, index).clone();
+		final PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final String prefix = index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + STRUCTURE_NAME;
+
+		//pass 1: the range of scores
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			LexiconEntry le = lexIn.next().getValue();
+			prepare(wmodel, le);
+			IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				final double score = wmodel.score(ip);
+				if (score < min)
+					min = score;
+				if (score > max)
+					max = score;
+			}
+			ip.close();
+		}
+		IndexUtil.close(lexIn);
+		//scores are quantised uniformly: impact = 1 + floor((score - min) / (max - min) * (levels - 1)),
+		//where min is at most 0, so that non-negative scores keep a common origin. Every posting
+		//has an impact of at least 1, and the floor loses differences smaller than one level, so a 
+		//sum of impacts only approximates the ranking by the sum of scores
+		min = Math.min(0d, min);
+		final int levels = (1 << bits) - 1;
+		final double range = max > min ? max - min : 1d;
+		logger.info("Quantising scores in [" + min + "," + max + "] into " + levels + " impacts");
+
+		//pass 2: quantise, then write each term's postings grouped by decreasing impact
+		final long[] offsets = new long[cs.getNumberOfUniqueTerms()];
+		final BitOutputStream bos = new BitOutputStream(prefix + ".bf");
+		final int[] segmentCounts = new int[levels + 1];
+		int count = 0;
+		lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			LexiconEntry le = lexIn.next().getValue();
+			prepare(wmodel, le);
+			final int[] docids = new int[le.getDocumentFrequency()];
+			final int[] impacts = new int[docids.length];
+			int n = 0;
+			IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				docids[n] = ip.getId();
+				impacts[n] = 1 + (int) ((wmodel.score(ip) - min) / range * (levels - 1));
+				segmentCounts[impacts[n]]++;
+				n++;
+			}
+			ip.close();
+			
+			offsets[le.getTermId()] = bos.getByteOffset() * 8l + bos.getBitOffset();
+			int numSegments = 0;
+			for(int impact = levels; impact > 0; impact--)
+				if (segmentCounts[impact] > 0)
+					numSegments++;
+			bos.writeGamma(numSegments + 1);
+			for(int impact = levels; impact > 0; impact--)
+			{
+				if (segmentCounts[impact] == 0)
+					continue;
+				bos.writeBinary(bits, impact);
+				bos.writeGamma(segmentCounts[impact]);
+			}
+			for(int impact = levels; impact > 0; impact--)
+			{
+				if (segmentCounts[impact] == 0)
+					continue;
+				int last = -1;
+				for(int i=0;i<n;i++)
+				{
+					if (impacts[i] != impact)
+						continue;
+					bos.writeGamma(docids[i] - last);
+					last = docids[i];
+				}
+				segmentCounts[impact] = 0;
+			}
+			if (++count % 100000 == 0)
+				logger.info("Wrote impacts for " + count + " terms");
+		}
+		IndexUtil.close(lexIn);
+		bos.close();
+
+		try(DataOutputStream dos = new DataOutputStream(Files.writeFileStream(prefix + ".offsets")))
+		{
+			for(long offset : offsets)
+				dos.writeLong(offset);
+		}
+
+		index.addIndexStructure(STRUCTURE_NAME,
+				ImpactIndex.class.getName(),
+				"org.terrier.structures.IndexOnDisk,java.lang.String",
+				"index,structureName");
+		index.setIndexProperty(WMODEL_PROPERTY, wmodel.getInfo());
+		index.setIndexProperty(BITS_PROPERTY, String.valueOf(bits));
+		index.flush();
+		logger.info("Wrote impacts for " + count + " terms using " + wmodel.getInfo());
+	}
+
+	/** CLITool for computing the impact index structure */
+	public static class Command extends CLIParsedCLITool {
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public String commandname() {
+			return "impacts";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "writes impact-ordered postings under a weighting model, for score-at-a-time matching";
+		}
+
+		@Override
+		protected Options getOptions() {
+			Options options = super.getOptions();
+			options.addOption(Option.builder("w")
+					.argName("wmodel")
+					.longOpt("wmodel")
+					.hasArg()
+					.desc("weighting model to compute the impacts for, defaults to the trec.model property or BM25")
+					.build());
+			options.addOption(Option.builder("b")
+					.argName("bits")
+					.longOpt("bits")
+					.hasArg()
+					.desc("number of bits of each quantised impact, defaults to " + DEFAULT_BITS)
+					.build());
+			return options;
+		}
+
+		@Override
+		public int run(CommandLine line) throws Exception {
+			Index.setIndexLoadingProfileAsRetrieval(false);
+			IndexOnDisk index = IndexOnDisk.createIndex();
+			if (index == null)
+			{
+				System.err.println("Sorry, no index could be found in default location: " + IndexOnDisk.getLastIndexLoadError());
+				return 1;
+			}
+			String wmodel = line.hasOption("w")
+				? line.getOptionValue("w")
+				: ApplicationSetup.getProperty("trec.model", "BM25");
+			int bits = line.hasOption("b")
+				? Integer.parseInt(line.getOptionValue("b"))
+				: DEFAULT_BITS;
+			new ImpactIndexBuilder(index, wmodel, bits).build();
+			index.close();
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is KGramIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInput;
+
+import gnu.trove.TIntArrayList;
+
+/** An index of the k-grams of the terms in a lexicon, used to find the terms matching 
+ * wildcard patterns such as <tt>*ing</tt> or <tt>te*ch</tt>, which cannot be answered by 
+ * a range of the lexicon. Each term is padded with a boundary character (<tt>$</tt>) at 
+ * either end, and for each k-gram of the padded term, the index records the ordinal 
+ * position of the term in the lexicon. For instance, with k=3, <tt>tech</tt> is indexed
+ * under <tt>$te</tt>, <tt>tec</tt>, <tt>ech</tt> and <tt>ch$</tt>.
+ * <p>
+ * The candidates for a pattern are those terms containing all of the k-grams of its
+ * literal parts; for <tt>te*ch</tt>, these are <tt>$te</tt> and <tt>ch$</tt>. As
+ * k-grams do not record their order, candidates must then be checked against the 
+ * pattern, as {@link org.terrier.matching.matchops.WildcardTermOp} does. The table of
+ * k-grams is held in memory, while the lists of terms are read from disk as needed.
+ * <p>
+ * An index is built from the lexicon of an existing index using the <tt>kgramindex</tt> 
+ * command. It must be rebuilt if the terms of the lexicon change.
+ * <p><b>Index properties:</b>
+ * <ul>
+ * <li><tt>index.STRUCTURE.k</tt> - the length of the k-grams, as written. Defaults to 3.</li>
+ * <li><tt>index.STRUCTURE.lexicon</tt> - the lexicon structure that was indexed.</li>
+ * </ul>
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class KGramIndex implements Closeable
+{
+	static final Logger logger = LoggerFactory.getLogger(KGramIndex.class);
+	
+	/** extension of the k-gram index file */
+	public static final String EXT = ".kgi";
+	/** the default length of each k-gram */
+	public static final int DEFAULT_K = 3;
+	/** marks the start and end of each term */
+	public static final char BOUNDARY = '$';
+	/** matches any sequence of characters in a pattern */
+	public static final char MANY = '*';
+	/** matches any single character in a pattern */
+	public static final char ONE = '?';
+	
+	static final int MAGIC = 0x4b47494e;
+	static final int FOOTER_SIZE = Long.BYTES + 4 * Integer.BYTES;
+	
+	final RandomDataInput file;
+	final int k;
+	final int numTerms;
+	/** the k-grams, in sorted order */
+	final String[] grams;
+	/** offset of the list of terms for each k-gram, and of the end of the last list */
+	final long[] offsets;
+	
+	/** Construct a new KGramIndex for the specified structure of an index */
+	public KGramIndex(String structureName, IndexOnDisk index) throws IOException
+	{
+		this(constructFilename(structureName, index.getPath(), index.getPrefix()));
+	}
+	
+	/** Construct a new KGramIndex reading the specified file */
+	public KGramIndex(String filename) throws IOException
+	{
+		file = Files.openFileRandom(filename);
+		final long length = file.length();
+		if (length < FOOTER_SIZE)
+			throw new IOException("File " + filename + " is not a " + KGramIndex.class.getSimpleName());
+		final byte[] footer = new byte[FOOTER_SIZE];
+		file.readFullyDirect(footer, length - FOOTER_SIZE, FOOTER_SIZE);
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(footer));
+		final long gramsStart = dis.readLong();
+		final int numGrams = dis.readInt();
+		numTerms = dis.readInt();
+		k = dis.readInt();
+		if (dis.readInt() != MAGIC)
+			throw new IOException("File " + filename + " is not a " + KGramIndex.class.getSimpleName());
+		
+		final long tableLength = length - FOOTER_SIZE - gramsStart;
+		if (tableLength > Integer.MAX_VALUE)
+			throw new IOException("K-gram table of " + filename + " is too large");
+		final byte[] table = new byte[(int)tableLength];
+		file.readFullyDirect(table, gramsStart, table.length);
+		final DataInputStream tableIn = new DataInputStream(new ByteArrayInputStream(table));
+		grams = new String[numGrams];
+		offsets = new long[numGrams+1];
+		for(int i=0;i<numGrams;i++)
+		{
+			grams[i] = tableIn.readUTF();
+			offsets[i] = tableIn.readLong();
+		}
+		offsets[numGrams] = gramsStart;
+	}
+	
+	/** Returns the length of the k-grams */
+	public int getK()
+	{
+		return k;
+	}
+	
+	/** Returns the number of terms in the lexicon that was indexed */
+	public int getNumberOfTerms()
+	{
+		return numTerms;
+	}
+	
+	/** Returns the number of distinct k-grams */
+	public int getNumberOfGrams()
+	{
+		return grams.length;
+	}
+	
+	/** Returns the ordinals in the lexicon of the terms containing the specified k-gram, 
+	 * in ascending order */
+	public int[] getTerms(String gram) throws IOException
+	{
+		final int i = Arrays.binarySearch(grams, gram);
+		if (i < 0)
+			return new int[0];
+		final byte[] buf = new byte[(int)(offsets[i+1] - offsets[i])];
+		file.readFullyDirect(buf, offsets[i], buf.length);
+		final DataInputBuffer in = new DataInputBuffer();
+		in.reset(buf, buf.length);
+		final int[] rtr = new int[WritableUtils.readVInt(in)];
+		int last = -1;
+		for(int j=0;j<rtr.length;j++)
+			rtr[j] = last = last + WritableUtils.readVInt(in);
+		return rtr;
+	}
+	
+	/** Returns the ordinals in the lexicon of the terms that may match the specified pattern,
+	 * in ascending order, or null if the pattern has no literal part of k characters, 
+	 * including the boundaries. In a pattern, <tt>*</tt> matches any sequence of 
+	 * characters, and <tt>?</tt> any single character. */
+	public int[] getCandidates(String pattern) throws IOException
+	{
+		final List<String> patternGrams = getGrams(pattern, k, true);
+		if (patternGrams.size() == 0)
+			return null;
+		final List<int[]> lists = new ArrayList<>(patternGrams.size());
+		for(String gram : patternGrams)
+		{
+			final int[] terms = getTerms(gram);
+			if (terms.length == 0)
+				return terms;
+			lists.add(terms);
+		}
+		//intersect the shortest lists first
+		lists.sort((a,b) -> Integer.compare(a.length, b.length));
+		int[] rtr = lists.get(0);
+		for(int i=1;i<lists.size() && rtr.length > 0;i++)
+			rtr = intersect(rtr, lists.get(i));
+		return rtr;
+	}
+	
+	static int[] intersect(int[] a, int[] b)
+	{
+		final int[] rtr = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while(i < a.length && j < b.length)
+		{
+			if (a[i] < b[j])
+				i++;
+			else if (a[i] > b[j])
+				j++;
+			else
+			{
+				rtr[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(rtr, n);
+	}
+	
+	/** Returns the distinct k-grams of a term, or of the literal parts of a pattern, 
+	 * padded with boundaries */
+	static List<String> getGrams(String s, int k, boolean pattern)
+	{
+		final Set<String> rtr = new LinkedHashSet<>();
+		final String padded = BOUNDARY + s + BOUNDARY;
+		int start = 0;
+		for(int i=0;i<=padded.length();i++)
+		{
+			if (i == padded.length() || (pattern && (padded.charAt(i) == MANY || padded.charAt(i) == ONE)))
+			{
+				for(int j=start;j+k<=i;j++)
+					rtr.add(padded.substring(j, j+k));
+				start = i+1;
+			}
+		}
+		return new ArrayList<>(rtr);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	/** Constructs the filename of the specified k-gram index structure */
+	public static String constructFilename(String structureName, String path, String prefix)
+	{
+		return path + ApplicationSetup.FILE_SEPARATOR + prefix + "." + structureName + EXT;
+	}
+	
+	/** Writes a k-gram index of the terms given in lexicon order to the specified file.
+	 * The lists of terms for all k-grams are accumulated in memory before writing.
+	 * @return the number of terms indexed */
+	public static int write(String filename, Iterator<String> terms, int k) throws IOException
+	{
+		if (k < 2)
+			throw new IllegalArgumentException("k-grams must be at least 2 characters, not " + k);
+		final TreeMap<String,TIntArrayList> postings = new TreeMap<>();
+		int ordinal = 0;
+		while(terms.hasNext())
+		{
+			for(String gram : getGrams(terms.next(), k, false))
+			{
+				TIntArrayList list = postings.get(gram);
+				if (list == null)
+					postings.put(gram, list = new TIntArrayList());
+				list.add(ordinal);
+			}
+			ordinal++;
+		}
+		
+		final DataOutputStream dos = new DataOutputStream(Files.writeFileStream(filename));
+		final DataOutputBuffer buf = new DataOutputBuffer();
+		final long[] offsets = new long[postings.size()];
+		long offset = 0;
+		int i = 0;
+		for(TIntArrayList list : postings.values())
+		{
+			buf.reset();
+			WritableUtils.writeVInt(buf, list.size());
+			int last = -1;
+			for(int j=0;j<list.size();j++)
+			{
+				WritableUtils.writeVInt(buf, list.get(j) - last);
+				last = list.get(j);
+			}
+			dos.write(buf.getData(), 0, buf.getLength());
+			offsets[i++] = offset;
+			offset += buf.getLength();
+		}
+		i = 0;
+		for(String gram : postings.keySet())
+		{
+			dos.writeUTF(gram);
+			dos.writeLong(offsets[i++]);
+		}
+		dos.writeLong(offset);
+		dos.writeInt(postings.size());
+		dos.writeInt(ordinal);
+		dos.writeInt(k);
+		dos.writeInt(MAGIC);
+		dos.close();
+		return ordinal;
+	}
+	
+	/** Builds a k-gram index of the specified lexicon of an index, and registers it
+	 * in the index as the specified structure */
+	public static void build(IndexOnDisk index, String lexiconStructure, String structureName, int k) throws IOException
+	{
+		logger.info("Building " + KGramIndex.class.getSimpleName() + " of " + lexiconStructure + " of " + index.toString() + " with k=" + k);
+		@SuppressWarnings("unchecked")
+		final Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream(lexiconStructure);
+		final int numTerms = write(constructFilename(structureName, index.getPath(), index.getPrefix()), 
+			new Iterator<String>() {
+				@Override
+				public boolean hasNext() {
+					return lexIn.hasNext();
+				}
+
+				@Override
+				public String next() {
+					return lexIn.next().getKey();
+				}
+			}, k);
+		IndexUtil.close(lexIn);
+		index.addIndexStructure(
+			structureName, 
+			KGramIndex.class.getName(),
+			"java.lang.String,org.terrier.structures.IndexOnDisk",
+			"structureName,index");
+		index.setIndexProperty("index."+structureName+".k", String.valueOf(k));
+		index.setIndexProperty("index."+structureName+".lexicon", lexiconStructure);
+		index.flush();
+		logger.info("Indexed the k-grams of " + numTerms + " terms");
+	}
+	
+	/** Builds a k-gram index of the lexicon of the default index */
+	public static class Command extends CLIParsedCLITool {
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public String commandname() {
+			return "kgramindex";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "builds a k-gram index of the lexicon of an existing index, for #wildcard queries";
+		}
+
+		@Override
+		protected Options getOptions() {
+			Options options = super.getOptions();
+			options.addOption(Option.builder("k")
+					.argName("k")
+					.longOpt("k")
+					.hasArg()
+					.desc("length of each k-gram, defaults to " + DEFAULT_K)
+					.build());
+			return options;
+		}
+
+		@Override
+		public int run(CommandLine line) throws Exception {
+			IndexOnDisk.setIndexLoadingProfileAsRetrieval(false);
+			IndexOnDisk index = IndexOnDisk.createIndex();
+			if (index == null)
+			{
+				System.err.println("Sorry, no index could be found in default location: " + IndexOnDisk.getLastIndexLoadError());
+				return 1;
+			}
+			int k = line.hasOption("k")
+				? Integer.parseInt(line.getOptionValue("k"))
+				: DEFAULT_K;
+			build(index, "lexicon", "lexicon-kgram", k);
+			index.close();
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org/
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MaxScoreBuilder.java
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original contributor)
+ */
+package org.terrier.structures;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.hadoop.io.FloatWritable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.applications.CLITool;
+import org.terrier.applications.CLITool.CLIParsedCLITool;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.matching.models.WeightingModelFactory;
+import org.terrier.structures.collections.FSArrayFile;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.seralization.FixedSizeFloatWritableFactory;
+import org.terrier.utility.ApplicationSetup;
+
+/** Computes, for every term in the lexicon, the maximum score that any of its postings
+ * obtains under a given weighting model, and records these as the <tt>maxscore</tt> index
+ * structure - an {@link FSArrayFile} of floats indexed by termid, loaded as {@link TermMaxScores}. These upper bounds
+ * can then be used by dynamic pruning matching strategies such as
+ * {@link org.terrier.matching.daat.WAND}, for weighting models that do not provide
+ * a bound of their own (see {@link WeightingModel#getMaxScore()}), such as DPH or PL2.
+ * <p>
+ * Bounds are computed with a query term frequency (keyFrequency) of 1, using the
+ * statistics of the index itself. The weighting model used is recorded in the
+ * <tt>index.maxscore.wmodel</tt> index property, as per WeightingModel.getInfo(), and
+ * {@link org.terrier.matching.PostingListManager} will only use the bounds for query terms
+ * weighted by the same model.
+ * <p>
+ * Usage: <tt>bin/terrier maxscore -w DPH</tt>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class MaxScoreBuilder {
+
+	protected static final Logger logger = LoggerFactory.getLogger(MaxScoreBuilder.class);
+	/** name of the index structure written by this class */
+	public static final String STRUCTURE_NAME = "maxscore";
+	/** name of the index property that records the weighting model used */
+	public static final String WMODEL_PROPERTY = "index.maxscore.wmodel";
+
+	final IndexOnDisk index;
+	final String wmodelName;
+
+	public MaxScoreBuilder(IndexOnDisk _index, String _wmodelName) {
+		this.index = _index;
+		this.wmodelName = _wmodelName;
+	}
+
+	/** Scans all posting lists of the inverted index, and writes the maxscore structure */
+	@SuppressWarnings("unchecked")
+	public void build() throws IOException
+	{
+		final CollectionStatistics cs = index.getCollectionStatistics();
+		final WeightingModel wmodel = WeightingModelFactory.newInstance(wmodelName, index).clone();
+		final PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		final float[] maxScores = new float[cs.getNumberOfUniqueTerms()];
+
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		int count = 0;
+		while(lexIn.hasNext())
+		{
+			LexiconEntry le = lexIn.next().getValue();
+			wmodel.setCollectionStatistics(cs);
+			wmodel.setEntryStatistics(le);
+			wmodel.setKeyFrequency(1d);
+			IndexUtil.configure(index, wmodel);
+			wmodel.prepare();
+
+			double max = Double.NEGATIVE_INFINITY;
+			IterablePosting ip = inverted.getPostings(le);
+			while(ip.next() != IterablePosting.EOL)
+			{
+				final double score = wmodel.score(ip);
+				if (score > max)
+					max = score;
+			}
+			ip.close();
+			//round up, such that the float remains an upper bound of the double score
+			float fmax = (float) max;
+			if (fmax < max)
+				fmax = Math.nextUp(fmax);
+			maxScores[le.getTermId()] = fmax;
+			if (++count % 100000 == 0)
+				logger.info("Computed max scores for " + count + " terms");
+		}
+		IndexUtil.close(lexIn);
+
+		FSArrayFile.ArrayFileWriter out = FSArrayFile.writeFSArrayFile(
+			index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + STRUCTURE_NAME + FSArrayFile.USUAL_EXTENSION);
+		FloatWritable w = new FloatWritable();
+		for(float f : maxScores)
+		{
+			w.set(f);
+			out.write(w);
+		}
+		out.close();
+
+		index.addIndexStructure(STRUCTURE_NAME,
+				TermMaxScores.class.getName(),
+				"org.terrier.structures.IndexOnDisk,java.lang.String",
+				"index,structureName");
+		index.addIndexStructure(STRUCTURE_NAME + "-factory", FixedSizeFloatWritableFactory.class.getName(), "", "");
+		index.setIndexProperty(WMODEL_PROPERTY, wmodel.getInfo());
+		index.flush();
+		logger.info("Wrote max scores for " + count + " terms using " + wmodel.getInfo());
+	}
+
+	/** CLITool for computing the maxscore index structure */
+	public static class Command extends CLIParsedCLITool {
+
+		@Override
+		public String sourcepackage() {
+			return CLITool.PLATFORM_MODULE;
+		}
+
+		@Override
+		public String commandname() {
+			return "maxscore";
+		}
+
+		@Override
+		public String helpsummary() {
+			return "records the maximum score of each term under a weighting model, for dynamic pruning";
+		}
+
+		@Override
+		protected Options getOptions() {
+			Options options = super.getOptions();
+			options.addOption(Option.builder("w")
+					.argName("wmodel")
+					.longOpt("wmodel")
+					.hasArg()
+					.desc("weighting model to compute the maximum scores for, defaults to the trec.model property or DPH")
+					.build());
+			return options;
+		}
+
+		@Override
+		public int run(CommandLine line) throws Exception {
+			Index.setIndexLoadingProfileAsRetrieval(false);
+			IndexOnDisk index = IndexOnDisk.createIndex();
+			if (index == null)
+			{
+				System.err.println("Sorry, no index could be found in default location: " + IndexOnDisk.getLastIndexLoadError());
+				return 1;
+			}
+			String wmodel = line.hasOption("w")
+				? line.getOptionValue("w")
+				: ApplicationSetup.getProperty("trec.model", "DPH");
+			new MaxScoreBuilder(index, wmodel).build();
+			index.close();
+			return 0;
+		}
+	}
+}
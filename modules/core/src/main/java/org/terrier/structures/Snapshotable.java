@@ -0,0 +1,44 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is Snapshotable.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+/** Interface defining that an index can change while it is being searched, for instance 
+ * as documents are added or shards are merged, and can provide a view of its 
+ * current state that does not change. The Manager searches such a snapshot for the
+ * whole of each query, such that matching and the subsequent processes of a query all
+ * see the same documents and statistics.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public interface Snapshotable
+{
+	/** Returns a view of the current state of this index, which is not affected by later
+	 * changes to this index. Closing the snapshot does not close this index.
+	 * @return Index the snapshot
+	 */
+	Index snapshot();
+}
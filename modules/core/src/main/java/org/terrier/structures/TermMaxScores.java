@@ -0,0 +1,83 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org/
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TermMaxScores.java
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original contributor)
+ */
+package org.terrier.structures;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.terrier.structures.collections.FSArrayFile;
+import org.terrier.utility.Files;
+
+/** The <tt>maxscore</tt> index structure, as written by {@link MaxScoreBuilder}: the upper bound
+ * score of each term, indexed by termid, under the weighting model recorded in the
+ * <tt>index.maxscore.wmodel</tt> index property. The bounds are loaded into memory
+ * (4 bytes per term), and are not modified thereafter, so this structure can be
+ * shared by concurrent queries.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+@ConcurrentReadable
+public class TermMaxScores {
+
+	final float[] maxScores;
+	final String wmodel;
+
+	/** Loads the structure with the specified name from the specified index */
+	public TermMaxScores(IndexOnDisk index, String structureName) throws IOException
+	{
+		final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + FSArrayFile.USUAL_EXTENSION;
+		final long length = Files.length(filename);
+		maxScores = new float[(int) (length / Float.BYTES)];
+		try(DataInputStream dis = new DataInputStream(Files.openFileStream(filename)))
+		{
+			for(int i=0;i<maxScores.length;i++)
+				maxScores[i] = dis.readFloat();
+		}
+		wmodel = index.getIndexProperty(MaxScoreBuilder.WMODEL_PROPERTY, null);
+	}
+
+	/** Returns the upper bound score of the specified term, for a query term frequency of 1,
+	 * or Double.POSITIVE_INFINITY if the termid is not known */
+	public double getMaxScore(int termid)
+	{
+		if (termid < 0 || termid >= maxScores.length)
+			return Double.POSITIVE_INFINITY;
+		return maxScores[termid];
+	}
+
+	/** Returns the name of the weighting model that the scores were computed for,
+	 * as per WeightingModel.getInfo() */
+	public String getWeightingModel()
+	{
+		return wmodel;
+	}
+
+	/** Returns the number of terms */
+	public int size()
+	{
+		return maxScores.length;
+	}
+}
@@ -1,5 +1,6 @@
 package org.terrier.structures;
 import java.io.IOException;
+@ConcurrentReadable
 public class UncompressedMetaIndex extends CompressingMetaIndex {
 
     public static class InputStream extends CompressingMetaIndex.InputStream {
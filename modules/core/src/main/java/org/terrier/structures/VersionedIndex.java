@@ -0,0 +1,44 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is VersionedIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+/** Interface defining that the contents of an index can change, for instance as documents 
+ * are added or removed, or as shards are flushed or merged. The version of the index
+ * counts these modifications, such that clients caching results obtained from the index, 
+ * such as a query results cache, can detect changes that do not alter the collection statistics, 
+ * such as the removal of a document.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public interface VersionedIndex
+{
+	/** Returns the number of modifications made to this index. The version
+	 * increases whenever the documents of the index, or their postings, change.
+	 * @return long the current version of the index
+	 */
+	long getVersion();
+}
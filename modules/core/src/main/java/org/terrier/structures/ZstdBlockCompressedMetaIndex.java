@@ -0,0 +1,219 @@
+package org.terrier.structures;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hadoop.io.Text;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+/** MetaIndex implementation for when the records of consecutive documents are compressed together
+ * as blocks using Zstandard, with a trained dictionary, as written by ZstdBlockMetaIndexBuilder.
+ * Recently decompressed blocks are kept in a small LRU cache shared by all threads, such that 
+ * looking up the metadata of documents of the same block - for instance, consecutive documents
+ * in {@link #getItems(String, int[])} - only decompresses the block once. The cache is segmented,
+ * so that concurrent lookups of different blocks do not contend on a single lock.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>metaindex.zstd.block.cache</tt> - number of decompressed blocks to cache. Defaults to 64.</li>
+ * </ul>
+ * @since 5.9
+*/
+@ConcurrentReadable
+public class ZstdBlockCompressedMetaIndex extends BaseCompressingMetaIndex {
+
+    /** suffix of the file containing the dictionary */
+    public static final String DICTIONARY_SUFFIX = ".zdict";
+
+    /** Iterates through the metadata of all documents */
+    public static class InputStream implements Iterator<String[]>, java.io.Closeable {
+        final ZstdBlockCompressedMetaIndex meta;
+        final int lastId;
+        int index;
+
+        public InputStream(IndexOnDisk _index, String structureName) throws IOException
+		{
+            this(_index, structureName, 0, -1 + _index.getIntIndexProperty("index."+structureName+".entries", 0));
+        }
+
+        public InputStream(IndexOnDisk _index, String _structureName, int _startingId, int _endId) throws IOException
+		{
+            //blocks are read only once each, so the cache needs only hold the current block
+            meta = new ZstdBlockCompressedMetaIndex(_index, _structureName, 1);
+            index = _startingId -1;
+            lastId = _endId;
+        }
+
+        /** Return the position that we are at (entry number) */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < lastId;
+        }
+
+        @Override
+        public String[] next() {
+            try{
+                return meta.getAllItems(++index);
+            } catch (IOException ioe) {
+                logger.error("Problem reading MetaIndex as a stream. index="+ index, ioe);
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            meta.close();
+        }
+    }
+
+    protected final int blockSize;
+    protected final int entries;
+    protected final long dataFileLength;
+    protected final ZstdDictDecompress dictionary;
+    protected final Cache<Integer,byte[]> blockCache;
+
+    final ThreadLocal<ZstdDecompressCtx> zstDecompressCache = new ThreadLocal<ZstdDecompressCtx>() {
+        protected final synchronized ZstdDecompressCtx initialValue() {
+            ZstdDecompressCtx z = new ZstdDecompressCtx();
+            if (dictionary != null)
+                z.loadDict(dictionary);
+			return z;
+		}
+    };
+
+    public ZstdBlockCompressedMetaIndex(IndexOnDisk index, String structureName)
+		throws IOException
+	{
+        this(index, structureName, Integer.parseInt(ApplicationSetup.getProperty("metaindex.zstd.block.cache", "64")));
+    }
+
+    protected ZstdBlockCompressedMetaIndex(IndexOnDisk index, String structureName, int cacheSize)
+		throws IOException
+	{
+        super(index, structureName);
+        blockSize = index.getIntIndexProperty("index."+structureName+".block-size", 32);
+        entries = index.getIntIndexProperty("index."+structureName+".entries", 0);
+        dataFileLength = Files.length(path + ApplicationSetup.FILE_SEPARATOR + prefix + "."+structureName+".zdata");
+        final String dictionaryFilename = path + ApplicationSetup.FILE_SEPARATOR + prefix + "."+structureName+DICTIONARY_SUFFIX;
+        if (Files.exists(dictionaryFilename))
+        {
+            final byte[] dict = new byte[(int) Files.length(dictionaryFilename)];
+            try(DataInputStream dis = new DataInputStream(Files.openFileStream(dictionaryFilename)))
+            {
+                dis.readFully(dict);
+            }
+            dictionary = new ZstdDictDecompress(dict);
+        }
+        else
+        {
+            dictionary = null;
+        }
+        blockCache = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .concurrencyLevel(Math.max(1, Math.min(cacheSize, Runtime.getRuntime().availableProcessors())))
+            .build();
+    }
+
+    /** Returns the decompressed records of the specified block */
+    protected byte[] getBlock(final int block) throws IOException {
+        try{
+            return blockCache.get(block, () -> readBlock(block));
+        } catch (ExecutionException ee) {
+            throw ee.getCause() instanceof IOException
+                ? (IOException) ee.getCause()
+                : new IOException(ee.getCause());
+        }
+    }
+
+    /** Reads and decompresses the specified block from the data file */
+    protected byte[] readBlock(final int block) throws IOException {
+        final int firstDocid = block * blockSize;
+        final int nextBlockDocid = firstDocid + blockSize;
+        final long start = offsetLookup.getOffset(firstDocid);
+        final long end = nextBlockDocid < entries 
+            ? offsetLookup.getOffset(nextBlockDocid)
+            : dataFileLength;
+        final byte[] records = decode(dataSource.read(start, (int) (end - start)));
+        if (records.length != Math.min(blockSize, entries - firstDocid) * recordLength)
+            throw new IOException("Block " + block + " decompressed to " + records.length + " bytes, expected " 
+                + Math.min(blockSize, entries - firstDocid) * recordLength);
+        return records;
+    }
+
+    protected final void checkDocid(int docid) {
+        if (docid < 0 || docid >= entries)
+            throw new ArrayIndexOutOfBoundsException("Docid " + docid + " is out of range [0," + entries + ")");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getItem(String Key, int docid) throws IOException {
+        checkDocid(docid);
+        final byte[] records = getBlock(docid / blockSize);
+        final int recordOffset = (docid % blockSize) * recordLength;
+		return Text.decode(records, recordOffset + key2byteoffset.get(Key), key2bytelength.get(Key)).trim();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getItems(String[] Keys, int docid) throws IOException {
+        checkDocid(docid);
+        final byte[] records = getBlock(docid / blockSize);
+        final int recordOffset = (docid % blockSize) * recordLength;
+        final int kCount = Keys.length;
+        String[] sOut = new String[kCount];
+        for(int i=0;i<kCount;i++)
+        {
+            sOut[i] = Text.decode(
+                records,
+                recordOffset + key2byteoffset.get(Keys[i]),
+                key2bytelength.get(Keys[i])).trim();
+        }
+        return sOut;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getAllItems(int docid) throws IOException {
+        checkDocid(docid);
+        final byte[] records = getBlock(docid / blockSize);
+        final int recordOffset = (docid % blockSize) * recordLength;
+        String[] sOut = new String[keyCount];
+        for(int i=0;i<keyCount;i++)
+        {
+            sOut[i] = Text.decode(
+                records,
+                recordOffset + valueByteOffsets[i],
+                valueByteLengths[i]).trim();
+        }
+        return sOut;
+    }
+
+    /** Decompresses one compressed block, which contains the records of up to
+     * <tt>blockSize</tt> consecutive documents (the last block may be shorter). */
+    @Override
+    protected byte[] decode(byte[] input) throws IOException {
+        final byte[] rtr = new byte[blockSize * recordLength];
+        final int length = zstDecompressCache.get().decompress(rtr, input);
+        return length == rtr.length ? rtr : Arrays.copyOf(rtr, length);
+	}
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (dictionary != null)
+            dictionary.close();
+    }
+}
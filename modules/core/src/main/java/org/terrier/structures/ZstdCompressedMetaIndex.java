@@ -5,6 +5,7 @@ import com.github.luben.zstd.ZstdDecompressCtx;
 /** MetaIndex implementation for when records are compressed using Zstandard 
  * @since 5.5
 */
+@ConcurrentReadable
 public class ZstdCompressedMetaIndex extends BaseCompressingMetaIndex {
 
     public static class InputStream extends CompressingMetaIndex.InputStream {
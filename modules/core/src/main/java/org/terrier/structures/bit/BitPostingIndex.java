@@ -30,6 +30,7 @@ import java.lang.reflect.Constructor;
 
 import org.terrier.compression.bit.BitFileBuffered;
 import org.terrier.compression.bit.BitFileInMemoryLarge;
+import org.terrier.compression.bit.BitFileMapped;
 import org.terrier.compression.bit.BitIn;
 import org.terrier.compression.bit.BitInSeekable;
 import org.terrier.structures.BitIndexPointer;
@@ -46,7 +47,7 @@ import org.terrier.utility.io.WrappedIOException;
  * <b>Index properties</b>:
  * <ul>
  * <li><tt>index.STRUCTURENAME.data-files</tt> - how many files represent this structure.</li>
- * <li><tt>index.STRUCTURENAME.data-source</tt> - one of {file,fileinmem} or a class implements BitInSeekable.</li>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of {file,fileinmem,mmap} or a class implements BitInSeekable.</li>
  * <li><tt>index.STRUCTURENAME.fields.count</tt> - how many fields are in use by this structures.</li>
  * </ul>
  * @since 3.0
@@ -147,6 +148,10 @@ public class BitPostingIndex implements PostingIndex<BitIndexPointer>
 			{
 				this.file[i] = new BitFileBuffered(dataFilename);
 			}
+			else if (_dataSource.equals("mmap"))
+			{
+				this.file[i] = new BitFileMapped(dataFilename);
+			}
 			else
 			{
 				try{
@@ -24,6 +24,7 @@
  *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original contributor)
  */
 package org.terrier.structures.collections;
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -34,6 +35,7 @@ import java.util.NoSuchElementException;
 
 import org.apache.hadoop.io.Writable;
 
+import org.terrier.structures.ConcurrentReadable;
 import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.Skipable;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
@@ -42,10 +44,13 @@ import org.terrier.utility.io.RandomDataInput;
 
 /** A file for accessing Writable classes written on disk. These must be of fixed size.
  * This implementation is read-only, but does implement the List interface.
+ * Since 5.9, get() does not move the file pointer of the underlying file, 
+ * and is hence safe for use by concurrent threads.
  * @author Craig Macdonald
  * @since 3.0
  * @param <V> Type of Writable
  */
+@ConcurrentReadable
 public class FSArrayFile<V extends Writable> extends AbstractList<V> implements Closeable
 {
 	/** USUAL_EXTENSION */
@@ -109,10 +114,12 @@ public class FSArrayFile<V extends Writable> extends AbstractList<V> implements
 	{
 		try{
 			V value = valueFactory.newInstance();
-			if (entryNumber > numberOfEntries)
-			  throw new NoSuchElementException("Entry too big : " + entryNumber + " > " + numberOfEntries);
-			dataFile.seek((long)entryNumber * entrySize);
-			value.readFields(dataFile);
+			if (entryNumber >= numberOfEntries)
+			  throw new NoSuchElementException("Entry too big : " + entryNumber + " >= " + numberOfEntries);
+			//positional read, such that concurrent calls do not share the file pointer
+			final byte[] buffer = new byte[entrySize];
+			dataFile.readFullyDirect(buffer, (long)entryNumber * entrySize, entrySize);
+			value.readFields(new DataInputStream(new ByteArrayInputStream(buffer)));
 			return value;
 		} catch (NoSuchElementException nsee) {
 			throw nsee;
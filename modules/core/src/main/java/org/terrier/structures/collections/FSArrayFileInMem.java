@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.util.NoSuchElementException;
 
 import org.apache.hadoop.io.Writable;
+import org.terrier.structures.ConcurrentReadable;
 import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.collections.FSArrayFile;
 import org.terrier.structures.seralization.FixedSizeWriteableFactory;
@@ -42,10 +43,9 @@ import org.terrier.utility.io.RandomDataInputMemory;
  * @since 3.0
  * @param <V> Type of Writable
  */
+@ConcurrentReadable
 public class FSArrayFileInMem<V extends Writable> extends FSArrayFile<V>
 {
-	V value;
-	
 	@SuppressWarnings("unchecked")
 	public FSArrayFileInMem(IndexOnDisk index, String structureName) throws IOException
 	{
@@ -79,21 +79,13 @@ public class FSArrayFileInMem<V extends Writable> extends FSArrayFile<V>
 		this.entrySize = factory.getSize();
 		this.numberOfEntries = (int)(len / (long)entrySize);
 		//System.err.println("document index: "+ this.numberOfEntries + " entries of size "+ entrySize);
-		value = factory.newInstance();
 	}
 	/** 
-	 * {@inheritDoc} 
+	 * {@inheritDoc} Each call returns a new instance, decoded from the 
+	 * in-memory bytes, such that this method is safe for use by concurrent threads.
 	 */
 	public V get(int entryNumber)
 	{
-		try{
-			if (entryNumber > numberOfEntries)
-				throw new NoSuchElementException();
-			dataFile.seek((long)entryNumber * entrySize);
-			value.readFields(dataFile);
-			return value;
-		} catch (Exception e) {
-			throw new NoSuchElementException(e.getMessage());
-		}
+		return super.get(entryNumber);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,391 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PerfectHashMapFile.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.collections;
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.ConcurrentReadable;
+import org.terrier.utility.Files;
+import org.terrier.utility.io.RandomDataInput;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/** A read-only map from String keys to int values, stored on disk as a perfect hash.
+ * The keys themselves are not stored: each key is hashed to a bucket, and the buckets
+ * are placed, largest first, by searching for a pilot value that displaces all of the
+ * keys of the bucket into free slots (the "hash and displace" construction). Each slot records
+ * the value and a 32-bit fingerprint of its key, so that lookups of keys that were not in 
+ * the map are rejected with high probability (a false positive rate of 2<sup>-32</sup>). 
+ * Distinct keys with the same 64-bit hash cannot be told apart, so the file cannot be written 
+ * for such keys.
+ * <p>
+ * With the default load factor of 0.99, the file requires approximately 9 bytes per key, 
+ * regardless of the length of the keys. The file is memory-mapped, so that each lookup is 
+ * constant time, and requires no synchronization. Use {@link #write(String, Iterator)} to 
+ * create a file.
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+@ConcurrentReadable
+public class PerfectHashMapFile extends ReadOnlyMap<Text,IntWritable> implements Closeable
+{
+	protected static final Logger logger = LoggerFactory.getLogger(PerfectHashMapFile.class);
+	
+	/** usual extension for files of this format */
+	public static final String USUAL_EXTENSION = ".mph";
+	
+	static final int MAGIC = 0x4d504831;
+	static final int HEADER_SIZE = 4 * Integer.BYTES;
+	/** average number of keys in each bucket */
+	static final int BUCKET_SIZE = 4;
+	static final float LOAD_FACTOR = 0.99f;
+	/** give up placing a bucket after this many pilot values */
+	static final int MAX_PILOT = 1 << 24;
+	/** each mapped segment holds 2^27 slots, i.e. 1GB of the file */
+	static final int SEGMENT_BITS = 27;
+	static final int SEGMENT_MASK = (1 << SEGMENT_BITS) -1;
+	static final long EMPTY_SLOT = -1L << 32;
+	
+	static final HashFunction HASH = Hashing.murmur3_128();
+	
+	final int numKeys;
+	final int numSlots;
+	final int numBuckets;
+	final IntBuffer pilots;
+	final LongBuffer[] slots;
+	final Closeable file;
+	
+	/** Opens the specified file, memory-mapping it if possible, or otherwise
+	 * reading it into memory. */
+	public PerfectHashMapFile(String filename) throws IOException
+	{
+		RandomDataInput rdi = Files.openFileRandom(filename);
+		final ByteBuffer header;
+		final long length;
+		if (rdi instanceof RandomAccessFile)
+		{
+			FileChannel channel = ((RandomAccessFile)rdi).getChannel();
+			length = channel.size();
+			header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			numKeys = checkHeader(header, filename);
+			numSlots = header.getInt();
+			numBuckets = header.getInt();
+			pilots = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long)numBuckets * Integer.BYTES).asIntBuffer();
+			slots = new LongBuffer[(int) (((long)numSlots + SEGMENT_MASK) >>> SEGMENT_BITS)];
+			final long slotStart = HEADER_SIZE + (long)numBuckets * Integer.BYTES;
+			for(int i=0;i<slots.length;i++)
+			{
+				final long start = (long)i << SEGMENT_BITS;
+				final long count = Math.min(SEGMENT_MASK+1, numSlots - start);
+				slots[i] = channel.map(FileChannel.MapMode.READ_ONLY, slotStart + start * Long.BYTES, count * Long.BYTES).asLongBuffer();
+			}
+			file = rdi;
+		}
+		else
+		{
+			logger.warn("File " + filename + " cannot be memory-mapped, reading into memory");
+			rdi.close();
+			length = Files.length(filename);
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("File " + filename + " is too large to read into memory");
+			final byte[] contents = new byte[(int)length];
+			DataInputStream dis = new DataInputStream(Files.openFileStream(filename));
+			dis.readFully(contents);
+			dis.close();
+			header = ByteBuffer.wrap(contents);
+			numKeys = checkHeader(header, filename);
+			numSlots = header.getInt();
+			numBuckets = header.getInt();
+			header.limit(HEADER_SIZE + numBuckets * Integer.BYTES);
+			pilots = header.slice().asIntBuffer();
+			header.limit(contents.length).position(HEADER_SIZE + numBuckets * Integer.BYTES);
+			slots = new LongBuffer[]{header.slice().asLongBuffer()};
+			file = () -> {};
+		}
+		if (length != HEADER_SIZE + (long)numBuckets * Integer.BYTES + (long)numSlots * Long.BYTES)
+			throw new IOException("File " + filename + " has unexpected length " + length);
+	}
+	
+	static int checkHeader(ByteBuffer header, String filename) throws IOException
+	{
+		if (header.getInt() != MAGIC)
+			throw new IOException("File " + filename + " is not a " + PerfectHashMapFile.class.getSimpleName());
+		return header.getInt();
+	}
+	
+	/** Returns the value for the specified key, or -1 if the key is not present */
+	public int getInt(String key)
+	{
+		final long h = hash(key);
+		final int slot = position(h, pilots.get(bucket(h, numBuckets)), numSlots);
+		final long entry = slots[slot >>> SEGMENT_BITS].get(slot & SEGMENT_MASK);
+		return (int)entry == fingerprint(h)
+			? (int)(entry >> 32)
+			: -1;
+	}
+	
+	@Override
+	public IntWritable get(Object key)
+	{
+		final int value = getInt(key.toString());
+		return value == -1 ? null : new IntWritable(value);
+	}
+	
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return getInt(key.toString()) != -1;
+	}
+	
+	@Override
+	public int size()
+	{
+		return numKeys;
+	}
+	
+	@Override
+	public boolean isEmpty()
+	{
+		return numKeys == 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void putAll(Map<? extends Text, ? extends IntWritable> m)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<Text> keySet()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Collection<IntWritable> values()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Set<Entry<Text, IntWritable>> entrySet()
+	{
+		throw new UnsupportedOperationException();
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+	
+	static long hash(String key)
+	{
+		return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+	}
+	
+	static int bucket(long h, int numBuckets)
+	{
+		return (int) (((h >>> 32) * numBuckets) >>> 32);
+	}
+	
+	static int position(long h, int pilot, int numSlots)
+	{
+		return (int) Long.remainderUnsigned(mix(h ^ (pilot * 0x9E3779B97F4A7C15L)), numSlots);
+	}
+	
+	static int fingerprint(long h)
+	{
+		return (int) (mix(~h) >>> 32);
+	}
+	
+	/** the finaliser of SplitMix64 */
+	static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/** Writes a new file containing the specified entries. If a key occurs more than once,
+	 * only one of its values is retained.
+	 * @param filename the file to write
+	 * @param entries the keys and values to write. Values must be non-negative.
+	 * @return the number of distinct keys written
+	 * @throws IOException if the file cannot be written, including if distinct keys have the same 64-bit hash
+	 */
+	public static int write(String filename, Iterator<? extends Map.Entry<Text,IntWritable>> entries) throws IOException
+	{
+		final TLongArrayList keyHashes = new TLongArrayList();
+		final TLongArrayList keyChecks = new TLongArrayList();
+		final TIntArrayList keyValues = new TIntArrayList();
+		while(entries.hasNext())
+		{
+			Map.Entry<Text,IntWritable> e = entries.next();
+			final HashCode h = HASH.hashString(e.getKey().toString(), StandardCharsets.UTF_8);
+			keyHashes.add(h.asLong());
+			//the remaining bits of the hash distinguish duplicate keys from distinct keys with the same hash
+			keyChecks.add(ByteBuffer.wrap(h.asBytes(), Long.BYTES, Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong());
+			keyValues.add(e.getValue().get());
+		}
+		return write(filename, keyHashes.toNativeArray(), keyChecks.toNativeArray(), keyValues.toNativeArray());
+	}
+	
+	/** Writes a new file for keys with the specified hashes. Keys with the same hash and check 
+	 * value are assumed to be duplicates. */
+	static int write(String filename, long[] hashes, long[] checks, int[] values) throws IOException
+	{
+		final int numEntries = hashes.length;
+		final int numBuckets = Math.max(1, (numEntries + BUCKET_SIZE -1) / BUCKET_SIZE);
+		final int numSlots = Math.max(numEntries, (int)Math.ceil(numEntries / (double)LOAD_FACTOR)) + 1;
+		
+		//counting sort the entries into their buckets, retaining their order
+		final int[] bucketStarts = new int[numBuckets+1];
+		for(long h : hashes)
+			bucketStarts[bucket(h, numBuckets)+1]++;
+		int maxBucketSize = 0;
+		for(int b=0;b<numBuckets;b++)
+		{
+			maxBucketSize = Math.max(maxBucketSize, bucketStarts[b+1]);
+			bucketStarts[b+1] += bucketStarts[b];
+		}
+		final int[] entryOrder = new int[numEntries];
+		final int[] bucketFill = Arrays.copyOf(bucketStarts, numBuckets);
+		for(int i=0;i<numEntries;i++)
+			entryOrder[bucketFill[bucket(hashes[i], numBuckets)]++] = i;
+		
+		//counting sort the buckets by decreasing size
+		final int[] sizeStarts = new int[maxBucketSize+2];
+		for(int b=0;b<numBuckets;b++)
+			sizeStarts[maxBucketSize - (bucketStarts[b+1] - bucketStarts[b]) +1]++;
+		for(int s=0;s<=maxBucketSize;s++)
+			sizeStarts[s+1] += sizeStarts[s];
+		final int[] bucketOrder = new int[numBuckets];
+		for(int b=0;b<numBuckets;b++)
+			bucketOrder[sizeStarts[maxBucketSize - (bucketStarts[b+1] - bucketStarts[b])]++] = b;
+		
+		final int[] pilots = new int[numBuckets];
+		final long[] slots = new long[numSlots];
+		Arrays.fill(slots, EMPTY_SLOT);
+		final BitSet taken = new BitSet(numSlots);
+		final int[] positions = new int[maxBucketSize];
+		int numKeys = 0;
+		for(int b : bucketOrder)
+		{
+			//remove duplicate keys from this bucket
+			int end = bucketStarts[b+1];
+			for(int i=bucketStarts[b];i<end;i++)
+			{
+				for(int j=bucketStarts[b];j<i;j++)
+				{
+					if (hashes[entryOrder[i]] == hashes[entryOrder[j]])
+					{
+						if (checks[entryOrder[i]] != checks[entryOrder[j]])
+							throw new IOException("Could not construct perfect hash for " + filename 
+								+ ": distinct keys with values " + values[entryOrder[j]] + " and " + values[entryOrder[i]] + " have the same hash");
+						logger.debug("Duplicate key ignored for value " + values[entryOrder[i]]);
+						entryOrder[i--] = entryOrder[--end];
+						break;
+					}
+				}
+			}
+			final int size = end - bucketStarts[b];
+			if (size == 0)
+				continue;
+			int pilot = 0;
+			SEARCH: for(;;pilot++)
+			{
+				if (pilot == MAX_PILOT)
+					throw new IOException("Could not construct perfect hash for " + filename);
+				for(int k=0;k<size;k++)
+				{
+					final int p = position(hashes[entryOrder[bucketStarts[b] + k]], pilot, numSlots);
+					if (taken.get(p))
+						continue SEARCH;
+					for(int j=0;j<k;j++)
+						if (positions[j] == p)
+							continue SEARCH;
+					positions[k] = p;
+				}
+				break;
+			}
+			pilots[b] = pilot;
+			for(int k=0;k<size;k++)
+			{
+				final int entry = entryOrder[bucketStarts[b] + k];
+				taken.set(positions[k]);
+				slots[positions[k]] = ((long)values[entry] << 32) | (fingerprint(hashes[entry]) & 0xffffffffL);
+			}
+			numKeys += size;
+		}
+		
+		final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.writeFileStream(filename)));
+		dos.writeInt(MAGIC);
+		dos.writeInt(numKeys);
+		dos.writeInt(numSlots);
+		dos.writeInt(numBuckets);
+		for(int pilot : pilots)
+			dos.writeInt(pilot);
+		for(long slot : slots)
+			dos.writeLong(slot);
+		dos.close();
+		logger.debug("Wrote perfect hash of " + numKeys + " keys to " + filename);
+		return numKeys;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+
+import org.terrier.compression.integer.ByteFileBuffered;
+import org.terrier.compression.integer.ByteFileInMemory;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInSeekable;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.io.WrappedIOException;
+
+/** A posting index where postings are compressed in chunks by {@link IntegerCodec}s, 
+ * as written by <tt>IntegerCodingPostingOutputStream</tt>. Pointers are BitIndexPointers,
+ * whose offsets are always byte-aligned.
+ * <b>Index properties</b>:
+ * <ul>
+ * <li><tt>index.STRUCTURENAME.data-source</tt> - one of {file,fileinmem} or a class implements ByteInSeekable.</li>
+ * <li><tt>index.STRUCTURENAME.fields.count</tt> - how many fields are in use by this structure.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.chunk.size</tt> - number of postings in each chunk.</li>
+ * <li><tt>index.STRUCTURENAME.compression.integer.ids.codec</tt>, <tt>.tfs.codec</tt>, <tt>.fields.codec</tt>, <tt>.blocks.codec</tt> - 
+ * the codec used for each payload.</li>
+ * </ul>
+ * @since 5.9
+ */
+public class IntegerCodingPostingIndex implements PostingIndex<BitIndexPointer>
+{
+	protected final ByteInSeekable file;
+	protected final DocumentIndex doi;
+	protected final int fieldCount;
+	protected final int chunkSize;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+	protected final IntegerCodec fieldsCodec;
+	protected final IntegerCodec blocksCodec;
+	protected final Constructor<? extends IterablePosting> postingConstructor;
+
+	/**
+	 * Constructs an instance of the IntegerCodingPostingIndex.
+	 * @param index index containing the structure
+	 * @param structureName name of the structure
+	 * @param postingImplementation IterablePosting class to read the postings
+	 */
+	public IntegerCodingPostingIndex(IndexOnDisk index, String structureName, Class<? extends IterablePosting> postingImplementation)
+		throws IOException
+	{
+		this(index, structureName, index.getDocumentIndex(), postingImplementation);
+	}
+
+	/**
+	 * Constructs an instance of the IntegerCodingPostingIndex.
+	 * @param index index containing the structure
+	 * @param structureName name of the structure
+	 * @param _doi document index to obtain document lengths from
+	 * @param postingImplementation IterablePosting class to read the postings
+	 */
+	public IntegerCodingPostingIndex(IndexOnDisk index, String structureName, DocumentIndex _doi, Class<? extends IterablePosting> postingImplementation)
+		throws IOException
+	{
+		final String filename = index.getPath() + "/" + index.getPrefix() + "." + structureName + ByteIn.USUAL_EXTENSION;
+		final String dataSource = index.getIndexProperty("index."+structureName+".data-source", "file");
+		if (dataSource.equals("fileinmem"))
+			file = new ByteFileInMemory(filename);
+		else if (dataSource.equals("file"))
+			file = new ByteFileBuffered(filename);
+		else
+		{
+			try{
+				file = ApplicationSetup.getClass(dataSource).asSubclass(ByteInSeekable.class).getConstructor(String.class).newInstance(filename);
+			} catch (Exception e) {
+				throw new WrappedIOException(e);
+			}
+		}
+		doi = _doi;
+		fieldCount = index.getIntIndexProperty("index."+structureName+".fields.count", 0);
+		chunkSize = index.getIntIndexProperty("index."+structureName+".compression.integer.chunk.size", 1024);
+		idsCodec = getCodec(index, structureName, "ids");
+		tfsCodec = getCodec(index, structureName, "tfs");
+		fieldsCodec = getCodec(index, structureName, "fields");
+		blocksCodec = getCodec(index, structureName, "blocks");
+		postingConstructor = getPostingConstructor(postingImplementation);
+	}
+
+	static IntegerCodec getCodec(IndexOnDisk index, String structureName, String payload)
+	{
+		return IntegerCodec.getCodec(index.getIndexProperty("index."+structureName+".compression.integer."+payload+".codec", "PForDeltaCodec"));
+	}
+
+	static Constructor<? extends IterablePosting> getPostingConstructor(Class<? extends IterablePosting> postingImplementation) throws IOException
+	{
+		try{
+			return postingImplementation.getConstructor(ByteIn.class, Integer.TYPE, DocumentIndex.class, Integer.TYPE, Integer.TYPE, 
+				IntegerCodec.class, IntegerCodec.class, IntegerCodec.class, IntegerCodec.class);
+		} catch (NoSuchMethodException e) {
+			throw new WrappedIOException(e);
+		}
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public IterablePosting getPostings(Pointer _pointer) throws IOException
+	{
+		final BitIndexPointer pointer = (BitIndexPointer)_pointer;
+		//this is the hack: only a direct index has a pointer type of DocumentIndexEntry
+		final DocumentIndex fixedDi = pointer instanceof DocumentIndexEntry
+			? new org.terrier.structures.postings.PostingUtil.DocidSpecificDocumentIndex(doi, (DocumentIndexEntry)pointer)
+			: doi;
+		try{
+			return postingConstructor.newInstance(file.readReset(pointer.getOffset()), pointer.getNumberOfEntries(), fixedDi, 
+				chunkSize, fieldCount, idsCodec, tfsCodec, fieldsCodec, blocksCodec);
+		} catch (Exception e) {
+			throw new WrappedIOException(e);
+		}
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is IntegerCodingPostingIndexInputStream.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.integer;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.ByteInputStream;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.BitIndexPointer;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.DocumentIndexEntry;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndexInputStream;
+import org.terrier.structures.Skipable;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.io.WrappedIOException;
+
+/** 
+ * Input stream for an {@link IntegerCodingPostingIndex}.
+ * @since 5.9
+ */
+public class IntegerCodingPostingIndexInputStream implements PostingIndexInputStream, Skipable {
+
+	protected static final Logger logger = LoggerFactory.getLogger(IntegerCodingPostingIndexInputStream.class);
+
+	/** the lexicon input stream providing the offsets */
+	protected final Iterator<? extends BitIndexPointer> pointerList;
+	protected final ByteIn file;
+	protected final DocumentIndex doi;
+	protected final int fieldCount;
+	protected final int chunkSize;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+	protected final IntegerCodec fieldsCodec;
+	protected final IntegerCodec blocksCodec;
+	protected final Constructor<? extends IterablePosting> postingConstructor;
+	protected int currentEntryCount;
+	protected BitIndexPointer currentPointer;
+	protected int entriesSkipped = 0;
+
+	/**
+	 * Constructs an instance of IntegerCodingPostingIndexInputStream.
+	 * @param index index containing the structure
+	 * @param structureName name of the structure
+	 * @param _pointerList iterator providing the pointers of the posting lists
+	 * @param postingIteratorClass IterablePosting class to read the postings
+	 */
+	public IntegerCodingPostingIndexInputStream(
+			IndexOnDisk index, String structureName, 
+			Iterator<? extends BitIndexPointer> _pointerList,
+			Class<? extends IterablePosting> postingIteratorClass) throws IOException
+	{
+		file = new ByteInputStream(index.getPath() + "/" + index.getPrefix() + "." + structureName + ByteIn.USUAL_EXTENSION);
+		pointerList = _pointerList;
+		doi = index.getDocumentIndex();
+		fieldCount = index.getIntIndexProperty("index."+structureName+".fields.count", 0);
+		chunkSize = index.getIntIndexProperty("index."+structureName+".compression.integer.chunk.size", 1024);
+		idsCodec = IntegerCodingPostingIndex.getCodec(index, structureName, "ids");
+		tfsCodec = IntegerCodingPostingIndex.getCodec(index, structureName, "tfs");
+		fieldsCodec = IntegerCodingPostingIndex.getCodec(index, structureName, "fields");
+		blocksCodec = IntegerCodingPostingIndex.getCodec(index, structureName, "blocks");
+		postingConstructor = IntegerCodingPostingIndex.getPostingConstructor(postingIteratorClass);
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public void skip(int numEntries) throws IOException
+	{
+		((Skipable)pointerList).skip(numEntries);
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public int getNumberOfCurrentPostings()
+	{
+		return currentEntryCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public IterablePosting getNextPostings() throws IOException {
+		if (! this.hasNext())
+			return null;
+		BitIndexPointer p = _next();
+		if (p == null)//trailing empty document
+			return null;
+		return loadPostingIterator(p);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean hasNext() {
+		return pointerList.hasNext();
+	}
+
+	protected BitIndexPointer _next()
+	{
+		entriesSkipped = 0;
+		while(pointerList.hasNext())
+		{
+			BitIndexPointer pointer = pointerList.next();
+			if (pointer.getNumberOfEntries() > 0)
+				return pointer;
+			entriesSkipped++;
+		}
+		return null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public IterablePosting next()
+	{
+		BitIndexPointer pointer = _next();
+		if (pointer == null)//trailing empty document
+			return null;
+		try{
+			return loadPostingIterator(pointer);
+		} catch (IOException ioe) {
+			logger.info("Couldn't load posting iterator", ioe);
+			return null;
+		}
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public int getEntriesSkipped()
+	{
+		return entriesSkipped;
+	}
+
+	protected IterablePosting loadPostingIterator(BitIndexPointer pointer) throws IOException
+	{
+		//skip any postings not read
+		if (file.getByteOffset() != pointer.getOffset())
+		{
+			assert pointer.getOffset() > file.getByteOffset();
+			file.skipBytes(pointer.getOffset() - file.getByteOffset());
+		}
+		currentPointer = pointer;
+		currentEntryCount = pointer.getNumberOfEntries();
+		//this is the hack: only a direct index has a pointer type of DocumentIndexEntry
+		final DocumentIndex fixedDi = pointer instanceof DocumentIndexEntry
+			? new org.terrier.structures.postings.PostingUtil.DocidSpecificDocumentIndex(doi, (DocumentIndexEntry)pointer)
+			: doi;
+		try{
+			return postingConstructor.newInstance(file, pointer.getNumberOfEntries(), fixedDi, 
+				chunkSize, fieldCount, idsCodec, tfsCodec, fieldsCodec, blocksCodec);
+		} catch (Exception e) {
+			throw new WrappedIOException("Problem creating IterablePosting", e);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+		IndexUtil.close(pointerList);
+	}
+
+	/** Not supported */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/** 
+	 * {@inheritDoc} 
+	 */
+	@Override
+	public Pointer getCurrentPointer() {
+		return currentPointer;
+	}
+}
@@ -59,6 +59,14 @@ public class ArrayOfBasicIterablePosting extends ArrayOfIdsIterablePosting {
 			return doclens[indice];
 		return 0;
 	}
+
+	/** {@inheritDoc} */
+	@Override
+	public WritablePosting asWritablePosting() {
+		BasicPostingImpl rtr = new BasicPostingImpl(ids[indice], frequencies[indice]);
+		rtr.setDocumentLength(getDocumentLength());
+		return rtr;
+	}
 	
 	
 
@@ -78,4 +78,13 @@ public class ArrayOfBlockFieldIterablePosting extends
 			positionIndice += posCount[indice-1];
 		return rtr;
 	}
+
+	@Override
+	public int next(int target) throws IOException {
+		final int previous = Math.max(indice, 0);
+		final int rtr = super.next(target);
+		for(int i=previous;i<indice;i++)
+			positionIndice += posCount[i];
+		return rtr;
+	}
 }
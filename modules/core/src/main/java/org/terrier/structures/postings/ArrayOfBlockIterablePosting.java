@@ -46,6 +46,12 @@ public class ArrayOfBlockIterablePosting extends ArrayOfBasicIterablePosting imp
 		this.posCount = posCount;
 		this.allpos = allpos;
 	}
+	
+	public ArrayOfBlockIterablePosting(int[] _ids, int[] _freqs, int[] _lens, int[] posCount, int[] allpos) {
+		super(_ids, _freqs, _lens);
+		this.posCount = posCount;
+		this.allpos = allpos;
+	}
 
 	@Override
 	public int[] getPositions() {
@@ -64,4 +70,13 @@ public class ArrayOfBlockIterablePosting extends ArrayOfBasicIterablePosting imp
 		return rtr;
 	}
 
+	@Override
+	public int next(int target) throws IOException {
+		final int previous = Math.max(indice, 0);
+		final int rtr = super.next(target);
+		for(int i=previous;i<indice;i++)
+			positionIndice += posCount[i];
+		return rtr;
+	}
+
 }
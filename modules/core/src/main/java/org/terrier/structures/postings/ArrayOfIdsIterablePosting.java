@@ -27,6 +27,7 @@
 package org.terrier.structures.postings;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /** An instance of IterablePostings that works with a passed array of ids 
  * @author Craig Macdonald */
@@ -51,6 +52,23 @@ public class ArrayOfIdsIterablePosting extends IterablePostingImpl implements Cl
 		return id = ids[++indice];
 	}
 	
+	/** {@inheritDoc} The ids are sorted, hence a binary search is used to find the target. */
+	@Override
+	public int next(int target) throws IOException {
+		if (indice >= 0 && id >= target)
+			return id;
+		int pos = Arrays.binarySearch(ids, indice+1, ids.length, target);
+		if (pos < 0)
+			pos = -pos -1;
+		if (pos == ids.length)
+		{
+			indice = ids.length -1;
+			return id = EOL;
+		}
+		indice = pos;
+		return id = ids[indice];
+	}
+	
 	/** {@inheritDoc} */
 	public boolean endOfPostings() {
 		return (indice == ids.length -1);
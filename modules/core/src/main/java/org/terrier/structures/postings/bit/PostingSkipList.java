@@ -0,0 +1,144 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is PostingSkipList.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+package org.terrier.structures.postings.bit;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.bit.BitIn;
+import org.terrier.structures.postings.IterablePosting;
+
+/** The skip table of a posting list written by <tt>SkipDirectInvertedOutputStream</tt>.
+ * Such posting lists are divided into blocks of a fixed number of postings, and are
+ * preceded by a header, which records the last docid and the length (in bits) of each
+ * block except the last:
+ * <pre>
+ * gamma(numBlocks) [ gamma(blockSize) ( gamma(lastDocid - previousLastDocid) gamma(blockBits) ){numBlocks-1} ]
+ * </pre>
+ * where the previousLastDocid of the first block is -1. The postings themselves follow
+ * in the usual format, so that they can be read sequentially as normal. The skip table
+ * allows {@link IterablePosting#next(int)} to seek directly to the block that may contain
+ * the target docid, without decoding the postings of the preceding blocks.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class PostingSkipList {
+
+	/** Reads the header of a posting list from the specified BitIn. Returns null
+	 * if the posting list consists of a single block, and hence has no skip table.
+	 * @param in stream positioned at the start of the posting list
+	 * @param numEntries number of postings in the posting list
+	 * @return skip table, or null if the posting list has no skip table
+	 */
+	public static PostingSkipList read(BitIn in, int numEntries) throws IOException
+	{
+		if (numEntries <= 0)
+			return null;
+		final int numBlocks = in.readGamma();
+		if (numBlocks == 1)
+			return null;
+		return new PostingSkipList(in, numEntries, numBlocks);
+	}
+
+	final BitIn in;
+	final int numEntries;
+	final int blockSize;
+	/** last docid of each block except the last */
+	final int[] lastDocids;
+	/** bit offset of the start of each block, relative to the first posting */
+	final long[] blockOffsets;
+	/** absolute bit offset of the first posting */
+	final long start;
+
+	PostingSkipList(BitIn _in, int _numEntries, int numBlocks) throws IOException
+	{
+		in = _in;
+		numEntries = _numEntries;
+		blockSize = in.readGamma();
+		lastDocids = new int[numBlocks -1];
+		blockOffsets = new long[numBlocks];
+		int lastDocid = -1;
+		for(int i=0;i<numBlocks-1;i++)
+		{
+			lastDocids[i] = lastDocid += in.readGamma();
+			blockOffsets[i+1] = blockOffsets[i] + in.readGamma();
+		}
+		start = position();
+	}
+
+	/** If the target docid is beyond the block of the next posting to be read, advances the
+	 * stream to the start of the first block that may contain the target docid.
+	 * @param target docid being sought
+	 * @param remaining number of postings not yet read from the stream
+	 * @return the number of postings remaining after the skip, or <tt>remaining</tt> if no skip was made.
+	 */
+	public int skip(int target, int remaining) throws IOException
+	{
+		if (remaining <= 0)
+			return remaining;
+		final int current = (numEntries - remaining) / blockSize;
+		if (current >= lastDocids.length || target <= lastDocids[current])
+			return remaining;
+		int block = Arrays.binarySearch(lastDocids, current+1, lastDocids.length, target);
+		if (block < 0)
+			block = -block -1;
+		long bits = start + blockOffsets[block] - position();
+		assert bits > 0;
+		while(bits > Integer.MAX_VALUE)
+		{
+			in.skipBits(Integer.MAX_VALUE);
+			bits -= Integer.MAX_VALUE;
+		}
+		in.skipBits((int) bits);
+		return numEntries - block * blockSize;
+	}
+
+	/** Returns the docid of the last posting before the block reached by a skip, i.e.
+	 * the docid that the first gap of that block is relative to.
+	 * @param remaining number of postings remaining, as returned by {@link #skip(int, int)}
+	 */
+	public int getSkippedDocid(int remaining)
+	{
+		return lastDocids[(numEntries - remaining) / blockSize -1];
+	}
+
+	/** Returns the number of postings in each block */
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	/** Returns the number of blocks */
+	public int getNumberOfBlocks()
+	{
+		return blockOffsets.length;
+	}
+
+	final long position()
+	{
+		return (in.getByteOffset() << 3) + in.getBitOffset();
+	}
+}
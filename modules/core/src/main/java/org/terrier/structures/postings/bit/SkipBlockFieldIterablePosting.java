@@ -0,0 +1,82 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is SkipBlockFieldIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+package org.terrier.structures.postings.bit;
+
+import java.io.IOException;
+
+import org.terrier.compression.bit.BitIn;
+import org.terrier.structures.DocumentIndex;
+
+/** A {@link BlockFieldIterablePosting}, for postings with docid, TF, field frequencies and positions, which reads posting lists preceded
+ * by a {@link PostingSkipList}. {@link #next(int)} uses the skip table to
+ * avoid decoding postings in blocks that cannot contain the target docid.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class SkipBlockFieldIterablePosting extends BlockFieldIterablePosting
+{
+	private static final long serialVersionUID = 1L;
+	/** skip table for this posting list, or null if it has a single block */
+	protected PostingSkipList skips;
+
+	/**
+	 * Constructor used only for reflection
+	 * @param _fieldCount number of fields
+	 */
+	public SkipBlockFieldIterablePosting(int _fieldCount)
+	{
+		super(_fieldCount);
+	}
+
+	/**
+	 * Constructor
+	 * @param _bitFileReader the bit file where we read the postings from
+	 * @param _numEntries total number of postings to read before returning EOL
+	 * @param _doi the document index to get the doc length of the current docid
+	 * @param _fieldCount number of fields
+	 * @throws IOException
+	 */
+	public SkipBlockFieldIterablePosting(BitIn _bitFileReader, int _numEntries, DocumentIndex _doi, int _fieldCount) throws IOException
+	{
+		super(_bitFileReader, _numEntries, _doi, _fieldCount);
+		skips = PostingSkipList.read(_bitFileReader, _numEntries);
+	}
+
+	@Override
+	public int next(int target) throws IOException
+	{
+		if (skips != null && id < target)
+		{
+			final int remaining = skips.skip(target, numEntries);
+			if (remaining != numEntries)
+			{
+				numEntries = remaining;
+				id = skips.getSkippedDocid(remaining);
+			}
+		}
+		return super.next(target);
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BasicIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BasicPostingImpl;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.WritablePosting;
+
+/** An IterablePosting for postings with docid and TF only, written by an
+ * <tt>IntegerCodingPostingOutputStream</tt>. Posting lists are divided into chunks of
+ * a fixed number of postings. Each chunk is written as:
+ * <pre>
+ * vint(lastDocid - previousLastDocid) vint(bodyBytes) ids tfs [fields] [blocks]
+ * </pre>
+ * where ids are d-gaps compressed as a single array by the ids codec, and tfs likewise
+ * by the tfs codec. Chunks are decoded an array at a time; moreover, {@link #next(int)}
+ * skips over chunks whose last docid is less than the target without decoding them.
+ * @since 5.9
+ */
+@SuppressWarnings("serial")
+public class BasicIntegerCodingIterablePosting extends BasicPostingImpl implements IterablePosting
+{
+	protected final ByteIn input;
+	protected final DocumentIndex doi;
+	protected final int chunkSize;
+	protected final IntegerCodec idsCodec;
+	protected final IntegerCodec tfsCodec;
+
+	/** number of postings in chunks not yet reached */
+	protected int remaining;
+	/** number of postings in the current chunk */
+	protected int chunkCount = 0;
+	/** position of the current posting in the current chunk */
+	protected int chunkPosition = -1;
+	/** docid of the last posting of the previous chunk */
+	protected int chunkBase = -1;
+	/** docid of the last posting of the current chunk */
+	protected int chunkLast = -1;
+	/** compressed size of the body of the current chunk */
+	protected int chunkBytes;
+	/** has the body of the current chunk been decoded */
+	protected boolean chunkDecoded = true;
+
+	protected final int[] ids;
+	protected final int[] tfs;
+
+	/**
+	 * Constructor
+	 * @param _input stream to read the postings from
+	 * @param _numEntries number of postings in the posting list
+	 * @param _doi document index to obtain document lengths from
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields (unused)
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies (unused)
+	 * @param _blocksCodec codec for positions (unused)
+	 */
+	public BasicIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, int _chunkSize, int _fieldCount,
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec)
+	{
+		input = _input;
+		remaining = _numEntries;
+		doi = _doi;
+		chunkSize = _chunkSize;
+		idsCodec = _idsCodec;
+		tfsCodec = _tfsCodec;
+		final int arraySize = Math.min(_chunkSize, _numEntries);
+		ids = new int[arraySize];
+		tfs = new int[arraySize];
+	}
+
+	@Override
+	public int next() throws IOException
+	{
+		if (++chunkPosition >= chunkCount)
+		{
+			if (remaining == 0)
+			{
+				chunkPosition = chunkCount;
+				return id = END_OF_LIST;
+			}
+			readChunkHeader();
+			chunkPosition = 0;
+		}
+		if (! chunkDecoded)
+			decodeChunk();
+		loadPosting(chunkPosition);
+		return id;
+	}
+
+	@Override
+	public int next(int target) throws IOException
+	{
+		if (id >= target)
+			return id;
+		while (target > chunkLast)
+		{
+			if (remaining == 0)
+			{
+				chunkPosition = chunkCount;
+				return id = END_OF_LIST;
+			}
+			if (! chunkDecoded)
+				input.skipBytes(chunkBytes);
+			readChunkHeader();
+		}
+		if (! chunkDecoded)
+			decodeChunk();
+		int p = chunkPosition + 1;
+		//the target is not after the last posting of the chunk
+		while(ids[p] < target)
+			p++;
+		chunkPosition = p;
+		loadPosting(p);
+		return id;
+	}
+
+	protected void readChunkHeader() throws IOException
+	{
+		chunkCount = Math.min(chunkSize, remaining);
+		remaining -= chunkCount;
+		chunkBase = chunkLast;
+		chunkLast += input.readVInt();
+		chunkBytes = input.readVInt();
+		chunkPosition = -1;
+		chunkDecoded = false;
+	}
+
+	/** Decodes the body of the current chunk. Child classes should call this method
+	 * before decoding their additional payloads. */
+	protected void decodeChunk() throws IOException
+	{
+		idsCodec.decompress(input, ids, chunkCount);
+		int docid = chunkBase;
+		for(int i=0;i<chunkCount;i++)
+			ids[i] = docid += ids[i];
+		tfsCodec.decompress(input, tfs, chunkCount);
+		chunkDecoded = true;
+	}
+
+	/** Sets the current posting to be the specified posting of the current chunk */
+	protected void loadPosting(int p)
+	{
+		id = ids[p];
+		tf = tfs[p];
+	}
+
+	@Override
+	public boolean endOfPostings()
+	{
+		return remaining == 0 && chunkPosition >= chunkCount - 1;
+	}
+
+	@Override
+	public int getDocumentLength()
+	{
+		try {
+			return doi.getDocumentLength(id);
+		} catch (Exception e) {
+			throw new RuntimeException("Problem looking for doclength for document "+ id +" "+ e, e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException 
+	{
+		// does not close the underlying file, just the read buffer
+		input.close();
+	}
+
+	@Override
+	public WritablePosting asWritablePosting() 
+	{
+		return new BasicPostingImpl(id, tf);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ID(" + id + ") TF(" + tf + ")";
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BlockFieldIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BlockFieldPostingImpl;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.structures.postings.integer.BlockIntegerCodingIterablePosting.ChunkPositions;
+import org.terrier.utility.ArrayUtils;
+
+/** An IterablePosting for postings with docid, TF, field frequencies and positions, written by an
+ * <tt>IntegerCodingPostingOutputStream</tt>. Field frequencies are encoded as for 
+ * {@link FieldIntegerCodingIterablePosting}, followed by positions as for {@link BlockIntegerCodingIterablePosting}.
+ * @since 5.9
+ */
+@SuppressWarnings("serial")
+public class BlockFieldIntegerCodingIterablePosting extends FieldIntegerCodingIterablePosting implements BlockPosting
+{
+	protected final ChunkPositions chunkPositions;
+
+	/**
+	 * Constructor
+	 * @param _input stream to read the postings from
+	 * @param _numEntries number of postings in the posting list
+	 * @param _doi document index to obtain document lengths from
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies
+	 * @param _blocksCodec codec for positions
+	 */
+	public BlockFieldIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, int _chunkSize, int _fieldCount,
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec)
+	{
+		super(_input, _numEntries, _doi, _chunkSize, _fieldCount, _idsCodec, _tfsCodec, _fieldsCodec, _blocksCodec);
+		chunkPositions = new ChunkPositions(ids.length, _blocksCodec);
+	}
+
+	@Override
+	protected void decodeChunk() throws IOException
+	{
+		super.decodeChunk();
+		chunkPositions.decode(input, chunkCount);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getPositions() {
+		return chunkPositions.get(chunkPosition);
+	}
+
+	@Override
+	public WritablePosting asWritablePosting() {
+		BlockFieldPostingImpl bfpi = new BlockFieldPostingImpl(id, tf, getPositions(), fieldCount);
+		System.arraycopy(fieldFrequencies, 0, bfpi.getFieldFrequencies(), 0, fieldCount);
+		return bfpi;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + id + "," + tf + ",F[" + ArrayUtils.join(fieldFrequencies, ",")
+			+ "],B[" + ArrayUtils.join(getPositions(), ",") + "])";
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is BlockIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.BlockPostingImpl;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.utility.ArrayUtils;
+
+/** An IterablePosting for postings with docid, TF and positions, written by an
+ * <tt>IntegerCodingPostingOutputStream</tt>. After the ids and tfs of each chunk, the 
+ * number of positions of each posting is compressed as an array by the blocks codec, followed
+ * by all of the positions of the chunk as a single array, each posting's positions d-gapped.
+ * @since 5.9
+ */
+@SuppressWarnings("serial")
+public class BlockIntegerCodingIterablePosting extends BasicIntegerCodingIterablePosting implements BlockPosting
+{
+	protected final ChunkPositions chunkPositions;
+
+	/**
+	 * Constructor
+	 * @param _input stream to read the postings from
+	 * @param _numEntries number of postings in the posting list
+	 * @param _doi document index to obtain document lengths from
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields (unused)
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies (unused)
+	 * @param _blocksCodec codec for positions
+	 */
+	public BlockIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, int _chunkSize, int _fieldCount,
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec)
+	{
+		super(_input, _numEntries, _doi, _chunkSize, _fieldCount, _idsCodec, _tfsCodec, _fieldsCodec, _blocksCodec);
+		chunkPositions = new ChunkPositions(ids.length, _blocksCodec);
+	}
+
+	@Override
+	protected void decodeChunk() throws IOException
+	{
+		super.decodeChunk();
+		chunkPositions.decode(input, chunkCount);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getPositions() {
+		return chunkPositions.get(chunkPosition);
+	}
+
+	@Override
+	public WritablePosting asWritablePosting() {
+		return new BlockPostingImpl(id, tf, getPositions());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + id + "," + tf + ",B[" + ArrayUtils.join(getPositions(), ",") + "])";
+	}
+
+	/** The positions of the postings of a chunk */
+	static final class ChunkPositions
+	{
+		final IntegerCodec codec;
+		/** number of positions of each posting */
+		final int[] counts;
+		/** offset of the first position of each posting */
+		final int[] offsets;
+		int[] positions = new int[0];
+		/** posting for which positions were last obtained */
+		int lastPosting = -1;
+		int[] lastPositions;
+
+		ChunkPositions(int chunkSize, IntegerCodec _codec)
+		{
+			codec = _codec;
+			counts = new int[chunkSize];
+			offsets = new int[chunkSize+1];
+		}
+
+		void decode(ByteIn input, int num) throws IOException
+		{
+			codec.decompress(input, counts, num);
+			int total = 0;
+			for(int i=0;i<num;i++)
+			{
+				offsets[i] = total;
+				total += counts[i];
+			}
+			offsets[num] = total;
+			if (positions.length < total)
+				positions = new int[total];
+			codec.decompress(input, positions, total);
+			for(int i=0;i<num;i++)
+				for(int j=offsets[i]+1;j<offsets[i+1];j++)
+					positions[j] += positions[j-1];
+			lastPosting = -1;
+		}
+
+		int[] get(int posting)
+		{
+			if (posting != lastPosting)
+			{
+				lastPositions = Arrays.copyOfRange(positions, offsets[posting], offsets[posting+1]);
+				lastPosting = posting;
+			}
+			return lastPositions;
+		}
+	}
+}
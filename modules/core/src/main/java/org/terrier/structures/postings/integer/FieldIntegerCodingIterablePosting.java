@@ -0,0 +1,132 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FieldIntegerCodingIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.postings.integer;
+
+import java.io.IOException;
+
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.FieldDocumentIndex;
+import org.terrier.structures.FieldDocumentIndexEntry;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.FieldPostingImpl;
+import org.terrier.structures.postings.WritablePosting;
+import org.terrier.utility.ArrayUtils;
+
+/** An IterablePosting for postings with docid, TF and field frequencies, written by an
+ * <tt>IntegerCodingPostingOutputStream</tt>. After the ids and tfs of each chunk, the 
+ * frequencies of each field are compressed as one array per field by the fields codec.
+ * @since 5.9
+ */
+@SuppressWarnings("serial")
+public class FieldIntegerCodingIterablePosting extends BasicIntegerCodingIterablePosting implements FieldPosting
+{
+	protected final int fieldCount;
+	protected final IntegerCodec fieldsCodec;
+	/** field frequencies of the current chunk, for each field */
+	protected final int[][] chunkFieldFrequencies;
+	protected final int[] fieldFrequencies;
+	protected final FieldDocumentIndex fdoi;
+
+	/**
+	 * Constructor
+	 * @param _input stream to read the postings from
+	 * @param _numEntries number of postings in the posting list
+	 * @param _doi document index to obtain document lengths from
+	 * @param _chunkSize number of postings in each chunk
+	 * @param _fieldCount number of fields
+	 * @param _idsCodec codec for docids
+	 * @param _tfsCodec codec for frequencies
+	 * @param _fieldsCodec codec for field frequencies
+	 * @param _blocksCodec codec for positions (unused)
+	 */
+	public FieldIntegerCodingIterablePosting(ByteIn _input, int _numEntries, DocumentIndex _doi, int _chunkSize, int _fieldCount,
+			IntegerCodec _idsCodec, IntegerCodec _tfsCodec, IntegerCodec _fieldsCodec, IntegerCodec _blocksCodec)
+	{
+		super(_input, _numEntries, _doi, _chunkSize, _fieldCount, _idsCodec, _tfsCodec, _fieldsCodec, _blocksCodec);
+		fieldCount = _fieldCount;
+		fieldsCodec = _fieldsCodec;
+		chunkFieldFrequencies = new int[_fieldCount][ids.length];
+		fieldFrequencies = new int[_fieldCount];
+		fdoi = _doi instanceof FieldDocumentIndex ? (FieldDocumentIndex)_doi : null;
+	}
+
+	@Override
+	protected void decodeChunk() throws IOException
+	{
+		super.decodeChunk();
+		for(int f=0;f<fieldCount;f++)
+			fieldsCodec.decompress(input, chunkFieldFrequencies[f], chunkCount);
+	}
+
+	@Override
+	protected void loadPosting(int p)
+	{
+		super.loadPosting(p);
+		for(int f=0;f<fieldCount;f++)
+			fieldFrequencies[f] = chunkFieldFrequencies[f][p];
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getFieldFrequencies() {
+		return fieldFrequencies;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int[] getFieldLengths() {
+		try{
+			return fdoi != null
+				? fdoi.getFieldLengths(id)
+				: ((FieldDocumentIndexEntry)doi.getDocumentEntry(id)).getFieldLengths();
+		} catch (IOException ioe) {
+			throw new RuntimeException("Problem looking for field lengths for document "+ id, ioe);
+		}
+	}
+
+	/** {@inheritDoc}.
+	 * This operation is unsupported. */
+	@Override
+	public void setFieldLengths(int[] fl) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public WritablePosting asWritablePosting() {
+		FieldPostingImpl fbp = new FieldPostingImpl(id, tf, fieldCount);
+		System.arraycopy(fieldFrequencies, 0, fbp.getFieldFrequencies(), 0, fieldCount);
+		return fbp;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + id + "," + tf + ",F[" + ArrayUtils.join(fieldFrequencies, ",") + "])";
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org/
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is FixedSizeFloatWritableFactory.java
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original contributor)
+ */
+package org.terrier.structures.seralization;
+import org.apache.hadoop.io.FloatWritable;
+/** Makes a FloatWritable, which has a fixed Writable size of 4 bytes.
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class FixedSizeFloatWritableFactory implements FixedSizeWriteableFactory<FloatWritable>
+{
+	/** Return size of FloatWritable, namely 4 bytes */
+	public int getSize()
+	{
+		return 4;
+	}
+
+	/** Makes a new FloatWritable */
+	public FloatWritable newInstance() { 
+		return new FloatWritable();
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ShardedFull.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+
+package org.terrier.matching.daat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.realtime.LiveDocs;
+import org.terrier.realtime.multi.MultiIndex;
+import org.terrier.realtime.multi.MultiStats;
+import org.terrier.structures.CollectionStatistics;
+import org.terrier.structures.Index;
+
+/** A document-at-a-time matching strategy for a {@link MultiIndex}, such as an IncrementalIndex, 
+ * which matches each shard of the index in a separate thread. The statistics of each query term
+ * are first obtained from the whole MultiIndex, and the collection statistics are those of all
+ * shards, such that the scores of documents in different shards are comparable. Each shard is then
+ * matched by {@link Full} on the ForkJoinPool shared with other multi-threaded matching strategies, using the posting lists of that shard alone. The 
+ * top-ranked documents of each shard are offset by the number of documents in the preceding shards, 
+ * and merged. The results are identical to those of {@link Full} on the MultiIndex, however, 
+ * the response time of queries can be reduced when idle processors are available.
+ * <p>
+ * Documents deleted from the {@link LiveDocs} of an on-disk shard are skipped while matching
+ * the shard, such that each shard retrieves at most the requested number of documents.
+ * Indices that are not a MultiIndex, or that have only one shard selected for matching, are 
+ * matched by a single thread. This matching strategy can be selected using 
+ * <tt>-Dtrec.matching=daat.ShardedFull</tt>.
+ * <p><b>Properties:</b>
+ * <ul>
+ * <li><tt>matching.daat.parallel.threads</tt> - number of threads used for matching, shared by all queries. 
+ * Defaults to the number of available processors.</li>
+ * </ul>
+ * @since 5.9
+ * @author Craig Macdonald
+ */
+public class ShardedFull extends Full {
+	
+	/** state for matching one shard, whose candidate results are numbered by the docids of the MultiIndex */
+	static class ShardMatchingState extends DAATFullMatchingState {
+		/** number of documents in the preceding shards */
+		int offset;
+		/** documents deleted from the shard that its posting lists do not skip, or null */
+		BitSet deleted;
+	}
+	
+	/** Create a new Matching instance based on the specified index */
+	public ShardedFull(Index index) 
+	{
+		super(index);
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public ResultSet match(String queryNumber, MatchingQueryTerms queryTerms) throws IOException 
+	{
+		if (! (index instanceof MultiIndex))
+			return super.match(queryNumber, queryTerms);
+		//the same shards are used for the statistics and for matching, even if the index changes
+		final MultiIndex snapshot = ((MultiIndex) index).snapshot();
+		final List<Index> shards = snapshot.getShards();
+		final int numShards = shards.size();
+		if (numShards < 2)
+			return super.match(queryNumber, queryTerms);
+		
+		//statistics of the same shards that are matched
+		final CollectionStatistics[] shardStats = new CollectionStatistics[numShards];
+		for(int s=0;s<numShards;s++)
+			shardStats[s] = shards.get(s).getCollectionStatistics();
+		final CollectionStatistics globalStats = MultiStats.factory(shardStats);
+		
+		final DAATFullMatchingState state = (DAATFullMatchingState) initialise(queryTerms);
+		final ShardMatchingState[] shardStates = new ShardMatchingState[numShards];
+		try{
+			//obtains the statistics of each term from all shards, recording these in queryTerms
+			state.plm = new PostingListManager(snapshot, globalStats, queryTerms);
+			state.plm.prepare(false);
+			
+			// Check whether we need to match an empty query. If so, then return the existing result set.
+			if (MATCH_EMPTY_QUERY && state.plm.size() == 0) {
+				state.resultSet.setExactResultSize(globalStats.getNumberOfDocuments());
+				state.resultSet.setResultSize(globalStats.getNumberOfDocuments());
+				return state.resultSet;
+			}
+			
+			int offset = 0;
+			for(int s=0;s<numShards;s++)
+			{
+				//each shard has its own posting list iterators and weighting models
+				final Index shard = shards.get(s);
+				final ShardMatchingState shardState = shardStates[s] = new ShardMatchingState();
+				shardState.queryTerms = queryTerms.clone();
+				shardState.offset = offset;
+				shardState.deleted = MultiIndex.getDeletedDocuments(shard);
+				shardState.numberOfRequestedDocuments = state.numberOfRequestedDocuments;
+				shardState.plm = new PostingListManager(shard, globalStats, shardState.queryTerms);
+				shardState.plm.prepare(true);
+				//a hook for subclasses
+				initialisePostings(shardState);
+				offset += shardStats[s].getNumberOfDocuments();
+			}
+			
+			final List<Callable<Queue<CandidateResult>>> tasks = new ArrayList<>(numShards);
+			for(ShardMatchingState shardState : shardStates)
+				tasks.add(() -> matchRange(shardState, 0, Integer.MAX_VALUE));
+			
+			// merge the top-ranked documents of each shard
+			final int RETRIEVED_SET_SIZE = state.numberOfRequestedDocuments;
+			final Queue<CandidateResult> candidateResultList = new PriorityQueue<CandidateResult>();
+			for (Future<Queue<CandidateResult>> shardResults : getPool().invokeAll(tasks))
+			{
+				for (CandidateResult cr : shardResults.get())
+				{
+					candidateResultList.add(cr);
+					if (RETRIEVED_SET_SIZE != 0 && candidateResultList.size() > RETRIEVED_SET_SIZE)
+						candidateResultList.poll();
+				}
+			}
+			
+			state.resultSet = makeResultSet(state, candidateResultList);
+			state.numberOfRetrievedDocuments = state.resultSet.getScores().length;
+			finalise(state, /*sort=*/false); // we don't need to sort here because state.resultSet is already sorted
+			return state.resultSet;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while matching query " + queryNumber, ie);
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException) ee.getCause();
+			throw new IOException("Failed to match query " + queryNumber, ee.getCause());
+		} finally {
+			if (state.plm != null)
+				state.plm.close();
+			for(ShardMatchingState shardState : shardStates)
+				if (shardState != null && shardState.plm != null)
+					shardState.plm.close();
+		}
+	}
+	
+	/** Skips the documents deleted from a shard, whose docids are those of the shard */
+	@Override
+	protected boolean isRetrievable(final DAATFullMatchingState state, final int currentDocId) {
+		if (state instanceof ShardMatchingState) {
+			final BitSet deleted = ((ShardMatchingState) state).deleted;
+			return deleted == null || ! deleted.get(currentDocId);
+		}
+		return true;
+	}
+	
+	/** Numbers the candidate results of a shard by the docids of the MultiIndex */
+	@Override
+	protected CandidateResult makeCandidateResult(final DAATFullMatchingState state, final int currentDocId) {
+		if (state instanceof ShardMatchingState)
+			return super.makeCandidateResult(state, currentDocId + ((ShardMatchingState) state).offset);
+		return super.makeCandidateResult(state, currentDocId);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getInfo() {
+		return "daat.ShardedFull";
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is LiveDocs.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.realtime;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+/**
+ * The live documents of an index shard, recorded as a bitset of the docids that have been 
+ * deleted (tombstones). Deleted documents remain in the index structures of the shard, but are
+ * skipped by its posting lists, until they are purged when the shard is merged.
+ * <p>
+ * For an {@link IndexOnDisk}, the live documents are the <tt>livedocs</tt> index structure, 
+ * which is persisted to the file <tt>prefix.livedocs</tt> when it is flushed or closed.
+ * <p>
+ * Deletions are copy-on-write: the bitset returned by {@link #getDeletedDocuments()} is never
+ * modified, so that posting lists can skip deleted documents without synchronisation. To avoid
+ * copying the bitset for every deletion, deletions are held in a small set of pending docids,
+ * which are applied to a single copy of the bitset when the deletions are next read, e.g. by 
+ * the next query.
+ * 
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class LiveDocs implements Flushable, Closeable {
+
+	/** name of the index structure */
+	public static final String STRUCTURE_NAME = "livedocs";
+	
+	/** deleted docids. A published bitset is never modified */
+	protected volatile BitSet deleted;
+	/** docids deleted since the bitset was published, or null if none. Guarded by this */
+	protected volatile IntOpenHashSet pending;
+	/** file that the deletions are persisted to, or null if they are held only in memory */
+	protected final String filename;
+	protected boolean dirty = false;
+	
+	/** Constructs live documents held in memory, where all documents are live */
+	public LiveDocs() {
+		this.filename = null;
+		this.deleted = new BitSet();
+	}
+	
+	/** Constructs the live documents of an index on disk, reading its deletions if any have been persisted */
+	public LiveDocs(IndexOnDisk index, String structureName) throws IOException {
+		this.filename = index.getPath() + ApplicationSetup.FILE_SEPARATOR + index.getPrefix() + "." + structureName;
+		BitSet b = new BitSet();
+		if (Files.exists(filename)) {
+			try (DataInputStream dis = new DataInputStream(Files.openFileStream(filename))) {
+				long[] words = new long[dis.readInt()];
+				for (int i = 0; i < words.length; i++)
+					words[i] = dis.readLong();
+				b = BitSet.valueOf(words);
+			}
+		}
+		this.deleted = b;
+	}
+	
+	/** Returns the bitset of deleted docids, including any pending deletions */
+	protected BitSet current() {
+		if (pending == null)
+			return deleted;
+		synchronized (this) {
+			publish();
+			return deleted;
+		}
+	}
+	
+	/** Applies the pending deletions to a copy of the bitset, which is then published */
+	private void publish() {
+		if (pending == null)
+			return;
+		BitSet b = (BitSet) deleted.clone();
+		for (IntIterator iter = pending.iterator(); iter.hasNext();)
+			b.set(iter.nextInt());
+		deleted = b;
+		pending = null;
+	}
+	
+	/** Returns true if the document has not been deleted */
+	public boolean isLive(int docid) {
+		return ! current().get(docid);
+	}
+	
+	/** Returns true if any documents have been deleted */
+	public boolean hasDeletions() {
+		return ! current().isEmpty();
+	}
+	
+	/** Returns the number of deleted documents */
+	public int getNumberOfDeletedDocuments() {
+		return current().cardinality();
+	}
+	
+	/** Returns the deleted docids, or null if no documents have been deleted. The returned bitset must not be modified. */
+	public BitSet getDeletedDocuments() {
+		BitSet b = current();
+		return b.isEmpty() ? null : b;
+	}
+	
+	/** Deletes a document. Returns false if the document was already deleted */
+	public synchronized boolean delete(int docid) {
+		if (deleted.get(docid) || (pending != null && pending.contains(docid)))
+			return false;
+		IntOpenHashSet p = pending;
+		if (p == null)
+			p = new IntOpenHashSet();
+		p.add(docid);
+		pending = p;
+		dirty = true;
+		return true;
+	}
+	
+	/** Deletes all of the specified documents */
+	public synchronized void delete(BitSet docids) {
+		publish();
+		BitSet b = (BitSet) deleted.clone();
+		b.or(docids);
+		if (! b.equals(deleted)) {
+			deleted = b;
+			dirty = true;
+		}
+	}
+	
+	/** Writes the deletions to disk, if they have changed */
+	@Override
+	public synchronized void flush() throws IOException {
+		if (! dirty || filename == null)
+			return;
+		long[] words = current().toLongArray();
+		try (DataOutputStream dos = new DataOutputStream(Files.writeFileStream(filename))) {
+			dos.writeInt(words.length);
+			for (long w : words)
+				dos.writeLong(w);
+		}
+		dirty = false;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+	
+	/** Returns the documents deleted from an index, or null if it has no deletions */
+	public static BitSet getDeletedDocuments(Index index) {
+		if (! index.hasIndexStructure(STRUCTURE_NAME))
+			return null;
+		LiveDocs liveDocs = (LiveDocs) index.getIndexStructure(STRUCTURE_NAME);
+		return liveDocs == null ? null : liveDocs.getDeletedDocuments();
+	}
+	
+	/** Returns the live documents of an index on disk, adding the index structure if it does not already exist */
+	public static LiveDocs getOrCreate(IndexOnDisk index) throws IOException {
+		synchronized (index) {
+			if (! index.hasIndexStructure(STRUCTURE_NAME)) {
+				index.addIndexStructure(STRUCTURE_NAME, LiveDocs.class.getName(), 
+						"org.terrier.structures.IndexOnDisk,java.lang.String", "index,structureName");
+				index.flush();
+			}
+			return (LiveDocs) index.getIndexStructure(STRUCTURE_NAME);
+		}
+	}
+}
@@ -29,14 +29,16 @@ package org.terrier.realtime;
 import java.util.Map;
 
 import org.terrier.indexing.Document;
+import org.terrier.structures.VersionedIndex;
 import org.terrier.structures.indexing.DocumentPostingList;
 
 /**
- * Interface describing an index that can be updated
+ * Interface describing an index that can be updated. The version of the index
+ * (see {@link VersionedIndex}) increases with each update, including the removal of a document.
  * @author Richard McCreadie
  * @since 4.0
  */
-public interface UpdatableIndex {
+public interface UpdatableIndex extends VersionedIndex {
 	
 	/**
 	 * Add a new document to the index.
@@ -66,19 +66,19 @@ public class IncrementalDeletePolicy {
 		return indicesToDelete;
 	}
 	
-	public void runPolicy(List<Index> indices) {
+	public void runPolicy(IncrementalIndex incrementalIndex) {
 		// Run the delete policy
+		List<Index> indices = incrementalIndex.getShards();
 		List<Integer> indicesToDelete = getIndicesToDelete(indices);
 		if (indicesToDelete.size()>0) {
-			synchronized (indices) {
-				int numDeleted = 0;
-				for (Integer i : indicesToDelete) {
-					Index index = indices.remove(i-numDeleted);
-					if (index instanceof IndexOnDisk) {
-						
-						deleteIndex((IndexOnDisk)index);
-					}
-					numDeleted++;
+			List<Index> removed = new ArrayList<Index>(indicesToDelete.size());
+			for (Integer i : indicesToDelete)
+				removed.add(indices.get(i));
+			incrementalIndex.replaceShards(removed, null);
+			for (Index index : removed) {
+				if (index instanceof IndexOnDisk) {
+					
+					deleteIndex((IndexOnDisk)index);
 				}
 			}
 		}
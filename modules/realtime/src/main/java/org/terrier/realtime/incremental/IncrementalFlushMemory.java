@@ -27,12 +27,20 @@
 
 package org.terrier.realtime.incremental;
 
+import org.terrier.realtime.memory.MemoryInvertedIndex;
 import org.terrier.utility.ApplicationSetup;
 import org.terrier.utility.RuntimeMemoryChecker;
+import org.terrier.utility.UnitUtils;
 
 /**
  * An IncrementalFlushPolicy that will flush an index to disk after
- * a memory-used threshold has been reached.
+ * a memory-used threshold has been reached. By default, the threshold is
+ * a fraction of the JVM heap (<tt>incremental.flushmemory</tt>). If
+ * <tt>incremental.flushmemory.postings</tt> is set (e.g. "256M"), the
+ * index is instead flushed once the posting lists of the in-memory index 
+ * use that many bytes, as reported by {@link MemoryInvertedIndex#getMemoryConsumption()}.
+ * The heap is not checked while a flush is pending, as the memory index being flushed
+ * is still on the heap until its on-disk copy replaces it.
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
@@ -42,6 +50,11 @@ public class IncrementalFlushMemory extends IncrementalFlushPolicy {
 	 * Maximum memory to use before flushing to disk.
 	 */
 	private double maxMem;
+	
+	/*
+	 * Maximum bytes of the in-memory posting lists before flushing to disk, or 0 to check the heap.
+	 */
+	private long maxPostingsBytes;
 
 	/**
 	 * Get max memory from terrier.properties.
@@ -50,6 +63,8 @@ public class IncrementalFlushMemory extends IncrementalFlushPolicy {
 		super(index);
 		maxMem = Double.parseDouble(ApplicationSetup.getProperty(
 				"incremental.flushmemory", "0.70"));
+		maxPostingsBytes = UnitUtils.parseLong(ApplicationSetup.getProperty(
+				"incremental.flushmemory.postings", "0"));
 	}
 
 	/**
@@ -63,6 +78,19 @@ public class IncrementalFlushMemory extends IncrementalFlushPolicy {
 	 * Is flushing required?
 	 */
 	public boolean flushCheck() {
+		if (maxPostingsBytes > 0)
+			return ((MemoryInvertedIndex) index.memory.getInvertedIndex())
+					.getMemoryConsumption() >= maxPostingsBytes;
+		// the heap still holds the memory indices awaiting their flush
+		if (index.isFlushPending())
+			return false;
+		return isMemoryLow();
+	}
+	
+	/**
+	 * Is the heap usage above the threshold?
+	 */
+	protected boolean isMemoryLow() {
 		return new RuntimeMemoryChecker(
 				ApplicationSetup.MEMORY_THRESHOLD_SINGLEPASS, maxMem)
 				.checkMemory();
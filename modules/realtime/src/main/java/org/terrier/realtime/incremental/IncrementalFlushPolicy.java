@@ -28,12 +28,13 @@
 package org.terrier.realtime.incremental;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collections;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.realtime.memory.MemoryIndex;
-import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
 
 /**
@@ -41,7 +42,7 @@ import org.terrier.structures.IndexOnDisk;
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
-public class IncrementalFlushPolicy implements Runnable {
+public class IncrementalFlushPolicy {
 	private static final Logger logger = LoggerFactory
 			.getLogger(IncrementalFlushPolicy.class);
 	
@@ -51,16 +52,10 @@ public class IncrementalFlushPolicy implements Runnable {
 		this.index = index;
 	}
 
-	/*
-	 * List of indices to flush. (Reference to list in MultiIndex).
-	 */
-	private static List<Index> indices;
-	
 	/**
-	 * Create a new flush thread.
+	 * Create a new flush policy.
 	 */
-	public static IncrementalFlushPolicy get(String policy, List<Index> indices, IncrementalIndex index) {
-		IncrementalFlushPolicy.indices = indices;
+	public static IncrementalFlushPolicy get(String policy, IncrementalIndex index) {
 		if (policy.equals("flushdocs"))
 			return new IncrementalFlushDocs(index);
 		if (policy.equals("flushmem"))
@@ -85,19 +80,18 @@ public class IncrementalFlushPolicy implements Runnable {
 	}
 
 	/**
-	 * Flush contents of in-memory index to disk.
+	 * Flush contents of an in-memory index to disk, and replace it 
+	 * with the on-disk index in the shards of the incremental index.
 	 */
-	public void run() {
+	public void flush(MemoryIndex memory) {
 
 		// Index prefix and prefix ID.
 		String partition = index.prefix + "-"
 				+ index.prefixID;
 
 		// Write in-memory index to disk.
-		// List position indices.size()-2.
 		try {
-			((MemoryIndex) indices.get(indices.size() - 2)).write(
-					index.path, partition);
+			memory.write(index.path, partition);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -107,8 +101,23 @@ public class IncrementalFlushPolicy implements Runnable {
 		
 		// Update list of indices (replace memory with the disk index).
 		IndexOnDisk indexOnDisk = IndexOnDisk.createIndex(index.path, partition);
-		synchronized (indices) {
-			indices.set(indices.size() - 2, indexOnDisk);
+		if (indexOnDisk == null) {
+			// keep the documents searchable in memory
+			logger.error("***REALTIME*** IncrementalIndex could not load flushed index " + partition + ": " + IndexOnDisk.getLastIndexLoadError());
+			return;
+		}
+		index.prepareShard(indexOnDisk);
+		synchronized(index) {
+			// documents removed while the index was written
+			BitSet deleted = memory.getLiveDocs().getDeletedDocuments();
+			if (deleted != null) {
+				try {
+					LiveDocs.getOrCreate(indexOnDisk).delete(deleted);
+				} catch (IOException e) {
+					logger.error("***REALTIME*** IncrementalIndex could not record removed documents of " + partition, e);
+				}
+			}
+			index.replaceShards(Collections.singletonList(memory), indexOnDisk);
 		}
 
 		logger.info("***REALTIME*** IncrementalIndex flushed: " + partition);
@@ -29,11 +29,16 @@ package org.terrier.realtime.incremental;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.indexing.Document;
 import org.terrier.querying.IndexRef;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.realtime.UpdatableIndex;
 import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.structures.Index;
@@ -56,10 +62,23 @@ import org.terrier.utility.ApplicationSetup;
  * been flushed to disk, optionally the on-disk portion of the incremental index can then be merged
  * together (based upon a MergePolicy) and/or deleted (based upon a DeletePolicy).</p>
  * 
+ * <p>Flushing to disk, merging and deleting take place on a background thread, such that
+ * indexing continues on a new memory index. Each flushed or merged index is published atomically
+ * in place of the shards it replaces, so queries never wait for a flush or a merge.</p>
+ * 
+ * <p>Documents can be removed using {@link #removeDocument(int)}, which records the deletion in
+ * the {@link LiveDocs} of the shard containing the document. Deleted documents are no longer
+ * retrieved, and are purged from on-disk shards when these are merged. As merges renumber 
+ * the documents that follow a purged document, docids should be obtained again (e.g. from the
+ * docnos in the meta index) after a merge. A document is updated by removing it, and indexing
+ * its new version.</p>
+ * 
  * <p><b>Properties</b></p>
  * <ul><li>incremental.flush: the flush policy to use. Four possible values are supported: noflush (default), flushdocs, flushmem, flushtime</li></ul>
  * <ul><li>incremental.merge: the merge policy to use. Three possible values are supported: nomerge (default), single, geometric</li></ul>
  * <ul><li>incremental.delete: the delete policy to use. Two possible values are supported: nodelete (default), deleteFixedSize</li></ul>
+ * <ul><li>incremental.flush.pending: the maximum number of full memory indices that can be awaiting their flush to disk, 
+ * after which indexing waits for the oldest flush to complete. Default 2.</li></ul>
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -123,6 +142,17 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 	
 	/** A lock that stops multiple indexing operations from happening at once **/
     Object indexingLock = new Object();
+    
+    /** The thread that flushes, merges and deletes index shards, in the order that flushes are requested **/
+    private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+    	Thread t = new Thread(r, "IncrementalIndex-flush");
+    	t.setDaemon(true);
+    	return t;
+    });
+    /** The maximum number of memory indices awaiting their flush **/
+    private final int maxPendingFlushes = Integer.parseInt(ApplicationSetup.getProperty("incremental.flush.pending", "2"));
+    /** Permits for the memory indices awaiting their flush **/
+    private final Semaphore pendingFlushes = new Semaphore(maxPendingFlushes);
 	
 	
 	/**
@@ -248,12 +278,12 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 
 		// Flush policy.
 		policy = ApplicationSetup.getProperty("incremental.flush", "noflush");
-		flushPolicy = IncrementalFlushPolicy.get(policy, super.indices, this);
+		flushPolicy = IncrementalFlushPolicy.get(policy, this);
 		flush = flushPolicy.flushPolicy();
 
 		// Merge policy.
 		policy = ApplicationSetup.getProperty("incremental.merge", "nomerge");
-		mergePolicy = IncrementalMergePolicy.get(policy, super.indices, this);
+		mergePolicy = IncrementalMergePolicy.get(policy, this);
 		merge = mergePolicy.mergePolicy();
 		
 		// Delete Policy
@@ -276,6 +306,7 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 
 		// Index document.
 		memory.indexDocument(doc);
+		version.incrementAndGet();
 
 		// Check flush.
 		if (flush && flushPolicy.flushCheck() == true)
@@ -299,6 +330,7 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 
 		// Index document.
 		memory.indexDocument(docProperties, docContents);
+		version.incrementAndGet();
 
 		// Check flush.
 		if (flush && flushPolicy.flushCheck() == true)
@@ -307,33 +339,86 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 		}
 	}
 
-	/** {@inheritDoc} */
+	/** 
+	 * {@inheritDoc} 
+	 * The in-memory index is replaced by a new (empty) in-memory index, while 
+	 * it is flushed to disk in the background. 
+	 */
 	public void flush() throws IOException {
 
-		// Create new (empty) in-memory index.
-		synchronized (super.indices) {
-			super.indices.add(memory = new MemoryIndex());
-		}
-
-		// Flush old (full) in-memory index to disk.
-		flushPolicy.run();
-
-		// Run delete policy to remove old indices if any
-		if (delete && deletePolicy.deletePolicy() == true) {
-			deletePolicy.runPolicy(indices);
+		synchronized(indexingLock) {
+			
+		// Wait if too many memory indices are awaiting their flush.
+		try {
+			pendingFlushes.acquire();
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException(ie.getMessage());
 		}
 		
-		// Check merge.
-		if (merge && mergePolicy.mergeCheck() == true)
-			((Runnable) mergePolicy).run();
+		// Create new (empty) in-memory index.
+		final MemoryIndex full = memory;
+		addShard(memory = new MemoryIndex());
 		
-
+		background.execute(() -> {
+			try {
+				// Flush old (full) in-memory index to disk.
+				flushPolicy.flush(full);
+
+				// Run delete policy to remove old indices if any
+				if (delete && deletePolicy.deletePolicy() == true) {
+					deletePolicy.runPolicy(this);
+				}
+				
+				// Check merge.
+				if (merge && mergePolicy.mergeCheck() == true)
+					((Runnable) mergePolicy).run();
+			} catch (Exception e) {
+				logger.error("***REALTIME*** IncrementalIndex could not flush to disk", e);
+			} finally {
+				pendingFlushes.release();
+			}
+		});
+		
+		}
+	}
+	
+	/**
+	 * Returns true if a memory index is awaiting its flush, or a flush is followed by a merge.
+	 */
+	public boolean isFlushPending() {
+		return pendingFlushes.availablePermits() < maxPendingFlushes;
+	}
+	
+	/** Replaces the flush policy of this index */
+	void setFlushPolicy(IncrementalFlushPolicy policy) {
+		flushPolicy = policy;
+		flush = policy.flushPolicy();
+	}
+	
+	/**
+	 * Waits until all flushes requested so far, and their merges, are complete.
+	 * @throws IOException if interrupted while waiting
+	 */
+	public void awaitFlushes() throws IOException {
+		try {
+			pendingFlushes.acquire(maxPendingFlushes);
+			pendingFlushes.release(maxPendingFlushes);
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException(ie.getMessage());
+		}
 	}
 
 	/** {@inheritDoc} */
 	public void close() throws IOException {
 		if (flush && flushPolicy.flushCheck() == true)
 			flush();
+		background.shutdown();
+		try {
+			background.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException(ie.getMessage());
+		}
+		flushLiveDocs();
 	}
 	
 	/** This method prints out the last time this index was updated as a String in GMT format **/
@@ -367,9 +452,39 @@ public class IncrementalIndex extends org.terrier.realtime.multi.MultiIndex impl
 		this.prefixID = prefixID;
 	}
 
+	/** 
+	 * Removes a document, by marking it as deleted in the live documents of its shard.
+	 * Returns false if the docid is not in this index or was already removed.
+	 */
 	@Override
 	public boolean removeDocument(int docid) {
-		return false;
+		// the shards cannot be replaced while the deletion is recorded
+		synchronized(this) {
+			int offset = 0;
+			for (Index shard : getSelectedShards()) {
+				int numDocs = shard.getCollectionStatistics().getNumberOfDocuments();
+				if (docid < offset + numDocs) {
+					if (docid < offset)
+						return false;
+					boolean removed = false;
+					if (shard instanceof UpdatableIndex)
+						removed = ((UpdatableIndex) shard).removeDocument(docid - offset);
+					else if (shard instanceof IndexOnDisk) {
+						try {
+							removed = LiveDocs.getOrCreate((IndexOnDisk) shard).delete(docid - offset);
+						} catch (IOException ioe) {
+							logger.error("***REALTIME*** IncrementalIndex could not remove document " + docid, ioe);
+							return false;
+						}
+					}
+					if (removed)
+						version.incrementAndGet();
+					return removed;
+				}
+				offset += numDocs;
+			}
+			return false;
+		}
 	}
 
 	@Override
@@ -33,9 +33,6 @@ import gnu.trove.TIntIntIterator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terrier.structures.Index;
-import org.terrier.structures.IndexOnDisk;
-import org.terrier.structures.merging.StructureMerger;
 import org.terrier.utility.ApplicationSetup;
 
 /**
@@ -136,39 +133,7 @@ public class IncrementalMergeGeometric extends IncrementalMergePolicy implements
 	 * Merge.
 	 */
 	private int merge(int partition1, int partition2) {
-
-		// Source index 1.
-		IndexOnDisk src1 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition1);
-
-		// Source index 2.
-		IndexOnDisk src2 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition2);
-
-		// Destination index.
-		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path,
-				index.prefix + "-" + index.prefixID);
-
-		// Merge the index structures.
-		StructureMerger merger = new StructureMerger(src1, src2, indexD);
-		merger.mergeStructures();
-
-		logger.info("***REALTIME*** IncrementalIndex merged: " + partition1
-				+ " and " + partition2 + " into " + index.prefixID);
-
-		// Increment prefix ID.
-		index.prefixID++;
-
-		// Update list of indices.
-		merged.add(partition1);
-		merged.add(partition2);
-		purgeMerged();
-		synchronized (indices) {
-			// FIXME
-		}
-
-		// Return prefixID of new partition.
-		return index.prefixID - 1;
+		return mergePartitions(partition1, partition2);
 	}
 
 	/*
@@ -27,12 +27,17 @@
 
 package org.terrier.realtime.incremental;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.merging.StructureMerger;
 
 /**
  * A policy for merging different indices together on disk
@@ -49,21 +54,15 @@ public class IncrementalMergePolicy {
 		this.index = index;
 	}
 	
-	/*
-	 * List of indices to merge. (Reference to list in MultiIndex).
-	 */
-	protected static List<Index> indices;
-
 	/*
 	 * List of merged indices.
 	 */
 	protected static List<Integer> merged = new ArrayList<Integer>();
 
 	/**
-	 * Create a new merge thread.
+	 * Create a new merge policy.
 	 */
-	public static IncrementalMergePolicy get(String policy, List<Index> indices, IncrementalIndex index) {
-		IncrementalMergePolicy.indices = indices;
+	public static IncrementalMergePolicy get(String policy, IncrementalIndex index) {
 		if (policy.equals("single"))
 			return new IncrementalMergeSingle(index);
 		if (policy.equals("geometric"))
@@ -71,6 +70,108 @@ public class IncrementalMergePolicy {
 		return new IncrementalMergePolicy(index);
 	}
 
+	/**
+	 * Returns the current shards of the incremental index that are stored on disk
+	 * as the specified partitions.
+	 */
+	protected List<Index> getPartitions(int... partitions) {
+		List<Index> rtr = new ArrayList<Index>(partitions.length);
+		for (int partition : partitions) {
+			String partitionPrefix = index.prefix + "-" + partition;
+			for (Index shard : index.getShards()) {
+				if (shard instanceof IndexOnDisk && ((IndexOnDisk) shard).getPrefix().equals(partitionPrefix)) {
+					rtr.add(shard);
+					break;
+				}
+			}
+		}
+		return rtr;
+	}
+
+	/**
+	 * Merges the on-disk indices of two partitions into a new partition, and replaces their
+	 * shards with the merged index. Documents deleted from the shards are purged by the merge;
+	 * any documents deleted while merging are carried over to the live documents of the merged index.
+	 * @return the prefixID of the new partition
+	 */
+	protected int mergePartitions(int partition1, int partition2) {
+		
+		// Source index 1.
+		IndexOnDisk src1 = IndexOnDisk.createIndex(index.path,
+				index.prefix + "-" + partition1);
+
+		// Source index 2.
+		IndexOnDisk src2 = IndexOnDisk.createIndex(index.path,
+				index.prefix + "-" + partition2);
+
+		// Destination index.
+		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path,
+				index.prefix + "-" + index.prefixID);
+		
+		// Deleted documents to purge.
+		List<Index> shards = getPartitions(partition1, partition2);
+		BitSet[] purged = new BitSet[shards.size()];
+		if (shards.size() == 2) {
+			purged[0] = LiveDocs.getDeletedDocuments(shards.get(0));
+			purged[1] = LiveDocs.getDeletedDocuments(shards.get(1));
+		}
+
+		// Merge the index structures.
+		StructureMerger merger = new StructureMerger(src1, src2, indexD);
+		if (shards.size() == 2)
+			merger.setDeletedDocuments(purged[0], purged[1]);
+		merger.mergeStructures();
+
+		logger.info("***REALTIME*** IncrementalIndex merged: " + partition1
+				+ " and " + partition2 + " into " + index.prefixID);
+
+		// Increment prefix ID.
+		index.prefixID++;
+
+		// Update list of indices.
+		merged.add(partition1);
+		merged.add(partition2);
+		purgeMerged();
+		index.prepareShard(indexD);
+		synchronized(index) {
+			if (shards.size() == 2)
+				carryOverDeletions(shards, purged, indexD);
+			index.replaceShards(shards, indexD);
+		}
+		
+		// Return prefixID of new partition.
+		return index.prefixID - 1;
+	}
+	
+	/** Records the documents deleted from the shards since the merge started in the live documents of the merged index */
+	protected void carryOverDeletions(List<Index> shards, BitSet[] purged, IndexOnDisk mergedIndex) {
+		BitSet deletedWhileMerging = new BitSet();
+		int base = 0;
+		for (int i = 0; i < shards.size(); i++) {
+			Index shard = shards.get(i);
+			BitSet deleted = LiveDocs.getDeletedDocuments(shard);
+			if (deleted != null) {
+				for (int docid = deleted.nextSetBit(0); docid >= 0; docid = deleted.nextSetBit(docid + 1)) {
+					if (purged[i] == null) {
+						deletedWhileMerging.set(base + docid);
+					} else if (! purged[i].get(docid)) {
+						// the merged docid is less the number of purged documents before it 
+						deletedWhileMerging.set(base + docid - purged[i].get(0, docid).cardinality());
+					}
+				}
+			}
+			base += shard.getCollectionStatistics().getNumberOfDocuments() 
+					- (purged[i] == null ? 0 : purged[i].cardinality());
+		}
+		if (deletedWhileMerging.isEmpty())
+			return;
+		try {
+			LiveDocs.getOrCreate(mergedIndex).delete(deletedWhileMerging);
+		} catch (IOException ioe) {
+			logger.error("***REALTIME*** IncrementalIndex could not record removed documents of " + mergedIndex, ioe);
+		}
+	}
+
 	/**
 	 * Delete indices which have been merged.
 	 */
@@ -27,12 +27,6 @@
 
 package org.terrier.realtime.incremental;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.terrier.structures.Index;
-import org.terrier.structures.IndexOnDisk;
-import org.terrier.structures.merging.StructureMerger;
-
 /**
  * Merge flushed index partitions into a single partition.
  * @author Richard McCreadie, Stuart Mackie
@@ -40,8 +34,6 @@ import org.terrier.structures.merging.StructureMerger;
  */
 public class IncrementalMergeSingle extends IncrementalMergePolicy implements
 		Runnable {
-	private static final Logger logger = LoggerFactory
-			.getLogger(IncrementalMergeSingle.class);
 
 	public IncrementalMergeSingle(IncrementalIndex index) {
 		super(index);
@@ -58,46 +50,13 @@ public class IncrementalMergeSingle extends IncrementalMergePolicy implements
 	 * Is merging required?
 	 */
 	public boolean mergeCheck() {
-		return indices.size() > 2;
+		return getPartitions(index.prefixID - 2, index.prefixID - 1).size() == 2;
 	}
 
 	/** Merge flushed index partitions into a single partition. */
 	public void run() {
 
-		// Partitions to merge.
-		int partition1 = index.prefixID - 2;
-		int partition2 = index.prefixID - 1;
-
-		// Source index 1.
-		IndexOnDisk src1 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition1);
-
-		// Source index 2.
-		IndexOnDisk src2 = IndexOnDisk.createIndex(index.path,
-				index.prefix + "-" + partition2);
-
-		// Destination index.
-		IndexOnDisk indexD = IndexOnDisk.createNewIndex(index.path,
-				index.prefix + "-" + index.prefixID);
-
-		// Merge the index structures.
-		StructureMerger merger = new StructureMerger(src1, src2, indexD);
-		merger.mergeStructures();
-
-		logger.info("***REALTIME*** IncrementalIndex merged: " + partition1
-				+ " and " + partition2 + " into " + index.prefixID);
-
-		// Increment prefix ID.
-		index.prefixID++;
-
-		// Update list of indices.
-		merged.add(partition1);
-		merged.add(partition2);
-		purgeMerged();
-		synchronized (indices) {
-			indices.remove(0);
-			indices.remove(0);
-			indices.add(0, indexD);
-		}
+		// Merge the two most recent partitions.
+		mergePartitions(index.prefixID - 2, index.prefixID - 1);
 	}
 }
@@ -0,0 +1,214 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MemoryByteBlockPool.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.realtime.memory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A pool of fixed-size byte blocks, in which many growing byte streams are interleaved,
+ * in the style of Lucene's ByteBlockPool. Each stream is a chain of slices of increasing size. 
+ * The last four bytes of each slice are reserved for the address of the next slice, and the first 
+ * of these holds a non-zero marker of the level of the slice until then. When a stream reaches 
+ * the marker, a slice of the next level is allocated, and the four reserved bytes are replaced by 
+ * its address. Addresses are offsets in the whole pool.
+ * <p>
+ * Unlike Lucene, no bytes of a stream are moved to the next slice, such that the bytes of a stream 
+ * never change once written. Hence a {@link SliceReader} can read a stream up to an end address 
+ * published by the writer, while the writer continues to append to the stream.
+ * 
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class MemoryByteBlockPool implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+	
+	static final int BLOCK_SHIFT = 15;
+	/** size of each block of bytes */
+	public static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	
+	/** level of the slice allocated after a full slice of each level */
+	static final int[] NEXT_LEVEL = {1, 2, 3, 4, 5, 6, 7, 8, 9, 9};
+	/** size of the slices at each level, including the four bytes reserved for the address of the next slice */
+	static final int[] LEVEL_SIZE = {8, 14, 20, 30, 40, 40, 80, 80, 120, 200};
+	static final int FIRST_LEVEL_SIZE = LEVEL_SIZE[0];
+	/** number of bytes at the end of each slice reserved for the address of the next slice */
+	static final int ADDRESS_BYTES = 4;
+	
+	protected byte[][] buffers = new byte[10][];
+	/** index of the current block */
+	protected int bufferUpto = -1;
+	/** position in the current block */
+	protected int byteUpto = BLOCK_SIZE;
+	/** the current block */
+	protected byte[] buffer;
+	/** address of the start of the current block */
+	protected int byteOffset = -BLOCK_SIZE;
+	
+	protected void nextBuffer() {
+		if (bufferUpto + 1 == buffers.length)
+			buffers = Arrays.copyOf(buffers, buffers.length * 2);
+		buffer = buffers[++bufferUpto] = new byte[BLOCK_SIZE];
+		byteUpto = 0;
+		byteOffset += BLOCK_SIZE;
+	}
+	
+	/**
+	 * Allocates the first slice of a new stream.
+	 * @return the address of the start of the stream
+	 */
+	public int newSlice() {
+		if (byteUpto > BLOCK_SIZE - FIRST_LEVEL_SIZE)
+			nextBuffer();
+		final int upto = byteUpto;
+		byteUpto += FIRST_LEVEL_SIZE;
+		buffer[byteUpto - ADDRESS_BYTES] = 16;
+		return upto + byteOffset;
+	}
+	
+	/** Allocates the next slice of a stream that has reached the marker at the specified address */
+	protected int allocSlice(int address) {
+		final byte[] slice = buffers[address >> BLOCK_SHIFT];
+		final int upto = address & BLOCK_MASK;
+		final int newLevel = NEXT_LEVEL[slice[upto] & 15];
+		final int newSize = LEVEL_SIZE[newLevel];
+		
+		if (byteUpto > BLOCK_SIZE - newSize)
+			nextBuffer();
+		final int newAddress = byteUpto + byteOffset;
+		byteUpto += newSize;
+		buffer[byteUpto - ADDRESS_BYTES] = (byte) (16 | newLevel);
+		
+		// the reserved bytes of the full slice, which never hold bytes of the stream
+		slice[upto] = (byte) (newAddress >>> 24);
+		slice[upto + 1] = (byte) (newAddress >>> 16);
+		slice[upto + 2] = (byte) (newAddress >>> 8);
+		slice[upto + 3] = (byte) newAddress;
+		return newAddress;
+	}
+	
+	/**
+	 * Appends a byte to a stream.
+	 * @param address the current end of the stream
+	 * @param b the byte to write
+	 * @return the new end of the stream
+	 */
+	public int writeByte(int address, byte b) {
+		if (buffers[address >> BLOCK_SHIFT][address & BLOCK_MASK] != 0)
+			address = allocSlice(address);
+		buffers[address >> BLOCK_SHIFT][address & BLOCK_MASK] = b;
+		return address + 1;
+	}
+	
+	/**
+	 * Appends a non-negative integer to a stream, using variable-byte coding.
+	 * @param address the current end of the stream
+	 * @param i the integer to write
+	 * @return the new end of the stream
+	 */
+	public int writeVInt(int address, int i) {
+		while ((i & ~0x7F) != 0) {
+			address = writeByte(address, (byte) ((i & 0x7F) | 0x80));
+			i >>>= 7;
+		}
+		return writeByte(address, (byte) i);
+	}
+	
+	/** Returns the number of bytes allocated by this pool */
+	public long getAllocatedBytes() {
+		return (long) (bufferUpto + 1) * BLOCK_SIZE;
+	}
+	
+	/** Reads a stream of a MemoryByteBlockPool, between a start and an end address. */
+	public static class SliceReader {
+		final byte[][] buffers;
+		final int endAddress;
+		byte[] buffer;
+		int upto;
+		int limit;
+		int level;
+		int bufferOffset;
+		
+		/**
+		 * Constructs a new reader.
+		 * @param pool the pool containing the stream
+		 * @param startAddress the address returned by {@link MemoryByteBlockPool#newSlice()} for the stream
+		 * @param _endAddress the end of the stream, as returned by the last write
+		 */
+		public SliceReader(MemoryByteBlockPool pool, int startAddress, int _endAddress) {
+			buffers = pool.buffers;
+			endAddress = _endAddress;
+			level = 0;
+			bufferOffset = startAddress & ~BLOCK_MASK;
+			buffer = buffers[startAddress >> BLOCK_SHIFT];
+			upto = startAddress & BLOCK_MASK;
+			limit = startAddress + FIRST_LEVEL_SIZE - ADDRESS_BYTES >= endAddress
+				? endAddress - bufferOffset
+				: upto + FIRST_LEVEL_SIZE - ADDRESS_BYTES;
+		}
+		
+		/** Returns true if the end of the stream has been reached */
+		public boolean eof() {
+			return upto + bufferOffset == endAddress;
+		}
+		
+		protected void nextSlice() {
+			final int nextAddress = ((buffer[limit] & 0xff) << 24) 
+				| ((buffer[limit + 1] & 0xff) << 16) 
+				| ((buffer[limit + 2] & 0xff) << 8) 
+				| (buffer[limit + 3] & 0xff);
+			level = NEXT_LEVEL[level];
+			final int newSize = LEVEL_SIZE[level];
+			bufferOffset = nextAddress & ~BLOCK_MASK;
+			buffer = buffers[nextAddress >> BLOCK_SHIFT];
+			upto = nextAddress & BLOCK_MASK;
+			limit = nextAddress + newSize - ADDRESS_BYTES >= endAddress
+				? endAddress - bufferOffset
+				: upto + newSize - ADDRESS_BYTES;
+		}
+		
+		/** Reads the next byte of the stream */
+		public byte readByte() {
+			if (upto == limit)
+				nextSlice();
+			return buffer[upto++];
+		}
+		
+		/** Reads the next variable-byte coded integer of the stream */
+		public int readVInt() {
+			byte b = readByte();
+			int i = b & 0x7F;
+			for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+				b = readByte();
+				i |= (b & 0x7F) << shift;
+			}
+			return i;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is MemoryCompressedIterablePosting.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.realtime.memory;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.terrier.structures.DocumentIndex;
+import org.terrier.structures.postings.BasicPostingImpl;
+import org.terrier.structures.postings.IterablePostingImpl;
+import org.terrier.structures.postings.WritablePosting;
+
+/**
+ * A postings list of a {@link MemoryInvertedIndex.CompressedMemoryPostingList}, which is
+ * decoded in place from its stream in the {@link MemoryByteBlockPool}. The postings are those
+ * present when the iterator was created.
+ * 
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class MemoryCompressedIterablePosting extends IterablePostingImpl {
+
+	protected DocumentIndex doi;
+	protected MemoryByteBlockPool.SliceReader reader;
+	/** number of postings after the current posting */
+	protected int remaining;
+	/** the last posting, which is not yet written to the stream */
+	protected final int lastDocid;
+	protected final int lastFreq;
+	protected int id = -1;
+	protected int freq = 0;
+	/** documents to skip, or null */
+	protected BitSet deleted;
+
+	/**
+	 * Constructor.
+	 */
+	public MemoryCompressedIterablePosting(DocumentIndex doi, MemoryByteBlockPool.SliceReader reader, 
+			int size, int lastDocid, int lastFreq) {
+		this.doi = doi;
+		this.reader = reader;
+		this.remaining = size;
+		this.lastDocid = lastDocid;
+		this.lastFreq = lastFreq;
+	}
+
+	/** Skips the specified deleted documents */
+	public void setDeletedDocuments(BitSet deleted) {
+		this.deleted = deleted;
+	}
+
+	/** {@inheritDoc} */
+	public int next() throws IOException {
+		int docid;
+		while ((docid = nextPosting()) != EOL) {
+			if (deleted == null || ! deleted.get(docid))
+				return docid;
+		}
+		return EOL;
+	}
+	
+	protected int nextPosting() throws IOException {
+		if (remaining <= 0)
+			return id = EOL;
+		if (--remaining == 0) {
+			freq = lastFreq;
+			return id = lastDocid;
+		}
+		id += reader.readVInt();
+		freq = reader.readVInt();
+		return id;
+	}
+
+	/** {@inheritDoc} */
+	public int getId() {
+		return id;
+	}
+
+	/** {@inheritDoc} */
+	public int getFrequency() {
+		return freq;
+	}
+
+	/** {@inheritDoc} */
+	public int getDocumentLength() {
+		try {
+			return doi.getDocumentLength(id);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+
+	/** {@inheritDoc} */
+	public boolean endOfPostings() {
+		return remaining <= 0;
+	}
+
+	/** {@inheritDoc} */
+	public void close() throws IOException {
+		remaining = 0;
+		doi = null;
+		reader = null;
+	}
+
+	/** {@inheritDoc} */
+	public WritablePosting asWritablePosting() {
+		return new BasicPostingImpl(id, freq);
+	}
+
+}
@@ -31,15 +31,18 @@ package org.terrier.realtime.memory;
 import gnu.trove.TObjectIntHashMap;
 
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terrier.indexing.Document;
 import org.terrier.querying.IndexRef;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.realtime.UpdatableIndex;
 import org.terrier.realtime.WritableIndex;
 import org.terrier.structures.indexing.DiskIndexWriter;
@@ -99,6 +102,8 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 	protected MemoryDocumentIndex document;
 	protected MemoryCollectionStatistics stats;
 	protected MemoryDirectIndex direct;
+	/** documents that have not been removed */
+	protected final LiveDocs liveDocs = new LiveDocs();
 	
     // Blocks and fields.
     protected boolean      blocks    = (ApplicationSetup.getProperty("block.indexing", "").equals("")) ? false : true;
@@ -110,6 +115,9 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
     /** A lock that stops multiple indexing operations from happening at once **/
     protected Object indexingLock = new Object();
     
+    /** The number of modifications made to this index */
+    protected final AtomicLong version = new AtomicLong();
+    
     // Compression code for writing
     protected CompressionConfiguration compressionInvertedConfig;
     protected CompressionConfiguration compressionDirectConfig;
@@ -138,6 +146,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
     	lexicon = tmplex;
     	this.document = document;
     	this.inverted = inverted;
+    	this.inverted.setIndexingLock(indexingLock);
     	this.metadata = metadata;
     	this.stats = stats;
     }
@@ -163,6 +172,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		lexicon = new MemoryLexicon();
 		document = new MemoryDocumentIndex();
 		inverted = new MemoryInvertedIndex(lexicon, document);
+		inverted.setIndexingLock(indexingLock);
 		metadata = new MemoryMetaIndex();
 		stats = new MemoryCollectionStatistics(0, 0, 0, 0, new long[fieldtags.length], fieldtags);
 		load_pipeline(); // For term processing (stemming, stop-words).
@@ -186,6 +196,8 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 			return getCollectionStatistics();
 		if (structureName.equalsIgnoreCase("direct"))
 			return direct;
+		if (structureName.equalsIgnoreCase(LiveDocs.STRUCTURE_NAME))
+			return liveDocs;
 		else
 			return null;
 	}
@@ -265,6 +277,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 			case "lexicon": return true;
 			case "document": return true;
 			case "meta": return true;
+			case LiveDocs.STRUCTURE_NAME: return true;
 			case "direct-inputstream": return true;
 			case "inverted-inputstream": return true;
 			case "lexicon-inputstream": return true;
@@ -313,6 +326,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		stats.update(1, docContents.getDocumentLength(),
 				docContents.termSet().length);
 		stats.updateUniqueTerms(lexicon.numberOfEntries());
+		version.incrementAndGet();
 
 		logger.debug("***REALTIME*** MemoryIndex indexDocument ("
 				+ stats.getNumberOfDocuments() + ")");
@@ -387,6 +401,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		stats.update(1, docContents.getDocumentLength(),
 				docContents.termSet().length);
 		stats.updateUniqueTerms(lexicon.numberOfEntries());
+		version.incrementAndGet();
 
 		logger.debug("***REALTIME*** MemoryIndex indexDocument ("
 				+ stats.getNumberOfDocuments() + ")");
@@ -453,6 +468,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 			stats.update(0, docContents.getDocumentLength(),
 					pointers);
 			stats.updateUniqueTerms(lexicon.numberOfEntries());
+			version.incrementAndGet();
 
 			logger.debug("***REALTIME*** MemoryIndex addToDocument ("
 					+ stats.getNumberOfDocuments() + ")");
@@ -476,7 +492,15 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 				return this;
 			}
 
-			Index newIndex = makeDiskIndexWriter(path, prefix).write(this);
+			IndexOnDisk newIndex = makeDiskIndexWriter(path, prefix).write(this);
+			
+			// persist the removed documents next to the new index
+			BitSet deleted = liveDocs.getDeletedDocuments();
+			if (deleted != null) {
+				LiveDocs diskLiveDocs = LiveDocs.getOrCreate(newIndex);
+				diskLiveDocs.delete(deleted);
+				diskLiveDocs.flush();
+			}
 
 			// FIXME: why?
 			logger.debug("***REALTIME*** MemoryIndex write END");
@@ -577,9 +601,33 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		}
 	}
 	
+	/** 
+	 * Removes a document, by marking it as deleted in the live documents of this index. 
+	 * The document is no longer retrieved, but remains in the statistics of the index.
+	 * Returns false if the docid is not in this index or was already removed.
+	 */
 	@Override
-	public boolean removeDocument(int docid) {		
-		return false;
+	public boolean removeDocument(int docid) {
+		synchronized(indexingLock) {
+			if (docid < 0 || docid >= stats.getNumberOfDocuments())
+				return false;
+			inverted.setLiveDocs(liveDocs);
+			if (! liveDocs.delete(docid))
+				return false;
+			version.incrementAndGet();
+			return true;
+		}
+	}
+	
+	/** {@inheritDoc} */
+	@Override
+	public long getVersion() {
+		return version.get();
+	}
+	
+	/** Returns the live documents of this index */
+	public LiveDocs getLiveDocs() {
+		return liveDocs;
 	}
 	
 	
@@ -631,6 +679,7 @@ public class MemoryIndex extends Index implements UpdatableIndex,WritableIndex {
 		//document = new MemoryDocumentIndexMap();
 		lexicon = new MemoryLexicon();
 		inverted = new MemoryInvertedIndex(lexicon, superIndex.getDocumentIndex());
+		inverted.setIndexingLock(indexingLock);
 		stats = new MemoryCollectionStatistics(0, 0, 0, 0, new long[] {}, fieldtags);
 		load_pipeline(); // For term processing (stemming, stop-words).
 		
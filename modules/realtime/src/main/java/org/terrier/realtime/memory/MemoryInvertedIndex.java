@@ -32,9 +32,11 @@ import gnu.trove.TIntObjectHashMap;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
 
+import org.terrier.realtime.LiveDocs;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.IndexUtil;
 import org.terrier.structures.Lexicon;
@@ -43,11 +45,17 @@ import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
 import org.terrier.structures.PostingIndexInputStream;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
 
 /**
  * A basic inverted file implementation for use with MemoryIndex structures.
  * This version does not support fields or blocks. Since it is a memory-based
  * structure, access is via a MemoryPointer rather than BitIndexPointer.
+ * <p>
+ * By default, each posting list is held as arrays of integers. If the property
+ * <tt>memory.inverted.compressed</tt> is set to true, the posting lists are instead
+ * appended as variable-byte coded docid gaps and frequencies to streams in a shared 
+ * {@link MemoryByteBlockPool}, which requires much less memory.
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -61,7 +69,20 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	protected DocumentIndex doi;
 	protected Lexicon<String> lex;
 	protected TIntObjectHashMap<MemoryPostingList> postings;
+	/** pool of the compressed posting lists, or null if the posting lists are not compressed */
+	protected MemoryByteBlockPool pool;
+	/** number of postings held */
+	protected long numberOfPointers = 0;
+	/** the documents of the index that have not been deleted, or null if all are */
+	protected LiveDocs liveDocs;
+	/** lock held while the posting lists are written, which is also acquired to rewrite a compressed posting list */
+	protected Object indexingLock = this;
 
+	/** estimated bytes of each posting of a BasicMemoryPostingList, allowing for the growth of its arrays */
+	static final int BASIC_POSTING_BYTES = 12;
+	/** estimated bytes of each posting list object and its entry in the postings map */
+	static final int POSTING_LIST_OVERHEAD_BYTES = 64;
+	
 	/**
 	 * Constructor.
 	 */
@@ -69,6 +90,28 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 		this.lex = lex;
 		this.doi = doi;
 		postings = new TIntObjectHashMap<MemoryPostingList>();
+		if (Boolean.parseBoolean(ApplicationSetup.getProperty("memory.inverted.compressed", "false")))
+			pool = new MemoryByteBlockPool();
+	}
+	
+	/** Sets the lock that is held by the index while writing to the posting lists */
+	public void setIndexingLock(Object lock) {
+		this.indexingLock = lock;
+	}
+	
+	/** Sets the live documents of the index, such that deleted documents are skipped by the posting lists */
+	public void setLiveDocs(LiveDocs liveDocs) {
+		this.liveDocs = liveDocs;
+	}
+	
+	/** Returns the estimated number of bytes used by the posting lists */
+	public long getMemoryConsumption() {
+		long bytes = (long) postings.size() * POSTING_LIST_OVERHEAD_BYTES;
+		if (pool != null)
+			bytes += pool.getAllocatedBytes();
+		else
+			bytes += numberOfPointers * BASIC_POSTING_BYTES;
+		return bytes;
 	}
 
 	/*
@@ -135,15 +178,150 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 			return pl_freq;
 		}
 	}
+	
+	/**
+	 * Posting list that is appended to a stream in the MemoryByteBlockPool, as 
+	 * variable-byte coded docid gaps and frequencies. The last posting is held
+	 * uncoded until a posting for a later document is added, such that its frequency 
+	 * can be updated. Updating an earlier posting rewrites the whole posting list to 
+	 * a new stream.
+	 * <p>
+	 * The posting list is written by one thread at a time, while it can be read concurrently. 
+	 * After each change, the writer publishes the extent of the stream and the last posting 
+	 * as an immutable {@link State}. Readers only decode the stream up to the end of 
+	 * the published state, which is never changed by later appends (see {@link MemoryByteBlockPool}). 
+	 * A rewritten posting list is only published once complete, while readers of the old 
+	 * state continue to read the old stream.
+	 */
+	public class CompressedMemoryPostingList implements MemoryPostingList {
+		/** address of the start of the stream */
+		int start;
+		/** address of the end of the stream */
+		int end;
+		/** number of postings, including the last posting */
+		int size = 0;
+		/** docid of the last posting written to the stream */
+		int lastWritten = -1;
+		/** docid and frequency of the last posting, not yet written to the stream */
+		int lastDocid = -1;
+		int lastFreq;
+		/** the posting list as visible to readers */
+		volatile State state;
+		
+		public CompressedMemoryPostingList() {
+			start = end = pool.newSlice();
+			publish();
+		}
+		
+		public CompressedMemoryPostingList(int docid, int docfreq) {
+			start = end = pool.newSlice();
+			add(docid, docfreq);
+		}
+		
+		public void add(int docid, int docfreq) {
+			append(docid, docfreq);
+			publish();
+		}
+		
+		/** Appends a posting, without publishing it to readers */
+		void append(int docid, int docfreq) {
+			if (lastDocid != -1) {
+				end = pool.writeVInt(end, lastDocid - lastWritten);
+				end = pool.writeVInt(end, lastFreq);
+				lastWritten = lastDocid;
+			}
+			lastDocid = docid;
+			lastFreq = docfreq;
+			size++;
+		}
+		
+		/** Makes the postings written so far visible to readers */
+		void publish() {
+			state = new State(start, end, size, lastDocid, lastFreq);
+		}
+		
+		/** Returns true iff we did not already have a posting for this document */
+		public boolean addOrUpdateFreq(int docid, int freq) {
+			if (docid > lastDocid) {
+				add(docid, freq);
+				return true;
+			}
+			if (docid == lastDocid) {
+				lastFreq += freq;
+				publish();
+				return false;
+			}
+			synchronized (indexingLock) {
+				return rewrite(docid, freq);
+			}
+		}
+		
+		/** Adds a posting for a document earlier than the last posting, by decoding, updating and rewriting the postings */
+		boolean rewrite(int docid, int freq) {
+			TIntArrayList pl_doc = new TIntArrayList(size + 1);
+			TIntArrayList pl_freq = new TIntArrayList(size + 1);
+			MemoryCompressedIterablePosting ip = getPostings();
+			try {
+				while (ip.next() != IterablePosting.EOL) {
+					pl_doc.add(ip.getId());
+					pl_freq.add(ip.getFrequency());
+				}
+			} catch (IOException ioe) {
+				throw new IllegalStateException(ioe);
+			}
+			BasicMemoryPostingList updated = new BasicMemoryPostingList(pl_doc.toNativeArray(), pl_freq.toNativeArray());
+			boolean rtr = updated.addOrUpdateFreq(docid, freq);
+			start = end = pool.newSlice();
+			size = 0;
+			lastWritten = lastDocid = -1;
+			for (int i = 0; i < updated.getPl_doc().size(); i++)
+				append(updated.getPl_doc().get(i), updated.getPl_freq().get(i));
+			publish();
+			return rtr;
+		}
+		
+		/** Returns an IterablePosting over the postings published so far, which are decoded in place */
+		public MemoryCompressedIterablePosting getPostings() {
+			final State s = state;
+			return new MemoryCompressedIterablePosting(doi, new MemoryByteBlockPool.SliceReader(pool, s.start, s.end), s.size, s.lastDocid, s.lastFreq);
+		}
+	}
+	
+	/** The extent of the stream of a CompressedMemoryPostingList, and its last posting, as published to readers */
+	static final class State {
+		final int start;
+		final int end;
+		final int size;
+		final int lastDocid;
+		final int lastFreq;
+		
+		State(int start, int end, int size, int lastDocid, int lastFreq) {
+			this.start = start;
+			this.end = end;
+			this.size = size;
+			this.lastDocid = lastDocid;
+			this.lastFreq = lastFreq;
+		}
+	}
+	
+	protected MemoryPostingList newPostingList(int docid, int freq) {
+		return pool != null 
+			? new CompressedMemoryPostingList(docid, freq)
+			: new BasicMemoryPostingList(docid, freq);
+	}
 
 	/**
 	 * Add posting to inverted file.
 	 */
 	public void add(int ptr, int docid, int freq) {
-		if (postings.containsKey(ptr))
-			((BasicMemoryPostingList)postings.get(ptr)).add(docid, freq);
+		MemoryPostingList pl = postings.get(ptr);
+		if (pl instanceof CompressedMemoryPostingList)
+			((CompressedMemoryPostingList)pl).add(docid, freq);
+		else if (pl != null)
+			((BasicMemoryPostingList)pl).add(docid, freq);
 		else
-			postings.put(ptr, new BasicMemoryPostingList(docid, freq));
+			postings.put(ptr, newPostingList(docid, freq));
+		numberOfPointers++;
 	}
 	
 	/** Adds or updates the frequency of the term denoted by ptr by freq.
@@ -152,16 +330,23 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	public boolean addOrUpdate(int ptr, int docid, int freq) {
 		assert freq > 0;
 		
-		if (postings.containsKey(ptr))
+		MemoryPostingList pl = postings.get(ptr);
+		boolean added;
+		if (pl instanceof CompressedMemoryPostingList)
+			added = ((CompressedMemoryPostingList) pl).addOrUpdateFreq(docid, freq);
+		else if (pl != null)
 		{
-			BasicMemoryPostingList bmpl = (BasicMemoryPostingList) postings.get(ptr);
-			return bmpl.addOrUpdateFreq(docid, freq);			
+			BasicMemoryPostingList bmpl = (BasicMemoryPostingList) pl;
+			added = bmpl.addOrUpdateFreq(docid, freq);			
 		}
 		else
 		{				
-			postings.put(ptr, new BasicMemoryPostingList(docid, freq));
-			return true;
+			postings.put(ptr, newPostingList(docid, freq));
+			added = true;
 		}
+		if (added)
+			numberOfPointers++;
+		return added;
 	}
 	
 	/**
@@ -169,17 +354,34 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 	 * @param ptr
 	 */
 	public void remove(int ptr) {
-		if (postings.containsKey(ptr)) postings.remove(ptr);
+		MemoryPostingList pl = postings.remove(ptr);
+		if (pl instanceof CompressedMemoryPostingList)
+			numberOfPointers -= ((CompressedMemoryPostingList) pl).size;
+		else if (pl != null)
+			numberOfPointers -= ((BasicMemoryPostingList) pl).getPl_doc().size();
 	}
 
-	/** {@inheritDoc} */
+	/** Returns the postings of a term, skipping any deleted documents */
 	@Override
 	public IterablePosting getPostings(Pointer pointer) throws IOException {
-		BasicMemoryPostingList pl = ((BasicMemoryPostingList)postings.get(((MemoryPointer)pointer).getPointer()));
+		return getPostings(pointer, liveDocs != null ? liveDocs.getDeletedDocuments() : null);
+	}
+	
+	/** Returns the postings of a term, skipping the specified deleted documents, if not null */
+	protected IterablePosting getPostings(Pointer pointer, BitSet deleted) throws IOException {
+		MemoryPostingList mpl = postings.get(((MemoryPointer)pointer).getPointer());
+		if (mpl instanceof CompressedMemoryPostingList) {
+			MemoryCompressedIterablePosting ip = ((CompressedMemoryPostingList) mpl).getPostings();
+			ip.setDeletedDocuments(deleted);
+			return ip;
+		}
+		BasicMemoryPostingList pl = (BasicMemoryPostingList) mpl;
 		if (pl==null) {
 			pl = new BasicMemoryPostingList();
 		}
-		return new MemoryIterablePosting(doi, pl.getPl_doc(), pl.getPl_freq());
+		MemoryIterablePosting ip = new MemoryIterablePosting(doi, pl.getPl_doc(), pl.getPl_freq());
+		ip.setDeletedDocuments(deleted);
+		return ip;
 	}
 
 	/** {@inheritDoc} */
@@ -208,7 +410,8 @@ public class MemoryInvertedIndex implements PostingIndex<MemoryPointer>,Serializ
 		public IterablePosting next() {
 			termAndEntry = lexIter.next();
 			try {
-				return getPostings((MemoryPointer) termAndEntry.getValue());
+				//all postings, including deleted documents, such that these match the lexicon
+				return getPostings((MemoryPointer) termAndEntry.getValue(), null);
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
@@ -30,6 +30,7 @@ package org.terrier.realtime.memory;
 import gnu.trove.TIntArrayList;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.postings.BasicPostingImpl;
@@ -52,6 +53,8 @@ public class MemoryIterablePosting extends IterablePostingImpl {
 	protected DocumentIndex doi;
 	protected TIntArrayList pl_doc = new TIntArrayList();
 	private TIntArrayList pl_freq = new TIntArrayList();
+	/** documents to skip, or null */
+	protected BitSet deleted;
 
 	/**
 	 * Constructor.
@@ -63,6 +66,11 @@ public class MemoryIterablePosting extends IterablePostingImpl {
 		this.pl_freq = pl_freq;
 	}
 
+	/** Skips the specified deleted documents */
+	public void setDeletedDocuments(BitSet deleted) {
+		this.deleted = deleted;
+	}
+
 	/** {@inheritDoc} */
 	public int getFrequency() {
 		return pl_freq.get(index);
@@ -92,10 +100,13 @@ public class MemoryIterablePosting extends IterablePostingImpl {
 
 	/** {@inheritDoc} */
 	public int next() throws IOException {
-		if ((pl_doc == null) || (++index >= pl_doc.size()))
+		if (pl_doc == null)
 			return id = EOL;
-		else
-			return id = pl_doc.get(index);
+		while (++index < pl_doc.size()) {
+			if (deleted == null || ! deleted.get(pl_doc.get(index)))
+				return id = pl_doc.get(index);
+		}
+		return id = EOL;
 	}
 
 	/** {@inheritDoc} */
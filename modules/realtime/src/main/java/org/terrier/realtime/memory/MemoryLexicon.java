@@ -73,7 +73,7 @@ public class MemoryLexicon extends MapLexicon<String,Text> implements Serializab
 	public int term(String term, EntryStatistics es) {
 		synchronized(modificationLock) {
 		
-		LexiconEntry le = this.getLexiconEntry(term);
+		LexiconEntry le = super.getLexiconEntry(term);
 		if (le != null) {
 			le.add(es);
 			return le.getTermId();
@@ -91,7 +91,7 @@ public class MemoryLexicon extends MapLexicon<String,Text> implements Serializab
 	public int term(String term, EntryStatistics es, int termid) {
 		synchronized(modificationLock) {
 		
-		LexiconEntry le = this.getLexiconEntry(term);
+		LexiconEntry le = super.getLexiconEntry(term);
 		if (le != null) {
 			le.add(es);
 			return le.getTermId();
@@ -105,6 +105,20 @@ public class MemoryLexicon extends MapLexicon<String,Text> implements Serializab
 		}
 	}
 	
+	/** 
+	 * Returns a copy of the entry of the specified term, or null if the term does not exist. 
+	 * A copy is returned such that the statistics of the term are not affected by any changes
+	 * made by the caller, such as by query operators that combine statistics, nor do they change 
+	 * while the caller uses them if further documents are indexed.
+	 */
+	@Override
+	public LexiconEntry getLexiconEntry(String term) {
+		LexiconEntry le = super.getLexiconEntry(term);
+		if (le instanceof MemoryLexiconEntry)
+			return ((MemoryLexiconEntry) le).clone();
+		return le;
+	}
+	
 	public int trimLexicon(int cutoff) {
 		
 		synchronized(modificationLock) {
@@ -180,9 +180,7 @@ public class MemoryLexiconEntry extends LexiconEntry implements MemoryPointer,Se
 	}
 
 	public MemoryLexiconEntry clone() {
-		MemoryLexiconEntry mle = new MemoryLexiconEntry(df,tf);
-		mle.setTermId(termid);
-		return mle;
+		return new MemoryLexiconEntry(termid, df, tf, maxtf);
 	}
 
 	@Override
@@ -136,6 +136,7 @@ public class MemoryFieldsIndex extends MemoryFields {
         stats.updateUniqueTerms(lexicon.numberOfEntries());
         stats.updateFields(fieldcounts);
         stats.relcaluate();
+        version.incrementAndGet();
 		}
 	}
     
@@ -33,6 +33,7 @@ import gnu.trove.TIntObjectHashMap;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import org.terrier.realtime.memory.MemoryInvertedIndex;
 import org.terrier.realtime.memory.MemoryPointer;
@@ -54,6 +55,8 @@ public class MemoryFieldsInvertedIndex extends MemoryInvertedIndex {
 	/** Constructor. */
     public MemoryFieldsInvertedIndex(Lexicon<String> lexicon, DocumentIndex docindex) {
         super(lexicon, docindex);
+        // fields posting lists are not compressed
+        pool = null;
     }
 
     /** {@inheritDoc} */
@@ -72,18 +75,21 @@ public class MemoryFieldsInvertedIndex extends MemoryInvertedIndex {
             ((FieldsMemoryPostingList)postings.get(termid)).add(docid, freq, fields);
         else
             postings.put(termid, new FieldsMemoryPostingList(docid, freq, fields));
+        numberOfPointers++;
     }
 
     /** {@inheritDoc} */
     @Override
-    public IterablePosting getPostings(Pointer _termid) throws IOException {
+    protected IterablePosting getPostings(Pointer _termid, BitSet deleted) throws IOException {
     	MemoryPointer termid = (MemoryPointer)_termid;
         FieldsMemoryPostingList pl;
         if (postings.containsKey(termid.getPointer()))
             pl = (FieldsMemoryPostingList) postings.get(termid.getPointer());
         else
             pl = new FieldsMemoryPostingList();
-        return new MemoryFieldsIterablePosting(doi, pl.docids(), pl.freqs(), pl.fields());
+        MemoryFieldsIterablePosting ip = new MemoryFieldsIterablePosting(doi, pl.docids(), pl.freqs(), pl.fields());
+        ip.setDeletedDocuments(deleted);
+        return ip;
     }
 
     /* Postings list. */
@@ -60,6 +60,13 @@ public class MemoryFieldsLexiconEntry extends MemoryLexiconEntry implements Fiel
 		this.fields = new int[0];
 	}
 
+    /** {@inheritDoc} */
+    public MemoryFieldsLexiconEntry clone() {
+        MemoryFieldsLexiconEntry mle = new MemoryFieldsLexiconEntry(getTermId(), getDocumentFrequency(), getFrequency(), fields.clone());
+        mle.setMaxFrequencyInDocuments(getMaxFrequencyInDocuments());
+        return mle;
+    }
+
     /** {@inheritDoc} */
     public int[] getFieldFrequencies() {
         return fields;
@@ -1,5 +1,7 @@
 package org.terrier.realtime.multi;
 
+import java.util.BitSet;
+
 import org.terrier.structures.postings.BlockPosting;
 import org.terrier.structures.postings.IterablePosting;
 
@@ -7,7 +9,11 @@ public class BlockMultiIterablePosting extends MultiIterablePosting implements B
 
 	BlockPosting[] bps;
 	public BlockMultiIterablePosting(IterablePosting[] constituentIPs, int[] offsets) {
-		super(constituentIPs, offsets);
+		this(constituentIPs, offsets, null);
+	}
+	
+	public BlockMultiIterablePosting(IterablePosting[] constituentIPs, int[] offsets, BitSet[] deleted) {
+		super(constituentIPs, offsets, deleted);
 		bps = new BlockPosting[constituentIPs.length];
 		for(int i=0;i<constituentIPs.length;i++)
 			bps[i] = (BlockPosting) constituentIPs[i];
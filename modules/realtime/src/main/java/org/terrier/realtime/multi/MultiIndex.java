@@ -30,14 +30,20 @@ package org.terrier.realtime.multi;
 import java.io.IOException;
 import java.io.Flushable;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections4.iterators.IteratorChain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.realtime.matching.IncrementalSelectiveMatching;
+import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.querying.IndexRef;
 import org.terrier.structures.collections.IteratorUtils;
 import org.terrier.structures.collections.MapEntry;
@@ -45,19 +51,30 @@ import org.terrier.structures.CollectionStatistics;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexFactory;
+import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.MetaIndex;
 import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
+import org.terrier.structures.Snapshotable;
+import org.terrier.structures.VersionedIndex;
 import org.terrier.utility.ApplicationSetup;
 
+import com.google.common.hash.BloomFilter;
+
 /**
  * The central MultiIndex structure. MultiIndex is a wrapper around 
  * multiple indices such that they appear as one single index. Matching
  * over a MultiIndex can either be performed by a normal matching across
  * all index shards or using a special selective matching class that only
- * uses a subset of the shards this contains.
+ * uses a subset of the shards this contains. The posting lists skip
+ * any documents deleted from the {@link LiveDocs} of each shard, while the lexicon
+ * consults a {@link ShardTermDirectory} to only look up terms in shards that may contain them.
+ * The directory is built by the thread that changes the shards, before the new shards are 
+ * published, such that queries never build it.
+ * As the shards can change between obtaining each structure, queries should search a 
+ * {@link #snapshot()}, whose shards are fixed.
  * 
  * <p><b>Properties</b></p>
  * <ul><li>multiindex.selectivematching</tt> - What policy should be used to perform matching. Two options are supported: all (default), mostrecent</li></ul>
@@ -65,14 +82,15 @@ import org.terrier.utility.ApplicationSetup;
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
-public class MultiIndex extends Index {
+public class MultiIndex extends Index implements Snapshotable, VersionedIndex {
 	
 	private static final Logger logger = LoggerFactory.getLogger(MultiIndex.class);
 
 	/*
-	 * List of the underlying indices.
+	 * List of the underlying indices. A published list is never modified: changes to the
+	 * shards publish a new list, so that readers always iterate over a consistent set of shards.
 	 */
-	protected List<Index> indices;
+	protected volatile List<Index> indices;
 	
 	/**
 	 * Selective Matching policy, a policy for accessing only subsets of the indices within this multi-index.
@@ -81,6 +99,18 @@ public class MultiIndex extends Index {
 	
 	protected boolean blocks;
 	protected boolean fields;
+	
+	/** Bloom filters of the terms of on-disk shards, which are kept while the shard is in use */
+	protected final Map<Index, BloomFilter<CharSequence>> termFilters;
+	
+	/** The directory of the terms of the selected shards */
+	protected volatile ShardTermDirectory termDirectory;
+	
+	/** The index that this is a snapshot of, or null */
+	protected final MultiIndex parent;
+	
+	/** The number of modifications made to this index */
+	protected final AtomicLong version = new AtomicLong();
 
 	/**
 	 * Constructor.
@@ -89,16 +119,46 @@ public class MultiIndex extends Index {
 		ArrayList<Index> in = new ArrayList<Index>(indices.length);
 		for (Index i : indices)
 			in.add(i);
-		this.indices = in;
+		this.indices = Collections.unmodifiableList(in);
 		this.blocks = blocks;
 		this.fields = fields;
+		this.termFilters = new WeakHashMap<>();
+		this.parent = null;
 		
 		// Selective Matching Policy
 		String policy = ApplicationSetup.getProperty("multiindex.selectivematching", "all");
 		selectiveMatchingPolicy = IncrementalSelectiveMatching.get(policy);
+		
+		termDirectory = buildTermDirectory(this.indices);
 
 		logger.info("***REALTIME*** MultiIndex (NEW)");
 	}
+	
+	/** Constructor for a snapshot of the specified shards of another MultiIndex */
+	protected MultiIndex(MultiIndex parent, List<Index> shards) {
+		this.indices = shards;
+		this.blocks = parent.blocks;
+		this.fields = parent.fields;
+		this.termFilters = parent.termFilters;
+		this.parent = parent;
+		// the shards were already selected from those of the parent
+		selectiveMatchingPolicy = new IncrementalSelectiveMatching();
+	}
+	
+	/** 
+	 * Returns a MultiIndex over the shards that are currently selected for matching, 
+	 * which are not affected by later flushes or merges of this index. All structures 
+	 * obtained from the snapshot, such as the lexicon, the posting lists, the collection 
+	 * statistics and the metadata, are those of the same shards. Closing the snapshot does
+	 * not close the shards.
+	 * @return a MultiIndex over a fixed list of shards
+	 */
+	@Override
+	public MultiIndex snapshot() {
+		if (parent != null)
+			return this;
+		return new MultiIndex(this, getSelectedShards());
+	}
 
 	/** {@inheritDoc} */
 	public String toString() {
@@ -112,49 +172,111 @@ public class MultiIndex extends Index {
 	/** {@inheritDoc} */
 	@SuppressWarnings("unchecked")
 	public Lexicon<String> getLexicon() {
-		int indexCount = indices.size();
+		List<Index> shards = getSelectedShards();
+		int indexCount = shards.size();
 		int[] offsets = new int[indexCount];
 		Lexicon<String>[] lexicons = new Lexicon[indexCount];
 
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			lexicons[i] = index.getLexicon();
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfUniqueTerms();
 			i++;
 		}
 
-		return new MultiLexicon(lexicons, offsets);
+		return new MultiLexicon(lexicons, offsets, getTermDirectory(shards));
+	}
+	
+	/** 
+	 * Returns the directory of the terms of the specified shards, or null if all shards should be 
+	 * probed, such as while new shards are being published.
+	 */
+	protected ShardTermDirectory getTermDirectory(List<Index> shards) {
+		// snapshots share the directory of their index
+		if (parent != null)
+			return parent.getTermDirectory(shards);
+		ShardTermDirectory directory = termDirectory;
+		if (directory != null && directory.isFor(shards))
+			return directory;
+		return null;
+	}
+	
+	/** Builds the directory of the terms of the shards that will be selected from the specified shards */
+	protected ShardTermDirectory buildTermDirectory(List<Index> shards) {
+		synchronized (termFilters) {
+			try {
+				return ShardTermDirectory.build(selectiveMatchingPolicy.getSelectedIndices(shards), termFilters, termDirectory);
+			} catch (IOException ioe) {
+				logger.warn("Could not build the term directory of the shards, all shards will be probed", ioe);
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Builds the Bloom filter of the terms of a shard that is about to be added to this index, 
+	 * such that the shard can be published without delay. This should be called by the thread 
+	 * creating the shard, without holding any locks on this index.
+	 * @param newShard the shard that will be added
+	 */
+	public void prepareShard(Index newShard) {
+		if (! ShardTermDirectory.isSummarised(newShard))
+			return;
+		synchronized (termFilters) {
+			if (termFilters.containsKey(newShard))
+				return;
+		}
+		try {
+			BloomFilter<CharSequence> filter = ShardTermDirectory.buildFilter(newShard, ShardTermDirectory.getFalsePositiveProbability());
+			synchronized (termFilters) {
+				termFilters.put(newShard, filter);
+			}
+		} catch (IOException ioe) {
+			logger.warn("Could not build the Bloom filter of shard " + newShard + ", it will be built when the shard is added", ioe);
+		}
 	}
 
 	/** {@inheritDoc} */
 	@SuppressWarnings("unchecked")
 	public PostingIndex<?> getInvertedIndex() {
-		int ondisk = indices.size();
+		List<Index> shards = getSelectedShards();
+		int ondisk = shards.size();
 		int[] offsets = new int[ondisk];
 		PostingIndex<?>[] postings = new PostingIndex[ondisk];
+		BitSet[] deleted = new BitSet[ondisk];
 
 		int currentoffset = 0;
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			postings[i] = index.getInvertedIndex();
+			deleted[i] = getDeletedDocuments(index);
 			offsets[i] = currentoffset;
 			currentoffset += index.getCollectionStatistics()
 					.getNumberOfDocuments();
 		i++;
 		}
 
-		return new MultiInverted((PostingIndex<Pointer>[]) postings, offsets, blocks);
+		return new MultiInverted((PostingIndex<Pointer>[]) postings, offsets, deleted, blocks);
+	}
+	
+	/** Returns the documents deleted from a shard that its own posting lists do not already skip, or null */
+	public static BitSet getDeletedDocuments(Index shard) {
+		// a MemoryIndex skips its deleted documents itself
+		if (shard instanceof MemoryIndex)
+			return null;
+		return LiveDocs.getDeletedDocuments(shard);
 	}
 
 	/** {@inheritDoc} */
 	public MetaIndex getMetaIndex() {
-		int ondisk = indices.size();
+		List<Index> shards = getSelectedShards();
+		int ondisk = shards.size();
 		int[] offsets = new int[ondisk];
 		MetaIndex[] metas = new MetaIndex[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			metas[i] = index.getMetaIndex();
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfDocuments();
@@ -166,12 +288,13 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public DocumentIndex getDocumentIndex() {
-		int ondisk = indices.size();
+		List<Index> shards = getSelectedShards();
+		int ondisk = shards.size();
 		int[] offsets = new int[ondisk];
 		DocumentIndex[] docs = new DocumentIndex[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			docs[i] = index.getDocumentIndex();
 			offsets[i] = index.getCollectionStatistics()
 					.getNumberOfDocuments();
@@ -183,11 +306,12 @@ public class MultiIndex extends Index {
 
 	/** {@inheritDoc} */
 	public CollectionStatistics getCollectionStatistics() {
-		int ondisk = indices.size();
+		List<Index> shards = getSelectedShards();
+		int ondisk = shards.size();
 		CollectionStatistics[] stats = new CollectionStatistics[ondisk];
 
 		int i =0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			stats[i] = index.getCollectionStatistics();
 			i++;
 		}
@@ -197,11 +321,12 @@ public class MultiIndex extends Index {
 	
 	@SuppressWarnings("unchecked")
 	public PostingIndex<?> getDirectIndex() {
-		int ondisk = indices.size();
+		List<Index> shards = getSelectedShards();
+		int ondisk = shards.size();
 		PostingIndex<?>[] postings = new PostingIndex[ondisk];
 
 		int i = 0;
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : shards) {
 			postings[i] = index.getDirectIndex();
 			i++;
 		}
@@ -223,7 +348,7 @@ public class MultiIndex extends Index {
 
 	List<Iterator<?>> getIndexStructureInputStream_Iterators(String structureName) {
 		List<Iterator<?>> iters = new ArrayList<>();
-		for (Index index : selectiveMatchingPolicy.getSelectedIndices(indices)) {
+		for (Index index : getSelectedShards()) {
 			Iterator<?> iter = (Iterator<?>) index.getIndexStructureInputStream(structureName);
 			if (iter == null) {
 				return null;
@@ -266,22 +391,119 @@ public class MultiIndex extends Index {
 		throw new UnsupportedOperationException("I dont know how to merge the input streams of " + structureName);
 	}
 
-	/** {@inheritDoc} */
+	/** {@inheritDoc} The shards of a snapshot are closed by the index it is a snapshot of. */
 	public void close() throws IOException {
+		if (parent != null)
+			return;
 		for (Index i : this.indices)
 			i.close();
 	}
 
 	public void flush() throws IOException {
+		if (parent != null)
+			throw new UnsupportedOperationException("A snapshot cannot be flushed");
 		for (Index i : this.indices)
 			if (i instanceof Flushable)
 				((Flushable)i).flush();
+		flushLiveDocs();
+	}
+	
+	/** Writes the deletions from the live documents of each shard to disk */
+	protected void flushLiveDocs() throws IOException {
+		for (Index i : this.indices)
+			if (i instanceof IndexOnDisk && i.hasIndexStructure(LiveDocs.STRUCTURE_NAME))
+				((LiveDocs) i.getIndexStructure(LiveDocs.STRUCTURE_NAME)).flush();
 	}
 	
 	public Index getIthShard(int i) {
 		return indices.get(i);
 	}
 	
+	/**
+	 * Returns the current shards of this index. The returned list cannot be modified,
+	 * and is not affected by later changes to the shards.
+	 * @return list of the index shards
+	 */
+	public List<Index> getShards() {
+		return indices;
+	}
+	
+	/** 
+	 * {@inheritDoc} The version of a MultiIndex increases when its shards are added or replaced,
+	 * and, for an IncrementalIndex, when documents are added or removed. Changes made directly 
+	 * to the shards are not counted. The version of a snapshot is that of its index.
+	 */
+	@Override
+	public long getVersion() {
+		if (parent != null)
+			return parent.getVersion();
+		return version.get();
+	}
+	
+	/** Returns the shards that are used by the selective matching policy */
+	public List<Index> getSelectedShards() {
+		return selectiveMatchingPolicy.getSelectedIndices(indices);
+	}
+	
+	/**
+	 * Adds a new shard after all existing shards.
+	 * @param newShard the shard to add
+	 */
+	public synchronized void addShard(Index newShard) {
+		checkNotSnapshot();
+		List<Index> newIndices = new ArrayList<Index>(indices);
+		newIndices.add(newShard);
+		publishShards(newIndices);
+	}
+	
+	/**
+	 * Atomically replaces some shards with a single shard, placed at the position 
+	 * of the first of the replaced shards. Readers see either all of the old shards, or 
+	 * the new shard.
+	 * @param oldShards the shards to remove
+	 * @param newShard the shard to add, or null to only remove the old shards
+	 */
+	public synchronized void replaceShards(List<? extends Index> oldShards, Index newShard) {
+		checkNotSnapshot();
+		List<Index> newIndices = new ArrayList<Index>(indices);
+		int position = newIndices.size();
+		for (Index old : oldShards) {
+			int i = indexOfShard(newIndices, old);
+			if (i == -1)
+				throw new IllegalArgumentException("Index " + old + " is not a shard of " + this);
+			position = Math.min(position, i);
+			newIndices.remove(i);
+		}
+		if (newShard != null)
+			newIndices.add(Math.min(position, newIndices.size()), newShard);
+		publishShards(newIndices);
+		synchronized (termFilters) {
+			for (Index old : oldShards)
+				termFilters.remove(old);
+		}
+	}
+	
+	/** Publishes a new list of shards, together with the directory of their terms */
+	private void publishShards(List<Index> newIndices) {
+		// queries that see the new shards before their directory probe all shards
+		ShardTermDirectory directory = buildTermDirectory(newIndices);
+		indices = Collections.unmodifiableList(newIndices);
+		termDirectory = directory;
+		version.incrementAndGet();
+	}
+	
+	private void checkNotSnapshot() {
+		if (parent != null)
+			throw new UnsupportedOperationException("The shards of a snapshot cannot be changed");
+	}
+	
+	private static int indexOfShard(List<Index> shards, Index shard) {
+		for (int i = 0; i < shards.size(); i++)
+			if (shards.get(i) == shard)
+				return i;
+		return -1;
+	}
+	
 	/**
 	 * Returns the number of index shards that this incremental index contains
 	 * @return integer number of shards
@@ -28,6 +28,7 @@
 package org.terrier.realtime.multi;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 import org.terrier.structures.Pointer;
 import org.terrier.structures.PostingIndex;
@@ -44,14 +45,24 @@ public class MultiInverted implements PostingIndex<Pointer> {
 
 	private PostingIndex<Pointer>[] postings;
 	private int[] offsets;
+	private BitSet[] deleted;
 	private boolean blocks;
 
 	/**
 	 * Constructor.
 	 */
 	public MultiInverted(PostingIndex<Pointer>[] postings, int[] offsets, boolean blocks) {
+		this(postings, offsets, null, blocks);
+	}
+	
+	/**
+	 * Constructor, where the posting lists skip the documents deleted from each shard.
+	 * @param deleted deleted docids of each shard, or null if none are deleted
+	 */
+	public MultiInverted(PostingIndex<Pointer>[] postings, int[] offsets, BitSet[] deleted, boolean blocks) {
 		this.postings = postings;
 		this.offsets = offsets;
+		this.deleted = deleted;
 		this.blocks = blocks;
 	}
 
@@ -69,8 +80,8 @@ public class MultiInverted implements PostingIndex<Pointer> {
 			i++;
 		}
 		if (blocks)
-			return new BlockMultiIterablePosting(constituentIPs, offsets);
-		return new MultiIterablePosting(constituentIPs, offsets);
+			return new BlockMultiIterablePosting(constituentIPs, offsets, deleted);
+		return new MultiIterablePosting(constituentIPs, offsets, deleted);
 	}
 
 	/** Not implemented. */
@@ -28,6 +28,7 @@
 package org.terrier.realtime.multi;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 import org.terrier.structures.postings.IterablePosting;
 import org.terrier.structures.postings.IterablePostingImpl;
@@ -35,7 +36,7 @@ import org.terrier.structures.postings.WritablePosting;
 
 /**
  * A posting list implementation used within a MultiIndex. It iterates over the posting
- * lists from multiple index shards. 
+ * lists from multiple index shards, skipping any documents deleted from each shard. 
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
@@ -45,23 +46,36 @@ public class MultiIterablePosting extends IterablePostingImpl implements
 
 	private IterablePosting[] children;
 	private int[] offsets;
+	private BitSet[] deleted;
 	public int currentChild = 0;
 
 	/**
 	 * Constructor.
 	 */
 	public MultiIterablePosting(IterablePosting[] constituentIPs, int[] offsets) {
+		this(constituentIPs, offsets, null);
+	}
+	
+	/**
+	 * Constructor.
+	 * @param deleted deleted docids of each shard, which are skipped, or null if none are deleted
+	 */
+	public MultiIterablePosting(IterablePosting[] constituentIPs, int[] offsets, BitSet[] deleted) {
 		this.children = constituentIPs;
 		this.offsets = offsets;
+		this.deleted = deleted;
 		currentChild = 0;
 	}
 
 	/** {@inheritDoc} */
 	public int next() throws IOException {
 		if (children[currentChild] != null) {
-			int id = children[currentChild].next();
-			if (id != IterablePosting.EOL)
-				return id + offsets[currentChild];
+			final BitSet childDeleted = deleted != null ? deleted[currentChild] : null;
+			int id;
+			while ((id = children[currentChild].next()) != IterablePosting.EOL) {
+				if (childDeleted == null || ! childDeleted.get(id))
+					return id + offsets[currentChild];
+			}
 		}
 		currentChild++;
 		if (currentChild == children.length)
@@ -60,17 +60,26 @@ import org.terrier.utility.StaTools;
  * <ul>
  * <li><tt>MultiLexicon.approxNumEntries</tt> - do we try and approximate the number of lexicon entries (saves a lot of time but is inaccurate), default is true.</li>
  * <li><tt>MultiLexicon.updateTermListOnIteratorCreate</tt> - do we re-build the full list of terms in the lexicon when an iterator is created. This can be slow, but we might miss new terms otherwise.</li>
+ * <li><tt>MultiLexicon.termCacheSize</tt> - the number of recently used terms whose global termids can be resolved without scanning the lexicons, default is 1000.</li>
  * </ul>
+ * Lookups of terms only probe the shards that a {@link ShardTermDirectory} reports may contain the term; 
+ * see that class for its properties.
  * 
  * @author Richard McCreadie, Stuart Mackie
  * @since 4.0
  */
 public class MultiLexicon extends Lexicon<String> {
 
-	LRUMap<Integer, String> hash2term = new LRUMap<>(1000);
+	/** the maximum number of terms held by each cache of terms */
+	static final int TERM_CACHE_SIZE = Integer.parseInt(ApplicationSetup.getProperty("MultiLexicon.termCacheSize", "1000"));
+	
+	LRUMap<Integer, String> hash2term = new LRUMap<>(TERM_CACHE_SIZE);
 	private Lexicon<String>[] lexicons;
 	private int[] numTerms;
 	private ArrayList<String> uniqueTerms;
+	private final ShardTermDirectory directory;
+	/** terms of the local termids recently seen in each shard */
+	private final LRUMap<Integer, String>[] local2term;
 
 	private boolean approximateNumberofEntries = Boolean
 			.parseBoolean(ApplicationSetup.getProperty(
@@ -84,8 +93,21 @@ public class MultiLexicon extends Lexicon<String> {
 	 * constructor.
 	 */
 	public MultiLexicon(Lexicon<String>[] lexicons, int[] numTerms) {
+		this(lexicons, numTerms, null);
+	}
+	
+	/**
+	 * constructor.
+	 * @param lexicons the lexicon of each shard
+	 * @param numTerms the number of terms in each shard
+	 * @param directory which shards may contain each term, or null to look up terms in every shard
+	 */
+	@SuppressWarnings("unchecked")
+	public MultiLexicon(Lexicon<String>[] lexicons, int[] numTerms, ShardTermDirectory directory) {
 		this.lexicons = lexicons;
 		this.numTerms = numTerms;
+		this.directory = directory;
+		this.local2term = new LRUMap[lexicons.length];
 		Set<String> unorderedTerms = new HashSet<String>();
 		if (!approximateNumberofEntries)
 			for (Lexicon<String> lex : lexicons)
@@ -130,19 +152,22 @@ public class MultiLexicon extends Lexicon<String> {
 
 	/** {@inheritDoc} */
 	public LexiconEntry getLexiconEntry(String term) {
-		LexiconEntry[] les = new LexiconEntry[lexicons.length];
+		LexiconEntry[] les = null;
 		LexiconEntry le;
-		int i = 0;
-		boolean found = false;
-		for (Lexicon<String> lexicon : lexicons) {
-			le = lexicon.getLexiconEntry(term);
+		final long candidates = directory != null ? directory.getCandidateShards(term) : -1L;
+		for (int i = 0; i < lexicons.length; i++) {
+			if (directory != null && (i < ShardTermDirectory.MAX_MAPPED_SHARDS 
+					? (candidates & (1L << i)) == 0 
+					: ! directory.mightContain(term, i)))
+				continue;
+			le = lexicons[i].getLexiconEntry(term);
 			if (le != null) {
+				if (les == null)
+					les = new LexiconEntry[lexicons.length];
 				les[i] = le;
-				found = true;
 			}
-			i++;
 		}
-		if (! found)
+		if (les == null)
 			return null;
 		int hashcode = hashCode(term);
 		this.hash2term.putIfAbsent(hashcode, term);
@@ -150,9 +175,17 @@ public class MultiLexicon extends Lexicon<String> {
 	}
 	
 	int computeGlobalTermIdFromLocal(int localtermid, int shard) {
-		String term = lexicons[shard].getLexiconEntry(localtermid).getKey();
-		int hashcode = hashCode(term);
-		this.hash2term.putIfAbsent(hashcode, term);
+		LRUMap<Integer, String> seen = local2term[shard];
+		if (seen == null)
+			seen = local2term[shard] = new LRUMap<>(TERM_CACHE_SIZE);
+		String term = seen.get(localtermid);
+		if (term == null) {
+			term = lexicons[shard].getLexiconEntry(localtermid).getKey();
+			seen.put(localtermid, term);
+		}
+		final int hashcode = hashCode(term);
+		//refreshed on every use, such that the terms being used are not evicted
+		this.hash2term.put(hashcode, term);
 		return hashcode;
 	}
 
@@ -0,0 +1,230 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is ShardTermDirectory.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+
+package org.terrier.realtime.multi;
+
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.utility.ApplicationSetup;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * A directory of the terms held by each shard of a {@link MultiIndex}. A {@link MultiLexicon}
+ * consults the directory before looking up a term, such that it only probes the lexicons of the
+ * shards that may contain that term. The terms of each on-disk shard, whose lexicon can no longer
+ * change, are summarised by a Bloom filter. Optionally, a single in-memory map from each term to
+ * a bitmap of the on-disk shards that contain it can be used instead, which has no false positives
+ * but holds every term of the index. Other shards, such as a MemoryIndex that is still being updated,
+ * are always probed.
+ * 
+ * <p><b>Properties</b></p>
+ * <ul>
+ * <li><tt>MultiLexicon.bloomFilter</tt> - build a Bloom filter of the terms of each on-disk shard, default is true.</li>
+ * <li><tt>MultiLexicon.bloomFilter.fpp</tt> - the false positive probability of each Bloom filter, default is 0.01.</li>
+ * <li><tt>MultiLexicon.globalTermMap</tt> - keep a map from each term to the on-disk shards containing it. 
+ * This is rebuilt whenever the on-disk shards change, default is false.</li>
+ * </ul>
+ * 
+ * @author Craig Macdonald
+ * @since 5.9
+ */
+public class ShardTermDirectory {
+
+	private static final Logger logger = LoggerFactory.getLogger(ShardTermDirectory.class);
+	
+	/** the number of shards that can be described by the bitmaps of the global term map */
+	public static final int MAX_MAPPED_SHARDS = Long.SIZE;
+	
+	final Index[] shards;
+	/** Bloom filter of the terms of each shard, or null if the shard must always be probed */
+	final BloomFilter<CharSequence>[] filters;
+	/** bitmap of the shards containing each term, or null if not used */
+	final Object2LongOpenHashMap<String> termShards;
+	/** bitmap of the shards described by termShards */
+	final long mappedShards;
+	
+	ShardTermDirectory(Index[] shards, BloomFilter<CharSequence>[] filters, Object2LongOpenHashMap<String> termShards, long mappedShards) {
+		this.shards = shards;
+		this.filters = filters;
+		this.termShards = termShards;
+		this.mappedShards = mappedShards;
+	}
+	
+	/** Returns true if this directory describes exactly the specified shards, in the same order */
+	public boolean isFor(List<Index> otherShards) {
+		if (otherShards.size() != shards.length)
+			return false;
+		int i = 0;
+		for (Index shard : otherShards)
+			if (shard != shards[i++])
+				return false;
+		return true;
+	}
+	
+	/** Returns the number of shards described by this directory */
+	public int getNumberOfShards() {
+		return shards.length;
+	}
+	
+	/** 
+	 * Returns a bitmap of which of the first {@link #MAX_MAPPED_SHARDS} shards may contain the
+	 * specified term. Shards that this directory does not summarise are always included.
+	 */
+	public long getCandidateShards(String term) {
+		long candidates = 0;
+		if (termShards != null)
+			candidates = termShards.getLong(term);
+		final int n = Math.min(shards.length, MAX_MAPPED_SHARDS);
+		for (int i = 0; i < n; i++) {
+			if ((mappedShards & (1L << i)) != 0)
+				continue;
+			if (filters[i] == null || filters[i].mightContain(term))
+				candidates |= 1L << i;
+		}
+		return candidates;
+	}
+	
+	/** Returns true if the specified shard may contain the term */
+	public boolean mightContain(String term, int shard) {
+		if (shard < MAX_MAPPED_SHARDS)
+			return (getCandidateShards(term) & (1L << shard)) != 0;
+		return filters[shard] == null || filters[shard].mightContain(term);
+	}
+	
+	/** Returns true if the terms of the specified shard can be summarised, i.e. its lexicon cannot change */
+	protected static boolean isImmutable(Index shard) {
+		return shard instanceof IndexOnDisk;
+	}
+	
+	/** Returns true if a Bloom filter of the terms of the specified shard should be built, rather than a global term map */
+	public static boolean isSummarised(Index shard) {
+		return isImmutable(shard) 
+			&& Boolean.parseBoolean(ApplicationSetup.getProperty("MultiLexicon.bloomFilter", "true"))
+			&& ! Boolean.parseBoolean(ApplicationSetup.getProperty("MultiLexicon.globalTermMap", "false"));
+	}
+	
+	/** Returns the configured false positive probability of the Bloom filters */
+	public static double getFalsePositiveProbability() {
+		return Double.parseDouble(ApplicationSetup.getProperty("MultiLexicon.bloomFilter.fpp", "0.01"));
+	}
+	
+	/**
+	 * Creates a directory of the specified shards, according to the configured properties.
+	 * @param shards the shards to describe
+	 * @param filterCache Bloom filters already built for shards, which is updated with any new filters
+	 * @param previous the previous directory, whose global term map is reused if its shards have not changed, or null
+	 * @return a directory of the shards, or null if no directory is configured
+	 */
+	public static ShardTermDirectory build(List<Index> shards, Map<Index, BloomFilter<CharSequence>> filterCache, ShardTermDirectory previous) throws IOException {
+		final boolean useBloomFilters = Boolean.parseBoolean(ApplicationSetup.getProperty("MultiLexicon.bloomFilter", "true"));
+		final boolean useGlobalMap = Boolean.parseBoolean(ApplicationSetup.getProperty("MultiLexicon.globalTermMap", "false"));
+		if (! useBloomFilters && ! useGlobalMap)
+			return null;
+		final Index[] shardArray = shards.toArray(new Index[shards.size()]);
+		long mappedShards = 0;
+		Object2LongOpenHashMap<String> termShards = null;
+		if (useGlobalMap) {
+			for (int i = 0; i < Math.min(shardArray.length, MAX_MAPPED_SHARDS); i++)
+				if (isImmutable(shardArray[i]))
+					mappedShards |= 1L << i;
+			if (previous != null && previous.termShards != null && sameMappedShards(previous, shardArray, mappedShards))
+				termShards = previous.termShards;
+			else
+				termShards = buildTermShards(shardArray, mappedShards);
+		}
+		
+		@SuppressWarnings("unchecked")
+		final BloomFilter<CharSequence>[] filters = new BloomFilter[shardArray.length];
+		for (int i = 0; i < shardArray.length; i++) {
+			if (! useBloomFilters || ! isImmutable(shardArray[i]) || (i < MAX_MAPPED_SHARDS && (mappedShards & (1L << i)) != 0))
+				continue;
+			filters[i] = filterCache.get(shardArray[i]);
+			if (filters[i] == null) {
+				filters[i] = buildFilter(shardArray[i], getFalsePositiveProbability());
+				filterCache.put(shardArray[i], filters[i]);
+			}
+		}
+		return new ShardTermDirectory(shardArray, filters, termShards, mappedShards);
+	}
+	
+	static boolean sameMappedShards(ShardTermDirectory previous, Index[] shards, long mappedShards) {
+		if (previous.mappedShards != mappedShards)
+			return false;
+		for (int i = 0; i < Math.min(shards.length, MAX_MAPPED_SHARDS); i++)
+			if ((mappedShards & (1L << i)) != 0 && previous.shards[i] != shards[i])
+				return false;
+		return true;
+	}
+	
+	/** Builds a Bloom filter of all terms in the lexicon of the specified shard */
+	public static BloomFilter<CharSequence> buildFilter(Index shard, double fpp) throws IOException {
+		final int numTerms = Math.max(1, shard.getCollectionStatistics().getNumberOfUniqueTerms());
+		final BloomFilter<CharSequence> filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), numTerms, fpp);
+		final Iterator<Entry<String, LexiconEntry>> iter = shard.getLexicon().iterator();
+		while (iter.hasNext())
+			filter.put(iter.next().getKey());
+		IndexUtil.close(iter);
+		logger.debug("Built Bloom filter of " + numTerms + " terms for shard " + shard);
+		return filter;
+	}
+	
+	static Object2LongOpenHashMap<String> buildTermShards(Index[] shards, long mappedShards) throws IOException {
+		final Object2LongOpenHashMap<String> termShards = new Object2LongOpenHashMap<>();
+		termShards.defaultReturnValue(0L);
+		for (int i = 0; i < Math.min(shards.length, MAX_MAPPED_SHARDS); i++) {
+			if ((mappedShards & (1L << i)) == 0)
+				continue;
+			final long bit = 1L << i;
+			final Lexicon<String> lex = shards[i].getLexicon();
+			final Iterator<Entry<String, LexiconEntry>> iter = lex.iterator();
+			while (iter.hasNext()) {
+				String term = iter.next().getKey();
+				termShards.put(term, termShards.getLong(term) | bit);
+			}
+			IndexUtil.close(iter);
+		}
+		termShards.trim();
+		logger.debug("Built global term map of " + termShards.size() + " terms");
+		return termShards;
+	}
+}
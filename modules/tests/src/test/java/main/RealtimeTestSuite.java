@@ -29,6 +29,7 @@ package main;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
+import org.terrier.matching.daat.TestShardedFull;
 import org.terrier.realtime.incremental.TestIncremental;
 import org.terrier.realtime.memory.TestMemoryDirect;
 import org.terrier.realtime.memory.TestMemoryIndex;
@@ -53,6 +54,7 @@ import org.terrier.realtime.multi.TestMultiIndex;
         TestMemoryMetaIndex.class,
         TestMultiIndex.class,
         TestIncremental.class,
-        TestMemoryDirect.class
+        TestMemoryDirect.class,
+        TestShardedFull.class
 })
 public class RealtimeTestSuite{}
@@ -34,6 +34,7 @@ import org.terrier.applications.TestShowDocumentCommand;
 import org.terrier.compression.bit.TestCompressedBitFiles;
 import org.terrier.compression.bit.TestCompressedBitFilesDelta;
 import org.terrier.compression.bit.TestCompressedBitFilesGolomb;
+import org.terrier.compression.integer.TestIntegerCodecs;
 import org.terrier.evaluation.TestAdhocEvaluation;
 import org.terrier.evaluation.TestTRECQrelsInMemory;
 import org.terrier.fat.TestFatCandidateResultSet;
@@ -44,6 +45,8 @@ import org.terrier.fat.TestLinearModelMatching;
 import org.terrier.fat.TestScoringMatchingWithFat;
 import org.terrier.indexing.TestCollectionFactory;
 import org.terrier.indexing.TestCollections;
+import org.terrier.indexing.TestBitSkipCompressionConfig;
+import org.terrier.indexing.TestIntegerCodecCompressionConfig;
 import org.terrier.indexing.TestCompressionConfig;
 import org.terrier.indexing.TestCrawlDate;
 import org.terrier.indexing.TestIndexers;
@@ -61,7 +64,11 @@ import org.terrier.matching.TestDAATFullMatching;
 import org.terrier.matching.TestTAATFullMatching;
 import org.terrier.matching.TestMatchingQueryTerms;
 import org.terrier.matching.TestResultSets;
+import org.terrier.matching.TestPostingListCache;
+import org.terrier.matching.TestSAATFullMatching;
 import org.terrier.matching.TestTRECResultsMatching;
+import org.terrier.matching.TestWANDMatching;
+import org.terrier.matching.matchops.TestLevenshteinTermIterator;
 import org.terrier.matching.matchops.TestMatchOpQLParser;
 import org.terrier.matching.matchops.TestTRECQueryingMatchOpQL;
 import org.terrier.matching.models.TestWeightingModelFactory;
@@ -73,19 +80,26 @@ import org.terrier.querying.summarisation.TestDefaultSummariser;
 import org.terrier.rest.TestClientAndServer;
 import org.terrier.statistics.TestGammaFunction.TestWikipediaLanczosGammaFunction;
 import org.terrier.structures.TestBasicLexiconEntry;
+import org.terrier.structures.TestFrontCodedLexicon;
+import org.terrier.structures.TestKGramIndex;
 import org.terrier.structures.TestBitIndexPointer;
 import org.terrier.structures.TestCompressingMetaIndex;
 import org.terrier.structures.TestLZ4MetaIndex;
 import org.terrier.structures.TestZstdMetaIndex;
+import org.terrier.structures.TestZstdBlockMetaIndex;
 import org.terrier.structures.TestIndexOnDisk;
 import org.terrier.structures.TestIndexUtil;
+import org.terrier.structures.TestMaxScoreBuilder;
 import org.terrier.structures.TestTRECQuery;
 import org.terrier.structures.bit.TestBitPostingIndex;
 import org.terrier.structures.bit.TestBitPostingIndexInputStream;
 import org.terrier.structures.bit.TestPostingStructures;
+import org.terrier.structures.cache.TestBoundedQueryResultCache;
 import org.terrier.structures.collections.TestFSArrayFile;
 import org.terrier.structures.collections.TestFSOrderedMapFile;
+import org.terrier.structures.collections.TestPerfectHashMapFile;
 import org.terrier.structures.indexing.TestIndexing;
+import org.terrier.structures.indexing.TestInvertedIndexRecompresser;
 import org.terrier.structures.indexing.TestIndexingFatalErrors;
 import org.terrier.structures.indexing.singlepass.TestInverted2DirectIndexBuilder;
 import org.terrier.structures.merging.TestMerger;
@@ -142,6 +156,7 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestCompressedBitFiles.class,
 	TestCompressedBitFilesDelta.class,
 	TestCompressedBitFilesGolomb.class,
+	TestIntegerCodecs.class,
 	
 	
 	//.evaluation
@@ -160,6 +175,8 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	TestCollections.class,
 	TestCollectionFactory.class,
 	TestCompressionConfig.class,
+	TestBitSkipCompressionConfig.class,
+	TestIntegerCodecCompressionConfig.class,
 	TestCrawlDate.class,
 	TestIndexers.class,
 	TestSimpleFileCollection.class,
@@ -180,13 +197,17 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	//.matching
 	TestMatchingQueryTerms.class,
 	TestDAATFullMatching.class,
+	TestWANDMatching.class,
 	TestTAATFullMatching.class,
 	TestTRECResultsMatching.class,
 	TestResultSets.class,
+	TestPostingListCache.class,
+	TestSAATFullMatching.class,
 	
 	//matching.matchops
 	TestTRECQueryingMatchOpQL.class,
 	TestMatchOpQLParser.class,
+	TestLevenshteinTermIterator.class,
 	
 	//matching.models
 	TestWeightingModelFactory.class,
@@ -210,21 +231,30 @@ import org.terrier.utility.io.TestRandomDataInputMemory;
 	
 	//.structures
 	TestBasicLexiconEntry.class,
+	TestFrontCodedLexicon.class,
+	TestKGramIndex.class,
 	TestBitIndexPointer.class,
 	TestBitPostingIndex.class,
 	TestBitPostingIndexInputStream.class,
 	TestCompressingMetaIndex.class,
+	TestZstdBlockMetaIndex.class,
 	TestPostingStructures.class,
 	TestIndexUtil.class,
+	TestMaxScoreBuilder.class,
 	TestTRECQuery.class,
 	TestIndexOnDisk.class,
 	
+	//.structures.cache
+	TestBoundedQueryResultCache.class,
+	
 	//.structures.collections
 	TestFSOrderedMapFile.class,
+	TestPerfectHashMapFile.class,
 	TestFSArrayFile.class,
 	
 	//.structures.indexing
 	TestIndexing.class,
+	TestInvertedIndexRecompresser.class,
 	TestIndexingFatalErrors.class,
 	
 	//structures.indexing.merging
@@ -0,0 +1,177 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestIntegerCodecs.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+
+package org.terrier.compression.integer;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.terrier.compression.integer.codec.IntegerCodec;
+import org.terrier.compression.integer.codec.PForDeltaCodec;
+import org.terrier.compression.integer.codec.StreamVByteCodec;
+import org.terrier.compression.integer.codec.VIntCodec;
+
+public class TestIntegerCodecs {
+
+	static final IntegerCodec[] CODECS = new IntegerCodec[]{new VIntCodec(), new StreamVByteCodec(), new PForDeltaCodec()};
+
+	@Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	/** arrays of various lengths and distributions, including exceptions and the extremes */
+	static List<int[]> makeArrays()
+	{
+		final Random r = new Random(42);
+		final List<int[]> arrays = new ArrayList<>();
+		arrays.add(new int[0]);
+		arrays.add(new int[]{0});
+		arrays.add(new int[]{Integer.MAX_VALUE});
+		arrays.add(new int[]{1, 2, 3});
+		arrays.add(new int[]{0, 0, 0, 0, 0});
+		for(int length : new int[]{4, 7, 128, 1000})
+		{
+			for(int maxBits : new int[]{1, 5, 8, 9, 16, 17, 24, 25, 31})
+			{
+				int[] a = new int[length];
+				for(int i=0;i<length;i++)
+					a[i] = maxBits == 31 ? r.nextInt(Integer.MAX_VALUE) : r.nextInt(1 << maxBits);
+				arrays.add(a);
+			}
+			//mostly small gaps, with occasional large exceptions
+			int[] a = new int[length];
+			for(int i=0;i<length;i++)
+				a[i] = r.nextInt(10) == 0 ? r.nextInt(1 << 20) : 1 + r.nextInt(8);
+			arrays.add(a);
+		}
+		return arrays;
+	}
+
+	static byte[] write(IntegerCodec codec, List<int[]> arrays) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ByteOut out = new ByteOut(baos);
+		for(int[] a : arrays)
+		{
+			//markers either side of each array check that each codec reads exactly what it wrote
+			out.writeVInt(a.length);
+			codec.compress(a, a.length, out);
+			out.writeByte(0x55);
+		}
+		out.close();
+		assertEquals(baos.size(), out.getByteOffset());
+		return baos.toByteArray();
+	}
+
+	static void read(IntegerCodec codec, List<int[]> arrays, ByteIn in) throws IOException
+	{
+		for(int[] a : arrays)
+		{
+			assertEquals(a.length, in.readVInt());
+			int[] decoded = new int[a.length + 3];
+			codec.decompress(in, decoded, a.length);
+			for(int i=0;i<a.length;i++)
+				assertEquals(codec.getClass().getSimpleName() + " at " + i, a[i], decoded[i]);
+			assertEquals(0x55, in.readByte());
+		}
+	}
+
+	@Test public void testCodecs() throws Exception
+	{
+		final List<int[]> arrays = makeArrays();
+		for(IntegerCodec codec : CODECS)
+		{
+			final byte[] bytes = write(codec, arrays);
+			read(codec, arrays, new ByteInputStream(new ByteArrayInputStream(bytes)));
+			read(codec, arrays, new ByteFileInMemory(bytes).readReset(0));
+			File f = tmpFolder.newFile(codec.getClass().getSimpleName() + ByteIn.USUAL_EXTENSION);
+			try(FileOutputStream fos = new FileOutputStream(f))
+			{
+				fos.write(bytes);
+			}
+			//a small buffer ensures that arrays span several buffers
+			ByteFileBuffered file = new ByteFileBuffered(f.toString(), 7);
+			read(codec, arrays, file.readReset(0));
+			file.close();
+			read(codec, arrays, new ByteInputStream(f.toString()));
+		}
+	}
+
+	@Test public void testPForDeltaSmallerThanVInt() throws Exception
+	{
+		final Random r = new Random(1);
+		final int[] gaps = new int[1024];
+		for(int i=0;i<gaps.length;i++)
+			gaps[i] = 1 + r.nextInt(4);
+		final List<int[]> arrays = new ArrayList<>();
+		arrays.add(gaps);
+		//3 bits per gap, compared to 8 bits
+		assertTrue(write(new PForDeltaCodec(), arrays).length < write(new VIntCodec(), arrays).length / 2);
+	}
+
+	@Test public void testVIntAndSkip() throws Exception
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ByteOut out = new ByteOut(baos);
+		final int[] values = new int[]{0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+		for(int v : values)
+			out.writeVInt(v);
+		final long offset = out.getByteOffset();
+		out.writeVInt(99);
+		out.close();
+		final byte[] bytes = baos.toByteArray();
+		File f = tmpFolder.newFile("vint" + ByteIn.USUAL_EXTENSION);
+		try(FileOutputStream fos = new FileOutputStream(f))
+		{
+			fos.write(bytes);
+		}
+		for(ByteInSeekable file : new ByteInSeekable[]{new ByteFileInMemory(bytes), new ByteFileBuffered(f.toString(), 3)})
+		{
+			ByteIn in = file.readReset(0);
+			for(int v : values)
+				assertEquals(v, in.readVInt());
+			assertEquals(offset, in.getByteOffset());
+			in = file.readReset(0);
+			in.skipBytes(offset);
+			assertEquals(99, in.readVInt());
+			assertEquals(99, file.readReset(offset).readVInt());
+			file.close();
+		}
+		ByteIn in = new ByteInputStream(f.toString());
+		in.skipBytes(offset);
+		assertEquals(99, in.readVInt());
+		in.close();
+	}
+}
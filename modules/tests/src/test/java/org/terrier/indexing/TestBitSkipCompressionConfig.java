@@ -0,0 +1,257 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestBitSkipCompressionConfig.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+
+package org.terrier.indexing;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.structures.AbstractPostingOutputStream;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.indexing.CompressionFactory;
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.postings.ArrayOfBasicIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockFieldIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockIterablePosting;
+import org.terrier.structures.postings.ArrayOfFieldIterablePosting;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.structures.postings.bit.SkipBlockIterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestBitSkipCompressionConfig extends TestCompressionConfig {
+
+	static final int NUM_POSTINGS = 1000;
+
+	@Override
+	protected CompressionConfiguration getConfig(String structure, String[] fieldNames, int hasBlocks, int maxBlocks)
+	{
+		return new CompressionFactory.BitSkipCompressionConfiguration(structure, fieldNames, hasBlocks, maxBlocks);
+	}
+
+	/** Sets the number of postings in each block of the specified structure */
+	protected void setBlockSize(String structure, int size)
+	{
+		ApplicationSetup.setProperty("index." + structure + ".compression.skip.size", String.valueOf(size));
+	}
+
+	/** The IterablePosting class expected for an inverted index with blocks */
+	protected Class<?> getBlockPostingClass()
+	{
+		return SkipBlockIterablePosting.class;
+	}
+
+	@Test public void testBasic() throws Exception
+	{
+		checkSkipping(new String[0], 0);
+	}
+
+	@Test public void testFields() throws Exception
+	{
+		checkSkipping(new String[]{"title", "body"}, 0);
+	}
+
+	@Test public void testBlocks() throws Exception
+	{
+		checkSkipping(new String[0], 1);
+	}
+
+	@Test public void testBlocksFields() throws Exception
+	{
+		checkSkipping(new String[]{"title", "body"}, 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected void checkSkipping(String[] fieldNames, int hasBlocks) throws Exception
+	{
+		setBlockSize("inverted", 16);
+		final Random r = new Random(42);
+		final int fieldCount = fieldNames.length;
+		final int[] ids = new int[NUM_POSTINGS];
+		final int[] tfs = new int[NUM_POSTINGS];
+		final int[] lens = new int[NUM_POSTINGS];
+		final int[][] tffs = new int[NUM_POSTINGS][fieldCount];
+		final int[][] lfs = new int[NUM_POSTINGS][fieldCount];
+		final int[] posCount = new int[NUM_POSTINGS];
+		final int[] positions = new int[NUM_POSTINGS * 5];
+		int numPositions = 0;
+		int lastId = -1;
+		for(int i=0;i<NUM_POSTINGS;i++)
+		{
+			ids[i] = lastId += 1 + r.nextInt(20);
+			tfs[i] = posCount[i] = 1 + r.nextInt(5);
+			lens[i] = 10;
+			if (fieldCount > 0)
+				tffs[i][r.nextInt(fieldCount)] = tfs[i];
+			for(int j=0;j<tfs[i];j++)
+				positions[numPositions++] = j * 2;
+		}
+
+		IndexOnDisk index = IndexOnDisk.createNewIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+		CompressionConfiguration cc = getConfig("inverted", fieldNames, hasBlocks, 0);
+		AbstractPostingOutputStream pos = cc.getPostingOutputStream(index.getPath() + "/" + index.getPrefix() + ".inverted" + cc.getStructureFileExtension());
+		IterablePosting input = fieldCount > 0
+			? hasBlocks > 0
+				? new ArrayOfBlockFieldIterablePosting(ids, tfs, lens, tffs, lfs, posCount, positions)
+				: new ArrayOfFieldIterablePosting(ids, tfs, lens, tffs, lfs)
+			: hasBlocks > 0
+				? new ArrayOfBlockIterablePosting(ids, tfs, posCount, positions)
+				: new ArrayOfBasicIterablePosting(ids, tfs);
+		Pointer pShort = pos.writePostings(shortList(fieldCount, hasBlocks));
+		Pointer pLong = pos.writePostings(input);
+		pos.close();
+		cc.writeIndexProperties(index, "lexicon-entry-inputstream");
+		index.flush();
+		PostingIndex<Pointer> inv = (PostingIndex<Pointer>) index.getIndexStructure("inverted");
+
+		//a short posting list has no skip table
+		IterablePosting ip = inv.getPostings(pShort);
+		assertEquals(7, ip.next(6));
+		assertEquals(IterablePosting.EOL, ip.next(8));
+
+		//sequential reading
+		ip = inv.getPostings(pLong);
+		assertEquals(hasBlocks > 0, ip instanceof BlockPosting);
+		assertEquals(fieldCount > 0, ip instanceof FieldPosting);
+		for(int i=0;i<NUM_POSTINGS;i++)
+		{
+			assertEquals(ids[i], ip.next());
+			assertEquals(tfs[i], ip.getFrequency());
+		}
+		assertEquals(IterablePosting.EOL, ip.next());
+		ip.close();
+
+		//skipping, with targets that are present, absent, in the same block, and far ahead
+		for(int trial=0;trial<20;trial++)
+		{
+			ip = inv.getPostings(pLong);
+			int i = 0;
+			int target = r.nextInt(50);
+			while(true)
+			{
+				while(i < NUM_POSTINGS && ids[i] < target)
+					i++;
+				final int expected = i < NUM_POSTINGS ? ids[i] : IterablePosting.EOL;
+				assertEquals(expected, ip.next(target));
+				if (expected == IterablePosting.EOL)
+					break;
+				assertEquals(tfs[i], ip.getFrequency());
+				if (fieldCount > 0)
+					assertArrayEquals(tffs[i], ((FieldPosting)ip).getFieldFrequencies());
+				if (hasBlocks > 0)
+					assertEquals(posCount[i], ((BlockPosting)ip).getPositions().length);
+				//alternate between skips and sequential reads
+				if (r.nextBoolean())
+				{
+					i++;
+					assertEquals(i < NUM_POSTINGS ? ids[i] : IterablePosting.EOL, ip.next());
+					if (i == NUM_POSTINGS)
+						break;
+				}
+				target = ids[i] + r.nextInt(r.nextBoolean() ? 10 : 2000);
+			}
+			ip.close();
+		}
+		index.close();
+	}
+
+	static IterablePosting shortList(int fieldCount, int hasBlocks)
+	{
+		final int[] ids = new int[]{5, 7};
+		final int[] tfs = new int[]{1, 2};
+		final int[] lens = new int[]{10, 10};
+		final int[][] tffs = new int[2][fieldCount];
+		final int[][] lfs = new int[2][fieldCount];
+		if (fieldCount > 0)
+		{
+			tffs[0][0] = 1;
+			tffs[1][0] = 2;
+		}
+		final int[] posCount = new int[]{1, 2};
+		final int[] positions = new int[]{0, 0, 3};
+		return fieldCount > 0
+			? hasBlocks > 0
+				? new ArrayOfBlockFieldIterablePosting(ids, tfs, lens, tffs, lfs, posCount, positions)
+				: new ArrayOfFieldIterablePosting(ids, tfs, lens, tffs, lfs)
+			: hasBlocks > 0
+				? new ArrayOfBlockIterablePosting(ids, tfs, posCount, positions)
+				: new ArrayOfBasicIterablePosting(ids, tfs);
+	}
+
+	@Test public void testIndexingAndMerging() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		final String configName = getConfig("inverted", new String[0], 0, 0).getClass().getName();
+		ApplicationSetup.setProperty("indexing.direct.compression.configuration", configName);
+		ApplicationSetup.setProperty("indexing.inverted.compression.configuration", configName);
+		setBlockSize("inverted", 2);
+		setBlockSize("direct", 2);
+		//force the classical indexer to merge several partial indices
+		ApplicationSetup.setProperty("indexing.max.docs.per.builder", "3");
+		final int numDocs = 10;
+		String[] docnos = new String[numDocs];
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			docnos[i] = "doc" + i;
+			docs[i] = "common phrase " + (i % 2 == 0 ? "even" : "odd");
+		}
+		Index index = IndexTestUtils.makeIndexBlocks(docnos, docs);
+		assertEquals(numDocs, index.getCollectionStatistics().getNumberOfDocuments());
+
+		LexiconEntry le = index.getLexicon().getLexiconEntry("common");
+		assertEquals(numDocs, le.getDocumentFrequency());
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		assertEquals(getBlockPostingClass(), ip.getClass());
+		for(int i=0;i<numDocs;i++)
+		{
+			assertEquals(i, ip.next());
+			assertArrayEquals(new int[]{0}, ((BlockPosting)ip).getPositions());
+		}
+		assertEquals(IterablePosting.EOL, ip.next());
+
+		le = index.getLexicon().getLexiconEntry("odd");
+		assertEquals(numDocs/2, le.getDocumentFrequency());
+		ip = index.getInvertedIndex().getPostings(le);
+		assertEquals(7, ip.next(6));
+		assertEquals(9, ip.next(9));
+		assertEquals(IterablePosting.EOL, ip.next(10));
+
+		//the direct index is also readable
+		ip = index.getDirectIndex().getPostings(index.getDocumentIndex().getDocumentEntry(4));
+		int count = 0;
+		while(ip.next() != IterablePosting.EOL)
+			count++;
+		assertEquals(3, count);
+	}
+}
@@ -33,18 +33,24 @@ import static org.junit.Assert.assertTrue;
 import gnu.trove.TObjectIntHashMap;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.terrier.indexing.tokenisation.EnglishTokeniser;
+import org.terrier.indexing.tokenisation.Tokeniser;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.DocumentIndexEntry;
 import org.terrier.structures.FieldDocumentIndex;
 import org.terrier.structures.FieldDocumentIndexEntry;
 import org.terrier.structures.FieldEntryStatistics;
 import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.Lexicon;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.MetaIndex;
@@ -63,6 +69,7 @@ import org.terrier.structures.postings.bit.BlockFieldIterablePosting;
 import org.terrier.structures.postings.bit.FieldIterablePosting;
 import org.terrier.tests.ApplicationSetupBasedTest;
 import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
 import org.terrier.realtime.MemoryIndexer;
 
 //TODO: does not check block positions
@@ -464,5 +471,149 @@ public class TestIndexers extends ApplicationSetupBasedTest {
 		ApplicationSetup.setProperty("FieldTags.process", "TITLE,ELSE");
 		testIndexer(new BlockSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, "fields"), false, true);
 	}
+	
+	@Test
+	public void testBasicSPNoFieldsParallel() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "");
+		ApplicationSetup.setProperty("indexing.singlepass.parser.threads", "3");
+		testIndexer(new BasicSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX), false, false);
+	}
+	
+	@Test
+	public void testBlockSPFieldsParallel() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,ELSE");
+		ApplicationSetup.setProperty("indexing.singlepass.parser.threads", "3");
+		testIndexer(new BlockSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, "fields"), false, true);
+	}
+	
+	@Test
+	public void testBlockSPFieldsParallelMerge() throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,ELSE");
+		ApplicationSetup.setProperty("indexing.singlepass.max.documents.flush", "1");
+		ApplicationSetup.setProperty("indexing.singlepass.merge.threads", "3");
+		testIndexer(new BlockSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, "fields"), false, true);
+	}
+	
+	/** parsing with several threads must give the same index as a single thread, including docids */
+	@Test
+	public void testSPParallelMatchesSequential() throws Exception
+	{
+		testSPMatchesSequential("indexing.singlepass.parser.threads");
+	}
+	
+	/** merging partitions of the lexicon with several threads must give the same index as a single thread */
+	@Test
+	public void testSPParallelMergeMatchesSequential() throws Exception
+	{
+		testSPMatchesSequential("indexing.singlepass.merge.threads");
+	}
+	
+	/** TRECCollection documents read lazily from the collection's stream, so their text must 
+	 * be read before the collection moves on to the next document */
+	@Test
+	public void testSPParallelTRECCollection() throws Exception
+	{
+		testSPParallelTRECCollection(TaggedDocument.class);
+	}
+	
+	/** a TaggedDocument that cannot be created from its text */
+	public static class InputStreamTaggedDocument extends TaggedDocument
+	{
+		public InputStreamTaggedDocument(InputStream docStream, Map<String, String> docProperties, Tokeniser _tokeniser)
+		{
+			super(docStream, docProperties, _tokeniser);
+		}
+	}
+	
+	/** documents that cannot be created from their text are tokenised before the collection moves on */
+	@Test
+	public void testSPParallelTRECCollectionTokenised() throws Exception
+	{
+		testSPParallelTRECCollection(InputStreamTaggedDocument.class);
+	}
+	
+	protected void testSPParallelTRECCollection(Class<? extends Document> documentClass) throws Exception
+	{
+		ApplicationSetup.setProperty("trec.document.class", documentClass.getName());
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE,ELSE");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "docno");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "20");
+		ApplicationSetup.setProperty("indexing.singlepass.max.documents.flush", "37");
+		final String[] docs = makeDocuments(500, 2000);
+		final String dataFilename = ApplicationSetup.TERRIER_INDEX_PATH + "/parallel.trec";
+		Writer w = Files.writeFileWriter(dataFilename);
+		for(int i=0;i<docs.length;i++)
+			w.write("<DOC>\n<DOCNO>doc" + i + "</DOCNO>\n<TITLE>title" + i + "</TITLE>\n" + docs[i] + "\n</DOC>\n");
+		w.close();
+		testSPMatchesSequential("indexing.singlepass.parser.threads", "docno", 
+			() -> new TRECCollection(Files.openFileStream(dataFilename)));
+	}
+	
+	protected static String[] makeDocuments(int numDocs, int maxLength)
+	{
+		Random r = new Random(7);
+		String[] docs = new String[numDocs];
+		for(int i=0;i<docs.length;i++)
+		{
+			StringBuilder doc = new StringBuilder();
+			int len = r.nextInt(maxLength);
+			for(int j=0;j<len;j++)
+				doc.append("t" + r.nextInt(200) + " ");
+			docs[i] = doc.toString();
+		}
+		return docs;
+	}
+	
+	protected void testSPMatchesSequential(String threadsProperty) throws Exception
+	{
+		ApplicationSetup.setProperty("FieldTags.process", "");
+		ApplicationSetup.setProperty("indexing.singlepass.max.documents.flush", "37");
+		final String[] docs = makeDocuments(500, 40);
+		final String[] docnos = new String[docs.length];
+		for(int i=0;i<docnos.length;i++)
+			docnos[i] = "doc" + i;
+		testSPMatchesSequential(threadsProperty, "filename", () -> IndexTestUtils.makeCollection(docnos, docs));
+	}
+	
+	protected void testSPMatchesSequential(String threadsProperty, String metaKey, Callable<Collection> collection) throws Exception
+	{
+		Indexer indexer = new BasicSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, "sequential");
+		indexer.index(new Collection[]{collection.call()});
+		ApplicationSetup.setProperty(threadsProperty, "4");
+		indexer = new BasicSinglePassIndexer(ApplicationSetup.TERRIER_INDEX_PATH, "parallel");
+		indexer.index(new Collection[]{collection.call()});
+		
+		Index seq = IndexOnDisk.createIndex(ApplicationSetup.TERRIER_INDEX_PATH, "sequential");
+		Index par = IndexOnDisk.createIndex(ApplicationSetup.TERRIER_INDEX_PATH, "parallel");
+		assertEquals(seq.getCollectionStatistics().getNumberOfDocuments(), par.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(seq.getCollectionStatistics().getNumberOfTokens(), par.getCollectionStatistics().getNumberOfTokens());
+		assertEquals(seq.getCollectionStatistics().getNumberOfUniqueTerms(), par.getCollectionStatistics().getNumberOfUniqueTerms());
+		for(int d=0;d<seq.getCollectionStatistics().getNumberOfDocuments();d++)
+		{
+			assertEquals(seq.getMetaIndex().getItem(metaKey, d), par.getMetaIndex().getItem(metaKey, d));
+			assertEquals(seq.getDocumentIndex().getDocumentLength(d), par.getDocumentIndex().getDocumentLength(d));
+		}
+		for(Map.Entry<String,LexiconEntry> e : seq.getLexicon())
+		{
+			LexiconEntry other = par.getLexicon().getLexiconEntry(e.getKey());
+			assertNotNull(e.getKey(), other);
+			assertEquals(e.getValue().getTermId(), other.getTermId());
+			assertEquals(e.getValue().getDocumentFrequency(), other.getDocumentFrequency());
+			assertEquals(e.getValue().getFrequency(), other.getFrequency());
+			IterablePosting ipSeq = seq.getInvertedIndex().getPostings(e.getValue());
+			IterablePosting ipPar = par.getInvertedIndex().getPostings(other);
+			while(ipSeq.next() != IterablePosting.EOL)
+			{
+				assertEquals(ipSeq.getId(), ipPar.next());
+				assertEquals(ipSeq.getFrequency(), ipPar.getFrequency());
+			}
+			assertEquals(IterablePosting.EOL, ipPar.next());
+		}
+		seq.close();
+		par.close();
+	}
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestIntegerCodecCompressionConfig.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+
+package org.terrier.indexing;
+
+import org.terrier.structures.indexing.CompressionFactory.CompressionConfiguration;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.integer.IntegerCodecCompressionConfiguration;
+import org.terrier.structures.postings.integer.BlockIntegerCodingIterablePosting;
+import org.terrier.utility.ApplicationSetup;
+
+/** Runs the same checks as for skip lists, as chunks can likewise be skipped */
+public class TestIntegerCodecCompressionConfig extends TestBitSkipCompressionConfig {
+
+	@Override
+	protected CompressionConfiguration getConfig(String structure, String[] fieldNames, int hasBlocks, int maxBlocks)
+	{
+		return new IntegerCodecCompressionConfiguration(structure, fieldNames, hasBlocks, maxBlocks);
+	}
+
+	@Override
+	protected void setBlockSize(String structure, int size)
+	{
+		ApplicationSetup.setProperty("index." + structure + ".compression.integer.chunk.size", String.valueOf(size));
+	}
+
+	@Override
+	protected Class<?> getBlockPostingClass()
+	{
+		return BlockIntegerCodingIterablePosting.class;
+	}
+
+	/** Repeats the checks with each codec in turn */
+	@Override
+	protected void checkSkipping(String[] fieldNames, int hasBlocks) throws Exception
+	{
+		for(String codec : new String[]{"VIntCodec", "StreamVByteCodec", "PForDeltaCodec"})
+		{
+			for(String payload : new String[]{"ids", "tfs", "fields", "blocks"})
+				ApplicationSetup.setProperty("index.inverted.compression.integer." + payload + ".codec", codec);
+			super.checkSkipping(fieldNames, hasBlocks);
+			//the codecs are read when the structure is opened, so start afresh
+			IndexUtil.deleteIndex(ApplicationSetup.TERRIER_INDEX_PATH, ApplicationSetup.TERRIER_INDEX_PREFIX);
+		}
+	}
+}
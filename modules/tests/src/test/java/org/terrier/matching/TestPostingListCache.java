@@ -0,0 +1,252 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestPostingListCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
+import org.terrier.structures.postings.ArrayOfBasicIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockFieldIterablePosting;
+import org.terrier.structures.postings.ArrayOfBlockIterablePosting;
+import org.terrier.structures.postings.ArrayOfFieldIterablePosting;
+import org.terrier.structures.postings.ArrayOfIdsIterablePosting;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.FieldPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestPostingListCache extends ApplicationSetupBasedTest {
+
+	static final String[] DOCNOS = new String[]{"doc1", "doc2", "doc3", "doc4", "doc5"};
+	static final String[] DOCS = new String[]{
+		"the quick brown fox", 
+		"the lazy dog <TITLE>fox</TITLE>", 
+		"a fox and a dog", 
+		"<TITLE>brown dog</TITLE> sleeps",
+		"dog dog dog fox"};
+	
+	/** Renders a posting list, including any fields and positions */
+	static List<String> render(IterablePosting ip) throws Exception
+	{
+		List<String> rtr = new ArrayList<>();
+		while(ip.next() != IterablePosting.EOL)
+		{
+			String p = ip.getId() + " " + ip.getFrequency() + " " + ip.getDocumentLength();
+			if (ip instanceof FieldPosting)
+				p += " " + Arrays.toString(((FieldPosting)ip).getFieldFrequencies()) 
+					+ " " + Arrays.toString(((FieldPosting)ip).getFieldLengths());
+			if (ip instanceof BlockPosting)
+				p += " " + Arrays.toString(((BlockPosting)ip).getPositions());
+			rtr.add(p);
+		}
+		ip.close();
+		return rtr;
+	}
+	
+	@SuppressWarnings("unchecked")
+	void checkCache(Index index, Class<? extends IterablePosting> cachedClass) throws Exception
+	{
+		PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		PostingIndex<Pointer> cached = PostingListCache.wrap(inverted);
+		assertNotSame(inverted, cached);
+		assertSame(cached, PostingListCache.wrap(cached));
+		PostingListCache cache = PostingListCache.of(inverted);
+		
+		for(String term : new String[]{"dog", "fox", "brown"})
+		{
+			LexiconEntry le = index.getLexicon().getLexiconEntry(term);
+			List<String> expected = render(inverted.getPostings(le));
+			//first request is not admitted
+			IterablePosting ip = cached.getPostings(le);
+			assertEquals(inverted.getPostings(le).getClass(), ip.getClass());
+			assertEquals(expected, render(ip));
+			//second request is decoded into the cache
+			ip = cached.getPostings(le);
+			assertEquals(cachedClass, ip.getClass());
+			assertEquals(expected, render(ip));
+			//subsequent requests are satisfied by the cache
+			ip = cached.getPostings(le);
+			assertEquals(cachedClass, ip.getClass());
+			assertEquals(expected, render(ip));
+		}
+		assertEquals(3, cache.size());
+		assertEquals(3, cache.getHits());
+		assertEquals(6, cache.getMisses());
+		assertEquals(0, cache.getEvictions());
+		
+		//skipping on a cached posting list
+		IterablePosting ip = cached.getPostings(index.getLexicon().getLexiconEntry("dog"));
+		assertEquals(2, ip.next(2));
+		assertEquals(1, ip.getFrequency());
+		if (ip instanceof BlockPosting)
+			assertEquals(4, ((BlockPosting)ip).getPositions()[0]);
+		assertEquals(3, ip.next());
+		assertEquals(4, ip.next(4));
+		assertEquals(3, ip.getFrequency());
+		if (ip instanceof BlockPosting)
+			assertEquals(3, ((BlockPosting)ip).getPositions().length);
+		assertEquals(IterablePosting.EOL, ip.next(5));
+		ip.close();
+		
+		//matching obtains cached posting lists
+		MatchingQueryTerms mqt = new MatchingQueryTerms();
+		mqt.addTermPropertyWeight("dog", 1.0d);
+		mqt.setDefaultTermWeightingModel(new org.terrier.matching.models.TF_IDF());
+		PostingListManager plm = new PostingListManager(index, index.getCollectionStatistics(), mqt);
+		plm.prepare(true);
+		assertEquals(cachedClass, plm.getPosting(0).getClass());
+		plm.close();
+		index.close();
+	}
+	
+	@Test public void testBasic() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("matching.postinglist.cache.bytes", "1000000");
+		ApplicationSetup.setProperty("matching.postinglist.cache.min.postings", "1");
+		checkCache(IndexTestUtils.makeIndex(DOCNOS, DOCS), ArrayOfBasicIterablePosting.class);
+	}
+	
+	@Test public void testBlocks() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("matching.postinglist.cache.bytes", "1000000");
+		ApplicationSetup.setProperty("matching.postinglist.cache.min.postings", "1");
+		checkCache(IndexTestUtils.makeIndexBlocks(DOCNOS, DOCS), ArrayOfBlockIterablePosting.class);
+	}
+	
+	@Test public void testFields() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE");
+		ApplicationSetup.setProperty("matching.postinglist.cache.bytes", "1000000");
+		ApplicationSetup.setProperty("matching.postinglist.cache.min.postings", "1");
+		checkCache(IndexTestUtils.makeIndexFields(DOCNOS, DOCS), ArrayOfFieldIterablePosting.class);
+	}
+	
+	@Test public void testFieldsBlocks() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE");
+		ApplicationSetup.setProperty("matching.postinglist.cache.bytes", "1000000");
+		ApplicationSetup.setProperty("matching.postinglist.cache.min.postings", "1");
+		checkCache(IndexTestUtils.makeIndexFieldsBlocks(DOCNOS, DOCS), ArrayOfBlockFieldIterablePosting.class);
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test public void testDisabled() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		Index index = IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		PostingIndex<Pointer> inverted = (PostingIndex<Pointer>) index.getInvertedIndex();
+		assertNull(PostingListCache.of(inverted));
+		assertSame(inverted, PostingListCache.wrap(inverted));
+		index.close();
+	}
+	
+	@Test public void testEviction() throws Exception
+	{
+		PostingListCache cache = new PostingListCache(1000, 1, 1);
+		int[] ids = new int[30];
+		for(int i=0;i<ids.length;i++)
+			ids[i] = i;
+		PostingListCache.CachedPostingList a = new PostingListCache.CachedPostingList(1, ids, ids, ids, null, null, null, null);
+		PostingListCache.CachedPostingList b = new PostingListCache.CachedPostingList(2, ids, ids, ids, null, null, null, null);
+		PostingListCache.CachedPostingList c = new PostingListCache.CachedPostingList(3, ids, ids, ids, null, null, null, null);
+		assertTrue(a.bytes * 2 < 1000 && a.bytes * 3 > 1000);
+		cache.put(a);
+		cache.put(b);
+		assertEquals(2, cache.size());
+		//a becomes more valuable than b
+		assertSame(a, cache.get(1));
+		cache.put(c);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get(2));
+		assertSame(a, cache.get(1));
+		assertSame(c, cache.get(3));
+		assertTrue(cache.getEstimatedBytes() <= 1000);
+		
+		//a posting list larger than the cache is never admitted
+		int[] longIds = new int[1000];
+		cache.put(new PostingListCache.CachedPostingList(4, longIds, longIds, longIds, null, null, null, null));
+		assertEquals(2, cache.size());
+		assertNull(cache.get(4));
+	}
+	
+	@Test public void testNoEvictionUnlessEnoughSpace() throws Exception
+	{
+		PostingListCache cache = new PostingListCache(1000, 1, 1);
+		int[] ids = new int[30];
+		int[] moreIds = new int[50];
+		PostingListCache.CachedPostingList a = new PostingListCache.CachedPostingList(1, ids, ids, ids, null, null, null, null);
+		PostingListCache.CachedPostingList b = new PostingListCache.CachedPostingList(2, ids, ids, ids, null, null, null, null);
+		PostingListCache.CachedPostingList c = new PostingListCache.CachedPostingList(3, moreIds, moreIds, moreIds, null, null, null, null);
+		cache.put(a);
+		cache.put(b);
+		assertSame(a, cache.get(1));
+		assertSame(a, cache.get(1));
+		//c is more valuable than b, but evicting b alone does not free enough space, and a is more valuable than c
+		assertTrue(b.bytes + 1000 - 2 * a.bytes < c.bytes);
+		cache.put(c);
+		assertEquals(0, cache.getEvictions());
+		assertEquals(2, cache.size());
+		assertEquals(2 * a.bytes, cache.getEstimatedBytes());
+		assertNull(cache.get(3));
+		assertSame(b, cache.get(2));
+	}
+	
+	@Test public void testArrayNextTarget() throws Exception
+	{
+		IterablePosting ip = new ArrayOfIdsIterablePosting(new int[]{1, 5, 9, 20});
+		assertEquals(5, ip.next(2));
+		assertEquals(5, ip.next(5));
+		assertEquals(9, ip.next());
+		assertEquals(20, ip.next(10));
+		assertEquals(IterablePosting.EOL, ip.next(21));
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		ip = new ArrayOfBlockIterablePosting(new int[]{1, 5, 9}, new int[]{1, 2, 1}, new int[]{2,3,4}, new int[]{1, 2, 1}, new int[]{0, 1, 2, 3});
+		assertEquals(9, ip.next(6));
+		assertEquals(4, ip.getDocumentLength());
+		assertEquals(3, ((BlockPosting)ip).getPositions()[0]);
+	}
+}
@@ -94,6 +94,65 @@ public class TestResultSets {
 		assertEquals(1000, r2.getExactResultSize());
 	}
 	
+	@Test public void testAccumulatorTopK()
+	{
+		final java.util.Random random = new java.util.Random(42);
+		final int numDocs = 200000;
+		for(int k : new int[]{0, 1, 10, 1000, 5000})
+		{
+			AccumulatorResultSet[] rs = new AccumulatorResultSet[]{
+				new AccumulatorResultSet(numDocs), new DenseAccumulatorResultSet(numDocs), new AccumulatorResultSet(numDocs)};
+			for(int i=0;i<3000;i++)
+			{
+				final int docid = random.nextInt(numDocs);
+				//few distinct scores, to exercise tie breaking
+				final double score = random.nextInt(50);
+				final short mask = (short) (1 << random.nextInt(3));
+				final boolean accumulated = rs[0].isAccumulated(docid);
+				for(AccumulatorResultSet r : rs)
+				{
+					assertEquals(accumulated, r.isAccumulated(docid));
+					r.accumulate(docid, score, mask);
+				}
+			}
+			//all documents, fully sorted
+			rs[2].initialise();
+			final int[] allDocids = rs[2].getDocids();
+			final int n = k == 0 ? allDocids.length : Math.min(k, allDocids.length);
+			for(int r=0;r<2;r++)
+			{
+				rs[r].initialise(k, null);
+				assertEquals(allDocids.length, rs[r].getExactResultSize());
+				assertEquals(n, rs[r].getResultSize());
+				assertArrayEquals(Arrays.copyOf(allDocids, n), rs[r].getDocids());
+				assertArrayEquals(Arrays.copyOf(rs[2].getScores(), n), rs[r].getScores(), 0d);
+				assertArrayEquals(Arrays.copyOf(rs[2].getOccurrences(), n), rs[r].getOccurrences());
+			}
+		}
+	}
+
+	@Test public void testAccumulatorOccurrenceFilter()
+	{
+		for(AccumulatorResultSet r : new AccumulatorResultSet[]{new AccumulatorResultSet(10), new DenseAccumulatorResultSet(10)})
+		{
+			r.accumulate(1, 1d, (short)1);
+			r.accumulate(2, 2d, (short)1);
+			r.accumulate(2, 1d, (short)2);
+			r.accumulate(3, 5d, (short)2);
+			r.accumulate(4, Double.NEGATIVE_INFINITY, (short)1);
+			r.initialise(10, mask -> (mask & 1) == 1);
+			assertEquals(2, r.getExactResultSize());
+			assertArrayEquals(new int[]{2,1}, r.getDocids());
+			assertArrayEquals(new double[]{3d,1d}, r.getScores(), 0d);
+		}
+		//dense accumulators are reset before being reused
+		DenseAccumulatorResultSet r = new DenseAccumulatorResultSet(10);
+		assertFalse(r.isAccumulated(2));
+		r.accumulate(5, 1d, (short)1);
+		r.initialise(0, null);
+		assertArrayEquals(new int[]{5}, r.getDocids());
+	}
+	
 	@Test public void testSorting() 
 	{
 		ResultSet r1 = new CollectionResultSet(2);
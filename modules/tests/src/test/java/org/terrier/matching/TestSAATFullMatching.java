@@ -0,0 +1,161 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestSAATFullMatching.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.models.TF_IDF;
+import org.terrier.querying.Request;
+import org.terrier.structures.ImpactIndex;
+import org.terrier.structures.ImpactIndex.TermImpacts;
+import org.terrier.structures.ImpactIndexBuilder;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.tests.ApplicationSetupBasedTest;
+
+public class TestSAATFullMatching extends ApplicationSetupBasedTest {
+
+	static final String[] DOCNOS = new String[]{"doc1", "doc2", "doc3", "doc4", "doc5", "doc6"};
+	static final String[] DOCS = new String[]{
+		"cat cat dog",
+		"dog fish fish fish",
+		"cat fish",
+		"bird cat dog dog dog dog",
+		"bird",
+		"fish dog cat bird cat"};
+
+	MatchingQueryTerms makeQuery(Request rq, String... terms)
+	{
+		MatchingQueryTerms mqt = new MatchingQueryTerms("query1", rq);
+		for(String t : terms)
+			mqt.setTermProperty(t, 1);
+		mqt.setDefaultTermWeightingModel(new TF_IDF());
+		return mqt;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test public void testImpacts() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		new ImpactIndexBuilder(index, "TF_IDF", 4).build();
+		assertTrue(index.hasIndexStructure(ImpactIndexBuilder.STRUCTURE_NAME));
+		ImpactIndex impacts = (ImpactIndex) index.getIndexStructure(ImpactIndexBuilder.STRUCTURE_NAME);
+		assertEquals(index.getCollectionStatistics().getNumberOfUniqueTerms(), impacts.size());
+		assertEquals(new TF_IDF().getInfo(), impacts.getWeightingModel());
+		assertEquals(4, impacts.getBits());
+
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			LexiconEntry le = lexIn.next().getValue();
+			TermImpacts ti = impacts.getImpacts(le.getTermId());
+			int lastImpact = Integer.MAX_VALUE;
+			int total = 0;
+			int[] docids = new int[DOCS.length];
+			boolean[] seen = new boolean[DOCS.length];
+			for(int s=0;s<ti.getNumberOfSegments();s++)
+			{
+				assertTrue(ti.getImpact(s) < lastImpact);
+				assertTrue(ti.getImpact(s) > 0 && ti.getImpact(s) < 16);
+				lastImpact = ti.getImpact(s);
+				int length = ti.nextSegment(docids);
+				assertEquals(ti.getSegmentLength(s), length);
+				for(int i=0;i<length;i++)
+				{
+					if (i > 0)
+						assertTrue(docids[i] > docids[i-1]);
+					assertFalse(seen[docids[i]]);
+					seen[docids[i]] = true;
+				}
+				total += length;
+			}
+			assertEquals(-1, ti.nextSegment(docids));
+			assertEquals(le.getDocumentFrequency(), total);
+			ti.close();
+		}
+		IndexUtil.close(lexIn);
+	}
+
+	@Test public void testExhaustive() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		new ImpactIndexBuilder(index, "TF_IDF", 16).build();
+		ResultSet saat = new org.terrier.matching.saat.Full(index).match("query1", makeQuery(new Request(), "dog", "bird"));
+		ResultSet daat = new org.terrier.matching.daat.Full(index).match("query1", makeQuery(new Request(), "dog", "bird"));
+		assertEquals(daat.getResultSize(), saat.getResultSize());
+		//same documents retrieved, with the same top-ranked document
+		int[] saatDocids = saat.getDocids().clone();
+		int[] daatDocids = daat.getDocids().clone();
+		assertEquals(daatDocids[0], saatDocids[0]);
+		Arrays.sort(saatDocids);
+		Arrays.sort(daatDocids);
+		assertArrayEquals(daatDocids, saatDocids);
+		for(int i=1;i<saat.getResultSize();i++)
+			assertTrue(saat.getScores()[i-1] >= saat.getScores()[i]);
+
+		MatchingQueryTerms mqt = makeQuery(new Request(), "dog", "bird");
+		mqt.setMatchingRequestSize(2);
+		ResultSet top2 = new org.terrier.matching.saat.Full(index).match("query1", mqt);
+		assertEquals(2, top2.getResultSize());
+		assertArrayEquals(Arrays.copyOf(saat.getDocids(), 2), top2.getDocids());
+		
+		//the accumulators reused by the next query are cleared
+		ResultSet again = new org.terrier.matching.saat.Full(index).match("query1", makeQuery(new Request(), "dog", "bird"));
+		assertArrayEquals(saat.getDocids(), again.getDocids());
+		assertArrayEquals(saat.getScores(), again.getScores(), 0d);
+	}
+
+	@Test public void testPostingsBudget() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		new ImpactIndexBuilder(index, "TF_IDF").build();
+		ImpactIndex impacts = (ImpactIndex) index.getIndexStructure(ImpactIndexBuilder.STRUCTURE_NAME);
+		
+		//"dog" is in 4 documents, and occurs most frequently in doc4
+		Request rq = new Request();
+		rq.setControl(org.terrier.matching.saat.Full.CONTROL_POSTINGS, "1");
+		ResultSet rs = new org.terrier.matching.saat.Full(index).match("query1", makeQuery(rq, "dog"));
+		TermImpacts ti = impacts.getImpacts(index.getLexicon().getLexiconEntry("dog").getTermId());
+		//only the first (highest impact) segment is processed
+		assertEquals(ti.getSegmentLength(0), rs.getResultSize());
+		assertEquals(ti.getImpact(0), rs.getScores()[0], 0d);
+		assertEquals(3, rs.getDocids()[0]);
+		ti.close();
+
+		//unlimited budget
+		rq.setControl(org.terrier.matching.saat.Full.CONTROL_POSTINGS, "0");
+		rs = new org.terrier.matching.saat.Full(index).match("query1", makeQuery(rq, "dog"));
+		assertEquals(4, rs.getResultSize());
+	}
+}
@@ -0,0 +1,107 @@
+package org.terrier.matching;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.daat.Full;
+import org.terrier.matching.daat.WAND;
+import org.terrier.matching.models.BM25;
+import org.terrier.matching.models.DPH;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.structures.Index;
+import org.terrier.structures.postings.IterablePosting;
+
+public class TestWANDMatching extends TestMatching
+{
+	@Override
+	protected Matching makeMatching(Index i)
+	{
+		return new WAND(i);
+	}
+
+	@Override
+	protected Class<? extends Matching> getMatchingClass() {
+		return WAND.class;
+	}
+
+	static Index makeRandomIndex(int numDocs) throws Exception
+	{
+		final String[] vocab = new String[]{"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+		final Random r = new Random(42);
+		String[] docnos = new String[numDocs];
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			docnos[i] = "doc" + i;
+			StringBuilder s = new StringBuilder();
+			int len = 1 + r.nextInt(20);
+			for(int j=0;j<len;j++)
+			{
+				//skewed term distribution, so that terms have different upper bounds
+				s.append(vocab[Math.min(vocab.length -1, (int) Math.abs(r.nextGaussian() * 3))]);
+				s.append(' ');
+			}
+			docs[i] = s.toString();
+		}
+		return IndexTestUtils.makeIndex(docnos, docs);
+	}
+
+	protected void checkSameAsFull(Index index, WeightingModel wmodel, int k, String... terms) throws Exception
+	{
+		ResultSet[] rs = new ResultSet[2];
+		Matching[] matchings = new Matching[]{new Full(index), new WAND(index)};
+		for(int m=0;m<matchings.length;m++)
+		{
+			MatchingQueryTerms mqt = new MatchingQueryTerms();
+			for(String t : terms)
+				mqt.setTermProperty(t, 1);
+			mqt.setDefaultTermWeightingModel(wmodel.clone());
+			mqt.setMatchingRequestSize(k);
+			rs[m] = matchings[m].match("query1", mqt);
+		}
+		assertEquals(rs[0].getResultSize(), rs[1].getResultSize());
+		assertArrayEquals(rs[0].getDocids(), rs[1].getDocids());
+		assertArrayEquals(rs[0].getScores(), rs[1].getScores(), 0d);
+	}
+
+	@Test public void testSameTopKAsFull() throws Exception
+	{
+		Index index = makeRandomIndex(500);
+		assertEquals(500, index.getCollectionStatistics().getNumberOfDocuments());
+		for(int k : new int[]{1, 5, 20, 1000})
+		{
+			checkSameAsFull(index, new BM25(), k, "alpha", "delta");
+			checkSameAsFull(index, new BM25(), k, "bravo", "echo", "golf", "hotel");
+			checkSameAsFull(index, new BM25(), k, "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel");
+			//DPH has no upper bound, so WAND should degrade to exhaustive matching
+			checkSameAsFull(index, new DPH(), k, "charlie", "foxtrot", "hotel");
+		}
+	}
+
+	@Test public void testUpperBounds() throws Exception
+	{
+		Index index = makeRandomIndex(100);
+		MatchingQueryTerms mqt = new MatchingQueryTerms();
+		mqt.setTermProperty("alpha", 1);
+		mqt.setTermProperty("hotel", 1);
+		mqt.setDefaultTermWeightingModel(new BM25());
+		PostingListManager plm = new PostingListManager(index, index.getCollectionStatistics(), mqt);
+		plm.prepare(true);
+		for(int i=0;i<plm.size();i++)
+		{
+			final double bound = plm.getMaxScore(i);
+			assertTrue(bound < Double.POSITIVE_INFINITY);
+			while(plm.getPosting(i).getId() != IterablePosting.EOL)
+			{
+				assertTrue(plm.score(i) <= bound);
+				plm.getPosting(i).next();
+			}
+		}
+		plm.close();
+	}
+}
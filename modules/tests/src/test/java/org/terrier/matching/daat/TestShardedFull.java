@@ -0,0 +1,174 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestShardedFull.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+
+package org.terrier.matching.daat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.BaseMatching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.matchops.Operator;
+import org.terrier.matching.matchops.SynonymOp;
+import org.terrier.matching.models.TF_IDF;
+import org.terrier.querying.parser.Query.QTPBuilder;
+import org.terrier.realtime.LiveDocs;
+import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.realtime.multi.MultiIndex;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestShardedFull extends ApplicationSetupBasedTest {
+
+	static final String[] VOCAB = new String[]{"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+	
+	static String[] makeDocs(Random r, int numDocs)
+	{
+		String[] docs = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+		{
+			StringBuilder s = new StringBuilder();
+			final int len = 1 + r.nextInt(20);
+			for(int j=0;j<len;j++)
+			{
+				//skewed term distribution
+				s.append(VOCAB[Math.min(r.nextInt(VOCAB.length), r.nextInt(VOCAB.length))]);
+				s.append(' ');
+			}
+			docs[i] = s.toString();
+		}
+		return docs;
+	}
+	
+	static Index makeShard(Random r, int numDocs) throws Exception
+	{
+		String[] docnos = new String[numDocs];
+		for(int i=0;i<numDocs;i++)
+			docnos[i] = "doc" + i;
+		return IndexTestUtils.makeIndex(docnos, makeDocs(r, numDocs));
+	}
+	
+	static MultiIndex makeIndex() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		Random r = new Random(42);
+		MemoryIndex mem = new MemoryIndex();
+		for(String doc : makeDocs(r, 40))
+		{
+			Map<String,String> props = new HashMap<>();
+			props.put("filename", "mem");
+			mem.indexDocument(IndexTestUtils.makeDocumentFromText(doc, props));
+		}
+		return new MultiIndex(new Index[]{makeShard(r, 100), makeShard(r, 7), makeShard(r, 60), mem}, false, false);
+	}
+	
+	static MatchingQueryTerms[] makeQueries(int requested)
+	{
+		MatchingQueryTerms[] rtr = new MatchingQueryTerms[4];
+		for(int i=0;i<rtr.length;i++)
+		{
+			rtr[i] = new MatchingQueryTerms();
+			rtr[i].setMatchingRequestSize(requested);
+		}
+		rtr[0].add(QTPBuilder.of(Operator.parse("hotel")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[1].add(QTPBuilder.of(Operator.parse("alpha")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[1].add(QTPBuilder.of(Operator.parse("golf")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("echo")).setRequired(true).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("foxtrot")).setWeight(2d).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[2].add(QTPBuilder.of(Operator.parse("bravo")).setRequired(false).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[3].add(QTPBuilder.of(new SynonymOp(new String[]{"golf", "hotel"})).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		rtr[3].add(QTPBuilder.of(Operator.parse("delta")).setTag(BaseMatching.BASE_MATCHING_TAG).build());
+		for(MatchingQueryTerms mqt : rtr)
+			mqt.setDefaultTermWeightingModel(new TF_IDF());
+		return rtr;
+	}
+	
+	void checkSame(Index index, int requested) throws Exception
+	{
+		Full full = new Full(index);
+		ShardedFull sharded = new ShardedFull(index);
+		MatchingQueryTerms[] fullQueries = makeQueries(requested);
+		MatchingQueryTerms[] shardedQueries = makeQueries(requested);
+		for(int q=0;q<fullQueries.length;q++)
+		{
+			ResultSet expected = full.match("q" + q, fullQueries[q]);
+			ResultSet actual = sharded.match("q" + q, shardedQueries[q]);
+			assertTrue(expected.getResultSize() > 0);
+			if (requested > 0)
+				assertTrue(expected.getResultSize() <= requested);
+			assertEquals(expected.getResultSize(), actual.getResultSize());
+			assertEquals(expected.getExactResultSize(), actual.getExactResultSize());
+			assertArrayEquals(expected.getDocids(), actual.getDocids());
+			assertArrayEquals(expected.getScores(), actual.getScores(), 1e-9);
+			assertArrayEquals(expected.getOccurrences(), actual.getOccurrences());
+		}
+	}
+	
+	@Test public void testSameAsFull() throws Exception
+	{
+		MultiIndex index = makeIndex();
+		checkSame(index, 20);
+		checkSame(index, 1);
+		checkSame(index, 0);
+		index.close();
+	}
+	
+	@Test public void testDeletedDocuments() throws Exception
+	{
+		MultiIndex index = makeIndex();
+		LiveDocs liveDocs = LiveDocs.getOrCreate((IndexOnDisk) index.getIthShard(0));
+		for(int docid=0;docid<100;docid+=3)
+			liveDocs.delete(docid);
+		((MemoryIndex) index.getIthShard(3)).removeDocument(5);
+		checkSame(index, 10);
+		checkSame(index, 1);
+		checkSame(index, 0);
+		index.close();
+	}
+	
+	@Test public void testSingleShard() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		Random r = new Random(42);
+		MultiIndex index = new MultiIndex(new Index[]{makeShard(r, 50)}, false, false);
+		checkSame(index, 10);
+		index.close();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestLevenshteinTermIterator.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.matching.matchops;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.Lexicon;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestLevenshteinTermIterator extends ApplicationSetupBasedTest {
+
+	static final String LO = String.valueOf(Character.MIN_VALUE);
+	static final String HI = String.valueOf(Character.MAX_VALUE);
+	
+	static List<String> matching(Iterator<Map.Entry<String,LexiconEntry>> iter)
+	{
+		List<String> rtr = new ArrayList<>();
+		while(iter.hasNext())
+			rtr.add(iter.next().getKey());
+		return rtr;
+	}
+	
+	static List<String> bruteForce(Lexicon<String> lex, String query, int maxDist, String lo, String hi)
+	{
+		LevenshteinDistance lev = new LevenshteinDistance();
+		List<String> rtr = new ArrayList<>();
+		for(String t : matching(lex.getLexiconEntryRange(lo, hi)))
+			if (lev.apply(query, t) <= maxDist)
+				rtr.add(t);
+		return rtr;
+	}
+	
+	@Test public void testAgainstBruteForce() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		Random r = new Random(42);
+		StringBuilder doc = new StringBuilder();
+		for(int i=0;i<3000;i++)
+		{
+			int len = 2 + r.nextInt(6);
+			for(int j=0;j<len;j++)
+				doc.append((char)('a' + r.nextInt(6)));
+			doc.append(' ');
+		}
+		Index index = IndexTestUtils.makeIndex(new String[]{"doc1"}, new String[]{doc.toString()});
+		Lexicon<String> lex = index.getLexicon();
+		final int numTerms = lex.numberOfEntries();
+		
+		for(String query : new String[]{"abc", "fedcba", "aaaa", "cafe", "bead", "a", "zzz"})
+		{
+			for(int dist=0;dist<=2;dist++)
+			{
+				List<String> expected = bruteForce(lex, query, dist, LO, HI);
+				LevenshteinTermIterator iter = new LevenshteinTermIterator(lex, query, dist, LO, HI);
+				assertEquals(query + " at " + dist, expected, matching(iter));
+				if (dist < 2)
+					assertTrue(query + " at " + dist + " visited " + iter.visited + " of " + numTerms, iter.visited < numTerms);
+				
+				String prefix = query.substring(0, 1);
+				expected = bruteForce(lex, query, dist, prefix, prefix + Character.MAX_VALUE);
+				iter = new LevenshteinTermIterator(lex, query, dist, prefix, prefix + Character.MAX_VALUE);
+				assertEquals(query + " at " + dist + " with prefix", expected, matching(iter));
+			}
+		}
+		
+		LevenshteinTermIterator iter = new LevenshteinTermIterator(lex, "fedcba", 1, LO, HI);
+		matching(iter);
+		assertTrue(iter.seeks > 0);
+		index.close();
+	}
+	
+	@Test public void testFuzzyTermOp() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		Index index = IndexTestUtils.makeIndex(new String[]{"doc1", "doc2"}, new String[]{"aaa aab abb bbb ccc", "aabb zzz zaa"});
+		//aab; aaa, abb, aabb at distance 1; bbb, zaa at distance 2
+		assertEquals(4, new FuzzyTermOp("aab", null, null, 1, null, null).getPostingIterator(index).getLeft().getFrequency());
+		assertEquals(6, new FuzzyTermOp("aab", null, null, 2, null, null).getPostingIterator(index).getLeft().getFrequency());
+		//aaa; aab, zaa at distance 1; abb, aabb at distance 2
+		assertEquals(5, new FuzzyTermOp("aaa", null, null, 2, null, null).getPostingIterator(index).getLeft().getFrequency());
+		assertEquals(4, new FuzzyTermOp("aaa", 1, null, 2, null, null).getPostingIterator(index).getLeft().getFrequency());
+		index.close();
+	}
+}
@@ -201,6 +201,20 @@ public class TestMatchOpQLParser {
 		assertTrue(rtr.get(0).getKey() instanceof PrefixTermOp);
 	}
 	
+	@Test public void testWildcard() throws Exception {		
+		List<MatchingTerm> rtr = new MatchOpQLParser("#wildcard(te*ch)").parseAll();
+		assertNotNull(rtr);
+		assertEquals(1, rtr.size());
+		assertTrue(rtr.get(0).getKey() instanceof WildcardTermOp);
+		assertEquals("#wildcard(te*ch)", rtr.get(0).getKey().toString());
+		
+		rtr = new MatchOpQLParser("#wildcard(*ing) #wildcard(t?st) #wildcard(abc)").parseAll();
+		assertEquals(3, rtr.size());
+		assertEquals("#wildcard(*ing)", rtr.get(0).getKey().toString());
+		assertEquals("#wildcard(t?st)", rtr.get(1).getKey().toString());
+		assertEquals("#wildcard(abc)", rtr.get(2).getKey().toString());
+	}
+	
 	@Test public void testBase64() throws Exception {		
 		List<MatchingTerm> rtr = new MatchOpQLParser("#base64(YQ==)").parseAll();
 		assertNotNull(rtr);
@@ -27,19 +27,29 @@
 
 package org.terrier.realtime.incremental;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
 import org.junit.Test;
 import org.terrier.indexing.Collection;
 import org.terrier.indexing.CollectionDocumentList;
 import org.terrier.indexing.Document;
 import org.terrier.indexing.FileDocument;
 import org.terrier.indexing.tokenisation.EnglishTokeniser;
+import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.indexing.classical.BasicIndexer;
+import org.terrier.structures.postings.IterablePosting;
 import org.terrier.tests.ApplicationSetupBasedTest;
 import org.terrier.utility.ApplicationSetup;
 
@@ -73,6 +83,140 @@ public class TestIncremental extends ApplicationSetupBasedTest {
 		// assertEquals(4, index.indices.size());
 	}
 
+	@Test
+	public void test_BackgroundFlushAndMerge() throws Exception {
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("incremental.flush", "flushdocs");
+		ApplicationSetup.setProperty("incremental.flushdocs", "2");
+		ApplicationSetup.setProperty("incremental.merge", "single");
+		IncrementalIndex index = IncrementalIndex.get(
+				ApplicationSetup.TERRIER_INDEX_PATH,
+				ApplicationSetup.TERRIER_INDEX_PREFIX);
+		for (int i = 0; i < 7; i++) {
+			index.indexDocument(new FileDocument("doc" + i, new ByteArrayInputStream(
+					("curry church turing knuth doc" + i).getBytes()), new EnglishTokeniser()));
+			// documents are searchable whether flushed or not
+			assertEquals(i + 1, index.getCollectionStatistics().getNumberOfDocuments());
+		}
+		index.awaitFlushes();
+		// three flushes, merged into a single partition on disk
+		assertEquals(2, index.getNumberOfShards());
+		assertTrue(index.getIthShard(0) instanceof IndexOnDisk);
+		assertEquals("data-5", ((IndexOnDisk) index.getIthShard(0)).getPrefix());
+		assertEquals(6, index.getIthShard(0).getCollectionStatistics().getNumberOfDocuments());
+		assertTrue(index.getIthShard(1) instanceof MemoryIndex);
+		assertEquals(7, index.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(7, index.getLexicon().getLexiconEntry("turing").getDocumentFrequency());
+		index.close();
+	}
+
+	@Test
+	public void test_RemoveDocument() throws Exception {
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("incremental.flush", "flushdocs");
+		ApplicationSetup.setProperty("incremental.flushdocs", "2");
+		ApplicationSetup.setProperty("incremental.merge", "single");
+		IncrementalIndex index = IncrementalIndex.get(
+				ApplicationSetup.TERRIER_INDEX_PATH,
+				ApplicationSetup.TERRIER_INDEX_PREFIX);
+		for (int i = 0; i < 3; i++)
+			indexDoc(index, i);
+		index.awaitFlushes();
+		assertEquals(2, index.getNumberOfShards());
+		assertTrue(index.getIthShard(0) instanceof IndexOnDisk);
+		assertTrue(index.getIthShard(1) instanceof MemoryIndex);
+
+		// one deletion on disk, one in memory; only actual deletions change the version
+		long version = index.getVersion();
+		assertTrue(index.removeDocument(0));
+		assertTrue(index.getVersion() > version);
+		version = index.getVersion();
+		assertTrue(index.removeDocument(2));
+		assertTrue(index.getVersion() > version);
+		version = index.getVersion();
+		assertFalse(index.removeDocument(3));
+		assertEquals(version, index.getVersion());
+		assertArrayEquals(new int[]{1}, docids(index, "turing"));
+		assertEquals(0, docids(index, "doc0").length);
+
+		// the deletions survive the memory shard being flushed, and are purged by the merge
+		for (int i = 3; i < 5; i++)
+			indexDoc(index, i);
+		index.awaitFlushes();
+		assertTrue(index.getIthShard(0) instanceof IndexOnDisk);
+		assertEquals(2, index.getIthShard(0).getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(3, index.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(3, index.getLexicon().getLexiconEntry("turing").getDocumentFrequency());
+		assertEquals(3, docids(index, "turing").length);
+		assertNull(index.getLexicon().getLexiconEntry("doc2"));
+		index.close();
+	}
+
+	@Test
+	public void test_FlushMemoryOnce() throws Exception {
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("incremental.merge", "nomerge");
+		final IncrementalIndex index = IncrementalIndex.get(
+				ApplicationSetup.TERRIER_INDEX_PATH,
+				ApplicationSetup.TERRIER_INDEX_PREFIX);
+		// the heap is full while the memory shards hold two documents, including those being flushed
+		index.setFlushPolicy(new IncrementalFlushMemory(index) {
+			@Override
+			protected boolean isMemoryLow() {
+				int inMemory = 0;
+				for (Index shard : index.getShards())
+					if (shard instanceof MemoryIndex)
+						inMemory += shard.getCollectionStatistics().getNumberOfDocuments();
+				return inMemory >= 2;
+			}
+			@Override
+			public void flush(MemoryIndex memory) {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				super.flush(memory);
+			}
+		});
+		for (int i = 0; i < 3; i++)
+			indexDoc(index, i);
+		index.awaitFlushes();
+		// one flush, rather than another flush of a near-empty memory index
+		assertEquals(2, index.getNumberOfShards());
+		assertTrue(index.getIthShard(0) instanceof IndexOnDisk);
+		assertEquals(2, index.getIthShard(0).getCollectionStatistics().getNumberOfDocuments());
+		assertTrue(index.getIthShard(1) instanceof MemoryIndex);
+		assertEquals(1, index.getIthShard(1).getCollectionStatistics().getNumberOfDocuments());
+		index.close();
+	}
+
+	static void indexDoc(IncrementalIndex index, int i) throws Exception {
+		index.indexDocument(new FileDocument("doc" + i, new ByteArrayInputStream(
+				("curry church turing knuth doc" + i).getBytes()), new EnglishTokeniser()));
+	}
+
+	static int[] docids(Index index, String term) throws Exception {
+		LexiconEntry le = index.getLexicon().getLexiconEntry(term);
+		if (le == null)
+			return new int[0];
+		IntArrayList rtr = new IntArrayList();
+		IterablePosting ip = index.getInvertedIndex().getPostings(le);
+		while (ip.next() != IterablePosting.EOL)
+			rtr.add(ip.getId());
+		ip.close();
+		return rtr.toIntArray();
+	}
+
 	/*
 	 * make index disk1 with m document make increcmenta index populate
 	 * incremental index with same m documents compare indices make index disk2
@@ -29,11 +29,14 @@ package org.terrier.realtime.memory;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
@@ -48,6 +51,7 @@ import org.terrier.indexing.FileDocument;
 import org.terrier.indexing.IndexTestUtils;
 import org.terrier.indexing.tokenisation.EnglishTokeniser;
 import org.terrier.matching.ResultSet;
+import org.terrier.realtime.LiveDocs;
 import org.terrier.realtime.MemoryIndexer;
 import org.terrier.realtime.TestUtils;
 import org.terrier.structures.CollectionStatistics;
@@ -558,6 +562,38 @@ public class TestMemoryIndex extends ApplicationSetupBasedTest {
 	private Document[] docs1, docs2;
 	private Collection collection;
 
+	@Test
+	public void testLiveDocsBatchedDeletions() throws Exception {
+		LiveDocs liveDocs = new LiveDocs();
+		assertNull(liveDocs.getDeletedDocuments());
+		assertTrue(liveDocs.delete(10000000));
+		assertTrue(liveDocs.delete(3));
+		assertFalse(liveDocs.delete(3));
+		// pending deletions are visible before they are published
+		assertFalse(liveDocs.isLive(3));
+		assertTrue(liveDocs.isLive(4));
+		// the deletions since the last read are published as one copy of the bitset
+		BitSet deleted = liveDocs.getDeletedDocuments();
+		assertEquals(2, deleted.cardinality());
+		assertTrue(deleted.get(10000000));
+		assertSame(deleted, liveDocs.getDeletedDocuments());
+		assertFalse(liveDocs.delete(10000000));
+		assertTrue(liveDocs.delete(5));
+		BitSet deleted2 = liveDocs.getDeletedDocuments();
+		// a published bitset is never modified
+		assertEquals(2, deleted.cardinality());
+		assertEquals(3, deleted2.cardinality());
+		assertEquals(3, liveDocs.getNumberOfDeletedDocuments());
+		
+		BitSet more = new BitSet();
+		more.set(5);
+		more.set(6);
+		assertTrue(liveDocs.delete(7));
+		liveDocs.delete(more);
+		assertEquals(5, liveDocs.getNumberOfDeletedDocuments());
+		assertFalse(liveDocs.isLive(7));
+	}
+
 	@Before
 	public void setUp() throws Exception {
 		docids = new String[] { "doc1", "doc2" };
@@ -34,6 +34,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import gnu.trove.TIntArrayList;
 
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.hadoop.io.Text;
 import org.junit.After;
 import org.junit.Before;
@@ -46,6 +50,7 @@ import org.terrier.realtime.memory.MemoryLexiconEntry;
 import org.terrier.structures.LexiconEntry;
 import org.terrier.structures.PostingIndexInputStream;
 import org.terrier.structures.postings.IterablePosting;
+import org.terrier.utility.ApplicationSetup;
 
 /** Unit test for InMemoryInvertedIndex. */
 public class TestMemoryInvertedIndex {
@@ -156,6 +161,189 @@ public class TestMemoryInvertedIndex {
 		}
 	}
 
+	/*
+	 * MemoryByteBlockPool: interleaved streams are read back as written
+	 */
+	@Test
+	public void test_byteBlockPool() throws Exception {
+		final int numStreams = 50;
+		Random r = new Random(42);
+		MemoryByteBlockPool pool = new MemoryByteBlockPool();
+		int[] starts = new int[numStreams];
+		int[] ends = new int[numStreams];
+		TIntArrayList[] written = new TIntArrayList[numStreams];
+		for (int i = 0; i < numStreams; i++) {
+			starts[i] = ends[i] = pool.newSlice();
+			written[i] = new TIntArrayList();
+		}
+		// enough values to need several blocks
+		for (int k = 0; k < 100000; k++) {
+			int stream = r.nextInt(numStreams);
+			int value = r.nextBoolean() ? r.nextInt(128) : r.nextInt(Integer.MAX_VALUE);
+			ends[stream] = pool.writeVInt(ends[stream], value);
+			written[stream].add(value);
+		}
+		assertThat(pool.getAllocatedBytes() > MemoryByteBlockPool.BLOCK_SIZE, is(true));
+		for (int i = 0; i < numStreams; i++) {
+			MemoryByteBlockPool.SliceReader reader = new MemoryByteBlockPool.SliceReader(pool, starts[i], ends[i]);
+			for (int k = 0; k < written[i].size(); k++) {
+				assertThat(reader.eof(), is(false));
+				assertEquals(written[i].get(k), reader.readVInt());
+			}
+			assertThat(reader.eof(), is(true));
+		}
+	}
+	
+	/*
+	 * MemoryByteBlockPool: appending to a stream does not change the bytes already written,
+	 * such that the stream can be read up to any earlier end while it grows
+	 */
+	@Test
+	public void test_byteBlockPoolPrefixes() throws Exception {
+		final int numStreams = 5;
+		Random r = new Random(43);
+		MemoryByteBlockPool pool = new MemoryByteBlockPool();
+		int[] starts = new int[numStreams];
+		int[] ends = new int[numStreams];
+		TIntArrayList[] written = new TIntArrayList[numStreams];
+		TIntArrayList[] prefixEnds = new TIntArrayList[numStreams];
+		for (int i = 0; i < numStreams; i++) {
+			starts[i] = ends[i] = pool.newSlice();
+			written[i] = new TIntArrayList();
+			prefixEnds[i] = new TIntArrayList();
+		}
+		for (int k = 0; k < 5000; k++) {
+			int stream = r.nextInt(numStreams);
+			int value = r.nextInt(1 << (1 + r.nextInt(30)));
+			ends[stream] = pool.writeVInt(ends[stream], value);
+			written[stream].add(value);
+			prefixEnds[stream].add(ends[stream]);
+		}
+		for (int i = 0; i < numStreams; i++) {
+			for (int p = 0; p < prefixEnds[i].size(); p++) {
+				MemoryByteBlockPool.SliceReader reader = new MemoryByteBlockPool.SliceReader(pool, starts[i], prefixEnds[i].get(p));
+				for (int k = 0; k <= p; k++)
+					assertEquals(written[i].get(k), reader.readVInt());
+				assertThat(reader.eof(), is(true));
+			}
+		}
+	}
+	
+	/*
+	 * memory.inverted.compressed: posting lists can be read while postings are added
+	 */
+	@Test
+	public void test_compressedPostingsConcurrentRead() throws Exception {
+		final int numDocs = 20000;
+		MemoryDocumentIndex docindex = new MemoryDocumentIndex();
+		for (int i = 0; i < numDocs; i++)
+			docindex.addDocument(i);
+		ApplicationSetup.setProperty("memory.inverted.compressed", "true");
+		final MemoryInvertedIndex compressed;
+		try {
+			compressed = new MemoryInvertedIndex(new MemoryLexicon(),docindex);
+		} finally {
+			ApplicationSetup.setProperty("memory.inverted.compressed", "false");
+		}
+		compressed.add(0, 0, 1);
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread reader = new Thread(() -> {
+			try {
+				while (! finished.get()) {
+					IterablePosting ip = compressed.getPostings(new MemoryLexiconEntry(0, 0, 0));
+					int expected = 0;
+					while (ip.next() != IterablePosting.EOL) {
+						assertEquals(expected, ip.getId());
+						assertEquals(1 + expected % 1000, ip.getFrequency());
+						expected += 3;
+					}
+					assertThat(expected > 0, is(true));
+				}
+			} catch (Throwable t) {
+				failure.set(t);
+			}
+		});
+		reader.start();
+		for (int docid = 3; docid < numDocs; docid += 3)
+			compressed.add(0, docid, 1 + docid % 1000);
+		finished.set(true);
+		reader.join();
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+	}
+	
+	/*
+	 * memory.inverted.compressed: the same postings as the uncompressed posting lists, 
+	 * including updates to earlier documents
+	 */
+	@Test
+	public void test_compressedPostings() throws Exception {
+		final int numTerms = 20;
+		MemoryDocumentIndex docindex = new MemoryDocumentIndex();
+		for (int i = 0; i < 1000; i++)
+			docindex.addDocument(i);
+		MemoryInvertedIndex basic = new MemoryInvertedIndex(new MemoryLexicon(),docindex);
+		MemoryInvertedIndex compressed;
+		ApplicationSetup.setProperty("memory.inverted.compressed", "true");
+		try {
+			compressed = new MemoryInvertedIndex(new MemoryLexicon(),docindex);
+		} finally {
+			ApplicationSetup.setProperty("memory.inverted.compressed", "false");
+		}
+		Random r = new Random(7);
+		for (int docid = 0; docid < 1000; docid++) {
+			for (int k = 0; k < 5; k++) {
+				int termid = r.nextInt(numTerms);
+				int freq = 1 + r.nextInt(300);
+				assertEquals(basic.addOrUpdate(termid, docid, freq), compressed.addOrUpdate(termid, docid, freq));
+			}
+			// occasionally update the postings of an earlier document
+			if (docid > 0 && r.nextInt(10) == 0) {
+				int termid = r.nextInt(numTerms);
+				int earlier = r.nextInt(docid);
+				assertEquals(basic.addOrUpdate(termid, earlier, 1), compressed.addOrUpdate(termid, earlier, 1));
+			}
+		}
+		for (int termid = 0; termid < numTerms; termid++) {
+			IterablePosting expected = basic.getPostings(new MemoryLexiconEntry(termid, 0, 0));
+			IterablePosting actual = compressed.getPostings(new MemoryLexiconEntry(termid, 0, 0));
+			assertThat(actual instanceof MemoryCompressedIterablePosting, is(true));
+			while (expected.next() != IterablePosting.EOL) {
+				assertEquals(expected.getId(), actual.next());
+				assertEquals(expected.getFrequency(), actual.getFrequency());
+				assertEquals(expected.getDocumentLength(), actual.getDocumentLength());
+				assertEquals(expected.endOfPostings(), actual.endOfPostings());
+			}
+			assertEquals(IterablePosting.EOL, actual.next());
+		}
+	}
+	
+	/*
+	 * getMemoryConsumption(): compressed posting lists are smaller
+	 */
+	@Test
+	public void test_compressedMemoryConsumption() throws Exception {
+		MemoryInvertedIndex basic = new MemoryInvertedIndex(new MemoryLexicon(),new MemoryDocumentIndex());
+		MemoryInvertedIndex compressed;
+		ApplicationSetup.setProperty("memory.inverted.compressed", "true");
+		try {
+			compressed = new MemoryInvertedIndex(new MemoryLexicon(),new MemoryDocumentIndex());
+		} finally {
+			ApplicationSetup.setProperty("memory.inverted.compressed", "false");
+		}
+		Random r = new Random(7);
+		for (int docid = 0; docid < 10000; docid++) {
+			for (int termid = 0; termid < 100; termid++) {
+				if (r.nextInt(10) == 0) {
+					basic.add(termid, docid, 1);
+					compressed.add(termid, docid, 1);
+				}
+			}
+		}
+		assertThat(compressed.getMemoryConsumption() * 3 < basic.getMemoryConsumption(), is(true));
+	}
+
 	/*
 	 * Test data.
 	 */
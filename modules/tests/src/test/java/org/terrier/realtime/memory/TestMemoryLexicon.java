@@ -128,6 +128,27 @@ public class TestMemoryLexicon {
 		}
 	}
 
+	/*
+	 * getLexiconEntry(String term) returns a copy
+	 */
+	@Test
+	public void test_getLexiconEntryCopy() throws Exception {
+		MemoryLexicon lexicon = new MemoryLexicon();
+		lexicon.term("t0", new MemoryLexiconEntry(1, 2));
+		LexiconEntry le = lexicon.getLexiconEntry("t0");
+		// e.g. as done by query operators that combine statistics
+		le.add(new MemoryLexiconEntry(1, 1));
+		assertEquals(2, le.getDocumentFrequency());
+		le = lexicon.getLexiconEntry("t0");
+		assertEquals(0, le.getTermId());
+		assertEquals(1, le.getDocumentFrequency());
+		assertEquals(2, le.getFrequency());
+		// while updates are still applied to the stored entry
+		lexicon.term("t0", new MemoryLexiconEntry(1, 3));
+		assertEquals(2, lexicon.getLexiconEntry("t0").getDocumentFrequency());
+		assertEquals(5, lexicon.getLexiconEntry("t0").getFrequency());
+	}
+
 	/*
 	 * getLexiconEntry(int termid)
 	 */
@@ -31,6 +31,9 @@ import static org.junit.Assert.*;
 import gnu.trove.TIntHashSet;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Set;
 import java.util.Map;
 import java.util.Iterator;
@@ -38,6 +41,7 @@ import java.util.Iterator;
 import org.junit.Test;
 import org.terrier.indexing.IndexTestUtils;
 import org.terrier.realtime.TestUtils;
+import org.terrier.realtime.memory.MemoryIndex;
 import org.terrier.structures.CollectionStatistics;
 import org.terrier.structures.DocumentIndex;
 import org.terrier.structures.DocumentIndexEntry;
@@ -56,6 +60,7 @@ import org.terrier.tests.ApplicationSetupBasedTest;
 import org.terrier.utility.ApplicationSetup;
 
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
 
 public class TestMultiIndex extends ApplicationSetupBasedTest {
 
@@ -287,8 +292,115 @@ public class TestMultiIndex extends ApplicationSetupBasedTest {
 		TestUtils.checkContents(disk,  "five",  1, new int[]{1},   new int[]{1},   new int[]{3});
 		TestUtils.checkContents(multi, "five",  1, new int[]{1},   new int[]{1},   new int[]{3});
 	}
-	
-
 
+	@Test public void test_termDirectory() throws Exception {
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		Index disk1 = IndexTestUtils.makeIndex(new String[]{"A"},new String[]{"one two three"});
+		Index disk2 = IndexTestUtils.makeIndex(new String[]{"B"},new String[]{"three four five"});
+		MemoryIndex mem = new MemoryIndex();
+		mem.indexDocument(IndexTestUtils.makeDocumentFromText("five six", new HashMap<>(Collections.singletonMap("filename", "C"))));
+		MultiIndex multi = new MultiIndex(new Index[]{disk1,disk2,mem}, false, false);
+		
+		ShardTermDirectory directory = multi.getTermDirectory(multi.getShards());
+		assertNotNull(directory);
+		assertTrue(directory.isFor(multi.getShards()));
+		// the directory is reused while the shards are unchanged
+		assertSame(directory, multi.getTermDirectory(multi.getShards()));
+		assertNotNull(directory.filters[0]);
+		assertNotNull(directory.filters[1]);
+		// a memory index can still change, so is always probed
+		assertNull(directory.filters[2]);
+		assertTrue(directory.mightContain("one", 0));
+		assertTrue(directory.mightContain("three", 1));
+		assertTrue(directory.mightContain("one", 2));
+		assertEquals(0b100L, directory.getCandidateShards("six") & 0b100L);
+		
+		TestUtils.checkContents(multi, "one",   1, new int[]{0},   new int[]{1},   new int[]{3});
+		TestUtils.checkContents(multi, "three", 2, new int[]{0,1}, new int[]{1,1}, new int[]{3,3});
+		TestUtils.checkContents(multi, "five",  2, new int[]{1,2}, new int[]{1,1}, new int[]{3,2});
+		TestUtils.checkContents(multi, "six",   1, new int[]{2},   new int[]{1},   new int[]{2});
+		assertNull(multi.getLexicon().getLexiconEntry("seven"));
+		
+		// the global term map has no false positives, while the memory index is always probed
+		ApplicationSetup.setProperty("MultiLexicon.globalTermMap", "true");
+		directory = ShardTermDirectory.build(multi.getShards(), new HashMap<>(), null);
+		assertEquals(0b011L, directory.mappedShards);
+		assertNull(directory.filters[0]);
+		assertEquals(0b101L, directory.getCandidateShards("one"));
+		assertEquals(0b111L, directory.getCandidateShards("three"));
+		assertEquals(0b110L, directory.getCandidateShards("five"));
+		assertEquals(0b100L, directory.getCandidateShards("seven"));
+		assertFalse(directory.mightContain("four", 0));
+		ApplicationSetup.setProperty("MultiLexicon.globalTermMap", "false");
+		
+		// global termids of the direct index resolve to terms
+		Lexicon<String> lexicon = multi.getLexicon();
+		IterablePosting ip = multi.getDirectIndex().getPostings(multi.getDocumentIndex().getDocumentEntry(0));
+		checkDoc(ip, lexicon, Sets.newHashSet("one", "two", "three"));
+		ip = multi.getDirectIndex().getPostings(multi.getDocumentIndex().getDocumentEntry(1));
+		checkDoc(ip, lexicon, Sets.newHashSet("three", "four", "five"));
+		
+		// terms whose global termids are used again remain resolvable after being evicted
+		MultiLexicon multiLexicon = (MultiLexicon) lexicon;
+		int localTermid = disk1.getLexicon().getLexiconEntry("two").getTermId();
+		int globalTermid = multiLexicon.computeGlobalTermIdFromLocal(localTermid, 0);
+		multiLexicon.hash2term.clear();
+		assertEquals(globalTermid, multiLexicon.computeGlobalTermIdFromLocal(localTermid, 0));
+		assertEquals("two", multiLexicon.hash2term.get(globalTermid));
+		
+		// the directory of new shards is built when they are added, using the prepared filter
+		Index disk3 = IndexTestUtils.makeIndex(new String[]{"D"},new String[]{"seven eight"});
+		multi.prepareShard(disk3);
+		BloomFilter<CharSequence> filter = multi.termFilters.get(disk3);
+		assertNotNull(filter);
+		multi.addShard(disk3);
+		directory = multi.getTermDirectory(multi.getShards());
+		assertNotNull(directory);
+		assertTrue(directory.isFor(multi.getShards()));
+		assertSame(filter, directory.filters[3]);
+		TestUtils.checkContents(multi, "seven", 1, new int[]{3}, new int[]{1}, new int[]{2});
+		// queries over other shards do not build a directory, but probe all shards
+		assertNull(multi.getTermDirectory(Arrays.asList(disk1, disk2)));
+		multi.replaceShards(Collections.singletonList(disk1), null);
+		assertFalse(multi.termFilters.containsKey(disk1));
+		assertTrue(multi.getTermDirectory(multi.getShards()).isFor(Arrays.asList(disk2, mem, disk3)));
+	}
 	
+	@Test public void test_snapshot() throws Exception {
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("indexer.meta.forward.keys", "filename");
+		ApplicationSetup.setProperty("indexer.meta.forward.keylens", "100");
+		ApplicationSetup.setProperty("indexer.meta.reverse.keys", "");
+		Index disk1 = IndexTestUtils.makeIndex(new String[]{"A"},new String[]{"one two three"});
+		Index disk2 = IndexTestUtils.makeIndex(new String[]{"B"},new String[]{"three four five"});
+		MultiIndex multi = new MultiIndex(new Index[]{disk1}, false, false);
+		MultiIndex snapshot = multi.snapshot();
+		assertSame(snapshot, snapshot.snapshot());
+		
+		// later changes to the shards do not affect the snapshot
+		multi.addShard(disk2);
+		assertEquals(2, multi.getNumberOfShards());
+		assertEquals(1, snapshot.getNumberOfShards());
+		assertEquals(1, snapshot.getCollectionStatistics().getNumberOfDocuments());
+		TestUtils.checkContents(snapshot, "three", 1, new int[]{0}, new int[]{1}, new int[]{3});
+		assertNull(snapshot.getLexicon().getLexiconEntry("five"));
+		TestUtils.checkContents(multi, "three", 2, new int[]{0,1}, new int[]{1,1}, new int[]{3,3});
+		
+		MultiIndex snapshot2 = multi.snapshot();
+		multi.replaceShards(Collections.singletonList(disk1), null);
+		assertEquals(2, snapshot2.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals("B", snapshot2.getMetaIndex().getItem("filename", 1));
+		try{
+			snapshot2.addShard(disk1);
+			fail("the shards of a snapshot cannot be changed");
+		} catch (UnsupportedOperationException uoe) {}
+		
+		// closing a snapshot leaves its shards open
+		snapshot2.close();
+		assertEquals("B", multi.getMetaIndex().getItem("filename", 0));
+		multi.close();
+	}
 }
@@ -45,6 +45,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.terrier.indexing.FlatJSONDocument;
+import org.terrier.structures.collections.PerfectHashMapFile;
 import org.terrier.structures.indexing.CompressingMetaIndexBuilder;
 import org.terrier.structures.indexing.MetaIndexBuilder;
 import org.terrier.tests.ApplicationSetupBasedTest;
@@ -234,6 +235,48 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 			src.MEM
 		);
 	}
+
+	@Test public void testIndexSourceVariants() throws Exception
+	{
+		final String[][] data = new String[1000][];
+		for(int i=0;i<data.length;i++)
+		{
+			StringBuilder value = new StringBuilder("d" + i);
+			for(int j=0;j<i % 17;j++)
+				value.append((char)('a' + (i*j) % 26));
+			data[i] = new String[]{value.toString()};
+		}
+		for(src indexsrc : new src[]{src.MMAP, src.ELIASFANO})
+		{
+			testBase("meta", new String[]{"docno"}, new int[]{30}, new String[0], data, indexsrc, src.MEM);
+			testBase("meta", new String[]{"docno"}, new int[]{30}, new String[0], new String[][]{
+				new String[]{"a"}
+			}, indexsrc, src.DISK);
+		}
+	}
+
+	@Test public void testReversePerfectHash() throws Exception
+	{
+		ApplicationSetup.setProperty("metaindex.compressed.reverse.mph", "true");
+		final String[][] data = new String[1000][];
+		for(int i=0;i<data.length;i++)
+			data[i] = new String[]{"d" + i};
+		IndexOnDisk index = createMetaIndex("meta", new String[]{"docno"}, new int[]{10}, new String[]{"docno"}, data);
+		assertEquals("mph", index.getIndexProperty("index.meta.reverse.docno.in-mem", ""));
+		MetaIndex mi = index.getMetaIndex();
+		assertTrue(((BaseCompressingMetaIndex)mi).reverseMetaMaps[0] instanceof PerfectHashMapFile);
+		for(int i=0;i<data.length;i++)
+			assertEquals(i, mi.getDocument("docno", data[i][0]));
+		assertEquals(-1, mi.getDocument("docno", "d1000"));
+		index.close();
+		IndexUtil.deleteIndex(index.getPath(), index.getPrefix());
+		
+		testBase("meta", new String[]{"docno"}, new int[]{2}, new String[]{"docno"}, new String[][]{
+			new String[]{"a"},
+			new String[]{"b"},
+			new String[]{"c"}
+		});
+	}
 		
 	@Test
 	public void testSingleKeyExtremeLengths() throws Exception
@@ -322,7 +365,9 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 	enum src { 
 		DEFAULT,
 		DISK,
-		MEM
+		MEM,
+		MMAP,
+		ELIASFANO
 	}
 
 	protected void testBase(String name, String[] keyNames, int[] keyLengths, String[] revKeys, String[][] data) throws Exception {
@@ -343,6 +388,10 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 			index.setIndexProperty("index."+name + ".index-source", "file"); 
 		} else if (indexsrc == src.MEM) {
 			index.setIndexProperty("index."+name + ".index-source", "fileinmem"); 
+		} else if (indexsrc == src.MMAP) {
+			index.setIndexProperty("index."+name + ".index-source", "mmap"); 
+		} else if (indexsrc == src.ELIASFANO) {
+			index.setIndexProperty("index."+name + ".index-source", "eliasfano"); 
 		}
 		
 		int offset = 0;
@@ -404,7 +453,7 @@ public class BaseTestCompressedMetaIndex extends ApplicationSetupBasedTest {
 		assertNotNull(mi);
 
 		if (reverse)
-			assertEquals(docnos.length, ((CompressingMetaIndex)mi).reverseMetaMaps[0].size());
+			assertEquals(docnos.length, ((BaseCompressingMetaIndex)mi).reverseMetaMaps[0].size());
 
 		Runnable lookupTask = () -> { 
 			try{
@@ -0,0 +1,170 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestFrontCodedLexicon.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestFrontCodedLexicon extends ApplicationSetupBasedTest
+{
+	static List<String> keys(Iterator<Map.Entry<String,LexiconEntry>> iter)
+	{
+		List<String> rtr = new ArrayList<>();
+		while(iter.hasNext())
+			rtr.add(iter.next().getKey());
+		return rtr;
+	}
+	
+	@Test public void testConvertIndex() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(
+			new String[]{"doc1", "doc2", "doc3", "doc4"}, 
+			new String[]{
+				"the quick brown fox jumps over the lazy dog",
+				"a quick brown dog jumped quickly over a fox",
+				"foxes and dogs quarrel about quick quarries",
+				"jumping jumpers jumped over the jumbled dogs"
+			});
+		final Lexicon<String> oldLex = index.getLexicon();
+		final TreeMap<String,String> expected = new TreeMap<>();
+		for(Map.Entry<String,LexiconEntry> e : oldLex)
+			expected.put(e.getKey(), e.getValue().toString());
+		final List<String> prefixJump = keys(oldLex.getLexiconEntryRange("jump", "jump" + Character.MAX_VALUE));
+		final List<String> rangeDQ = keys(oldLex.getLexiconEntryRange("d", "q"));
+		assertTrue(prefixJump.size() > 1);
+		
+		FrontCodedLexicon.convert(index, "lexicon", 3);
+		index.close();
+		index = IndexOnDisk.createIndex(index.getPath(), index.getPrefix());
+		final Lexicon<String> lex = index.getLexicon();
+		assertTrue(lex instanceof FrontCodedLexicon);
+		assertEquals(expected.size(), lex.numberOfEntries());
+		
+		int i = 0;
+		for(Map.Entry<String,String> e : expected.entrySet())
+		{
+			final LexiconEntry le = lex.getLexiconEntry(e.getKey());
+			assertEquals(e.getValue(), le.toString());
+			assertEquals(e.getKey(), lex.getLexiconEntry(le.getTermId()).getKey());
+			assertEquals(e.getKey(), lex.getIthLexiconEntry(i++).getKey());
+			
+			IterablePosting ip = index.getInvertedIndex().getPostings(le);
+			int count = 0;
+			while(ip.next() != IterablePosting.EOL)
+				count++;
+			ip.close();
+			assertEquals(le.getDocumentFrequency(), count);
+		}
+		assertNull(lex.getLexiconEntry("aaaaa"));
+		assertNull(lex.getLexiconEntry("jumpe"));
+		assertNull(lex.getLexiconEntry("zzzzz"));
+		assertEquals(prefixJump, keys(lex.getLexiconEntryRange("jump", "jump" + Character.MAX_VALUE)));
+		assertEquals(rangeDQ, keys(lex.getLexiconEntryRange("d", "q")));
+		assertEquals(new ArrayList<>(expected.keySet()), keys(lex.iterator()));
+		
+		@SuppressWarnings("unchecked")
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) index.getIndexStructureInputStream("lexicon");
+		assertEquals(new ArrayList<>(expected.keySet()), keys(lexIn));
+		IndexUtil.close(lexIn);
+		
+		@SuppressWarnings("unchecked")
+		Iterator<LexiconEntry> entryIn = (Iterator<LexiconEntry>) index.getIndexStructureInputStream("lexicon-entry");
+		for(String value : expected.values())
+			assertEquals(value, entryIn.next().toString());
+		assertFalse(entryIn.hasNext());
+		IndexUtil.close(entryIn);
+		index.close();
+	}
+	
+	@Test public void testManyTerms() throws Exception
+	{
+		final String filename = ApplicationSetup.TERRIER_INDEX_PATH + "/manyterms" + FrontCodedLexicon.EXT;
+		final TreeMap<String,Integer> terms = new TreeMap<>();
+		for(int i=0;i<3000;i++)
+		{
+			terms.put("term" + i, 0);
+			terms.put("preé" + (i % 100) + "x" + i, 0);
+		}
+		terms.put("中文", 0);
+		FrontCodedLexiconOutputStream out = new FrontCodedLexiconOutputStream(filename, 16);
+		//termids are not aligned to the order of the terms
+		int termid = terms.size();
+		for(String t : terms.keySet())
+		{
+			terms.put(t, --termid);
+			out.writeNextEntry(t, new BasicLexiconEntry(termid, 1, termid+1));
+		}
+		out.close();
+		
+		FrontCodedLexicon lex = new FrontCodedLexicon(filename, new BasicLexiconEntry.Factory());
+		assertEquals(terms.size(), lex.numberOfEntries());
+		int i = 0;
+		for(Map.Entry<String,Integer> e : terms.entrySet())
+		{
+			LexiconEntry le = lex.getLexiconEntry(e.getKey());
+			assertEquals(e.getKey(), (int)e.getValue(), le.getTermId());
+			assertEquals(e.getValue()+1, le.getFrequency());
+			assertEquals(e.getKey(), lex.getLexiconEntry(e.getValue()).getKey());
+			assertEquals(e.getKey(), lex.getIthLexiconEntry(i++).getKey());
+			assertNull(lex.getLexiconEntry(e.getKey() + "!"));
+		}
+		assertNull(lex.getLexiconEntry(""));
+		assertNull(lex.getLexiconEntry("a"));
+		assertNull(lex.getLexiconEntry("￿"));
+		assertNull(lex.getLexiconEntry(terms.size()));
+		
+		for(String prefix : new String[]{"term1", "term29", "preé7", "preé7x", "zzz", "a"})
+		{
+			final String end = prefix + Character.MAX_VALUE;
+			assertEquals(prefix, new ArrayList<>(terms.subMap(prefix, end).keySet()), keys(lex.getLexiconEntryRange(prefix, end)));
+		}
+		assertEquals(new ArrayList<>(terms.subMap("term100", "term2").keySet()), keys(lex.getLexiconEntryRange("term100", "term2")));
+		lex.close();
+	}
+	
+	@Test(expected=IOException.class) public void testOutOfOrder() throws Exception
+	{
+		FrontCodedLexiconOutputStream out = new FrontCodedLexiconOutputStream(ApplicationSetup.TERRIER_INDEX_PATH + "/order" + FrontCodedLexicon.EXT, 4);
+		out.writeNextEntry("b", new BasicLexiconEntry(0, 1, 1));
+		out.writeNextEntry("a", new BasicLexiconEntry(1, 1, 1));
+	}
+}
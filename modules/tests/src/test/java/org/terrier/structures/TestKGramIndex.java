@@ -0,0 +1,134 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestKGramIndex.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.matchops.WildcardTermOp;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestKGramIndex extends ApplicationSetupBasedTest
+{
+	static final String[] DOCS = new String[]{
+		"teach tech torch touch", 
+		"testing running sing sting", 
+		"trench teaching ing"};
+	
+	@Test public void testGrams()
+	{
+		assertEquals(Arrays.asList("$te", "tec", "ech", "ch$"), KGramIndex.getGrams("tech", 3, false));
+		assertEquals(Arrays.asList("$te", "ch$"), KGramIndex.getGrams("te*ch", 3, true));
+		assertEquals(Arrays.asList("ing", "ng$"), KGramIndex.getGrams("*ing", 3, true));
+		assertEquals(Arrays.asList("$t", "st", "t$"), KGramIndex.getGrams("t?st", 2, true));
+		assertEquals(0, KGramIndex.getGrams("a*", 3, true).size());
+		assertEquals(Arrays.asList("$a$"), KGramIndex.getGrams("a", 3, false));
+	}
+	
+	static List<String> terms(Lexicon<String> lex, int[] ordinals)
+	{
+		List<String> rtr = new ArrayList<>();
+		for(int o : ordinals)
+			rtr.add(lex.getIthLexiconEntry(o).getKey());
+		return rtr;
+	}
+	
+	@Test public void testBuild() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc1", "doc2", "doc3"}, DOCS);
+		KGramIndex.build(index, "lexicon", "lexicon-kgram", 3);
+		index.close();
+		index = IndexOnDisk.createIndex(index.getPath(), index.getPrefix());
+		assertTrue(index.hasIndexStructure("lexicon-kgram"));
+		KGramIndex kgrams = (KGramIndex) index.getIndexStructure("lexicon-kgram");
+		Lexicon<String> lex = index.getLexicon();
+		assertEquals(3, kgrams.getK());
+		assertEquals(lex.numberOfEntries(), kgrams.getNumberOfTerms());
+		
+		//every term is a candidate for each of its own k-grams
+		for(Map.Entry<String,LexiconEntry> e : lex)
+			for(String gram : KGramIndex.getGrams(e.getKey(), 3, false))
+				assertTrue(terms(lex, kgrams.getTerms(gram)).contains(e.getKey()));
+		
+		assertEquals(Arrays.asList("teach", "tech"), terms(lex, kgrams.getCandidates("te*ch")));
+		assertEquals(Arrays.asList("ing", "running", "sing", "sting", "teaching", "testing"), terms(lex, kgrams.getCandidates("*ing")));
+		assertEquals(0, kgrams.getCandidates("*xyz").length);
+		assertNull(kgrams.getCandidates("t*"));
+		assertEquals(0, kgrams.getTerms("zzz").length);
+		index.close();
+	}
+	
+	static int matches(Index index, String pattern) throws Exception
+	{
+		Pair<EntryStatistics,IterablePosting> pair = new WildcardTermOp(pattern).getPostingIterator(index);
+		if (pair == null)
+			return 0;
+		return pair.getLeft().getFrequency();
+	}
+	
+	@Test public void testWildcardTermOp() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc1", "doc2", "doc3"}, DOCS);
+		String[] patterns = new String[]{"te*ch", "*ing", "t?ch", "*", "t*", "*ch", "s*ing", "*in*", "teach", "x*", "*ing*ing", "?"};
+		int[] expected = new int[]{2, 6, 1, 11, 7, 5, 2, 6, 1, 0, 0, 0};
+		int[] withoutKGrams = new int[patterns.length];
+		for(int i=0;i<patterns.length;i++)
+			withoutKGrams[i] = matches(index, patterns[i]);
+		assertArrayEquals(expected, withoutKGrams);
+		
+		KGramIndex.build(index, "lexicon", WildcardTermOp.KGRAM_STRUCTURE, 3);
+		assertNotNull(index.getIndexStructure(WildcardTermOp.KGRAM_STRUCTURE));
+		int[] withKGrams = new int[patterns.length];
+		for(int i=0;i<patterns.length;i++)
+			withKGrams[i] = matches(index, patterns[i]);
+		assertArrayEquals(expected, withKGrams);
+		
+		//postings are merged across the matching terms
+		IterablePosting ip = new WildcardTermOp("*ing").getPostingIterator(index).getRight();
+		assertEquals(1, ip.next());
+		assertEquals(4, ip.getFrequency());
+		assertEquals(2, ip.next());
+		assertEquals(2, ip.getFrequency());
+		assertEquals(IterablePosting.EOL, ip.next());
+		index.close();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Terrier - Terabyte Retriever
+ * Webpage: http://terrier.org
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ *
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestMaxScoreBuilder.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ *
+ */
+package org.terrier.structures;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.Matching;
+import org.terrier.matching.MatchingQueryTerms;
+import org.terrier.matching.PostingListManager;
+import org.terrier.matching.ResultSet;
+import org.terrier.matching.daat.Full;
+import org.terrier.matching.daat.WAND;
+import org.terrier.matching.models.DPH;
+import org.terrier.matching.models.PL2;
+import org.terrier.matching.models.WeightingModel;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+
+public class TestMaxScoreBuilder extends ApplicationSetupBasedTest {
+
+	static final String[] DOCNOS = new String[]{"doc1", "doc2", "doc3", "doc4", "doc5", "doc6"};
+	static final String[] DOCS = new String[]{
+		"cat cat dog",
+		"dog fish fish fish",
+		"cat fish",
+		"bird cat dog dog dog dog",
+		"bird",
+		"fish dog cat bird cat"};
+
+	PostingListManager makePLM(Index index, WeightingModel wmodel, String... terms) throws Exception
+	{
+		MatchingQueryTerms mqt = new MatchingQueryTerms();
+		for(String t : terms)
+			mqt.setTermProperty(t, 1);
+		mqt.setDefaultTermWeightingModel(wmodel);
+		PostingListManager plm = new PostingListManager(index, index.getCollectionStatistics(), mqt);
+		plm.prepare(true);
+		return plm;
+	}
+
+	@Test public void testBounds() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		PostingListManager plm = makePLM(index, new DPH(), "cat", "fish");
+		assertEquals(Double.POSITIVE_INFINITY, plm.getMaxScore(0), 0d);
+		plm.close();
+
+		new MaxScoreBuilder(index, "DPH").build();
+		assertTrue(index.hasIndexStructure(MaxScoreBuilder.STRUCTURE_NAME));
+		TermMaxScores maxScores = (TermMaxScores) index.getIndexStructure(MaxScoreBuilder.STRUCTURE_NAME);
+		assertEquals(index.getCollectionStatistics().getNumberOfUniqueTerms(), maxScores.size());
+		assertEquals("DPH", maxScores.getWeightingModel());
+
+		plm = makePLM(index, new DPH(), "cat", "fish", "bird");
+		assertEquals(3, plm.size());
+		for(int i=0;i<plm.size();i++)
+		{
+			final double bound = plm.getMaxScore(i);
+			assertTrue(bound < Double.POSITIVE_INFINITY);
+			boolean tight = false;
+			while(plm.getPosting(i).getId() != IterablePosting.EOL)
+			{
+				final double score = plm.score(i);
+				assertTrue(score <= bound);
+				//the bound is the maximum score, subject to float precision
+				tight = tight || bound - score < 1e-5;
+				plm.getPosting(i).next();
+			}
+			assertTrue(tight);
+		}
+		plm.close();
+
+		//bounds recorded for DPH do not apply to PL2
+		plm = makePLM(index, new PL2(), "cat");
+		assertEquals(Double.POSITIVE_INFINITY, plm.getMaxScore(0), 0d);
+		plm.close();
+	}
+
+	@Test public void testWANDWithStoredBounds() throws Exception
+	{
+		IndexOnDisk index = (IndexOnDisk) IndexTestUtils.makeIndex(DOCNOS, DOCS);
+		new MaxScoreBuilder(index, "DPH").build();
+		for(int k : new int[]{1, 2, 3, 1000})
+		{
+			ResultSet[] rs = new ResultSet[2];
+			Matching[] matchings = new Matching[]{new Full(index), new WAND(index)};
+			for(int m=0;m<matchings.length;m++)
+			{
+				MatchingQueryTerms mqt = new MatchingQueryTerms();
+				mqt.setTermProperty("cat", 1);
+				mqt.setTermProperty("dog", 2);
+				mqt.setTermProperty("bird", 1);
+				mqt.setDefaultTermWeightingModel(new DPH());
+				mqt.setMatchingRequestSize(k);
+				rs[m] = matchings[m].match("query1", mqt);
+			}
+			assertEquals(rs[0].getResultSize(), rs[1].getResultSize());
+			assertArrayEquals(rs[0].getDocids(), rs[1].getDocids());
+			assertArrayEquals(rs[0].getScores(), rs[1].getScores(), 0d);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.terrier.structures;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.terrier.structures.indexing.*;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+public class TestZstdBlockMetaIndex extends BaseTestCompressedMetaIndex {
+
+    public TestZstdBlockMetaIndex() {
+        metaBuilderClass = ZstdBlockMetaIndexBuilder.class;
+    }
+
+    String[][] makeData(int numDocs)
+    {
+        String[][] data = new String[numDocs][];
+        for(int i=0;i<numDocs;i++)
+            data[i] = new String[]{"d" + i, "http://www.example.org/section" + (i % 17) + "/page" + i + ".html"};
+        return data;
+    }
+
+    @Test public void testManyBlocks() throws Exception
+    {
+        ApplicationSetup.setProperty("metaindex.zstd.block.size", "16");
+        ApplicationSetup.setProperty("metaindex.zstd.dictionary.samples", "1000");
+        //the last block is partial
+        testBase("meta", new String[]{"docno", "url"}, new int[]{10, 60}, new String[]{"docno"}, makeData(2001));
+    }
+
+    @Test public void testDictionaryAndBatchLookup() throws Exception
+    {
+        ApplicationSetup.setProperty("metaindex.zstd.block.size", "8");
+        ApplicationSetup.setProperty("metaindex.zstd.dictionary.samples", "1000");
+        final String[][] data = makeData(3000);
+        IndexOnDisk index = createMetaIndex("meta", new String[]{"docno", "url"}, new int[]{10, 60}, new String[0], data);
+        assertTrue(Files.exists(index.getPath() + "/" + index.getPrefix() + ".meta" + ZstdBlockCompressedMetaIndex.DICTIONARY_SUFFIX));
+        MetaIndex meta = index.getMetaIndex();
+        assertTrue(meta instanceof ZstdBlockCompressedMetaIndex);
+        final int[] docids = new int[]{2999, 5, 6, 1500, 0, 7, 8};
+        final String[] urls = meta.getItems("url", docids);
+        final String[][] all = meta.getItems(new String[]{"url", "docno"}, docids);
+        for(int i=0;i<docids.length;i++)
+        {
+            assertEquals(data[docids[i]][1], urls[i]);
+            assertArrayEquals(new String[]{data[docids[i]][1], data[docids[i]][0]}, all[i]);
+        }
+        index.close();
+    }
+
+    @Test public void testConcurrentLookups() throws Exception
+    {
+        ApplicationSetup.setProperty("metaindex.zstd.block.size", "8");
+        ApplicationSetup.setProperty("metaindex.zstd.dictionary.samples", "1000");
+        ApplicationSetup.setProperty("metaindex.zstd.block.cache", "4");
+        final String[][] data = makeData(2000);
+        IndexOnDisk index = createMetaIndex("meta", new String[]{"docno", "url"}, new int[]{10, 60}, new String[0], data);
+        final MetaIndex meta = index.getMetaIndex();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try{
+            List<Future<?>> results = new ArrayList<>();
+            for(int t=0;t<4;t++)
+            {
+                final int offset = t;
+                results.add(pool.submit(() -> {
+                    //each thread strides through the blocks, so that the small cache is frequently evicted
+                    for(int i=0;i<data.length;i++)
+                    {
+                        final int docid = (i * 37 + offset * 101) % data.length;
+                        assertArrayEquals(data[docid], meta.getAllItems(docid));
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f : results)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+        index.close();
+    }
+}
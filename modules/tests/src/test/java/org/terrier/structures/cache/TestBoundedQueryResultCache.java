@@ -0,0 +1,182 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestBoundedQueryResultCache.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.matching.QueryResultSet;
+import org.terrier.matching.ResultSet;
+import org.terrier.querying.Request;
+import org.terrier.realtime.memory.MemoryIndex;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+
+public class TestBoundedQueryResultCache extends ApplicationSetupBasedTest {
+
+	static Request makeRequest(String query, String wmodel, int... docids)
+	{
+		Request rq = new Request();
+		rq.setOriginalQuery(query);
+		rq.setControl("wmodel", wmodel);
+		double[] scores = new double[docids.length];
+		for(int i=0;i<docids.length;i++)
+			scores[i] = docids.length - i;
+		rq.setResultSet(new QueryResultSet(docids, scores, new short[docids.length]));
+		return rq;
+	}
+	
+	@Test public void testHitsAndMisses()
+	{
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(10, 1024*1024, 2);
+		Request rq = makeRequest("cat  dog", "DPH", 5, 3, 1);
+		assertNull(cache.checkCache(rq));
+		cache.add(rq);
+		assertEquals(1, cache.getMisses());
+		
+		//whitespace is normalised
+		ResultSet rs = cache.checkCache(makeRequest(" cat dog ", "DPH"));
+		assertNotNull(rs);
+		assertEquals(1, cache.getHits());
+		//only the top-k are retained
+		assertEquals(2, rs.getResultSize());
+		assertArrayEquals(new int[]{5,3}, rs.getDocids());
+		assertArrayEquals(new double[]{3,2}, rs.getScores(), 0d);
+		//each hit obtains its own copy
+		assertNotSame(rs, cache.checkCache(makeRequest("cat dog", "DPH")));
+		
+		//the controls are part of the key
+		assertNull(cache.checkCache(makeRequest("cat dog", "BM25")));
+		assertEquals(2, cache.getMisses());
+		
+		cache.reset();
+		assertEquals(0, cache.size());
+		assertNull(cache.checkCache(makeRequest("cat dog", "DPH")));
+	}
+	
+	@Test public void testEntryBound()
+	{
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(2, 1024*1024, 10);
+		cache.add(makeRequest("a", "DPH", 1));
+		cache.add(makeRequest("b", "DPH", 2));
+		//make a the most recently used
+		assertNotNull(cache.checkCache(makeRequest("a", "DPH")));
+		cache.add(makeRequest("c", "DPH", 3));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.checkCache(makeRequest("b", "DPH")));
+		assertNotNull(cache.checkCache(makeRequest("a", "DPH")));
+		assertNotNull(cache.checkCache(makeRequest("c", "DPH")));
+	}
+	
+	@Test public void testByteBound()
+	{
+		final int[] docids = new int[100];
+		for(int i=0;i<docids.length;i++)
+			docids[i] = i;
+		final long entryBytes = new BoundedQueryResultCache.CachedResults("q1\u0000wmodel=DPH", makeRequest("q1", "DPH", docids).getResultSet(), 100).bytes;
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(100, 3 * entryBytes, 100);
+		for(int i=1;i<=5;i++)
+			cache.add(makeRequest("q" + i, "DPH", docids));
+		assertEquals(3, cache.size());
+		assertEquals(2, cache.getEvictions());
+		assertEquals(3 * entryBytes, cache.getEstimatedBytes());
+		assertNull(cache.checkCache(makeRequest("q1", "DPH")));
+		assertNotNull(cache.checkCache(makeRequest("q5", "DPH")));
+	}
+	
+	@Test public void testInvalidatedByIndexUpdate() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		MemoryIndex index = new MemoryIndex();
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("the lazy", new HashMap<String,String>()));
+		
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(10, 1024*1024, 10);
+		Request rq = makeRequest("lazy", "DPH", 0);
+		rq.setIndex(index);
+		assertNull(cache.checkCache(rq));
+		cache.add(rq);
+		
+		Request rq2 = makeRequest("lazy", "DPH");
+		rq2.setIndex(index);
+		assertNotNull(cache.checkCache(rq2));
+		
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("lazy dog", new HashMap<String,String>()));
+		Request rq3 = makeRequest("lazy", "DPH");
+		rq3.setIndex(index);
+		assertNull(cache.checkCache(rq3));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test public void testInvalidatedByDocumentRemoval() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		MemoryIndex index = new MemoryIndex();
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("the lazy", new HashMap<String,String>()));
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("lazy dog", new HashMap<String,String>()));
+		
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(10, 1024*1024, 10);
+		Request rq = makeRequest("lazy", "DPH", 0, 1);
+		rq.setIndex(index);
+		assertNull(cache.checkCache(rq));
+		cache.add(rq);
+		
+		//removing a document does not change the statistics of the index, but changes its version
+		final long version = index.getVersion();
+		assertTrue(index.removeDocument(0));
+		assertTrue(index.getVersion() > version);
+		Request rq2 = makeRequest("lazy", "DPH");
+		rq2.setIndex(index);
+		assertNull(cache.checkCache(rq2));
+		assertEquals(0, cache.size());
+	}
+	
+	@Test public void testNotAddedIfIndexChangedDuringQuery() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		MemoryIndex index = new MemoryIndex();
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("the lazy", new HashMap<String,String>()));
+		index.indexDocument(IndexTestUtils.makeDocumentFromText("lazy dog", new HashMap<String,String>()));
+		
+		BoundedQueryResultCache cache = new BoundedQueryResultCache(10, 1024*1024, 10);
+		Request rq = makeRequest("lazy", "DPH", 0, 1);
+		rq.setIndex(index);
+		assertNull(cache.checkCache(rq));
+		//the document is removed while the query is running
+		index.removeDocument(0);
+		cache.add(rq);
+		assertEquals(0, cache.size());
+	}
+}
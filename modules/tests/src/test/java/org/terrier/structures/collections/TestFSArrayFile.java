@@ -26,9 +26,14 @@
 package org.terrier.structures.collections;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.io.IntWritable;
 import org.junit.Before;
@@ -89,6 +94,46 @@ public class TestFSArrayFile {
 		testRandom(list);
 	}
 	
+	protected void testConcurrent(final List<IntWritable> list) throws Exception
+	{
+		final IntWritable first = list.get(0);
+		assertEquals(TEST_INTEGERS[0], list.get(0).get());
+		list.get(1);
+		assertEquals("get() should return a new instance", TEST_INTEGERS[0], first.get());
+		
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for(int t=0;t<8;t++)
+		{
+			final int offset = t;
+			results.add(pool.submit(() -> {
+				for(int i=0;i<10000;i++)
+				{
+					final int j = (i + offset) % TEST_INTEGERS.length;
+					if (TEST_INTEGERS[j] != list.get(j).get())
+						return false;
+				}
+				return true;
+			}));
+		}
+		for(Future<Boolean> f : results)
+			assertTrue(f.get());
+		pool.shutdown();
+		IndexUtil.close(list);
+	}
+	
+	/** Test that random access on one on disk is thread-safe */
+	@Test public void testConcurrent() throws Exception
+	{
+		testConcurrent(new FSArrayFile<IntWritable>(arrayFile, false, new FixedSizeIntWritableFactory()));
+	}
+	
+	/** Test that random access on one in memory is thread-safe */
+	@Test public void testConcurrentInMem() throws Exception
+	{
+		testConcurrent(new FSArrayFileInMem<IntWritable>(arrayFile, false, new FixedSizeIntWritableFactory()));
+	}
+	
 	/** Test that the stream works as expected */
 	@Test public void testStream() throws Exception
 	{
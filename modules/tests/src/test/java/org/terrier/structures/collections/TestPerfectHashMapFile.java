@@ -0,0 +1,131 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestPerfectHashMapFile.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *  Craig Macdonald <craigm{a.}dcs.gla.ac.uk>
+ */
+
+package org.terrier.structures.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Make some tests on PerfectHashMapFile */
+public class TestPerfectHashMapFile {
+	@Rule public TemporaryFolder tf = new TemporaryFolder();
+	
+	protected PerfectHashMapFile write(List<Map.Entry<Text,IntWritable>> entries, int expectedKeys) throws Exception
+	{
+		String file = tf.newFile("test" + PerfectHashMapFile.USUAL_EXTENSION).toString();
+		assertEquals(expectedKeys, PerfectHashMapFile.write(file, entries.iterator()));
+		PerfectHashMapFile map = new PerfectHashMapFile(file);
+		assertEquals(expectedKeys, map.size());
+		return map;
+	}
+	
+	static Map.Entry<Text,IntWritable> entry(String key, int value)
+	{
+		return new MapEntry<Text,IntWritable>(new Text(key), new IntWritable(value));
+	}
+	
+	@Test public void testEmpty() throws Exception
+	{
+		PerfectHashMapFile map = write(new ArrayList<>(), 0);
+		assertTrue(map.isEmpty());
+		assertEquals(-1, map.getInt("a"));
+		assertNull(map.get(new Text("a")));
+		map.close();
+	}
+	
+	@Test public void testSingle() throws Exception
+	{
+		List<Map.Entry<Text,IntWritable>> entries = new ArrayList<>();
+		entries.add(entry("doc1", 0));
+		PerfectHashMapFile map = write(entries, 1);
+		assertEquals(0, map.getInt("doc1"));
+		assertEquals(0, map.get(new Text("doc1")).get());
+		assertFalse(map.containsKey(new Text("doc2")));
+		assertEquals(-1, map.getInt(""));
+		map.close();
+	}
+	
+	@Test public void testManyKeys() throws Exception
+	{
+		final int count = 50000;
+		List<Map.Entry<Text,IntWritable>> entries = new ArrayList<>();
+		for(int i=0;i<count;i++)
+			entries.add(entry("http://example.com/page/" + i + ".html", i));
+		//UTF-8 keys
+		entries.add(entry(new String(new byte[]{(byte)0xbb,(byte)0xB6,(byte)0xD3,(byte)0xAD}, "gb2312"), count));
+		PerfectHashMapFile map = write(entries, count+1);
+		for(Map.Entry<Text,IntWritable> e : entries)
+			assertEquals(e.getValue().get(), map.getInt(e.getKey().toString()));
+		int falsePositives = 0;
+		for(int i=count;i<2*count;i++)
+			if (map.getInt("http://example.com/page/" + i + ".html") != -1)
+				falsePositives++;
+		assertEquals(0, falsePositives);
+		map.close();
+	}
+	
+	@Test public void testDuplicates() throws Exception
+	{
+		List<Map.Entry<Text,IntWritable>> entries = new ArrayList<>();
+		entries.add(entry("a", 0));
+		entries.add(entry("b", 1));
+		entries.add(entry("a", 2));
+		PerfectHashMapFile map = write(entries, 2);
+		assertTrue(map.getInt("a") == 0 || map.getInt("a") == 2);
+		assertEquals(1, map.getInt("b"));
+		map.close();
+	}
+	
+	@Test public void testHashCollision() throws Exception
+	{
+		//the same hash and check value is a duplicate key
+		String file = tf.newFile("dup" + PerfectHashMapFile.USUAL_EXTENSION).toString();
+		assertEquals(2, PerfectHashMapFile.write(file, new long[]{5, 7, 5}, new long[]{1, 1, 1}, new int[]{0, 1, 2}));
+		
+		//distinct keys with the same hash cannot be told apart by lookups, so the file is not written
+		file = tf.newFile("collision" + PerfectHashMapFile.USUAL_EXTENSION).toString();
+		try{
+			PerfectHashMapFile.write(file, new long[]{5, 7, 5}, new long[]{1, 1, 2}, new int[]{0, 1, 2});
+			fail("Expected IOException");
+		} catch (IOException ioe) {
+			assertTrue(ioe.getMessage().contains("same hash"));
+		}
+	}
+}
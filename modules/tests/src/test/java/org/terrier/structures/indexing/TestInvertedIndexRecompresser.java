@@ -0,0 +1,127 @@
+/*
+ * Terrier - Terabyte Retriever 
+ * Webpage: http://terrier.org 
+ * Contact: terrier{a.}dcs.gla.ac.uk
+ * University of Glasgow - School of Computing Science
+ * http://www.gla.ac.uk/
+ * 
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See
+ * the License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is TestInvertedIndexRecompresser.java.
+ *
+ * The Original Code is Copyright (C) 2004-2020 the University of Glasgow.
+ * All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Craig Macdonald <craigm{a.}dcs.gla.ac.uk> (original author)
+ */
+
+package org.terrier.structures.indexing;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.terrier.compression.integer.ByteIn;
+import org.terrier.indexing.IndexTestUtils;
+import org.terrier.structures.Index;
+import org.terrier.structures.IndexOnDisk;
+import org.terrier.structures.IndexUtil;
+import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.bit.BitPostingIndex;
+import org.terrier.structures.integer.IntegerCodingPostingIndex;
+import org.terrier.structures.postings.BlockPosting;
+import org.terrier.structures.postings.IterablePosting;
+import org.terrier.tests.ApplicationSetupBasedTest;
+import org.terrier.utility.ApplicationSetup;
+import org.terrier.utility.Files;
+
+public class TestInvertedIndexRecompresser extends ApplicationSetupBasedTest {
+
+	static final String[] DOCNOS = new String[]{"doc1", "doc2", "doc3", "doc4"};
+	static final String[] DOCS = new String[]{
+		"the quick brown fox", 
+		"the lazy dog <TITLE>fox</TITLE>", 
+		"a fox and a dog", 
+		"<TITLE>brown dog</TITLE> sleeps"};
+
+	/** Renders each posting list of the index, keyed by term */
+	@SuppressWarnings("unchecked")
+	static Map<String,List<String>> getPostings(Index index) throws Exception
+	{
+		Map<String,List<String>> rtr = new LinkedHashMap<>();
+		Iterator<Map.Entry<String,LexiconEntry>> lexIn = (Iterator<Map.Entry<String,LexiconEntry>>) ((IndexOnDisk)index).getIndexStructureInputStream("lexicon");
+		while(lexIn.hasNext())
+		{
+			Map.Entry<String,LexiconEntry> lee = lexIn.next();
+			List<String> postings = new ArrayList<>();
+			IterablePosting ip = index.getInvertedIndex().getPostings(lee.getValue());
+			while(ip.next() != IterablePosting.EOL)
+			{
+				//class-independent rendering of the posting
+				String p = ip.asWritablePosting().toString().replaceAll("[^0-9,]+", " ");
+				if (ip instanceof BlockPosting)
+					p += " " + java.util.Arrays.toString(((BlockPosting)ip).getPositions());
+				postings.add(p);
+			}
+			ip.close();
+			rtr.put(lee.getKey(), postings);
+		}
+		IndexUtil.close(lexIn);
+		return rtr;
+	}
+
+	void checkRecompress(Index index, int chunkSize) throws Exception
+	{
+		ApplicationSetup.setProperty("index.tmp-inverted.compression.integer.chunk.size", String.valueOf(chunkSize));
+		assertTrue(index.getInvertedIndex() instanceof BitPostingIndex);
+		Map<String,List<String>> before = getPostings(index);
+		IndexOnDisk diskIndex = (IndexOnDisk)index;
+		new InvertedIndexRecompresser(diskIndex).recompress();
+		diskIndex = IndexUtil.reOpenIndex(diskIndex);
+		assertTrue(diskIndex.getInvertedIndex() instanceof IntegerCodingPostingIndex);
+		assertFalse(diskIndex.hasIndexStructure("tmp-inverted"));
+		assertEquals(String.valueOf(chunkSize), diskIndex.getIndexProperty("index.inverted.compression.integer.chunk.size", null));
+		final String prefix = diskIndex.getPath() + "/" + diskIndex.getPrefix() + ".inverted";
+		assertTrue(Files.exists(prefix + ByteIn.USUAL_EXTENSION));
+		assertFalse(Files.exists(prefix + ".bf"));
+		assertEquals(before, getPostings(diskIndex));
+
+		//the lexicon still works for random access
+		LexiconEntry le = diskIndex.getLexicon().getLexiconEntry("dog");
+		assertEquals(3, le.getDocumentFrequency());
+		IterablePosting ip = diskIndex.getInvertedIndex().getPostings(le);
+		assertEquals(2, ip.next(2));
+		assertEquals(3, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		diskIndex.close();
+	}
+
+	@Test public void testSinglePass() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		checkRecompress(IndexTestUtils.makeIndexSinglePass(DOCNOS, DOCS), 2);
+	}
+
+	@Test public void testFieldsBlocks() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		ApplicationSetup.setProperty("FieldTags.process", "TITLE");
+		Index index = IndexTestUtils.makeIndexFieldsBlocks(DOCNOS, DOCS);
+		assertEquals(1, index.getCollectionStatistics().getNumberOfFields());
+		checkRecompress(index, 1024);
+	}
+}
@@ -1,8 +1,11 @@
 package org.terrier.structures.merging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.BitSet;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.Test;
@@ -10,6 +13,8 @@ import org.terrier.indexing.IndexTestUtils;
 import org.terrier.structures.Index;
 import org.terrier.structures.IndexOnDisk;
 import org.terrier.structures.LexiconEntry;
+import org.terrier.structures.Pointer;
+import org.terrier.structures.PostingIndex;
 import org.terrier.structures.postings.BlockPosting;
 import org.terrier.structures.postings.FieldPosting;
 import org.terrier.structures.postings.IterablePosting;
@@ -105,6 +110,62 @@ public class TestMerger extends ApplicationSetupBasedTest {
 	
 	}
 	
+	@Test public void test22_purged() throws Exception
+	{
+		ApplicationSetup.setProperty("termpipelines", "");
+		IndexOnDisk index1 = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc1", "doc1a"}, new String[]{"this is a sentence", "a unique word"});
+		IndexOnDisk index2 = (IndexOnDisk) IndexTestUtils.makeIndex(new String[]{"doc2", "doc2a"}, new String[]{"this is also a sentence", "another sentence"});
+		BitSet deleted1 = new BitSet();
+		deleted1.set(1);
+		BitSet deleted2 = new BitSet();
+		deleted2.set(0);
+		
+		IndexOnDisk merged = IndexOnDisk.createNewIndex(ApplicationSetup.TERRIER_INDEX_PATH, "purged");
+		StructureMerger merger = new StructureMerger(index1, index2, merged);
+		merger.setDeletedDocuments(deleted1, deleted2);
+		merger.mergeStructures();
+		
+		assertEquals(2, merged.getCollectionStatistics().getNumberOfDocuments());
+		assertEquals(5, merged.getCollectionStatistics().getNumberOfUniqueTerms());
+		assertEquals(6, merged.getCollectionStatistics().getNumberOfTokens());
+		assertEquals(6, merged.getCollectionStatistics().getNumberOfPointers());
+		assertEquals("doc1", merged.getMetaIndex().getItem("docno", 0));
+		assertEquals("doc2a", merged.getMetaIndex().getItem("docno", 1));
+		
+		//terms only in purged documents are dropped
+		assertNull(merged.getLexicon().getLexiconEntry("unique"));
+		assertNull(merged.getLexicon().getLexiconEntry("also"));
+		
+		LexiconEntry le = merged.getLexicon().getLexiconEntry("sentence");
+		assertEquals(2, le.getDocumentFrequency());
+		assertEquals(2, le.getFrequency());
+		IterablePosting ip = merged.getInvertedIndex().getPostings(le);
+		assertEquals(0, ip.next());
+		assertEquals(1, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		le = merged.getLexicon().getLexiconEntry("another");
+		assertEquals(1, le.getDocumentFrequency());
+		ip = merged.getInvertedIndex().getPostings(le);
+		assertEquals(1, ip.next());
+		assertEquals(IterablePosting.EOL, ip.next());
+		
+		//term codes are contiguous, and the direct index uses them
+		for (Map.Entry<String,LexiconEntry> e : merged.getLexicon())
+			assertTrue(e.getValue().getTermId() < 5);
+		@SuppressWarnings("unchecked")
+		PostingIndex<Pointer> direct = (PostingIndex<Pointer>) merged.getDirectIndex();
+		ip = direct.getPostings(merged.getDocumentIndex().getDocumentEntry(1));
+		int count = 0;
+		while(ip.next() != IterablePosting.EOL)
+		{
+			String term = merged.getLexicon().getLexiconEntry(ip.getId()).getKey();
+			assertTrue(term, term.equals("another") || term.equals("sentence"));
+			count++;
+		}
+		assertEquals(2, count);
+	}
+	
 	@Test(expected=IllegalArgumentException.class) public void test10() throws Exception
 	{
 		ApplicationSetup.setProperty("termpipelines", "");